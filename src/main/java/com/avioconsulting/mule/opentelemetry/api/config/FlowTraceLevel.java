@@ -0,0 +1,110 @@
+package com.avioconsulting.mule.opentelemetry.api.config;
+
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Example;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Trace levels for flows matching a name or a pattern. Settings that are not
+ * set use the global trace levels.
+ */
+public class FlowTraceLevel {
+
+  @Parameter
+  @DisplayName(value = "Flow Name")
+  @Summary("Name of the flow or sub-flow. Use * to match any characters, eg. order-*.")
+  @Example("order-*")
+  private String flowName;
+
+  @Parameter
+  @Optional
+  @DisplayName(value = "Span All Processors")
+  @Summary("Create spans for every processor of matching flows. When not set, global Span All Processors setting is used.")
+  private Boolean spanAllProcessors;
+
+  @Parameter
+  @Optional
+  @DisplayName(value = "Disable Spans for")
+  @Summary("Processors of matching flows that should be skipped from tracing. When not set, global Disable Spans for list is used.")
+  private List<MuleComponent> ignoreMuleComponents;
+
+  @Parameter
+  @Optional
+  @DisplayName(value = "Sampling Ratio")
+  @Summary("Ratio of traces sampled when matching flows start a trace, between 0 and 1. When not set, configured sampler is used.")
+  private Double samplingRatio;
+
+  @Parameter
+  @Optional
+  @DisplayName(value = "Slow Transaction Threshold (ms)")
+  @Summary("Slow transaction threshold of transactions started by matching flows. When not set, global Slow Transaction Threshold is used.")
+  private Long slowTransactionThreshold;
+
+  public FlowTraceLevel() {
+  }
+
+  public FlowTraceLevel(String flowName, Boolean spanAllProcessors, List<MuleComponent> ignoreMuleComponents,
+      Double samplingRatio) {
+    this(flowName, spanAllProcessors, ignoreMuleComponents, samplingRatio, null);
+  }
+
+  public FlowTraceLevel(String flowName, Boolean spanAllProcessors, List<MuleComponent> ignoreMuleComponents,
+      Double samplingRatio, Long slowTransactionThreshold) {
+    this.flowName = flowName;
+    this.spanAllProcessors = spanAllProcessors;
+    this.ignoreMuleComponents = ignoreMuleComponents;
+    this.samplingRatio = samplingRatio;
+    this.slowTransactionThreshold = slowTransactionThreshold;
+  }
+
+  public String getFlowName() {
+    return flowName;
+  }
+
+  public Boolean getSpanAllProcessors() {
+    return spanAllProcessors;
+  }
+
+  public List<MuleComponent> getIgnoreMuleComponents() {
+    return ignoreMuleComponents;
+  }
+
+  public Double getSamplingRatio() {
+    return samplingRatio;
+  }
+
+  public Long getSlowTransactionThreshold() {
+    return slowTransactionThreshold;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+    FlowTraceLevel that = (FlowTraceLevel) o;
+    return Objects.equals(flowName, that.flowName) && Objects.equals(spanAllProcessors, that.spanAllProcessors)
+        && Objects.equals(ignoreMuleComponents, that.ignoreMuleComponents)
+        && Objects.equals(samplingRatio, that.samplingRatio)
+        && Objects.equals(slowTransactionThreshold, that.slowTransactionThreshold);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(flowName, spanAllProcessors, ignoreMuleComponents, samplingRatio,
+        slowTransactionThreshold);
+  }
+
+  @Override
+  public String toString() {
+    return "FlowTraceLevel{flowName='" + flowName + "', spanAllProcessors=" + spanAllProcessors
+        + ", ignoreMuleComponents=" + ignoreMuleComponents + ", samplingRatio=" + samplingRatio
+        + ", slowTransactionThreshold=" + slowTransactionThreshold + "}";
+  }
+}
@@ -44,6 +44,20 @@ public class SpanProcessorConfiguration implements OtelConfigMapProvider {
   @Summary("The Maximum number of milliseconds the exporter will wait for a batch to export before cancelling the export.")
   private long exportTimeout;
 
+  @Parameter
+  @Placement(order = 50, tab = "Tracer Settings")
+  @DisplayName("Span Processor Type")
+  @Optional(defaultValue = "BATCH")
+  @Summary("BATCH uses SDK's batch span processor with a single queue and export worker. STRIPED_BATCH uses multiple queues, each with its own export worker, to reduce contention when spans are ended at a high rate from many threads.")
+  private SpanProcessorType processorType = SpanProcessorType.BATCH;
+
+  @Parameter
+  @Placement(order = 60, tab = "Tracer Settings")
+  @DisplayName("Striped Queues")
+  @Optional(defaultValue = "0")
+  @Summary("Number of queues and export workers used by STRIPED_BATCH span processor. Max Queue Size is divided between queues. 0 uses the number of available processors.")
+  private int stripes;
+
   public SpanProcessorConfiguration() {
   }
 
@@ -71,6 +85,24 @@ public class SpanProcessorConfiguration implements OtelConfigMapProvider {
     return exportTimeout;
   }
 
+  public SpanProcessorType getProcessorType() {
+    return processorType;
+  }
+
+  public SpanProcessorConfiguration setProcessorType(SpanProcessorType processorType) {
+    this.processorType = processorType;
+    return this;
+  }
+
+  public int getStripes() {
+    return stripes;
+  }
+
+  public SpanProcessorConfiguration setStripes(int stripes) {
+    this.stripes = stripes;
+    return this;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o)
@@ -80,13 +112,14 @@ public class SpanProcessorConfiguration implements OtelConfigMapProvider {
     SpanProcessorConfiguration that = (SpanProcessorConfiguration) o;
     return getMaxQueueSize() == that.getMaxQueueSize() && getMaxBatchExportSize() == that.getMaxBatchExportSize()
         && getBatchExportDelayInterval() == that.getBatchExportDelayInterval()
-        && getExportTimeout() == that.getExportTimeout();
+        && getExportTimeout() == that.getExportTimeout()
+        && getProcessorType() == that.getProcessorType() && getStripes() == that.getStripes();
   }
 
   @Override
   public int hashCode() {
     return Objects.hash(getMaxQueueSize(), getMaxBatchExportSize(), getBatchExportDelayInterval(),
-        getExportTimeout());
+        getExportTimeout(), getProcessorType(), getStripes());
   }
 
   @Override
@@ -96,6 +129,14 @@ public class SpanProcessorConfiguration implements OtelConfigMapProvider {
     configMap.put("otel.bsp.max.queue.size", String.valueOf(this.getMaxQueueSize()));
     configMap.put("otel.bsp.max.export.batch.size", String.valueOf(this.getMaxBatchExportSize()));
     configMap.put("otel.bsp.export.timeout", String.valueOf(this.getExportTimeout()));
+    if (SpanProcessorType.STRIPED_BATCH.equals(getProcessorType())) {
+      configMap.put("mule.otel.span.processor.type", "striped_batch");
+      configMap.put("mule.otel.span.processor.stripes", String.valueOf(this.getStripes()));
+    }
     return Collections.unmodifiableMap(configMap);
   }
+
+  public enum SpanProcessorType {
+    BATCH, STRIPED_BATCH
+  }
 }
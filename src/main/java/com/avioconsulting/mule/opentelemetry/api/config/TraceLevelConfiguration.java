@@ -4,6 +4,7 @@ import org.mule.runtime.extension.api.annotation.param.NullSafe;
 import org.mule.runtime.extension.api.annotation.param.Optional;
 import org.mule.runtime.extension.api.annotation.param.Parameter;
 import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Password;
 import org.mule.runtime.extension.api.annotation.param.display.Placement;
 import org.mule.runtime.extension.api.annotation.param.display.Summary;
 
@@ -43,6 +44,43 @@ public class TraceLevelConfiguration {
   @Summary("Module uses message processor interception mechanism to inject trace context variable. Any specific message processor (namespace:name) or specific namespace (namespace:*) can be included from this interception process.")
   private List<MuleComponent> interceptionEnabledComponents;
 
+  @Parameter
+  @NullSafe
+  @Optional
+  @Placement(order = 3)
+  @DisplayName(value = "Flow Trace Levels")
+  @Summary("Trace levels for specific flows, overriding the settings above. When multiple entries match a flow, the first one is used.")
+  private List<FlowTraceLevel> flowTraceLevels;
+
+  @Parameter
+  @Optional
+  @Placement(order = 4)
+  @DisplayName(value = "Force Trace Header")
+  @Summary("Inbound HTTP header or Anypoint MQ message property that forces a transaction to be sampled with spans for all processors, when its value matches Force Trace Secret.")
+  private String forceTraceHeader;
+
+  @Parameter
+  @Optional
+  @Password
+  @Placement(order = 5)
+  @DisplayName(value = "Force Trace Secret")
+  @Summary("Shared secret that the Force Trace Header value must match.")
+  private String forceTraceSecret;
+
+  @Parameter
+  @Optional(defaultValue = "10")
+  @Placement(order = 6)
+  @DisplayName(value = "Force Trace Limit")
+  @Summary("Maximum number of transactions forced in a minute.")
+  private int forceTraceMaxPerMinute = 10;
+
+  @Parameter
+  @Optional
+  @Placement(order = 7)
+  @DisplayName(value = "Slow Transaction Threshold (ms)")
+  @Summary("When set, processor spans are exported only for transactions that take at least this long or fail. Other transactions only export the root span.")
+  private Long slowTransactionThreshold;
+
   public TraceLevelConfiguration() {
   }
 
@@ -58,6 +96,13 @@ public class TraceLevelConfiguration {
     this.interceptionEnabledComponents = interceptionEnabledComponents;
   }
 
+  public TraceLevelConfiguration(boolean spanAllProcessors, List<MuleComponent> ignoreMuleComponents,
+      List<MuleComponent> interceptionDisabledComponents, List<MuleComponent> interceptionEnabledComponents,
+      List<FlowTraceLevel> flowTraceLevels) {
+    this(spanAllProcessors, ignoreMuleComponents, interceptionDisabledComponents, interceptionEnabledComponents);
+    this.flowTraceLevels = flowTraceLevels;
+  }
+
   public boolean isSpanAllProcessors() {
     return spanAllProcessors;
   }
@@ -74,4 +119,37 @@ public class TraceLevelConfiguration {
     return interceptionEnabledComponents;
   }
 
+  public List<FlowTraceLevel> getFlowTraceLevels() {
+    return flowTraceLevels;
+  }
+
+  public String getForceTraceHeader() {
+    return forceTraceHeader;
+  }
+
+  public String getForceTraceSecret() {
+    return forceTraceSecret;
+  }
+
+  public int getForceTraceMaxPerMinute() {
+    return forceTraceMaxPerMinute;
+  }
+
+  public Long getSlowTransactionThreshold() {
+    return slowTransactionThreshold;
+  }
+
+  public TraceLevelConfiguration setSlowTransactionThreshold(Long slowTransactionThreshold) {
+    this.slowTransactionThreshold = slowTransactionThreshold;
+    return this;
+  }
+
+  public TraceLevelConfiguration setForceTrace(String forceTraceHeader, String forceTraceSecret,
+      int forceTraceMaxPerMinute) {
+    this.forceTraceHeader = forceTraceHeader;
+    this.forceTraceSecret = forceTraceSecret;
+    this.forceTraceMaxPerMinute = forceTraceMaxPerMinute;
+    return this;
+  }
+
 }
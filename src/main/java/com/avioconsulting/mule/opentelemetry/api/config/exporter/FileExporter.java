@@ -0,0 +1,135 @@
+package com.avioconsulting.mule.opentelemetry.api.config.exporter;
+
+import org.mule.runtime.api.meta.model.display.PathModel;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Path;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+import java.util.Map;
+
+/**
+ * Exporter writing spans, metrics, and logs to local rotating files in OTLP
+ * JSON-lines or protobuf format.
+ */
+@Summary("Writes spans, metrics, and logs to local rotating files in OTLP JSON-lines or protobuf format. Useful for load tests and air-gapped environments.")
+public class FileExporter extends AbstractExporter {
+
+  public static final String MULE_FILE = "mule-file";
+  public static final String MULE_OTEL_EXPORTER_FILE_DIRECTORY = "mule.otel.exporter.file.directory";
+  public static final String MULE_OTEL_EXPORTER_FILE_FORMAT = "mule.otel.exporter.file.format";
+  public static final String MULE_OTEL_EXPORTER_FILE_COMPRESSION = "mule.otel.exporter.file.compression";
+  public static final String MULE_OTEL_EXPORTER_FILE_MAX_SIZE_MB = "mule.otel.exporter.file.max.size.mb";
+  public static final String MULE_OTEL_EXPORTER_FILE_ROTATION_INTERVAL = "mule.otel.exporter.file.rotation.interval";
+  public static final String MULE_OTEL_EXPORTER_FILE_QUEUE_SIZE = "mule.otel.exporter.file.queue.size";
+
+  @Parameter
+  @Path(type = PathModel.Type.DIRECTORY)
+  @DisplayName(value = "Directory")
+  @Summary("Directory to write signal files to. Files are named as {service.name}-{signal}-{timestamp}-{sequence}.{jsonl|binpb}[.gz].")
+  private String directory;
+
+  @Parameter
+  @Optional(defaultValue = "JSON")
+  @DisplayName(value = "File Format")
+  @Summary("JSON writes one OTLP JSON request per line. PROTOBUF writes length-delimited OTLP protobuf requests.")
+  private FileFormat format = FileFormat.JSON;
+
+  @Parameter
+  @Optional(defaultValue = "false")
+  @DisplayName(value = "Gzip Files")
+  private boolean gzip;
+
+  @Parameter
+  @Optional(defaultValue = "100")
+  @DisplayName(value = "Max File Size (MB)")
+  @Summary("Start a new file when current file reaches this size.")
+  private long maxFileSize = 100;
+
+  @Parameter
+  @Optional(defaultValue = "60")
+  @DisplayName(value = "Rotation Interval (Minutes)")
+  @Summary("Start a new file when current file is open for this long.")
+  private long rotationInterval = 60;
+
+  @Parameter
+  @Optional(defaultValue = "2048")
+  @DisplayName(value = "Max Queue Size")
+  @Summary("Maximum number of export batches waiting to be written, per signal. Batches are dropped when the queue is full.")
+  private int maxQueueSize = 2048;
+
+  public FileExporter() {
+  }
+
+  /**
+   * Constructor used for testing purpose.
+   *
+   * @param directory
+   *            {@link String} directory to write files to
+   * @param format
+   *            {@link FileFormat} of the files
+   * @param gzip
+   *            compress files with gzip
+   */
+  FileExporter(String directory, FileFormat format, boolean gzip) {
+    this.directory = directory;
+    this.format = format;
+    this.gzip = gzip;
+  }
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public FileFormat getFormat() {
+    return format;
+  }
+
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  public long getMaxFileSize() {
+    return maxFileSize;
+  }
+
+  public long getRotationInterval() {
+    return rotationInterval;
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  @Override
+  public Map<String, String> getExporterProperties() {
+    Map<String, String> config = super.getExporterProperties();
+    config.put(OTEL_TRACES_EXPORTER_KEY, MULE_FILE);
+    config.put(OTEL_METRICS_EXPORTER_KEY, MULE_FILE);
+    config.put(OTEL_LOGS_EXPORTER_KEY, MULE_FILE);
+    config.put(MULE_OTEL_EXPORTER_FILE_DIRECTORY, getDirectory());
+    config.put(MULE_OTEL_EXPORTER_FILE_FORMAT, getFormat().getValue());
+    config.put(MULE_OTEL_EXPORTER_FILE_COMPRESSION, isGzip() ? "gzip" : "none");
+    config.put(MULE_OTEL_EXPORTER_FILE_MAX_SIZE_MB, String.valueOf(getMaxFileSize()));
+    config.put(MULE_OTEL_EXPORTER_FILE_ROTATION_INTERVAL, getRotationInterval() + "m");
+    config.put(MULE_OTEL_EXPORTER_FILE_QUEUE_SIZE, String.valueOf(getMaxQueueSize()));
+    // Allow overriding any of above with config properties
+    config.putAll(getConfigProperties());
+    return config;
+  }
+
+  public enum FileFormat {
+    JSON("json"), PROTOBUF("protobuf");
+
+    private final String value;
+
+    FileFormat(String value) {
+      this.value = value;
+    }
+
+    public String getValue() {
+      return value;
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.avioconsulting.mule.opentelemetry.api.config.exporter;
 
 import com.avioconsulting.mule.opentelemetry.api.config.Header;
 import com.avioconsulting.mule.opentelemetry.api.config.KeyValuePair;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool.SpoolingSpanExporter;
 import org.mule.runtime.api.meta.model.display.PathModel;
 import org.mule.runtime.extension.api.annotation.param.NullSafe;
 import org.mule.runtime.extension.api.annotation.param.Optional;
@@ -11,6 +12,7 @@ import org.mule.runtime.extension.api.annotation.param.display.Example;
 import org.mule.runtime.extension.api.annotation.param.display.Path;
 import org.mule.runtime.extension.api.annotation.param.display.Summary;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +33,8 @@ public class OtlpExporter extends AbstractExporter {
   public static final String OTEL_EXPORTER_OTLP_CERTIFICATE = "otel.exporter.otlp.certificate";
   public static final String OTEL_EXPORTER_OTLP_CLIENT_KEY = "otel.exporter.otlp.client.key";
   public static final String OTEL_EXPORTER_OTLP_CLIENT_CERTIFICATE = "otel.exporter.otlp.client.certificate";
+  public static final String MULE_OTEL_EXPORTER_OTLP_TRACES_ENDPOINTS = "mule.otel.exporter.otlp.traces.endpoints";
+  public static final String MULE_OTEL_EXPORTER_ADAPTIVE_ENABLED = "mule.otel.exporter.adaptive.enabled";
   @Parameter
   @Optional
   @Summary(value = "The OTLP traces, metrics, and logs endpoint to connect to. Must be a URL with a scheme of either http or https based on the use of TLS."
@@ -39,6 +43,14 @@ public class OtlpExporter extends AbstractExporter {
   @Example(value = "http://localhost:4317")
   private String collectorEndpoint;
 
+  @Parameter
+  @Optional
+  @NullSafe
+  @DisplayName(value = "Additional Trace Collector Endpoints")
+  @Summary("Additional collector endpoints, in the same format as the collector endpoint, to load balance spans across. Spans are routed by trace id so all spans of a trace reach the same collector. Metrics and logs are sent to the collector endpoint only.")
+  @Example(value = "http://collector-2:4317")
+  private List<String> additionalTraceEndpoints;
+
   @Parameter
   @Optional(defaultValue = "GRPC")
   @DisplayName(value = "Collector Protocol")
@@ -50,6 +62,12 @@ public class OtlpExporter extends AbstractExporter {
   @Summary("The compression type to use on OTLP trace, metric, and log requests.")
   private OtlpRequestCompression requestCompression;
 
+  @Parameter
+  @Optional(defaultValue = "false")
+  @DisplayName(value = "Adaptive Batching and Compression")
+  @Summary("Adjust span export batch size and schedule delay to the span rate and export latency, and compress trace requests only when it lowers export latency. Configured batch size and schedule delay are the min batch size and the max delay. Request Compression is the initial compression of trace requests.")
+  private boolean adaptiveExport;
+
   @Parameter
   @Optional
   @Path(type = PathModel.Type.FILE, acceptedFileExtensions = { "pem" }, location = PathModel.Location.EMBEDDED)
@@ -78,6 +96,25 @@ public class OtlpExporter extends AbstractExporter {
   @Summary("Key-value pairs separated by commas to pass as request headers on OTLP trace, metric, and log requests.")
   private List<Header> headers;
 
+  @Parameter
+  @Optional
+  @Path(type = PathModel.Type.DIRECTORY)
+  @DisplayName(value = "Span Spool Directory")
+  @Summary("Directory to spool spans to when the collector is unavailable. Spooled spans are replayed in order when the collector is available again. Spooling is disabled when not set.")
+  private String spoolDirectory;
+
+  @Parameter
+  @Optional(defaultValue = "64")
+  @DisplayName(value = "Max Span Spool Size (MB)")
+  @Summary("Maximum size of each span spool file, between 1 and 2047 MB. Spans that do not fit in the spool are dropped.")
+  private int maxSpoolSize = 64;
+
+  @Parameter
+  @Optional(defaultValue = "5")
+  @DisplayName(value = "Spool Replay Batches Per Second")
+  @Summary("Maximum number of spooled span batches replayed per second once the collector is available.")
+  private int spoolReplayBatchesPerSecond = 5;
+
   public List<Header> getHeaders() {
     return headers;
   }
@@ -86,10 +123,42 @@ public class OtlpExporter extends AbstractExporter {
     return requestCompression;
   }
 
+  public boolean isAdaptiveExport() {
+    return adaptiveExport;
+  }
+
+  /**
+   * Adapt span export batching and compression to the observed load.
+   *
+   * @param adaptiveExport
+   *            true to enable
+   * @return OtlpExporter
+   */
+  OtlpExporter setAdaptiveExport(boolean adaptiveExport) {
+    this.adaptiveExport = adaptiveExport;
+    return this;
+  }
+
   public String getCollectorEndpoint() {
     return collectorEndpoint;
   }
 
+  public List<String> getAdditionalTraceEndpoints() {
+    return additionalTraceEndpoints;
+  }
+
+  /**
+   * Load balance spans across the collector endpoint and given endpoints.
+   *
+   * @param additionalTraceEndpoints
+   *            {@link List} of additional collector endpoints
+   * @return OtlpExporter
+   */
+  OtlpExporter setAdditionalTraceEndpoints(List<String> additionalTraceEndpoints) {
+    this.additionalTraceEndpoints = additionalTraceEndpoints;
+    return this;
+  }
+
   public String getEndpointCertPath() {
     return endpointCertPath;
   }
@@ -102,6 +171,30 @@ public class OtlpExporter extends AbstractExporter {
     return clientCertKeyPath;
   }
 
+  public String getSpoolDirectory() {
+    return spoolDirectory;
+  }
+
+  public int getMaxSpoolSize() {
+    return maxSpoolSize;
+  }
+
+  public int getSpoolReplayBatchesPerSecond() {
+    return spoolReplayBatchesPerSecond;
+  }
+
+  /**
+   * Spool spans to the given directory when collector is unavailable.
+   *
+   * @param spoolDirectory
+   *            {@link String} directory for spool file
+   * @return OtlpExporter
+   */
+  OtlpExporter setSpoolDirectory(String spoolDirectory) {
+    this.spoolDirectory = spoolDirectory;
+    return this;
+  }
+
   /**
    * Default constructor used by Mule SDK to instantiate this class.
    */
@@ -168,9 +261,20 @@ public class OtlpExporter extends AbstractExporter {
       config.put(OTEL_EXPORTER_OTLP_METRICS_ENDPOINT, getSignalEndpoint("metrics"));
       config.put(OTEL_EXPORTER_OTLP_LOGS_ENDPOINT, getSignalEndpoint("logs"));
     }
+    if (getAdditionalTraceEndpoints() != null && !getAdditionalTraceEndpoints().isEmpty()) {
+      List<String> endpoints = new ArrayList<>();
+      endpoints.add(getCollectorEndpoint());
+      endpoints.addAll(getAdditionalTraceEndpoints());
+      config.put(MULE_OTEL_EXPORTER_OTLP_TRACES_ENDPOINTS, endpoints.stream()
+          .map(endpoint -> protocol.equals(Protocol.HTTP_PROTOBUF) ? getSignalEndpoint(endpoint, "traces") : endpoint)
+          .collect(Collectors.joining(",")));
+    }
     if (!OtlpRequestCompression.NONE.equals(requestCompression)) {
       config.put(OTEL_EXPORTER_OTLP_COMPRESSION, requestCompression.getValue());
     }
+    if (isAdaptiveExport()) {
+      config.put(MULE_OTEL_EXPORTER_ADAPTIVE_ENABLED, "true");
+    }
     config.put(OTEL_EXPORTER_OTLP_HEADERS, KeyValuePair.commaSeparatedList(getHeaders()));
     if (getEndpointCertPath() != null) {
       config.put(OTEL_EXPORTER_OTLP_CERTIFICATE,
@@ -184,11 +288,20 @@ public class OtlpExporter extends AbstractExporter {
       config.put(OTEL_EXPORTER_OTLP_CLIENT_CERTIFICATE,
           transformToAbsolutePath(OTEL_EXPORTER_OTLP_CLIENT_CERTIFICATE, getClientCertPath()));
     }
+    if (getSpoolDirectory() != null) {
+      config.put(SpoolingSpanExporter.SPOOL_DIRECTORY_KEY, getSpoolDirectory());
+      config.put(SpoolingSpanExporter.SPOOL_MAX_SIZE_MB_KEY, String.valueOf(getMaxSpoolSize()));
+      config.put(SpoolingSpanExporter.SPOOL_REPLAY_BATCHES_PER_SECOND_KEY,
+          String.valueOf(getSpoolReplayBatchesPerSecond()));
+    }
     return config;
   }
 
   private String getSignalEndpoint(String signal) {
-    String endpoint = getCollectorEndpoint();
+    return getSignalEndpoint(getCollectorEndpoint(), signal);
+  }
+
+  private static String getSignalEndpoint(String endpoint, String signal) {
     if (!endpoint.endsWith("/"))
       endpoint = endpoint.concat("/");
     return endpoint.concat(signal);
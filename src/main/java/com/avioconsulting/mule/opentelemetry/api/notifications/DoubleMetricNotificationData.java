@@ -0,0 +1,40 @@
+package com.avioconsulting.mule.opentelemetry.api.notifications;
+
+/**
+ * {@link MetricBaseNotificationData} holding a primitive {@code double} value.
+ * Providers can read {@link #getDoubleValue()} without unboxing the generic
+ * {@link #getMetricValue()}.
+ *
+ * @param <SELF>
+ *            class extending this class
+ * @since 2.4.0
+ */
+public abstract class DoubleMetricNotificationData<SELF extends DoubleMetricNotificationData<SELF>>
+    extends MetricBaseNotificationData<SELF> {
+
+  private double doubleValue;
+
+  public double getDoubleValue() {
+    return doubleValue;
+  }
+
+  public SELF setDoubleValue(double doubleValue) {
+    this.doubleValue = doubleValue;
+    return (SELF) this;
+  }
+
+  /**
+   * Boxed value for providers using the generic API.
+   *
+   * @return {@link Double} value
+   */
+  @Override
+  public Object getMetricValue() {
+    return doubleValue;
+  }
+
+  @Override
+  public SELF setMetricValue(Object metricValue) {
+    return setDoubleValue(metricValue == null ? 0d : ((Number) metricValue).doubleValue());
+  }
+}
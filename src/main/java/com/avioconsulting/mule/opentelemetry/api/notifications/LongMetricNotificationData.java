@@ -0,0 +1,40 @@
+package com.avioconsulting.mule.opentelemetry.api.notifications;
+
+/**
+ * {@link MetricBaseNotificationData} holding a primitive {@code long} value.
+ * Providers can read {@link #getLongValue()} without unboxing the generic
+ * {@link #getMetricValue()}.
+ *
+ * @param <SELF>
+ *            class extending this class
+ * @since 2.4.0
+ */
+public abstract class LongMetricNotificationData<SELF extends LongMetricNotificationData<SELF>>
+    extends MetricBaseNotificationData<SELF> {
+
+  private long longValue;
+
+  public long getLongValue() {
+    return longValue;
+  }
+
+  public SELF setLongValue(long longValue) {
+    this.longValue = longValue;
+    return (SELF) this;
+  }
+
+  /**
+   * Boxed value for providers using the generic API.
+   *
+   * @return {@link Long} value
+   */
+  @Override
+  public Object getMetricValue() {
+    return longValue;
+  }
+
+  @Override
+  public SELF setMetricValue(Object metricValue) {
+    return setLongValue(metricValue == null ? 0L : ((Number) metricValue).longValue());
+  }
+}
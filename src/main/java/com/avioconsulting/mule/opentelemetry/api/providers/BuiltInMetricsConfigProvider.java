@@ -0,0 +1,93 @@
+package com.avioconsulting.mule.opentelemetry.api.providers;
+
+import com.avioconsulting.mule.opentelemetry.api.AppIdentifier;
+import org.mule.runtime.api.scheduler.SchedulerService;
+import org.mule.runtime.extension.api.annotation.Alias;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+
+/**
+ * Metrics configuration for the module's built-in metrics provider. When
+ * selected, flow and processor duration histograms along with request and
+ * error counters are recorded for the application. Optionally, Mule scheduler
+ * pools can be sampled for saturation metrics.
+ */
+@Alias("Built-in Metrics")
+public class BuiltInMetricsConfigProvider implements OpenTelemetryMetricsConfigProvider {
+
+  @Parameter
+  @Optional(defaultValue = "true")
+  @DisplayName("Capture Flow Metrics")
+  @Summary("Record duration, request and error metrics for flows.")
+  private boolean flowMetricsEnabled = true;
+
+  @Parameter
+  @Optional(defaultValue = "true")
+  @DisplayName("Capture Processor Metrics")
+  @Summary("Record duration and error metrics for intercepted (metered) processors.")
+  private boolean processorMetricsEnabled = true;
+
+  @Parameter
+  @Optional(defaultValue = "false")
+  @DisplayName("Capture Scheduler Metrics")
+  @Summary("Sample thread usage of Mule scheduler pools (uber, cpuLight, io, cpuIntensive) on every metrics collection.")
+  private boolean schedulerMetricsEnabled = false;
+
+  private AppIdentifier appIdentifier;
+  private SchedulerService schedulerService;
+
+  public BuiltInMetricsConfigProvider() {
+  }
+
+  public BuiltInMetricsConfigProvider(boolean flowMetricsEnabled, boolean processorMetricsEnabled) {
+    this.flowMetricsEnabled = flowMetricsEnabled;
+    this.processorMetricsEnabled = processorMetricsEnabled;
+  }
+
+  public boolean isFlowMetricsEnabled() {
+    return flowMetricsEnabled;
+  }
+
+  public boolean isProcessorMetricsEnabled() {
+    return processorMetricsEnabled;
+  }
+
+  public boolean isSchedulerMetricsEnabled() {
+    return schedulerMetricsEnabled;
+  }
+
+  public BuiltInMetricsConfigProvider setSchedulerMetricsEnabled(boolean schedulerMetricsEnabled) {
+    this.schedulerMetricsEnabled = schedulerMetricsEnabled;
+    return this;
+  }
+
+  public SchedulerService getSchedulerService() {
+    return schedulerService;
+  }
+
+  public BuiltInMetricsConfigProvider setSchedulerService(SchedulerService schedulerService) {
+    this.schedulerService = schedulerService;
+    return this;
+  }
+
+  public AppIdentifier getAppIdentifier() {
+    return appIdentifier;
+  }
+
+  @Override
+  public void initialise(AppIdentifier appIdentifier) {
+    this.appIdentifier = appIdentifier;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do here
+  }
+
+  @Override
+  public void stop() {
+    // nothing to do here
+  }
+}
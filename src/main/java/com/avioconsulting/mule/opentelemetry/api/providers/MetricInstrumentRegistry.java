@@ -0,0 +1,203 @@
+package com.avioconsulting.mule.opentelemetry.api.providers;
+
+import com.avioconsulting.mule.opentelemetry.api.notifications.DoubleMetricNotificationData;
+import com.avioconsulting.mule.opentelemetry.api.notifications.LongMetricNotificationData;
+import com.avioconsulting.mule.opentelemetry.api.notifications.MetricBaseNotificationData;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.DoubleCounter;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.DoubleUpDownCounter;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.LongUpDownCounter;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * Registry of instruments for custom metrics raised with {@link MetricBaseNotificationData}.
+ *
+ * An instrument is created once for every (metricName, metricType) and reused for all following notifications.
+ * Supported metric types (case-insensitive, `-` and `_` are ignored) are -
+ * - counter
+ * - up_down_counter
+ * - histogram
+ *
+ * Instruments record long values when the first notification carries a long value
+ * (eg. {@link LongMetricNotificationData}), otherwise double values.
+ *
+ * {@link Attributes} built from metric attributes are cached per instrument, up to a maximum number of attribute
+ * sets. Attributes beyond the limit are built for every notification, but are not cached.
+ * </pre>
+ *
+ * With {@link LongMetricNotificationData} or {@link DoubleMetricNotificationData}
+ * and cached attribute sets, recording a custom metric does not allocate.
+ *
+ * @since 2.4.0
+ */
+public final class MetricInstrumentRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MetricInstrumentRegistry.class);
+
+  public static final int DEFAULT_MAX_ATTRIBUTE_SETS = 1000;
+
+  private final Meter meter;
+  private final int maxAttributeSets;
+  private final Map<String, Map<String, Instrument>> instruments = new ConcurrentHashMap<>();
+
+  public MetricInstrumentRegistry(Meter meter) {
+    this(meter, DEFAULT_MAX_ATTRIBUTE_SETS);
+  }
+
+  public MetricInstrumentRegistry(Meter meter, int maxAttributeSets) {
+    this.meter = meter;
+    this.maxAttributeSets = maxAttributeSets;
+  }
+
+  /**
+   * Record the metric value of the notification on its instrument.
+   *
+   * @param notification
+   *            {@link MetricBaseNotificationData} to record
+   * @return true if the value was recorded, false if the metric type or value is
+   *         not supported
+   */
+  public boolean record(MetricBaseNotificationData<?> notification) {
+    if (notification == null || notification.getMetricName() == null || notification.getMetricType() == null)
+      return false;
+    if (notification instanceof LongMetricNotificationData) {
+      Instrument instrument = resolve(notification.getMetricName(), notification.getMetricType(), false);
+      if (instrument == null)
+        return false;
+      instrument.record(((LongMetricNotificationData<?>) notification).getLongValue(),
+          instrument.attributes(notification.getMetricAttributes()));
+      return true;
+    }
+    if (notification instanceof DoubleMetricNotificationData) {
+      Instrument instrument = resolve(notification.getMetricName(), notification.getMetricType(), true);
+      if (instrument == null)
+        return false;
+      instrument.record(((DoubleMetricNotificationData<?>) notification).getDoubleValue(),
+          instrument.attributes(notification.getMetricAttributes()));
+      return true;
+    }
+    Object value = notification.getMetricValue();
+    if (!(value instanceof Number))
+      return false;
+    boolean doubleValue = value instanceof Double || value instanceof Float;
+    Instrument instrument = resolve(notification.getMetricName(), notification.getMetricType(), doubleValue);
+    if (instrument == null)
+      return false;
+    Attributes attributes = instrument.attributes(notification.getMetricAttributes());
+    if (doubleValue) {
+      instrument.record(((Number) value).doubleValue(), attributes);
+    } else {
+      instrument.record(((Number) value).longValue(), attributes);
+    }
+    return true;
+  }
+
+  private Instrument resolve(String metricName, String metricType, boolean doubleValue) {
+    Map<String, Instrument> byType = instruments.get(metricName);
+    if (byType == null) {
+      byType = instruments.computeIfAbsent(metricName, k -> new ConcurrentHashMap<>());
+    }
+    Instrument instrument = byType.get(metricType);
+    if (instrument == null) {
+      instrument = byType.computeIfAbsent(metricType, type -> create(metricName, type, doubleValue));
+    }
+    return instrument == Instrument.UNSUPPORTED ? null : instrument;
+  }
+
+  private Instrument create(String metricName, String metricType, boolean doubleValue) {
+    switch (metricType.toLowerCase(Locale.ROOT).replace("_", "").replace("-", "")) {
+      case "counter":
+        if (doubleValue) {
+          DoubleCounter counter = meter.counterBuilder(metricName).ofDoubles().build();
+          return new Instrument(maxAttributeSets, (v, a) -> counter.add(v, a), counter::add);
+        } else {
+          LongCounter counter = meter.counterBuilder(metricName).build();
+          return new Instrument(maxAttributeSets, counter::add, (v, a) -> counter.add((long) v, a));
+        }
+      case "updowncounter":
+        if (doubleValue) {
+          DoubleUpDownCounter counter = meter.upDownCounterBuilder(metricName).ofDoubles().build();
+          return new Instrument(maxAttributeSets, (v, a) -> counter.add(v, a), counter::add);
+        } else {
+          LongUpDownCounter counter = meter.upDownCounterBuilder(metricName).build();
+          return new Instrument(maxAttributeSets, counter::add, (v, a) -> counter.add((long) v, a));
+        }
+      case "histogram":
+        if (doubleValue) {
+          DoubleHistogram histogram = meter.histogramBuilder(metricName).build();
+          return new Instrument(maxAttributeSets, (v, a) -> histogram.record(v, a), histogram::record);
+        } else {
+          LongHistogram histogram = meter.histogramBuilder(metricName).ofLongs().build();
+          return new Instrument(maxAttributeSets, histogram::record, (v, a) -> histogram.record((long) v, a));
+        }
+      default:
+        LOGGER.warn("Unsupported metric type '{}' for metric '{}'", metricType, metricName);
+        return Instrument.UNSUPPORTED;
+    }
+  }
+
+  @FunctionalInterface
+  private interface LongRecorder {
+    void record(long value, Attributes attributes);
+  }
+
+  @FunctionalInterface
+  private interface DoubleRecorder {
+    void record(double value, Attributes attributes);
+  }
+
+  private static final class Instrument {
+
+    static final Instrument UNSUPPORTED = new Instrument(0, (v, a) -> {
+    }, (v, a) -> {
+    });
+
+    private final int maxAttributeSets;
+    private final LongRecorder longRecorder;
+    private final DoubleRecorder doubleRecorder;
+    private final Map<Map<String, String>, Attributes> attributeSets = new ConcurrentHashMap<>();
+
+    Instrument(int maxAttributeSets, LongRecorder longRecorder, DoubleRecorder doubleRecorder) {
+      this.maxAttributeSets = maxAttributeSets;
+      this.longRecorder = longRecorder;
+      this.doubleRecorder = doubleRecorder;
+    }
+
+    void record(long value, Attributes attributes) {
+      longRecorder.record(value, attributes);
+    }
+
+    void record(double value, Attributes attributes) {
+      doubleRecorder.record(value, attributes);
+    }
+
+    Attributes attributes(Map<String, String> metricAttributes) {
+      if (metricAttributes == null || metricAttributes.isEmpty())
+        return Attributes.empty();
+      Attributes attributes = attributeSets.get(metricAttributes);
+      if (attributes != null)
+        return attributes;
+      AttributesBuilder builder = Attributes.builder();
+      metricAttributes.forEach((k, v) -> builder.put(AttributeKey.stringKey(k), v));
+      attributes = builder.build();
+      if (attributeSets.size() < maxAttributeSets) {
+        // Copy the key, callers may reuse and modify their map
+        attributeSets.putIfAbsent(new HashMap<>(metricAttributes), attributes);
+      }
+      return attributes;
+    }
+  }
+}
@@ -69,6 +69,13 @@ public interface OpenTelemetryMetricsProvider<T extends OpenTelemetryMetricsConf
    * For any notifications raised with {@link MetricBaseNotificationData}'s
    * subclass as a notification data, this module
    * will delegate
+   *
+   * Notifications using
+   * {@link com.avioconsulting.mule.opentelemetry.api.notifications.LongMetricNotificationData}
+   * or
+   * {@link com.avioconsulting.mule.opentelemetry.api.notifications.DoubleMetricNotificationData}
+   * carry primitive values. See {@link MetricInstrumentRegistry} for recording
+   * them with cached instruments and attributes.
    * 
    * @param metricNotification
    *            {@link MetricBaseNotificationData} for the metric
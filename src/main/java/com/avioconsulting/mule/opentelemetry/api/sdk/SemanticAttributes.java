@@ -2,6 +2,8 @@ package com.avioconsulting.mule.opentelemetry.api.sdk;
 
 import io.opentelemetry.api.common.AttributeKey;
 
+import java.util.List;
+
 /**
  * Defines the attribute keys to be used when capturing mule related span
  * attributes.
@@ -86,6 +88,13 @@ public final class SemanticAttributes {
       .stringKey("mule.app.processor.configRef");
   public static final AttributeKey<String> MULE_APP_FLOW_NAME = AttributeKey.stringKey("mule.app.flow.name");
 
+  /**
+   * Location of the processor in the application, for example
+   * `order-flow/processors/2`.
+   */
+  public static final AttributeKey<String> MULE_APP_PROCESSOR_LOCATION = AttributeKey
+      .stringKey("mule.app.processor.location");
+
   /**
    * Name of the configuration element used by the flow source component. Usually,
    * the value of `configRef` attribute on source.
@@ -117,6 +126,12 @@ public final class SemanticAttributes {
    */
   public static final AttributeKey<String> MULE_APP_FULL_DOMAIN = AttributeKey.stringKey("mule.app.fullDomain");
 
+  /**
+   * Mule scheduler pool of the runtime, for example `uber`, `cpuLight`, `io`,
+   * `cpuIntensive`.
+   */
+  public static final AttributeKey<String> MULE_SCHEDULER_POOL = AttributeKey.stringKey("mule.scheduler.pool");
+
   /**
    * Key to define datasource name for db connections
    */
@@ -129,4 +144,74 @@ public final class SemanticAttributes {
 
   public static final AttributeKey<String> MULE_APP_SCOPE_SUBFLOW_NAME = AttributeKey
       .stringKey("mule.app.scope.subflow.name");
+
+  /**
+   * Set on async scope spans, milliseconds the scope waited to be scheduled
+   * before its first processor started.
+   */
+  public static final AttributeKey<Long> MULE_APP_ASYNC_QUEUE_WAIT = AttributeKey
+      .longKey("mule.app.async.queue_wait_ms");
+
+  /**
+   * Set on async scope spans, milliseconds from the start of its first
+   * processor until the scope completed.
+   */
+  public static final AttributeKey<Long> MULE_APP_ASYNC_EXECUTION_TIME = AttributeKey
+      .longKey("mule.app.async.execution_ms");
+
+  /**
+   * Set on spans that were still open when the application stopped and were
+   * ended by the module instead of the flow.
+   */
+  public static final AttributeKey<Boolean> MULE_TRANSACTION_ABANDONED = AttributeKey
+      .booleanKey("mule.transaction.abandoned");
+
+  /**
+   * Set on root spans of transactions that took longer than the slow
+   * transaction threshold.
+   */
+  public static final AttributeKey<Boolean> MULE_TRANSACTION_SLOW = AttributeKey
+      .booleanKey("mule.transaction.slow");
+
+  /**
+   * Set on spans of transactions that were forced to be sampled with the force
+   * trace header.
+   */
+  public static final AttributeKey<Boolean> MULE_TRACE_FORCED = AttributeKey
+      .booleanKey("mule.trace.forced");
+
+  /**
+   * Set on root spans, locations of processors on the critical path of the
+   * transaction in the order they ran.
+   */
+  public static final AttributeKey<List<String>> MULE_TRACE_CRITICAL_PATH = AttributeKey
+      .stringArrayKey("mule.trace.critical_path");
+
+  /**
+   * Set on root spans, self time in milliseconds of each processor in
+   * {@link #MULE_TRACE_CRITICAL_PATH}.
+   */
+  public static final AttributeKey<List<Double>> MULE_TRACE_CRITICAL_PATH_SELF_TIME = AttributeKey
+      .doubleArrayKey("mule.trace.critical_path.self_time_ms");
+
+  /**
+   * Set on root spans, location of the processor on the critical path with the
+   * highest self time.
+   */
+  public static final AttributeKey<String> MULE_TRACE_SLOWEST_STEP = AttributeKey
+      .stringKey("mule.trace.slowest_step");
+
+  /**
+   * Set on root spans, self time in milliseconds of
+   * {@link #MULE_TRACE_SLOWEST_STEP}.
+   */
+  public static final AttributeKey<Double> MULE_TRACE_SLOWEST_STEP_SELF_TIME = AttributeKey
+      .doubleKey("mule.trace.slowest_step.self_time_ms");
+
+  /**
+   * Set on processor spans, duration in milliseconds minus the time covered by
+   * child spans.
+   */
+  public static final AttributeKey<Double> MULE_TRACE_SELF_TIME = AttributeKey
+      .doubleKey("mule.trace.self_time_ms");
 }
@@ -23,4 +23,11 @@ public interface TransactionMeta extends Serializable {
   Span getSpan();
 
   Map<String, String> getTags();
+
+  /**
+   * @return true if the transaction was forced to be traced in full detail
+   */
+  default boolean isForceTraced() {
+    return false;
+  }
 }
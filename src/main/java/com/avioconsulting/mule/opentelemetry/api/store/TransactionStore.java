@@ -11,6 +11,7 @@ import org.mule.runtime.api.event.Event;
 import java.time.Instant;
 import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /** Transaction store for managing service transactions. */
 public interface TransactionStore {
@@ -118,6 +119,24 @@ public interface TransactionStore {
    */
   SpanMeta addProcessorSpan(String containerName, TraceComponent traceComponent, SpanBuilder spanBuilder);
 
+  /**
+   * Add a new processor span under an existing transaction. The span builder
+   * is created only when the span is started, which may be never for
+   * processor spans of a transaction that are deferred until it turns out to
+   * be slow or failed.
+   *
+   * @param containerName
+   *            {@link String} such as Flow name that contains requested location
+   * @param traceComponent
+   *            {@link TraceComponent} for span
+   * @param spanBuilderFactory
+   *            creates the {@link SpanBuilder} from the trace component
+   */
+  default SpanMeta addProcessorSpan(String containerName, TraceComponent traceComponent,
+      Function<TraceComponent, SpanBuilder> spanBuilderFactory) {
+    return addProcessorSpan(containerName, traceComponent, spanBuilderFactory.apply(traceComponent));
+  }
+
   /**
    * End an existing span under an existing transaction. {@link Consumer}
    * parameter allows
@@ -164,4 +183,47 @@ public interface TransactionStore {
    */
   SpanMeta endProcessorSpan(
       String transactionId, TraceComponent traceComponent, Consumer<Span> spanUpdater, Instant endTime);
+
+  /**
+   * End all transactions that are still open, along with their open processor
+   * spans. This is used when the application stops before the transactions
+   * complete, so their spans are exported instead of being lost.
+   *
+   * @param spanUpdater
+   *            {@link Consumer} to allow updating each Span before ending.
+   * @return number of transactions ended
+   */
+  default int endOpenTransactions(Consumer<Span> spanUpdater) {
+    return 0;
+  }
+
+  /**
+   * Check if a processor span is open for a component, to end spans started
+   * with trace levels that changed before the processor ended.
+   *
+   * @param transactionId
+   *            {@link String} local transaction id
+   * @param contextScopedLocation
+   *            {@link String} location of the processor scoped to its event
+   *            context
+   * @return true if the span is open. Default is true, stores without lookup
+   *         try ending the span.
+   */
+  default boolean hasProcessorSpan(String transactionId, String contextScopedLocation) {
+    return true;
+  }
+
+  /**
+   * Record when an async scope starts executing its processors, after waiting
+   * to be scheduled. The time spent waiting and executing are set on the async
+   * scope span when it ends.
+   *
+   * @param traceComponent
+   *            {@link TraceComponent} of the first processor in the async
+   *            scope, with its start time
+   * @param asyncScopeLocation
+   *            {@link String} location of the async scope
+   */
+  default void startAsyncExecution(TraceComponent traceComponent, String asyncScopeLocation) {
+  }
 }
@@ -1,11 +1,13 @@
 package com.avioconsulting.mule.opentelemetry.api.traces;
 
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.context.Context;
 import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.component.location.ComponentLocation;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 
@@ -23,6 +25,9 @@ public class TraceComponent implements ComponentEventContext {
   private Instant endTime;
   private String eventContextId;
   private ComponentLocation componentLocation;
+  private boolean forceTrace;
+  private Duration slowTransactionThreshold;
+  private Attributes metricAttributes;
 
   private TraceComponent(String name) {
     this.name = name;
@@ -94,6 +99,30 @@ public class TraceComponent implements ComponentEventContext {
     return componentLocation;
   }
 
+  /**
+   * @return true if the transaction started by this component is forced to be
+   *         traced in full detail
+   */
+  public boolean isForceTrace() {
+    return forceTrace;
+  }
+
+  /**
+   * @return threshold after which the transaction started by this component is
+   *         slow, null when processor spans are not deferred
+   */
+  public Duration getSlowTransactionThreshold() {
+    return slowTransactionThreshold;
+  }
+
+  /**
+   * @return metric attributes resolved for a metered location when the
+   *         application was deployed, null if the location is not metered
+   */
+  public Attributes getMetricAttributes() {
+    return metricAttributes;
+  }
+
   public TraceComponent withTags(Map<String, String> val) {
     tags = val;
     return this;
@@ -154,6 +183,21 @@ public class TraceComponent implements ComponentEventContext {
     return this;
   }
 
+  public TraceComponent withForceTrace(boolean forceTrace) {
+    this.forceTrace = forceTrace;
+    return this;
+  }
+
+  public TraceComponent withSlowTransactionThreshold(Duration slowTransactionThreshold) {
+    this.slowTransactionThreshold = slowTransactionThreshold;
+    return this;
+  }
+
+  public TraceComponent withMetricAttributes(Attributes metricAttributes) {
+    this.metricAttributes = metricAttributes;
+    return this;
+  }
+
   public StatusCode getStatusCode() {
     return statusCode;
   }
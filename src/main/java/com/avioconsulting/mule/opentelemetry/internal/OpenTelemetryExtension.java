@@ -1,11 +1,13 @@
 package com.avioconsulting.mule.opentelemetry.internal;
 
 import com.avioconsulting.mule.opentelemetry.api.AppIdentifier;
+import com.avioconsulting.mule.opentelemetry.api.config.exporter.FileExporter;
 import com.avioconsulting.mule.opentelemetry.api.config.exporter.GenericExporter;
 import com.avioconsulting.mule.opentelemetry.api.config.exporter.LoggingExporter;
 import com.avioconsulting.mule.opentelemetry.api.config.exporter.OpenTelemetryExporter;
 import com.avioconsulting.mule.opentelemetry.api.config.exporter.OtlpExporter;
 import com.avioconsulting.mule.opentelemetry.api.notifications.MetricBaseNotificationData;
+import com.avioconsulting.mule.opentelemetry.api.providers.BuiltInMetricsConfigProvider;
 import com.avioconsulting.mule.opentelemetry.api.providers.NoopOpenTelemetryMetricsConfigProvider;
 import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsConfigProvider;
 import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsConfigSupplier;
@@ -22,9 +24,9 @@ import org.mule.runtime.extension.api.annotation.dsl.xml.Xml;
 @Extension(name = "OpenTelemetry")
 @Configurations(OpenTelemetryExtensionConfiguration.class)
 @SubTypeMapping(baseType = OpenTelemetryExporter.class, subTypes = { OtlpExporter.class, LoggingExporter.class,
-    GenericExporter.class })
+    GenericExporter.class, FileExporter.class })
 @SubTypeMapping(baseType = OpenTelemetryMetricsConfigProvider.class, subTypes = {
-    NoopOpenTelemetryMetricsConfigProvider.class })
+    NoopOpenTelemetryMetricsConfigProvider.class, BuiltInMetricsConfigProvider.class })
 @Export(classes = { OpenTelemetryMetricsConfigProvider.class, AppIdentifier.class, OpenTelemetryMetricsProvider.class,
     MetricBaseNotificationData.class, OpenTelemetryMetricsConfigSupplier.class, LogsApiPackageMarker.class })
 
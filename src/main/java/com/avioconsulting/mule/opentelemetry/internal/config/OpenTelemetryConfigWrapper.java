@@ -35,6 +35,22 @@ public class OpenTelemetryConfigWrapper {
     return openTelemetryConfiguration.isTurnOffMetrics();
   }
 
+  public boolean isSpanMetricsEnabled() {
+    return openTelemetryConfiguration.isSpanMetricsEnabled();
+  }
+
+  public boolean isOverheadMetricsEnabled() {
+    return openTelemetryConfiguration.isOverheadMetricsEnabled();
+  }
+
+  public boolean isExporterMetricsEnabled() {
+    return openTelemetryConfiguration.isExporterMetricsEnabled();
+  }
+
+  public boolean isLazyInitialization() {
+    return openTelemetryConfiguration.isLazyInitialization();
+  }
+
   public OpenTelemetryConfiguration getOpenTelemetryConfiguration() {
     return openTelemetryConfiguration;
   }
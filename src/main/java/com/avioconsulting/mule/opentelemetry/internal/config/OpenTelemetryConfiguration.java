@@ -15,6 +15,16 @@ public interface OpenTelemetryConfiguration {
 
   boolean isTurnOffMetrics();
 
+  boolean isSpanMetricsEnabled();
+
+  boolean isOverheadMetricsEnabled();
+
+  boolean isExporterMetricsEnabled();
+
+  boolean isLazyInitialization();
+
+  long getShutdownFlushTimeoutMillis();
+
   TraceLevelConfiguration getTraceLevelConfiguration();
 
   ExporterConfiguration getExporterConfiguration();
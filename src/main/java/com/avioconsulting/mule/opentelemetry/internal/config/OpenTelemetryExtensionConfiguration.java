@@ -6,6 +6,7 @@ import com.avioconsulting.mule.opentelemetry.api.config.OpenTelemetryResource;
 import com.avioconsulting.mule.opentelemetry.api.config.SpanProcessorConfiguration;
 import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
 import com.avioconsulting.mule.opentelemetry.api.notifications.MetricBaseNotificationData;
+import com.avioconsulting.mule.opentelemetry.api.providers.BuiltInMetricsConfigProvider;
 import com.avioconsulting.mule.opentelemetry.api.providers.NoopOpenTelemetryMetricsConfigProvider;
 import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsConfigProvider;
 import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsConfigSupplier;
@@ -17,12 +18,16 @@ import com.avioconsulting.mule.opentelemetry.internal.notifications.listeners.Me
 import com.avioconsulting.mule.opentelemetry.internal.notifications.listeners.MuleMessageProcessorNotificationListener;
 import com.avioconsulting.mule.opentelemetry.internal.notifications.listeners.MulePipelineMessageNotificationListener;
 import com.avioconsulting.mule.opentelemetry.internal.processor.MuleNotificationProcessor;
+import com.avioconsulting.mule.opentelemetry.internal.processor.OverheadGovernor;
+import com.avioconsulting.mule.opentelemetry.internal.processor.TraceLevels;
 import org.mule.runtime.api.exception.MuleException;
 import org.mule.runtime.api.lifecycle.Startable;
 import org.mule.runtime.api.lifecycle.Stoppable;
 import org.mule.runtime.api.meta.ExpressionSupport;
 import org.mule.runtime.api.metadata.DataType;
+import org.mule.runtime.api.notification.NotificationListener;
 import org.mule.runtime.api.notification.NotificationListenerRegistry;
+import org.mule.runtime.api.scheduler.SchedulerService;
 import org.mule.runtime.core.api.el.ExpressionManager;
 import org.mule.runtime.extension.api.annotation.Configuration;
 import org.mule.runtime.extension.api.annotation.Expression;
@@ -40,6 +45,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
 
 @Operations(OpenTelemetryOperations.class)
 @ConnectionProviders(OpenTelemetryConnectionProvider.class)
@@ -49,6 +56,12 @@ public class OpenTelemetryExtensionConfiguration
 
   public static final String PROP_MULE_OTEL_METRICS_DISABLED = "mule.otel.metrics.disabled";
   public static final String PROP_MULE_OTEL_TRACING_DISABLED = "mule.otel.tracing.disabled";
+  public static final String PROP_MULE_OTEL_SPAN_METRICS_ENABLED = "mule.otel.span.metrics.enabled";
+  public static final String PROP_MULE_OTEL_OVERHEAD_METRICS_ENABLED = "mule.otel.overhead.metrics.enabled";
+  public static final String PROP_MULE_OTEL_EXPORTER_METRICS_ENABLED = "mule.otel.exporter.metrics.enabled";
+  public static final String PROP_MULE_OTEL_LAZY_INIT_ENABLED = "mule.otel.lazy.init.enabled";
+  public static final String PROP_MULE_OTEL_SHUTDOWN_FLUSH_TIMEOUT = "mule.otel.shutdown.flush.timeout.millis";
+  public static final String PROP_MULE_OTEL_OVERHEAD_GOVERNOR_ENABLED = "mule.otel.overhead.governor.enabled";
   private final Logger logger = LoggerFactory.getLogger(OpenTelemetryExtensionConfiguration.class);
   private static final DataType METRIC_NOTIFICATION_DATA_TYPE = DataType.fromType(MetricBaseNotificationData.class);
 
@@ -59,6 +72,8 @@ public class OpenTelemetryExtensionConfiguration
   private HttpService httpService;
   @Inject
   private ExpressionManager expressionManager;
+  @Inject
+  private SchedulerService schedulerService;
   private AppIdentifier appIdentifier;
 
   public HttpService getHttpService() {
@@ -70,6 +85,31 @@ public class OpenTelemetryExtensionConfiguration
   @Summary("Turn off tracing for this application.")
   private boolean turnOffTracing;
 
+  @Parameter
+  @Optional(defaultValue = "10000")
+  @DisplayName("Shutdown Flush Timeout (ms)")
+  @Summary("Maximum time to wait for pending spans, metrics and logs to be exported when the application stops.")
+  private long shutdownFlushTimeout = 10000;
+
+  @Parameter
+  @Optional(defaultValue = "false")
+  @DisplayName("Lazy Initialization")
+  @Summary("Create trace exporters on first export, and initialize metrics providers and Log4j support in the background, so the application takes traffic sooner. Trace exporter configuration errors are then logged on first export instead of failing the deployment.")
+  private boolean lazyInitialization;
+
+  @Parameter
+  @Optional(defaultValue = "false")
+  @DisplayName("Overhead Governor")
+  @Summary("Reduce tracing granularity in stages when module overhead, exporter queue or Mule schedulers are under pressure, and restore it when the pressure clears.")
+  private boolean overheadGovernorEnabled;
+
+  private OverheadGovernor overheadGovernor;
+
+  /**
+   * Listeners registered on start, unregistered on stop.
+   */
+  private final List<NotificationListener<?>> notificationListeners = new ArrayList<>();
+
   /**
    * Open Telemetry Resource Configuration. System or Environment Variables will
    * override this configuration. See Documentation for variable details.
@@ -110,6 +150,27 @@ public class OpenTelemetryExtensionConfiguration
   @Summary("OpenTelemetry Metrics Provider")
   private OpenTelemetryMetricsConfigProvider metricsConfigProvider;
 
+  @Parameter
+  @Optional(defaultValue = "false")
+  @Placement(order = 503, tab = "Metrics")
+  @DisplayName("Span Metrics")
+  @Summary("Derive request, error and duration metrics from SERVER, CLIENT and CONSUMER spans. Spans dropped by the sampler are still counted.")
+  private boolean spanMetricsEnabled;
+
+  @Parameter
+  @Optional(defaultValue = "false")
+  @Placement(order = 504, tab = "Metrics")
+  @DisplayName("Module Overhead Metrics")
+  @Summary("Record time spent by the module on its own processing, per component namespace.")
+  private boolean overheadMetricsEnabled;
+
+  @Parameter
+  @Optional(defaultValue = "false")
+  @Placement(order = 505, tab = "Metrics")
+  @DisplayName("Exporter Metrics")
+  @Summary("Record span processor queue size, dropped spans, and export latency and failures per trace exporter. Also exposed as JMX MBeans.")
+  private boolean exporterMetricsEnabled;
+
   @Override
   public boolean isTurnOffTracing() {
     return System.getProperties().containsKey(PROP_MULE_OTEL_TRACING_DISABLED) ? Boolean
@@ -127,6 +188,48 @@ public class OpenTelemetryExtensionConfiguration
     return disabled;
   }
 
+  @Override
+  public boolean isSpanMetricsEnabled() {
+    if (Boolean.parseBoolean(System.getProperty(PROP_MULE_OTEL_METRICS_DISABLED)))
+      return false;
+    return System.getProperties().containsKey(PROP_MULE_OTEL_SPAN_METRICS_ENABLED) ? Boolean
+        .parseBoolean(System.getProperty(PROP_MULE_OTEL_SPAN_METRICS_ENABLED)) : spanMetricsEnabled;
+  }
+
+  @Override
+  public boolean isOverheadMetricsEnabled() {
+    if (Boolean.parseBoolean(System.getProperty(PROP_MULE_OTEL_METRICS_DISABLED)))
+      return false;
+    return System.getProperties().containsKey(PROP_MULE_OTEL_OVERHEAD_METRICS_ENABLED) ? Boolean
+        .parseBoolean(System.getProperty(PROP_MULE_OTEL_OVERHEAD_METRICS_ENABLED)) : overheadMetricsEnabled;
+  }
+
+  @Override
+  public boolean isExporterMetricsEnabled() {
+    if (Boolean.parseBoolean(System.getProperty(PROP_MULE_OTEL_METRICS_DISABLED)))
+      return false;
+    return System.getProperties().containsKey(PROP_MULE_OTEL_EXPORTER_METRICS_ENABLED) ? Boolean
+        .parseBoolean(System.getProperty(PROP_MULE_OTEL_EXPORTER_METRICS_ENABLED)) : exporterMetricsEnabled;
+  }
+
+  @Override
+  public boolean isLazyInitialization() {
+    return System.getProperties().containsKey(PROP_MULE_OTEL_LAZY_INIT_ENABLED) ? Boolean
+        .parseBoolean(System.getProperty(PROP_MULE_OTEL_LAZY_INIT_ENABLED)) : lazyInitialization;
+  }
+
+  public boolean isOverheadGovernorEnabled() {
+    return System.getProperties().containsKey(PROP_MULE_OTEL_OVERHEAD_GOVERNOR_ENABLED) ? Boolean
+        .parseBoolean(System.getProperty(PROP_MULE_OTEL_OVERHEAD_GOVERNOR_ENABLED)) : overheadGovernorEnabled;
+  }
+
+  @Override
+  public long getShutdownFlushTimeoutMillis() {
+    return System.getProperties().containsKey(PROP_MULE_OTEL_SHUTDOWN_FLUSH_TIMEOUT)
+        ? Long.parseLong(System.getProperty(PROP_MULE_OTEL_SHUTDOWN_FLUSH_TIMEOUT))
+        : shutdownFlushTimeout;
+  }
+
   // Visible for testing purpose
   OpenTelemetryExtensionConfiguration setTurnOffTracing(boolean turnOffTracing) {
     this.turnOffTracing = turnOffTracing;
@@ -194,6 +297,9 @@ public class OpenTelemetryExtensionConfiguration
   public void start() throws MuleException {
     logger.info("Initiating otel config - '{}'", getConfigName());
     appIdentifier = AppIdentifier.fromEnvironment(expressionManager);
+    if (metricsConfigProvider instanceof BuiltInMetricsConfigProvider) {
+      ((BuiltInMetricsConfigProvider) metricsConfigProvider).setSchedulerService(schedulerService);
+    }
     OpenTelemetryConnection openTelemetryConnection = OpenTelemetryConnection
         .getInstance(new OpenTelemetryConfigWrapper(this));
     muleNotificationProcessor.init(openTelemetryConnection,
@@ -202,24 +308,40 @@ public class OpenTelemetryExtensionConfiguration
     if (isTurnOffTracing()) {
       logger.info("Tracing has been turned off. No listener will be registered.");
     } else {
-      notificationListenerRegistry.registerListener(
-          new MuleMessageProcessorNotificationListener(muleNotificationProcessor));
-      notificationListenerRegistry.registerListener(
-          new MulePipelineMessageNotificationListener(muleNotificationProcessor));
+      notificationListenerRegistry.registerListener(registered(
+          new MuleMessageProcessorNotificationListener(muleNotificationProcessor)));
+      notificationListenerRegistry.registerListener(registered(
+          new MulePipelineMessageNotificationListener(muleNotificationProcessor)));
       notificationListenerRegistry
-          .registerListener(new AsyncMessageNotificationListener(muleNotificationProcessor));
+          .registerListener(registered(new AsyncMessageNotificationListener(muleNotificationProcessor)));
+      TraceLevels traceLevels = muleNotificationProcessor.getTraceLevels();
+      if (traceLevels != null) {
+        openTelemetryConnection.setSamplerOverride(traceLevels::getSampler);
+        openTelemetryConnection.setForceTrace(muleNotificationProcessor.getForceTrace());
+        traceLevels.registerMBean(appIdentifier.getName());
+        if (isOverheadGovernorEnabled()) {
+          overheadGovernor = new OverheadGovernor(traceLevels, OverheadGovernor.Settings.fromSystemProperties(),
+              new OverheadGovernor.RuntimeSignals(openTelemetryConnection.getSpanExportPipeline()));
+          overheadGovernor.start(openTelemetryConnection.getOpenTelemetry());
+        }
+      }
     }
 
     if (isTurnOffMetrics()) {
       logger.info("Metrics has been turned off. No listener will be registered.");
     } else {
       notificationListenerRegistry.registerListener(
-          new MetricEventNotificationListener(muleNotificationProcessor),
+          registered(new MetricEventNotificationListener(muleNotificationProcessor)),
           extensionNotification -> METRIC_NOTIFICATION_DATA_TYPE
               .isCompatibleWith(extensionNotification.getData().getDataType()));
     }
   }
 
+  private <L extends NotificationListener<?>> L registered(L listener) {
+    notificationListeners.add(listener);
+    return listener;
+  }
+
   @Override
   public AppIdentifier getAppIdentifier() {
     return appIdentifier;
@@ -232,6 +354,20 @@ public class OpenTelemetryExtensionConfiguration
 
   @Override
   public void stop() throws MuleException {
-
+    logger.info("Stopping otel config - '{}'", getConfigName());
+    // Events still in flight when the application stops are not traced anymore
+    for (NotificationListener<?> listener : notificationListeners) {
+      notificationListenerRegistry.unregisterListener(listener);
+    }
+    notificationListeners.clear();
+    if (overheadGovernor != null) {
+      overheadGovernor.stop();
+      overheadGovernor = null;
+    }
+    if (muleNotificationProcessor != null && muleNotificationProcessor.getTraceLevels() != null)
+      muleNotificationProcessor.getTraceLevels().unregisterMBean();
+    OpenTelemetryConnection openTelemetryConnection = OpenTelemetryConnection.getInstance();
+    if (openTelemetryConnection != null)
+      openTelemetryConnection.shutdown(getShutdownFlushTimeoutMillis());
   }
 }
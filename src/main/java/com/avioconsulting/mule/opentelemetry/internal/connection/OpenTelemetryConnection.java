@@ -10,10 +10,18 @@ import com.avioconsulting.mule.opentelemetry.api.store.TransactionStore;
 import com.avioconsulting.mule.opentelemetry.api.traces.TraceComponent;
 import com.avioconsulting.mule.opentelemetry.api.traces.TransactionContext;
 import com.avioconsulting.mule.opentelemetry.internal.config.OpenTelemetryConfigWrapper;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.ForceTraceSampler;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.OverridableSampler;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.RecordOnlySampler;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.SpanExportPipeline;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.SpanMetricsProcessor;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.loadbalance.LoadBalancingSpanExporter;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool.SpoolingSpanExporter;
+import com.avioconsulting.mule.opentelemetry.internal.processor.ForceTrace;
 import com.avioconsulting.mule.opentelemetry.internal.store.InMemoryTransactionStore;
 import com.avioconsulting.mule.opentelemetry.internal.util.OpenTelemetryUtil;
 import com.avioconsulting.mule.opentelemetry.internal.util.PropertiesUtil;
-import com.avioconsulting.mule.opentelemetry.internal.util.ServiceProviderUtil;
 import io.opentelemetry.api.GlobalOpenTelemetry;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.events.GlobalEventEmitterProvider;
@@ -22,8 +30,11 @@ import io.opentelemetry.api.trace.*;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.propagation.TextMapGetter;
 import io.opentelemetry.context.propagation.TextMapSetter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
 import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdkBuilder;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
 import org.mule.runtime.api.component.location.ComponentLocation;
 import org.mule.runtime.api.connection.ConnectionProvider;
 import org.mule.runtime.api.message.Error;
@@ -36,11 +47,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.ERROR_TYPE;
@@ -51,9 +69,7 @@ public class OpenTelemetryConnection implements TraceContextHandler {
 
   public static final String TRACE_ID_LONG_LOW_PART = "traceIdLongLowPart";
   public static final String SPAN_ID_LONG = "spanIdLong";
-  private final OpenTelemetryMetricsProviderCollection metricsProviders = ServiceProviderUtil
-      .load(OpenTelemetryMetricsProvider.class.getClassLoader(), OpenTelemetryMetricsProvider.class,
-          new OpenTelemetryMetricsProviderCollection());
+  private final OpenTelemetryMetricsProviderCollection metricsProviders = new OpenTelemetryMetricsProviderCollection();
   private final Logger logger = LoggerFactory.getLogger(OpenTelemetryConnection.class);
   private OpenTelemetryMetricsConfigProvider metricsProvider;
   private AppIdentifier appIdentifier;
@@ -73,10 +89,17 @@ public class OpenTelemetryConnection implements TraceContextHandler {
   private static final String INSTRUMENTATION_NAME = "mule-opentelemetry-module-DEV";
   private final TransactionStore transactionStore;
   private static OpenTelemetryConnection openTelemetryConnection;
-  private final OpenTelemetry openTelemetry;
+  private final OpenTelemetrySdk openTelemetry;
   private final Tracer tracer;
   private boolean turnOffTracing = false;
   private boolean turnOffMetrics = false;
+  private final AtomicBoolean shutdown = new AtomicBoolean();
+  private final CompletableFuture<Void> backgroundInitialization;
+  private final OverridableSampler sampler;
+  private final SpanExportPipeline exportPipeline;
+  private final SpanMetricsProcessor spanMetricsProcessor;
+  private final Function<TraceComponent, SpanBuilder> processorSpanBuilder = this::processorSpanBuilder;
+  private volatile ForceTrace forceTrace;
 
   private OpenTelemetryConnection(OpenTelemetryConfigWrapper openTelemetryConfigWrapper) {
     Properties properties = getModuleProperties();
@@ -88,7 +111,11 @@ public class OpenTelemetryConnection implements TraceContextHandler {
     // See here for autoconfigure options
     // https://github.com/open-telemetry/opentelemetry-java/tree/main/sdk-extensions/autoconfigure
     AutoConfiguredOpenTelemetrySdkBuilder builder = AutoConfiguredOpenTelemetrySdk.builder();
-
+    SpanMetricsProcessor spanMetricsProcessor = null;
+    AtomicReference<SpanExportPipeline> spanExportPipeline = new AtomicReference<>();
+    AtomicReference<OverridableSampler> overridableSampler = new AtomicReference<>();
+    boolean overheadMetricsEnabled = false;
+    boolean lazyInitialization = false;
     if (openTelemetryConfigWrapper != null) {
       // TODO: Process other config elements for OTEL SDK
       final Map<String, String> configMap = new HashMap<>();
@@ -101,43 +128,149 @@ public class OpenTelemetryConnection implements TraceContextHandler {
       if (openTelemetryConfigWrapper.getSpanProcessorConfiguration() != null) {
         configMap.putAll(openTelemetryConfigWrapper.getSpanProcessorConfiguration().getConfigMap());
       }
+      if (openTelemetryConfigWrapper.isExporterMetricsEnabled()) {
+        logger.info("Enabling exporter metrics");
+        configMap.put(SpanExportPipeline.EXPORTER_METRICS_ENABLED_KEY, "true");
+      }
+      lazyInitialization = openTelemetryConfigWrapper.isLazyInitialization();
+      if (lazyInitialization) {
+        logger.info("Enabling lazy initialization");
+        configMap.put(SpanExportPipeline.LAZY_INIT_KEY, "true");
+      }
       builder.addPropertiesSupplier(() -> Collections.unmodifiableMap(configMap));
+      // No-op unless multiple trace endpoints are configured
+      builder.addSpanExporterCustomizer(LoadBalancingSpanExporter::customize);
+      // No-op unless span spooling is configured
+      builder.addSpanExporterCustomizer(SpoolingSpanExporter::customize);
+      // No-op unless striped batch span processor, exporter metrics, adaptive export
+      // or lazy initialization are enabled
+      builder.addPropertiesCustomizer(SpanExportPipeline::customizeProperties);
+      builder.addTracerProviderCustomizer((tracerProviderBuilder, config) -> {
+        SpanExportPipeline pipeline = SpanExportPipeline.create(config, configMap,
+            AutoConfiguredOpenTelemetrySdkBuilder.class.getClassLoader(), SpoolingSpanExporter::customize);
+        if (pipeline != null) {
+          spanExportPipeline.set(pipeline);
+          tracerProviderBuilder.addSpanProcessor(pipeline);
+        }
+        return tracerProviderBuilder;
+      });
       logger.debug("Creating OpenTelemetryConnection with properties: [" + configMap + "]");
       turnOffTracing = openTelemetryConfigWrapper.isTurnOffTracing();
       turnOffMetrics = openTelemetryConfigWrapper.isTurnOffMetrics();
       appIdentifier = openTelemetryConfigWrapper.getOpenTelemetryConfiguration().getAppIdentifier();
       metricsProvider = openTelemetryConfigWrapper.getOpenTelemetryConfiguration().getMetricsConfigProvider();
       expressionManager = openTelemetryConfigWrapper.getOpenTelemetryConfiguration().getExpressionManager();
+      if (!turnOffTracing) {
+        // Sampling ratio can be changed at runtime, see TraceLevels
+        builder.addSamplerCustomizer((sampler, config) -> {
+          OverridableSampler runtimeSampler = new OverridableSampler(sampler);
+          overridableSampler.set(runtimeSampler);
+          return runtimeSampler;
+        });
+        builder.addSamplerCustomizer((sampler, config) -> new ForceTraceSampler(sampler));
+      }
+      if (!turnOffTracing && openTelemetryConfigWrapper.isSpanMetricsEnabled()) {
+        logger.info("Enabling span metrics");
+        spanMetricsProcessor = new SpanMetricsProcessor();
+        final SpanMetricsProcessor processor = spanMetricsProcessor;
+        builder.addTracerProviderCustomizer((tracerProviderBuilder, config) -> tracerProviderBuilder
+            .addSpanProcessor(processor));
+        // Unsampled spans must still be recorded to keep span metrics accurate
+        builder.addSamplerCustomizer((sampler, config) -> new RecordOnlySampler(sampler));
+        builder.addMeterProviderCustomizer(
+            (meterProviderBuilder, config) -> SpanMetricsProcessor.registerViews(meterProviderBuilder));
+      }
+      overheadMetricsEnabled = openTelemetryConfigWrapper.isOverheadMetricsEnabled();
+      if (overheadMetricsEnabled) {
+        logger.info("Enabling module overhead metrics");
+        builder.addMeterProviderCustomizer(
+            (meterProviderBuilder, config) -> ModuleOverheadMetrics.registerViews(meterProviderBuilder));
+      }
     }
     builder.setServiceClassLoader(AutoConfiguredOpenTelemetrySdkBuilder.class.getClassLoader());
     builder.setResultAsGlobal();
     if (!turnOffMetrics)
       metricsProvider.initialise(appIdentifier);
     openTelemetry = builder.build().getOpenTelemetrySdk();
-    installOpenTelemetryLogger();
-    if (!turnOffMetrics) {
-      logger.info("Initializing Metrics Providers");
-      metricsProvider.start();
-      metricsProviders.initialize(metricsProvider, openTelemetry);
+    sampler = overridableSampler.get();
+    exportPipeline = spanExportPipeline.get();
+    this.spanMetricsProcessor = spanMetricsProcessor;
+    if (spanMetricsProcessor != null)
+      spanMetricsProcessor.initialize(openTelemetry);
+    if (spanExportPipeline.get() != null)
+      spanExportPipeline.get().initialize(openTelemetry);
+    if (overheadMetricsEnabled)
+      ModuleOverheadMetrics.initialize(openTelemetry);
+    if (turnOffMetrics)
+      logger.info("Metrics are turned off, Metrics Providers are not loaded");
+    if (lazyInitialization) {
+      // Spans only need the tracer. Until metrics providers are initialized,
+      // their metrics are dropped, see OpenTelemetryMetricsProviderCollection
+      backgroundInitialization = CompletableFuture.runAsync(this::initializeDeferred, task -> {
+        Thread thread = new Thread(task, "otel-background-init");
+        thread.setDaemon(true);
+        thread.start();
+      }).whenComplete((result, error) -> {
+        if (error != null)
+          logger.error("OpenTelemetry background initialization failed", error);
+      });
     } else {
-      logger.info("Disabling loaded Metrics Providers");
-      metricsProviders.clear();
+      initializeDeferred();
+      backgroundInitialization = CompletableFuture.completedFuture(null);
     }
     tracer = openTelemetry.getTracer(instrumentationName, instrumentationVersion);
     transactionStore = InMemoryTransactionStore.getInstance();
     PropertiesUtil.init();
   }
 
+  /**
+   * Initialization that is not needed for the first span.
+   */
+  private void initializeDeferred() {
+    installOpenTelemetryLogger();
+    if (!turnOffMetrics) {
+      logger.info("Initializing Metrics Providers");
+      metricsProvider.start();
+      // Loaded here so lazy initialization keeps service loading off the startup
+      // path
+      metricsProviders.load(OpenTelemetryMetricsProvider.class.getClassLoader())
+          .initialize(metricsProvider, openTelemetry);
+    }
+  }
+
+  /**
+   * @return completes when Log4j support and metrics providers are initialized,
+   *         immediately unless lazy initialization is enabled
+   */
+  public CompletableFuture<Void> getBackgroundInitialization() {
+    return backgroundInitialization;
+  }
+
   private void installOpenTelemetryLogger() {
+    try {
+      installLog4jAppender(openTelemetry);
+      logger.info("Initialized AVIO OpenTelemetry Log4J support");
+    } catch (ClassNotFoundException e) {
+      logger.warn(
+          "OpenTelemetry Log4j support not found on the classpath. Logs will not be exported via OpenTelemetry.");
+    }
+  }
+
+  private void uninstallOpenTelemetryLogger() {
+    try {
+      // Appender must not keep the SDK of a stopped application
+      installLog4jAppender(OpenTelemetry.noop());
+    } catch (ClassNotFoundException e) {
+      // Nothing installed
+    }
+  }
+
+  private static void installLog4jAppender(OpenTelemetry openTelemetry) throws ClassNotFoundException {
     try {
       Class<?> clazz = Class
           .forName("com.avioconsulting.mule.opentelemetry.logs.api.OpenTelemetryLog4jAppender");
       Method install = clazz.getMethod("install", OpenTelemetry.class);
-      logger.info("Initializing AVIO OpenTelemetry Log4J support");
       install.invoke(null, openTelemetry);
-    } catch (ClassNotFoundException e) {
-      logger.warn(
-          "OpenTelemetry Log4j support not found on the classpath. Logs will not be exported via OpenTelemetry.");
     } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
       throw new RuntimeException(e);
     }
@@ -151,6 +284,19 @@ public class OpenTelemetryConnection implements TraceContextHandler {
     return turnOffTracing;
   }
 
+  /**
+   * Override the configured sampler at runtime. No-op when tracing is turned
+   * off.
+   *
+   * @param samplerOverride
+   *            function that gives the sampler to use for the configured
+   *            sampler
+   */
+  public void setSamplerOverride(UnaryOperator<Sampler> samplerOverride) {
+    if (sampler != null)
+      sampler.setOverride(samplerOverride);
+  }
+
   public boolean isTurnOffMetrics() {
     return turnOffMetrics;
   }
@@ -179,8 +325,8 @@ public class OpenTelemetryConnection implements TraceContextHandler {
       openTelemetryConnection.metricsProvider.stop();
       openTelemetryConnection.getMetricsProviders().stop();
     }
-    GlobalOpenTelemetry.resetForTest();
-    GlobalEventEmitterProvider.resetForTest();
+    ModuleOverheadMetrics.reset();
+    releaseGlobals();
     openTelemetryConnection = null;
   }
 
@@ -274,10 +420,47 @@ public class OpenTelemetryConnection implements TraceContextHandler {
     return traceContext;
   }
 
+  /**
+   * Inject the trace context of a component span into the given carrier, using
+   * the configured propagators.
+   *
+   * @param transactionId
+   *            Local transaction id
+   * @param componentLocation
+   *            context scoped location of the component span
+   * @param carrier
+   *            carrier such as outbound request headers
+   * @param textMapSetter
+   *            {@link TextMapSetter} for the carrier
+   * @param <T>
+   *            carrier type
+   */
+  public <T> void injectTraceContext(String transactionId, String componentLocation, T carrier,
+      TextMapSetter<T> textMapSetter) {
+    TransactionContext transactionContext = getTransactionStore().getTransactionContext(transactionId,
+        componentLocation);
+    injectTraceContext(transactionContext.getContext(), carrier, textMapSetter);
+  }
+
   public <T> void injectTraceContext(T carrier, TextMapSetter<T> textMapSetter) {
     openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), carrier, textMapSetter);
   }
 
+  @Override
+  public <T> boolean isForceTraceRequested(T carrier, TextMapGetter<T> textMapGetter) {
+    ForceTrace current = forceTrace;
+    return current != null && current.isRequested(carrier, textMapGetter);
+  }
+
+  /**
+   * @param forceTrace
+   *            {@link ForceTrace} for detecting forced transactions, null to
+   *            disable
+   */
+  public void setForceTrace(ForceTrace forceTrace) {
+    this.forceTrace = forceTrace;
+  }
+
   private <T> void injectTraceContext(Context context, T carrier, TextMapSetter<T> textMapSetter) {
     openTelemetry.getPropagators().getTextMapPropagator().inject(context, carrier, textMapSetter);
   }
@@ -286,8 +469,91 @@ public class OpenTelemetryConnection implements TraceContextHandler {
     return transactionStore;
   }
 
+  /**
+   * Connections may be invalidated by the runtime while the application is
+   * running, so this does not shut down the SDK. See {@link #shutdown(long)}.
+   */
   public void invalidate() {
+  }
+
+  /**
+   * Shut down this connection when the application stops. Only the first call
+   * has any effect. Called from the module configuration stop only.
+   * <ul>
+   * <li>New transactions are not traced anymore.</li>
+   * <li>Open transactions are ended with
+   * {@link SemanticAttributes#MULE_TRANSACTION_ABANDONED} attribute, so their
+   * spans are exported.</li>
+   * <li>Pending spans, metrics and logs are flushed, and the SDK is shut down,
+   * waiting for at most the given timeout in total.</li>
+   * <li>Static and global references are released, so that the stopped
+   * application can be garbage collected and a new connection is created on
+   * next start.</li>
+   * </ul>
+   *
+   * @param timeoutMillis
+   *            max time to wait for flush and shutdown
+   */
+  public void shutdown(long timeoutMillis) {
+    if (!shutdown.compareAndSet(false, true))
+      return;
+    logger.info("Shutting down OpenTelemetry, waiting up to {} ms for pending signals", timeoutMillis);
+    synchronized (OpenTelemetryConnection.class) {
+      if (openTelemetryConnection == this)
+        openTelemetryConnection = null;
+    }
+    int abandoned = transactionStore
+        .endOpenTransactions(span -> span.setAttribute(SemanticAttributes.MULE_TRANSACTION_ABANDONED, true));
+    if (abandoned > 0)
+      logger.warn("Ended {} transaction(s) still open at shutdown", abandoned);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    try {
+      backgroundInitialization.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (Exception e) {
+      logger.warn("Background initialization did not complete before shutdown", e);
+    }
+    CompletableResultCode flush = CompletableResultCode.ofAll(Arrays.asList(
+        openTelemetry.getSdkTracerProvider().forceFlush(),
+        openTelemetry.getSdkMeterProvider().forceFlush(),
+        openTelemetry.getSdkLoggerProvider().forceFlush()));
+    if (!flush.join(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).isSuccess())
+      logger.warn("Pending signals were not flushed within {} ms, they may be lost", timeoutMillis);
+    if (!turnOffMetrics) {
+      metricsProvider.stop();
+      metricsProviders.stop();
+    }
+    // Shutting down providers also stops exporter threads and closes their
+    // connections
+    CompletableResultCode sdkShutdown = CompletableResultCode.ofAll(Arrays.asList(
+        openTelemetry.getSdkTracerProvider().shutdown(),
+        openTelemetry.getSdkMeterProvider().shutdown(),
+        openTelemetry.getSdkLoggerProvider().shutdown()));
+    long remainingNanos = Math.max(0, deadline - System.nanoTime());
+    if (!sdkShutdown.join(remainingNanos, TimeUnit.NANOSECONDS).isSuccess())
+      logger.warn("OpenTelemetry SDK did not shut down within {} ms", timeoutMillis);
+    uninstallOpenTelemetryLogger();
+    ModuleOverheadMetrics.reset();
+    releaseGlobals();
+    logger.info("OpenTelemetry shut down");
+  }
+
+  /**
+   * Release the global instances registered with
+   * {@code AutoConfiguredOpenTelemetrySdkBuilder#setResultAsGlobal()}.
+   *
+   * Globals can be set only once, and keep the SDK of the stopped application
+   * reachable. OpenTelemetry API offers no other way to unset them than
+   * {@code resetForTest()}, so it is used in production on purpose, and only
+   * here, after the SDK has been shut down. A restarted application registers
+   * the globals of its new SDK again.
+   */
+  private static void releaseGlobals() {
+    GlobalOpenTelemetry.resetForTest();
+    GlobalEventEmitterProvider.resetForTest();
+  }
 
+  public boolean isShutdown() {
+    return shutdown.get();
   }
 
   public Meter get(String instrumentationScopeName) {
@@ -298,6 +564,18 @@ public class OpenTelemetryConnection implements TraceContextHandler {
     return expressionManager;
   }
 
+  public OpenTelemetry getOpenTelemetry() {
+    return openTelemetry;
+  }
+
+  /**
+   * @return {@link SpanExportPipeline}, or null when the SDK's span processor is
+   *         used as is
+   */
+  public SpanExportPipeline getSpanExportPipeline() {
+    return exportPipeline;
+  }
+
   public static enum HashMapTextMapSetter implements TextMapSetter<Map<String, String>> {
     INSTANCE;
 
@@ -319,16 +597,30 @@ public class OpenTelemetryConnection implements TraceContextHandler {
    *            component
    */
   public void addProcessorSpan(TraceComponent traceComponent, String containerName) {
-    SpanBuilder spanBuilder = this
-        .spanBuilder(traceComponent.getSpanName())
-        .setSpanKind(traceComponent.getSpanKind())
-        .setStartTimestamp(traceComponent.getStartTime());
+    addProcessorSpan(traceComponent, containerName, getRouteContainerLocation(traceComponent));
+  }
+
+  /**
+   * Creates a {@link Span} for given {@link TraceComponent} and adds it to the
+   * {@link TraceComponent#getTransactionId()} transaction.
+   *
+   * @param traceComponent
+   *            {@link TraceComponent}
+   * @param containerName
+   *            {@link String} name of the container such as flow that holds this
+   *            component
+   * @param routeContainerLocation
+   *            {@link String} location of the router when this component is a
+   *            processor of a route, otherwise null. See
+   *            {@link com.avioconsulting.mule.opentelemetry.internal.util.ComponentsUtil#getRouteContainerLocation(TraceComponent)}.
+   */
+  public void addProcessorSpan(TraceComponent traceComponent, String containerName,
+      String routeContainerLocation) {
     OpenTelemetryUtil.addGlobalConfigSystemAttributes(
         traceComponent.getTags().get(SemanticAttributes.MULE_APP_PROCESSOR_CONFIG_REF.getKey()),
         traceComponent.getTags(), OTEL_SYSTEM_PROPERTIES_MAP);
-    traceComponent.getTags().forEach(spanBuilder::setAttribute);
 
-    String parentLocation = getRouteContainerLocation(traceComponent);
+    String parentLocation = routeContainerLocation;
     if (parentLocation != null) {
       // Create parent span for the first processor in the chain /0
       TraceComponent parentTrace = TraceComponent.of(parentLocation)
@@ -340,9 +632,9 @@ public class OpenTelemetryConnection implements TraceContextHandler {
           .withEventContextId(traceComponent.getEventContextId())
           .withStartTime(traceComponent.getStartTime());
       // if (!getTransactionStore().processorSpanExists(traceComponent)) {
-      SpanMeta parentSpan = addRouteSpan(parentTrace, traceComponent, parentLocation,
-          getLocationParent(parentLocation));
-      spanBuilder.setParent(parentSpan.getContext());
+      // Store sets the route span as parent, it is the container of the
+      // processor
+      addRouteSpan(parentTrace, traceComponent, parentLocation, getLocationParent(parentLocation));
       // }
     }
     if (parentLocation == null) {
@@ -350,18 +642,55 @@ public class OpenTelemetryConnection implements TraceContextHandler {
     }
     getTransactionStore().addProcessorSpan(
         parentLocation,
-        traceComponent, spanBuilder);
+        traceComponent, processorSpanBuilder);
+  }
+
+  /**
+   * Builder of a processor span, created by the transaction store only when
+   * the span is started.
+   */
+  private SpanBuilder processorSpanBuilder(TraceComponent traceComponent) {
+    SpanBuilder spanBuilder = this
+        .spanBuilder(traceComponent.getSpanName())
+        .setSpanKind(traceComponent.getSpanKind())
+        .setStartTimestamp(traceComponent.getStartTime());
+    traceComponent.getTags().forEach(spanBuilder::setAttribute);
+    return spanBuilder;
   }
 
   private SpanMeta addRouteSpan(TraceComponent parentTrace, TraceComponent childTrace, String parentLocation,
       String rootContainerName) {
-    SpanBuilder spanBuilder = this.spanBuilder(parentLocation)
-        .setParent(childTrace.getContext())
-        .setSpanKind(SpanKind.INTERNAL)
-        .setStartTimestamp(childTrace.getStartTime());
     return getTransactionStore().addProcessorSpan(
         rootContainerName,
-        parentTrace, spanBuilder);
+        parentTrace, component -> this.spanBuilder(parentLocation)
+            .setParent(childTrace.getContext())
+            .setSpanKind(SpanKind.INTERNAL)
+            .setStartTimestamp(childTrace.getStartTime()));
+  }
+
+  /**
+   * Record when an async scope starts executing its processors, see
+   * {@link TransactionStore#startAsyncExecution(TraceComponent, String)}.
+   *
+   * @param traceComponent
+   *            {@link TraceComponent} of the first processor in the async
+   *            scope
+   * @param asyncScopeLocation
+   *            {@link String} location of the async scope
+   */
+  public void startAsyncExecution(TraceComponent traceComponent, String asyncScopeLocation) {
+    getTransactionStore().startAsyncExecution(traceComponent, asyncScopeLocation);
+  }
+
+  /**
+   * @param transactionId
+   *            local transaction id
+   * @param contextScopedLocation
+   *            location of the processor scoped to its event context
+   * @return true if a processor span is open for the location
+   */
+  public boolean hasProcessorSpan(String transactionId, String contextScopedLocation) {
+    return getTransactionStore().hasProcessorSpan(transactionId, contextScopedLocation);
   }
 
   public SpanMeta endProcessorSpan(final TraceComponent traceComponent, Error error) {
@@ -380,7 +709,9 @@ public class OpenTelemetryConnection implements TraceContextHandler {
   }
 
   public void startTransaction(TraceComponent traceComponent) {
-    SpanBuilder spanBuilder = openTelemetryConnection
+    if (shutdown.get())
+      return;
+    SpanBuilder spanBuilder = this
         .spanBuilder(traceComponent.getSpanName())
         .setSpanKind(traceComponent.getSpanKind())
         .setParent(traceComponent.getContext())
@@ -388,9 +719,11 @@ public class OpenTelemetryConnection implements TraceContextHandler {
 
     OpenTelemetryUtil.addGlobalConfigSystemAttributes(
         traceComponent.getTags().get(SemanticAttributes.MULE_APP_FLOW_SOURCE_CONFIG_REF.getKey()),
-        traceComponent.getTags(), openTelemetryConnection.OTEL_SYSTEM_PROPERTIES_MAP);
+        traceComponent.getTags(), OTEL_SYSTEM_PROPERTIES_MAP);
 
     traceComponent.getTags().forEach(spanBuilder::setAttribute);
+    if (traceComponent.isForceTrace())
+      spanBuilder.setAttribute(SemanticAttributes.MULE_TRACE_FORCED, true);
     getTransactionStore().startTransaction(
         traceComponent, traceComponent.getName(), spanBuilder);
   }
@@ -399,11 +732,11 @@ public class OpenTelemetryConnection implements TraceContextHandler {
     if (traceComponent == null) {
       return null;
     }
-    return openTelemetryConnection.getTransactionStore().endTransaction(
+    return getTransactionStore().endTransaction(
         traceComponent,
         rootSpan -> {
           traceComponent.getTags().forEach(rootSpan::setAttribute);
-          openTelemetryConnection.setSpanStatus(traceComponent, rootSpan);
+          setSpanStatus(traceComponent, rootSpan);
           if (exception != null) {
             rootSpan.recordException(exception);
             rootSpan.setAttribute(ERROR_TYPE.getKey(), exception.getClass().getTypeName());
@@ -412,6 +745,8 @@ public class OpenTelemetryConnection implements TraceContextHandler {
   }
 
   public void setSpanStatus(TraceComponent traceComponent, Span span) {
+    if (spanMetricsProcessor != null)
+      spanMetricsProcessor.setEndingStatus(span, traceComponent.getStatusCode());
     if (traceComponent.getStatusCode() != null
         && !StatusCode.UNSET.equals(traceComponent.getStatusCode())) {
       span.setStatus(traceComponent.getStatusCode(), traceComponent.getErrorMessage());
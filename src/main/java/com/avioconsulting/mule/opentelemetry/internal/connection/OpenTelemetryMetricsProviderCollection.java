@@ -5,43 +5,166 @@ import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsC
 import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsProvider;
 import com.avioconsulting.mule.opentelemetry.api.store.SpanMeta;
 import com.avioconsulting.mule.opentelemetry.api.store.TransactionMeta;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.BuiltInMetricsProvider;
+import com.avioconsulting.mule.opentelemetry.internal.util.ServiceProviderUtil;
 import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
 import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.message.Error;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Collection of all {@link OpenTelemetryMetricsProvider}s loaded with service
+ * loader. Every call is delegated to all providers.
+ *
+ * Providers are loaded with {@link #load(ClassLoader)} right before they are
+ * initialized, which may happen in the background after the application
+ * started. Until then, metered components and flows are kept and registered
+ * once initialized, and captured metrics are dropped. Dropped measurements are
+ * counted and logged once providers are initialized.
+ *
+ * Flow and processor metrics are captured with the span of a sampled
+ * transaction as the current context so that providers recording synchronous
+ * measurements get exemplars linking to the trace.
+ */
 public class OpenTelemetryMetricsProviderCollection
     extends ArrayList<OpenTelemetryMetricsProvider>
     implements OpenTelemetryMetricsProvider<OpenTelemetryMetricsConfigProvider> {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(OpenTelemetryMetricsProviderCollection.class);
+
+  private volatile boolean initialized;
+  private final LongAdder droppedMeasurements = new LongAdder();
+  private final List<String> pendingMeteredComponents = new ArrayList<>();
+  private final List<String> pendingMeteredFlows = new ArrayList<>();
+  private volatile BuiltInMetricsProvider builtInMetricsProvider;
+
+  /**
+   * Load all {@link OpenTelemetryMetricsProvider}s with service loader. Must be
+   * called before
+   * {@link #initialize(OpenTelemetryMetricsConfigProvider, OpenTelemetry)}.
+   *
+   * @param classLoader
+   *            {@link ClassLoader} to load providers from
+   * @return this collection
+   */
+  public OpenTelemetryMetricsProviderCollection load(ClassLoader classLoader) {
+    return ServiceProviderUtil.load(classLoader, OpenTelemetryMetricsProvider.class, this);
+  }
+
   @Override
   public void initialize(OpenTelemetryMetricsConfigProvider configProvider, OpenTelemetry openTelemetry) {
     this.forEach(provider -> provider.initialize(configProvider, openTelemetry));
+    builtInMetricsProvider = this.stream()
+        .filter(BuiltInMetricsProvider.class::isInstance)
+        .map(BuiltInMetricsProvider.class::cast)
+        .findFirst().orElse(null);
+    synchronized (pendingMeteredComponents) {
+      pendingMeteredComponents
+          .forEach(location -> this.forEach(provider -> provider.addMeteredComponent(location)));
+      pendingMeteredComponents.clear();
+      if (builtInMetricsProvider != null)
+        pendingMeteredFlows.forEach(builtInMetricsProvider::addFlow);
+      pendingMeteredFlows.clear();
+      initialized = true;
+    }
+    long dropped = droppedMeasurements.sum();
+    if (dropped > 0 && !isEmpty())
+      LOGGER.info("Dropped {} metric measurements captured before metrics providers were initialized", dropped);
+  }
+
+  /**
+   * @return number of measurements captured before providers were initialized
+   */
+  public long getDroppedMeasurements() {
+    return droppedMeasurements.sum();
   }
 
   @Override
   public void stop() {
+    builtInMetricsProvider = null;
     this.forEach(OpenTelemetryMetricsProvider::stop);
   }
 
+  /**
+   * Register a flow of the application, so the {@link BuiltInMetricsProvider}
+   * builds its metric attributes before the flow runs.
+   *
+   * @param flowName
+   *            name of the flow
+   */
+  public void addMeteredFlow(String flowName) {
+    if (!initialized) {
+      synchronized (pendingMeteredComponents) {
+        if (!initialized) {
+          pendingMeteredFlows.add(flowName);
+          return;
+        }
+      }
+    }
+    BuiltInMetricsProvider provider = builtInMetricsProvider;
+    if (provider != null)
+      provider.addFlow(flowName);
+  }
+
   @Override
   public void addMeteredComponent(String location) {
+    if (!initialized) {
+      synchronized (pendingMeteredComponents) {
+        if (!initialized) {
+          pendingMeteredComponents.add(location);
+          return;
+        }
+      }
+    }
     this.forEach(provider -> provider.addMeteredComponent(location));
   }
 
   @Override
   public void captureProcessorMetrics(Component component, Error error, String location, SpanMeta spanMeta) {
-    this.forEach(provider -> provider.captureProcessorMetrics(component, error, location, spanMeta));
+    if (!initialized) {
+      droppedMeasurements.increment();
+      return;
+    }
+    if (isEmpty())
+      return;
+    try (Scope ignored = exemplarScope(spanMeta)) {
+      this.forEach(provider -> provider.captureProcessorMetrics(component, error, location, spanMeta));
+    }
   }
 
   @Override
   public void captureFlowMetrics(TransactionMeta transactionMeta, String flowName, Exception exception) {
-    this.forEach(provider -> provider.captureFlowMetrics(transactionMeta, flowName, exception));
+    if (!initialized) {
+      droppedMeasurements.increment();
+      return;
+    }
+    if (isEmpty())
+      return;
+    try (Scope ignored = exemplarScope(transactionMeta)) {
+      this.forEach(provider -> provider.captureFlowMetrics(transactionMeta, flowName, exception));
+    }
   }
 
   @Override
   public void captureCustomMetric(MetricBaseNotificationData metricNotification) {
+    if (!initialized) {
+      droppedMeasurements.increment();
+      return;
+    }
     this.forEach(provider -> provider.captureCustomMetric(metricNotification));
   }
+
+  private static Scope exemplarScope(TransactionMeta transactionMeta) {
+    Span span = transactionMeta == null ? null : transactionMeta.getSpan();
+    if (span == null || !span.getSpanContext().isSampled())
+      return Scope.noop();
+    return span.makeCurrent();
+  }
 }
@@ -9,4 +9,21 @@ public interface TraceContextHandler {
   <T> Context getTraceContext(T carrier, TextMapGetter<T> textMapGetter);
 
   <T> void injectTraceContext(T carrier, TextMapSetter<T> textMapSetter);
+
+  /**
+   * Check if the inbound carrier requests the transaction to be traced in full
+   * detail, see
+   * {@link com.avioconsulting.mule.opentelemetry.internal.processor.ForceTrace}.
+   *
+   * @param carrier
+   *            HTTP headers or message properties
+   * @param textMapGetter
+   *            {@link TextMapGetter} for the carrier
+   * @param <T>
+   *            carrier type
+   * @return true if the transaction must be forced
+   */
+  default <T> boolean isForceTraceRequested(T carrier, TextMapGetter<T> textMapGetter) {
+    return false;
+  }
 }
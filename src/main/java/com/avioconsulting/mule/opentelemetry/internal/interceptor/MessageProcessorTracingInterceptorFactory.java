@@ -2,6 +2,7 @@ package com.avioconsulting.mule.opentelemetry.internal.interceptor;
 
 import com.avioconsulting.mule.opentelemetry.api.config.MuleComponent;
 import com.avioconsulting.mule.opentelemetry.internal.config.OpenTelemetryExtensionConfiguration;
+import com.avioconsulting.mule.opentelemetry.internal.processor.ComponentIndex;
 import com.avioconsulting.mule.opentelemetry.internal.processor.MuleCoreProcessorComponent;
 import com.avioconsulting.mule.opentelemetry.internal.processor.MuleNotificationProcessor;
 import org.mule.runtime.api.component.ComponentIdentifier;
@@ -16,10 +17,10 @@ import org.springframework.stereotype.Component;
 import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
-import static com.avioconsulting.mule.opentelemetry.internal.util.ComponentsUtil.isFirstProcessor;
-
 /**
  * ProcessorInterceptorFactory can intercept processors. This is injected
  * registry for auto-configuration.
@@ -41,17 +42,27 @@ public class MessageProcessorTracingInterceptorFactory implements ProcessorInter
    * connection supplier by processor.
    */
   private final ProcessorTracingInterceptor processorTracingInterceptor;
-  private final MuleNotificationProcessor muleNotificationProcessor;;
+  private final MuleNotificationProcessor muleNotificationProcessor;
+  private final ComponentIndex componentIndex;
 
   private final List<MuleComponent> interceptExclusions = new ArrayList<>();
 
   private final List<MuleComponent> interceptInclusions = new ArrayList<>();
 
+  /**
+   * Interception decisions from inclusions and exclusions by component
+   * identifier. Large applications have thousands of processors but only a few
+   * distinct identifiers.
+   */
+  private final Map<String, Boolean> interceptConfiguredByIdentifier = new ConcurrentHashMap<>();
+
   @Inject
   public MessageProcessorTracingInterceptorFactory(MuleNotificationProcessor muleNotificationProcessor,
       ConfigurationComponentLocator configurationComponentLocator) {
-    processorTracingInterceptor = new ProcessorTracingInterceptor(muleNotificationProcessor,
-        configurationComponentLocator);
+    componentIndex = muleNotificationProcessor.getComponentIndex() != null
+        ? muleNotificationProcessor.getComponentIndex()
+        : new ComponentIndex(configurationComponentLocator);
+    processorTracingInterceptor = new ProcessorTracingInterceptor(muleNotificationProcessor, componentIndex);
     this.muleNotificationProcessor = muleNotificationProcessor;
     setupInterceptableComponents(muleNotificationProcessor);
   }
@@ -122,16 +133,11 @@ public class MessageProcessorTracingInterceptorFactory implements ProcessorInter
       // included processor/namespaces OR
       // any processor/namespaces that are not excluded
       ComponentIdentifier identifier = location.getComponentIdentifier().getIdentifier();
-      boolean interceptConfigured = interceptInclusions.stream()
-          .anyMatch(mc -> mc.getNamespace().equalsIgnoreCase(identifier.getNamespace())
-              & (mc.getName().equalsIgnoreCase(identifier.getName())
-                  || "*".equalsIgnoreCase(mc.getName())))
-          || interceptExclusions.stream()
-              .noneMatch(mc -> mc.getNamespace().equalsIgnoreCase(identifier.getNamespace())
-                  & (mc.getName().equalsIgnoreCase(identifier.getName())
-                      || "*".equalsIgnoreCase(mc.getName())));
+      boolean interceptConfigured = interceptConfiguredByIdentifier.computeIfAbsent(
+          (identifier.getNamespace() + ":" + identifier.getName()).toLowerCase(),
+          key -> isInterceptConfigured(identifier));
       intercept = !muleNotificationProcessor.getOpenTelemetryConnection().isTurnOffTracing()
-          && (isFirstProcessor(location)
+          && (componentIndex.isFirstProcessor(location)
               || interceptConfigured);
 
       if (intercept) {
@@ -153,4 +159,15 @@ public class MessageProcessorTracingInterceptorFactory implements ProcessorInter
     return intercept;
   }
 
+  private boolean isInterceptConfigured(ComponentIdentifier identifier) {
+    return interceptInclusions.stream()
+        .anyMatch(mc -> mc.getNamespace().equalsIgnoreCase(identifier.getNamespace())
+            & (mc.getName().equalsIgnoreCase(identifier.getName())
+                || "*".equalsIgnoreCase(mc.getName())))
+        || interceptExclusions.stream()
+            .noneMatch(mc -> mc.getNamespace().equalsIgnoreCase(identifier.getNamespace())
+                & (mc.getName().equalsIgnoreCase(identifier.getName())
+                    || "*".equalsIgnoreCase(mc.getName())));
+  }
+
 }
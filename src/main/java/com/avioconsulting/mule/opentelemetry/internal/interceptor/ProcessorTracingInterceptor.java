@@ -3,20 +3,31 @@ package com.avioconsulting.mule.opentelemetry.internal.interceptor;
 import com.avioconsulting.mule.opentelemetry.api.processor.ProcessorComponent;
 import com.avioconsulting.mule.opentelemetry.api.store.TransactionStore;
 import com.avioconsulting.mule.opentelemetry.api.traces.TraceComponent;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics.Operation;
+import com.avioconsulting.mule.opentelemetry.internal.processor.ComponentIndex;
+import com.avioconsulting.mule.opentelemetry.internal.processor.ComponentIndex.IndexedLocation;
 import com.avioconsulting.mule.opentelemetry.internal.processor.MuleNotificationProcessor;
+import com.avioconsulting.mule.opentelemetry.internal.processor.TraceLevelSnapshot;
+import com.avioconsulting.mule.opentelemetry.internal.processor.TraceLevels;
 import com.avioconsulting.mule.opentelemetry.internal.util.ComponentsUtil;
+import com.avioconsulting.mule.opentelemetry.internal.util.PropertiesUtil;
 import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.propagation.TextMapSetter;
 import org.mule.runtime.api.component.Component;
+import org.mule.runtime.api.component.ComponentIdentifier;
 import org.mule.runtime.api.component.location.ComponentLocation;
 import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
-import org.mule.runtime.api.component.location.Location;
 import org.mule.runtime.api.interception.InterceptionAction;
 import org.mule.runtime.api.interception.InterceptionEvent;
 import org.mule.runtime.api.interception.ProcessorInterceptor;
 import org.mule.runtime.api.interception.ProcessorParameterValue;
+import org.mule.runtime.api.message.Message;
+import org.mule.runtime.api.metadata.TypedValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.Collections;
 import java.util.Map;
@@ -34,13 +45,24 @@ import static com.avioconsulting.mule.opentelemetry.internal.util.OpenTelemetryU
  * See {@link TransactionStore#getTransactionContext(String, String)}
  * for possible
  * entries in the map.
+ * <p>
+ * For `http:request` operations, the trace context of the request span can also
+ * be added to the request headers when
+ * {@link PropertiesUtil#MULE_OTEL_HTTP_REQUEST_CONTEXT_INJECTION_ENABLED} is
+ * set.
  */
 @ThreadSafe
 public class ProcessorTracingInterceptor implements ProcessorInterceptor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ProcessorTracingInterceptor.class);
+
+  /**
+   * Name of the `http:request` parameter holding the outbound request headers.
+   */
+  static final String HTTP_REQUEST_HEADERS = "headers";
+
   private final MuleNotificationProcessor muleNotificationProcessor;
-  private final ConfigurationComponentLocator configurationComponentLocator;
+  private final ComponentIndex componentIndex;
 
   /**
    * Interceptor.
@@ -53,8 +75,22 @@ public class ProcessorTracingInterceptor implements ProcessorInterceptor {
    */
   public ProcessorTracingInterceptor(MuleNotificationProcessor muleNotificationProcessor,
       ConfigurationComponentLocator configurationComponentLocator) {
+    this(muleNotificationProcessor, new ComponentIndex(configurationComponentLocator));
+  }
+
+  /**
+   * Interceptor.
+   *
+   * @param muleNotificationProcessor
+   *            {@link MuleNotificationProcessor} if configured fully to acquire
+   *            connection supplier.
+   * @param componentIndex
+   *            {@link ComponentIndex} to locate mule components
+   */
+  public ProcessorTracingInterceptor(MuleNotificationProcessor muleNotificationProcessor,
+      ComponentIndex componentIndex) {
     this.muleNotificationProcessor = muleNotificationProcessor;
-    this.configurationComponentLocator = configurationComponentLocator;
+    this.componentIndex = componentIndex;
   }
 
   @Override
@@ -62,33 +98,47 @@ public class ProcessorTracingInterceptor implements ProcessorInterceptor {
       ComponentLocation location,
       Map<String, ProcessorParameterValue> parameters,
       InterceptionEvent event) {
+    long overheadStart = ModuleOverheadMetrics.start();
+    try {
+      traceBefore(location, parameters, event);
+    } finally {
+      ModuleOverheadMetrics.record(Operation.INTERCEPTOR_BEFORE,
+          location.getComponentIdentifier().getIdentifier(), overheadStart);
+    }
+  }
+
+  private void traceBefore(ComponentLocation location, Map<String, ProcessorParameterValue> parameters,
+      InterceptionEvent event) {
     // Using an instance of MuleNotificationProcessor here.
     // If the tracing is disabled, the module configuration will not initialize
     // connection supplier.
     if (muleNotificationProcessor.hasConnection()) {
-      ProcessorComponent processorComponent = muleNotificationProcessor
-          .getProcessorComponent(location.getComponentIdentifier().getIdentifier());
+      // Trace levels are read once for all decisions of this execution
+      TraceLevels traceLevels = muleNotificationProcessor.getTraceLevels();
+      TraceLevelSnapshot levels = traceLevels == null ? null : traceLevels.get();
+      if (levels != null && muleNotificationProcessor.getForceTrace().isForced(event))
+        levels = levels.forcedTrace();
+      if (levels != null && !levels.isTracingEnabled())
+        return;
+      ComponentIdentifier identifier = location.getComponentIdentifier().getIdentifier();
+      ProcessorComponent processorComponent = levels == null
+          ? muleNotificationProcessor.getProcessorComponent(identifier)
+          : muleNotificationProcessor.getProcessorComponent(identifier, location, levels);
       switchTraceContext(event, TRACE_CONTEXT_MAP_KEY, TRACE_PREV_CONTEXT_MAP_KEY);
-      if (isFirstProcessor(location)) {
+      boolean firstProcessor = componentIndex.isFirstProcessor(location);
+      if (firstProcessor) {
         switchTraceContext(event, OTEL_FLOW_CONTEXT_ID, OTEL_FLOW_PREV_CONTEXT_ID);
         event.addVariable(OTEL_FLOW_CONTEXT_ID, event.getContext().getId());
       }
-      if (processorComponent == null) {
-        // when spanAllProcessor is false, and it's the first generic processor
+      if (processorComponent == null
+          || (levels != null && !firstProcessor && levels.isInterceptionDisabled(identifier))) {
+        // when spanAllProcessor is false, and it's the first generic processor.
+        // Or interception is disabled at runtime, span is created from notifications.
         String transactionId = getEventTransactionId(event);
         event.addVariable(TRACE_CONTEXT_MAP_KEY,
             muleNotificationProcessor.getOpenTelemetryConnection().getTraceContext(transactionId));
       } else {
-        Component component = configurationComponentLocator
-            .find(Location.builderFromStringRepresentation(
-                location.getLocation()).build())
-            // sub-flows are not beans by definitions,
-            // so any processors within sub-flows won't be found by location
-            // lookup by identifiers and then match the location to find it
-            .orElseGet(() -> configurationComponentLocator
-                .find(location.getComponentIdentifier().getIdentifier()).stream()
-                .filter(c -> c.getLocation().getLocation().equals(location.getLocation())).findFirst()
-                .orElse(null));
+        Component component = componentIndex.findComponent(location).orElse(null);
 
         if (component == null) {
           LOGGER.debug("Could not locate a component for {} at {}",
@@ -105,8 +155,16 @@ public class ProcessorTracingInterceptor implements ProcessorInterceptor {
         }
         LOGGER.trace("Creating Span in the interceptor for {} at {}",
             location.getComponentIdentifier().getIdentifier(), location.getLocation());
-        muleNotificationProcessor.getOpenTelemetryConnection().addProcessorSpan(traceComponent,
-            getLocationParent(location.getLocation()));
+        IndexedLocation indexed = componentIndex.get(location.getLocation());
+        if (indexed != null) {
+          muleNotificationProcessor.getOpenTelemetryConnection().addProcessorSpan(
+              traceComponent.withMetricAttributes(indexed.getMetricAttributes()),
+              indexed.getLocationParent(), indexed.getRouteContainerLocation());
+        } else {
+          muleNotificationProcessor.getOpenTelemetryConnection().addProcessorSpan(traceComponent,
+              componentIndex.getLocationParent(location.getLocation()),
+              componentIndex.getRouteContainerLocation(traceComponent));
+        }
         final String transactionId = getEventTransactionId(event);
         if (isFlowRef(location)) {
           String targetFlowName = traceComponent.getTags().get("mule.app.processor.flowRef.name");
@@ -116,10 +174,8 @@ public class ProcessorTracingInterceptor implements ProcessorInterceptor {
                 .evaluate(targetFlowName, event.asBindingContext()).getValue().toString();
             traceComponent.getTags().put("mule.app.processor.flowRef.name", targetFlowName);
           }
-          Optional<ComponentLocation> subFlowLocation = findLocation(
-              targetFlowName,
-              configurationComponentLocator)
-                  .filter(ComponentsUtil::isSubFlow);
+          Optional<ComponentLocation> subFlowLocation = componentIndex.findLocation(targetFlowName)
+              .filter(ComponentsUtil::isSubFlow);
           if (subFlowLocation.isPresent()) {
             ComponentLocation subFlowComp = subFlowLocation.get();
             TraceComponent subflowTrace = TraceComponent.of(subFlowComp)
@@ -133,7 +189,7 @@ public class ProcessorTracingInterceptor implements ProcessorInterceptor {
                 .withContext(traceComponent.getContext())
                 .withEventContextId(traceComponent.getEventContextId());
             muleNotificationProcessor.getOpenTelemetryConnection().addProcessorSpan(subflowTrace,
-                location.getLocation());
+                location.getLocation(), componentIndex.getRouteContainerLocation(subflowTrace));
             event.addVariable(TRACE_CONTEXT_MAP_KEY,
                 muleNotificationProcessor.getOpenTelemetryConnection().getTraceContext(transactionId,
                     subflowTrace.contextScopedLocation()));
@@ -146,6 +202,9 @@ public class ProcessorTracingInterceptor implements ProcessorInterceptor {
           event.addVariable(TRACE_CONTEXT_MAP_KEY,
               muleNotificationProcessor.getOpenTelemetryConnection().getTraceContext(transactionId,
                   traceComponent.contextScopedLocation()));
+          if (isHttpRequest(identifier) && PropertiesUtil.isHttpRequestContextInjectionEnabled()) {
+            injectRequestHeaders(parameters, event, transactionId, traceComponent.contextScopedLocation());
+          }
         }
       }
       if (LOGGER.isTraceEnabled()) {
@@ -154,6 +213,54 @@ public class ProcessorTracingInterceptor implements ProcessorInterceptor {
     }
   }
 
+  /**
+   * Add trace context of the request span to the headers of an `http:request`.
+   * Headers resolved here are reused by the runtime when executing the
+   * operation, so no expression or variable is needed to propagate the context.
+   * <p>
+   * Interceptors cannot replace operation parameters, so the context is written
+   * into the resolved map itself. Maps that the application still holds, such as
+   * a flow variable (eg. #[vars.headers]), the payload or the attributes, may be
+   * shared with other executions and are never modified.
+   */
+  @SuppressWarnings("unchecked")
+  private void injectRequestHeaders(Map<String, ProcessorParameterValue> parameters, InterceptionEvent event,
+      String transactionId, String contextScopedLocation) {
+    ProcessorParameterValue headersParameter = parameters.get(HTTP_REQUEST_HEADERS);
+    if (headersParameter == null)
+      return;
+    try {
+      Object headers = headersParameter.resolveValue();
+      if (!(headers instanceof Map)) {
+        LOGGER.debug("Skipping context injection for http:request at {} with headers of type {}",
+            contextScopedLocation, headers == null ? null : headers.getClass());
+        return;
+      }
+      if (isHeldByApplication(headers, event)) {
+        LOGGER.debug(
+            "Skipping context injection for http:request at {}, headers map is held by the application. Use vars.{} to propagate the context.",
+            contextScopedLocation, TRACE_CONTEXT_MAP_KEY);
+        return;
+      }
+      muleNotificationProcessor.getOpenTelemetryConnection().injectTraceContext(transactionId,
+          contextScopedLocation, (Map<String, String>) headers, RequestHeadersSetter.INSTANCE);
+    } catch (RuntimeException e) {
+      // Immutable headers, or headers expression failure that the operation
+      // will report on its own
+      LOGGER.debug("Could not inject trace context in http:request headers at {}", contextScopedLocation, e);
+    }
+  }
+
+  private static boolean isHeldByApplication(Object headers, InterceptionEvent event) {
+    for (TypedValue<?> variable : event.getVariables().values()) {
+      if (variable != null && variable.getValue() == headers)
+        return true;
+    }
+    Message message = event.getMessage();
+    return message != null
+        && (message.getPayload().getValue() == headers || message.getAttributes().getValue() == headers);
+  }
+
   @Override
   public void after(ComponentLocation location, InterceptionEvent event, Optional<Throwable> thrown) {
     switchTraceContext(event, TRACE_PREV_CONTEXT_MAP_KEY, TRACE_CONTEXT_MAP_KEY);
@@ -208,4 +315,21 @@ public class ProcessorTracingInterceptor implements ProcessorInterceptor {
     return action.proceed();
   }
 
+  /**
+   * {@link TextMapSetter} for the `http:request` headers of one execution that
+   * replaces any previous value of a propagator field.
+   */
+  enum RequestHeadersSetter implements TextMapSetter<Map<String, String>> {
+    INSTANCE;
+
+    @Override
+    public void set(@Nullable Map<String, String> carrier, String key, String value) {
+      if (carrier != null) {
+        // Multi-value maps add to existing values on put
+        carrier.remove(key);
+        carrier.put(key, value);
+      }
+    }
+  }
+
 }
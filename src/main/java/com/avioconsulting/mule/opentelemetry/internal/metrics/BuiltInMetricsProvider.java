@@ -0,0 +1,222 @@
+package com.avioconsulting.mule.opentelemetry.internal.metrics;
+
+import com.avioconsulting.mule.opentelemetry.api.notifications.MetricBaseNotificationData;
+import com.avioconsulting.mule.opentelemetry.api.providers.BuiltInMetricsConfigProvider;
+import com.avioconsulting.mule.opentelemetry.api.providers.MetricInstrumentRegistry;
+import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsConfigProvider;
+import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsProvider;
+import com.avioconsulting.mule.opentelemetry.api.store.SpanMeta;
+import com.avioconsulting.mule.opentelemetry.api.store.TransactionMeta;
+import com.avioconsulting.mule.opentelemetry.internal.store.ProcessorSpan;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import org.mule.runtime.api.component.Component;
+import org.mule.runtime.api.message.Error;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_FLOW_NAME;
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_PROCESSOR_LOCATION;
+
+/**
+ * Metrics provider shipped with the module. It is active only when
+ * {@link BuiltInMetricsConfigProvider} is selected as the metrics provider of
+ * the global configuration.
+ *
+ * <pre>
+ * Following instruments are recorded -
+ * - mule.app.flow.duration (histogram, ms)
+ * - mule.app.flow.requests (counter)
+ * - mule.app.flow.errors (counter)
+ * - mule.app.processor.duration (histogram, ms) for metered processor locations
+ * - mule.app.processor.errors (counter) for metered processor locations
+ *
+ * Custom metrics raised with {@link MetricBaseNotificationData} are recorded through {@link MetricInstrumentRegistry}.
+ * </pre>
+ *
+ * Instruments are created once during {@link #initialize}, and {@link Attributes}
+ * are built when the application is deployed. Processor attributes are built
+ * with {@link #processorAttributesFor(String)} when a metered location is
+ * intercepted, kept in the component index and carried to the
+ * {@link ProcessorSpan} by its trace component, so recording a processor
+ * measurement does not look them up. Flow attributes are built for all flows
+ * of the application with {@link #addFlow(String)}.
+ *
+ * Durations are recorded with the context of the flow or processor span. When
+ * the span is sampled, the SDK's trace based exemplar filter attaches its
+ * trace id and span id as an exemplar to the histogram bucket. Exemplar
+ * reservoirs of the SDK are bounded (one exemplar per bucket), so memory stays
+ * capped irrespective of the throughput.
+ *
+ * @since 2.4.0
+ */
+public class BuiltInMetricsProvider implements OpenTelemetryMetricsProvider<OpenTelemetryMetricsConfigProvider> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BuiltInMetricsProvider.class);
+
+  public static final String INSTRUMENTATION_SCOPE_NAME = "com.avioconsulting.mule.opentelemetry.metrics";
+  public static final String FLOW_DURATION = "mule.app.flow.duration";
+  public static final String FLOW_REQUESTS = "mule.app.flow.requests";
+  public static final String FLOW_ERRORS = "mule.app.flow.errors";
+  public static final String PROCESSOR_DURATION = "mule.app.processor.duration";
+  public static final String PROCESSOR_ERRORS = "mule.app.processor.errors";
+
+  private static final double NANOS_PER_MILLI = 1_000_000d;
+
+  private final Map<String, Attributes> processorAttributes = new ConcurrentHashMap<>();
+  private final Map<String, Attributes> flowAttributes = new ConcurrentHashMap<>();
+
+  private boolean enabled = false;
+  private boolean flowMetricsEnabled;
+  private boolean processorMetricsEnabled;
+
+  private DoubleHistogram flowDuration;
+  private LongCounter flowRequests;
+  private LongCounter flowErrors;
+  private DoubleHistogram processorDuration;
+  private LongCounter processorErrors;
+  private MetricInstrumentRegistry customMetrics;
+
+  @Override
+  public void initialize(OpenTelemetryMetricsConfigProvider configProvider, OpenTelemetry openTelemetry) {
+    if (!(configProvider instanceof BuiltInMetricsConfigProvider)) {
+      LOGGER.debug("Built-in metrics provider is not selected, skipping initialization");
+      return;
+    }
+    BuiltInMetricsConfigProvider config = (BuiltInMetricsConfigProvider) configProvider;
+    flowMetricsEnabled = config.isFlowMetricsEnabled();
+    processorMetricsEnabled = config.isProcessorMetricsEnabled();
+    Meter meter = openTelemetry.meterBuilder(INSTRUMENTATION_SCOPE_NAME).build();
+    flowDuration = meter.histogramBuilder(FLOW_DURATION)
+        .setDescription("Duration of flow executions")
+        .setUnit("ms")
+        .build();
+    flowRequests = meter.counterBuilder(FLOW_REQUESTS)
+        .setDescription("Number of flow executions")
+        .setUnit("{request}")
+        .build();
+    flowErrors = meter.counterBuilder(FLOW_ERRORS)
+        .setDescription("Number of flow executions that ended with an error")
+        .setUnit("{error}")
+        .build();
+    processorDuration = meter.histogramBuilder(PROCESSOR_DURATION)
+        .setDescription("Duration of metered processor executions")
+        .setUnit("ms")
+        .build();
+    processorErrors = meter.counterBuilder(PROCESSOR_ERRORS)
+        .setDescription("Number of metered processor executions that ended with an error")
+        .setUnit("{error}")
+        .build();
+    customMetrics = new MetricInstrumentRegistry(meter);
+    enabled = true;
+    LOGGER.info("Initialized built-in metrics provider (flow metrics: {}, processor metrics: {})",
+        flowMetricsEnabled, processorMetricsEnabled);
+  }
+
+  @Override
+  public void stop() {
+    enabled = false;
+    processorAttributes.clear();
+    flowAttributes.clear();
+  }
+
+  @Override
+  public void addMeteredComponent(String location) {
+    if (!enabled || !processorMetricsEnabled || location == null)
+      return;
+    processorAttributes.computeIfAbsent(location, BuiltInMetricsProvider::processorAttributesFor);
+  }
+
+  /**
+   * Build the attributes of a flow of the application.
+   *
+   * @param flowName
+   *            name of the flow
+   */
+  public void addFlow(String flowName) {
+    if (!enabled || !flowMetricsEnabled || flowName == null)
+      return;
+    flowAttributes.computeIfAbsent(flowName, BuiltInMetricsProvider::flowAttributesFor);
+  }
+
+  @Override
+  public void captureProcessorMetrics(Component component, Error error, String location, SpanMeta spanMeta) {
+    if (!enabled || !processorMetricsEnabled || spanMeta == null)
+      return;
+    Attributes attributes = spanMeta instanceof ProcessorSpan
+        ? ((ProcessorSpan) spanMeta).getMetricAttributes()
+        : processorAttributes.get(location);
+    if (attributes == null)
+      return;
+    double duration = durationMillis(spanMeta.getStartTime(), spanMeta.getEndTime());
+    if (duration >= 0)
+      processorDuration.record(duration, attributes, exemplarContext(spanMeta.getSpan()));
+    if (error != null)
+      processorErrors.add(1, attributes);
+  }
+
+  @Override
+  public void captureFlowMetrics(TransactionMeta transactionMeta, String flowName, Exception exception) {
+    if (!enabled || !flowMetricsEnabled || transactionMeta == null || flowName == null)
+      return;
+    Attributes attributes = flowAttributes.get(flowName);
+    if (attributes == null) {
+      // Not a flow of the application, attributes are not kept
+      attributes = flowAttributesFor(flowName);
+    }
+    double duration = durationMillis(transactionMeta.getStartTime(), transactionMeta.getEndTime());
+    if (duration >= 0)
+      flowDuration.record(duration, attributes, exemplarContext(transactionMeta.getSpan()));
+    flowRequests.add(1, attributes);
+    if (exception != null)
+      flowErrors.add(1, attributes);
+  }
+
+  @Override
+  public <N extends MetricBaseNotificationData<N>> void captureCustomMetric(N metricNotification) {
+    if (!enabled)
+      return;
+    if (!customMetrics.record(metricNotification)) {
+      LOGGER.debug("Custom metric '{}' of type '{}' was not recorded", metricNotification.getMetricName(),
+          metricNotification.getMetricType());
+    }
+  }
+
+  /**
+   * @param location
+   *            location of a metered processor
+   * @return {@link Attributes} to record the processor metrics with
+   */
+  public static Attributes processorAttributesFor(String location) {
+    int index = location.indexOf('/');
+    String flowName = index > 0 ? location.substring(0, index) : location;
+    return Attributes.of(MULE_APP_FLOW_NAME, flowName, MULE_APP_PROCESSOR_LOCATION, location);
+  }
+
+  private static Attributes flowAttributesFor(String flowName) {
+    return Attributes.of(MULE_APP_FLOW_NAME, flowName);
+  }
+
+  private static Context exemplarContext(Span span) {
+    if (span == null || !span.getSpanContext().isSampled())
+      return Context.root();
+    return Context.root().with(span);
+  }
+
+  private static double durationMillis(Instant start, Instant end) {
+    if (start == null || end == null)
+      return -1;
+    long nanos = (end.getEpochSecond() - start.getEpochSecond()) * 1_000_000_000L
+        + (end.getNano() - start.getNano());
+    return nanos / NANOS_PER_MILLI;
+  }
+}
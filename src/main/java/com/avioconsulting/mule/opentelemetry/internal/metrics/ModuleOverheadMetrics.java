@@ -0,0 +1,192 @@
+package com.avioconsulting.mule.opentelemetry.internal.metrics;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.metrics.Aggregation;
+import io.opentelemetry.sdk.metrics.InstrumentSelector;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.SdkMeterProviderBuilder;
+import io.opentelemetry.sdk.metrics.View;
+import org.mule.runtime.api.component.ComponentIdentifier;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * Self-observability of the module. Measures the time spent by the module on its own hot paths -
+ * - interceptor.before - {@link com.avioconsulting.mule.opentelemetry.internal.interceptor.ProcessorTracingInterceptor#before}
+ * - processor.start, processor.end, flow.start, flow.end - {@link com.avioconsulting.mule.opentelemetry.internal.processor.MuleNotificationProcessor} handlers
+ * - store.* - {@link com.avioconsulting.mule.opentelemetry.internal.store.InMemoryTransactionStore} operations
+ *
+ * Measurements are recorded in nanoseconds on the `mule.otel.overhead.duration` histogram with the operation
+ * and the namespace of the component (eg. http, mule) as attributes. Store operations are nested inside the
+ * notification handlers and the interceptor, so their time is also part of the handler's measurement and is
+ * not added again to the total overhead.
+ * </pre>
+ *
+ * When not initialized, {@link #start()} returns without reading the clock and
+ * {@link #record(Operation, ComponentIdentifier, long)} is a no-op, unless
+ * total overhead accounting is enabled with {@link #setAccounting(boolean)}.
+ *
+ * @since 2.4.0
+ */
+public final class ModuleOverheadMetrics {
+
+  public static final String INSTRUMENTATION_SCOPE_NAME = "com.avioconsulting.mule.opentelemetry.overhead";
+  public static final String OVERHEAD_DURATION = "mule.otel.overhead.duration";
+  public static final AttributeKey<String> OPERATION = AttributeKey.stringKey("mule.otel.overhead.operation");
+  public static final AttributeKey<String> COMPONENT_NAMESPACE = AttributeKey
+      .stringKey("mule.otel.component.namespace");
+  static final String UNKNOWN_NAMESPACE = "unknown";
+
+  /**
+   * Instrumented operations of the module.
+   */
+  public enum Operation {
+    INTERCEPTOR_BEFORE("interceptor.before"),
+    PROCESSOR_START("processor.start"),
+    PROCESSOR_END("processor.end"),
+    FLOW_START("flow.start"),
+    FLOW_END("flow.end"),
+    STORE_START_TRANSACTION("store.startTransaction", true),
+    STORE_END_TRANSACTION("store.endTransaction", true),
+    STORE_ADD_PROCESSOR_SPAN("store.addProcessorSpan", true),
+    STORE_END_PROCESSOR_SPAN("store.endProcessorSpan", true);
+
+    private final String value;
+    private final boolean nested;
+    private final Map<String, Attributes> attributesByNamespace = new ConcurrentHashMap<>();
+
+    Operation(String value) {
+      this(value, false);
+    }
+
+    Operation(String value, boolean nested) {
+      this.value = value;
+      this.nested = nested;
+    }
+
+    public String getValue() {
+      return value;
+    }
+
+    private Attributes attributesFor(String namespace) {
+      Attributes attributes = attributesByNamespace.get(namespace);
+      if (attributes == null) {
+        attributes = attributesByNamespace.computeIfAbsent(namespace,
+            ns -> Attributes.of(OPERATION, value, COMPONENT_NAMESPACE, ns));
+      }
+      return attributes;
+    }
+  }
+
+  private static volatile LongHistogram overheadDuration;
+  private static volatile boolean accounting;
+  private static final LongAdder TOTAL_NANOS = new LongAdder();
+
+  private ModuleOverheadMetrics() {
+  }
+
+  /**
+   * Create the overhead instrument. Until this is called, no measurements are
+   * taken.
+   *
+   * @param openTelemetry
+   *            {@link OpenTelemetry}
+   */
+  public static void initialize(OpenTelemetry openTelemetry) {
+    overheadDuration = openTelemetry.meterBuilder(INSTRUMENTATION_SCOPE_NAME).build()
+        .histogramBuilder(OVERHEAD_DURATION)
+        .setDescription("Time spent by the module on its own processing")
+        .setUnit("ns")
+        .ofLongs()
+        .build();
+  }
+
+  /**
+   * Stop taking measurements.
+   */
+  public static void reset() {
+    overheadDuration = null;
+  }
+
+  public static boolean isEnabled() {
+    return overheadDuration != null;
+  }
+
+  /**
+   * Accumulate the time of all measured operations, see
+   * {@link #getTotalNanos()}. Works with or without the overhead histogram.
+   *
+   * @param enabled
+   *            true to accumulate
+   */
+  public static void setAccounting(boolean enabled) {
+    accounting = enabled;
+  }
+
+  /**
+   * @return total time in nanoseconds of top level operations measured while
+   *         accounting is enabled, nested store operations are not counted
+   *         again
+   */
+  public static long getTotalNanos() {
+    return TOTAL_NANOS.sum();
+  }
+
+  /**
+   * Register a view to aggregate overhead durations with base2 exponential
+   * histogram. Nanosecond measurements span several orders of magnitude, which
+   * default explicit bucket boundaries do not cover.
+   *
+   * @param builder
+   *            {@link SdkMeterProviderBuilder}
+   * @return SdkMeterProviderBuilder
+   */
+  public static SdkMeterProviderBuilder registerViews(SdkMeterProviderBuilder builder) {
+    return builder.registerView(InstrumentSelector.builder()
+        .setMeterName(INSTRUMENTATION_SCOPE_NAME)
+        .setType(InstrumentType.HISTOGRAM)
+        .build(),
+        View.builder().setAggregation(Aggregation.base2ExponentialBucketHistogram()).build());
+  }
+
+  /**
+   * Start measuring an operation.
+   *
+   * @return start time in nanoseconds, or 0 when overhead metrics are disabled
+   */
+  public static long start() {
+    return overheadDuration == null && !accounting ? 0L : System.nanoTime();
+  }
+
+  /**
+   * Record the time elapsed since {@code startNanos} for the operation.
+   *
+   * @param operation
+   *            {@link Operation} measured
+   * @param identifier
+   *            {@link ComponentIdentifier} of the component being processed, may
+   *            be null
+   * @param startNanos
+   *            value returned by {@link #start()}
+   */
+  public static void record(Operation operation, ComponentIdentifier identifier, long startNanos) {
+    if (startNanos == 0L)
+      return;
+    long elapsed = System.nanoTime() - startNanos;
+    if (accounting && !operation.nested)
+      TOTAL_NANOS.add(elapsed);
+    LongHistogram histogram = overheadDuration;
+    if (histogram == null)
+      return;
+    String namespace = identifier == null ? UNKNOWN_NAMESPACE : identifier.getNamespace();
+    // Root context avoids exemplar sampling against application spans
+    histogram.record(elapsed, operation.attributesFor(namespace), Context.root());
+  }
+}
@@ -0,0 +1,206 @@
+package com.avioconsulting.mule.opentelemetry.internal.metrics;
+
+import com.avioconsulting.mule.opentelemetry.api.AppIdentifier;
+import com.avioconsulting.mule.opentelemetry.api.notifications.MetricBaseNotificationData;
+import com.avioconsulting.mule.opentelemetry.api.providers.BuiltInMetricsConfigProvider;
+import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsConfigProvider;
+import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsProvider;
+import com.avioconsulting.mule.opentelemetry.api.store.SpanMeta;
+import com.avioconsulting.mule.opentelemetry.api.store.TransactionMeta;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.BatchCallback;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import org.mule.runtime.api.component.Component;
+import org.mule.runtime.api.message.Error;
+import org.mule.runtime.api.scheduler.SchedulerService;
+import org.mule.runtime.api.scheduler.SchedulerView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_DOMAIN;
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_ENVIRONMENT_ID;
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_ORGANIZATION_ID;
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_SCHEDULER_POOL;
+
+/**
+ * <pre>
+ * Samples Mule scheduler pools when {@link BuiltInMetricsConfigProvider#isSchedulerMetricsEnabled()} is set.
+ * Following gauges are reported with {@link AppIdentifier} attributes -
+ * - mule.scheduler.pool.threads - live threads of each runtime pool (uber, cpuLight, io, cpuIntensive)
+ * - mule.scheduler.pool.runnable_threads - threads of each runtime pool in RUNNABLE state
+ * - mule.scheduler.active - schedulers registered in {@link SchedulerService} that are not shutdown
+ * </pre>
+ *
+ * All gauges are observed in a single batch callback, which the SDK invokes
+ * once per metric collection interval. Nothing is done on the event processing
+ * path. Runtime pool threads are found by name among the live threads of the
+ * JVM, and only their {@link Thread#getState()} is read. No thread dump is
+ * taken.
+ *
+ * Scope is limited to thread counts. Mule's public scheduler API does not
+ * expose queued tasks, rejected tasks or maximum pool sizes, so those are not
+ * reported. Threads blocked in socket I/O are RUNNABLE as well, so runnable
+ * threads are an upper bound of busy threads, not a count of active ones.
+ *
+ * @since 2.4.0
+ */
+public class SchedulerMetricsProvider implements OpenTelemetryMetricsProvider<OpenTelemetryMetricsConfigProvider> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SchedulerMetricsProvider.class);
+
+  public static final String INSTRUMENTATION_SCOPE_NAME = "com.avioconsulting.mule.opentelemetry.scheduler";
+  public static final String POOL_THREADS = "mule.scheduler.pool.threads";
+  public static final String POOL_RUNNABLE_THREADS = "mule.scheduler.pool.runnable_threads";
+  public static final String ACTIVE_SCHEDULERS = "mule.scheduler.active";
+
+  static final String RUNTIME_THREAD_PREFIX = "[MuleRuntime].";
+
+  private final Map<String, Attributes> poolAttributes = new ConcurrentHashMap<>();
+  private SchedulerService schedulerService;
+  private Attributes appAttributes;
+  private BatchCallback batchCallback;
+  private Thread[] threads = new Thread[0];
+
+  @Override
+  public void initialize(OpenTelemetryMetricsConfigProvider configProvider, OpenTelemetry openTelemetry) {
+    if (!(configProvider instanceof BuiltInMetricsConfigProvider)
+        || !((BuiltInMetricsConfigProvider) configProvider).isSchedulerMetricsEnabled()) {
+      LOGGER.debug("Scheduler metrics are not enabled, skipping initialization");
+      return;
+    }
+    BuiltInMetricsConfigProvider config = (BuiltInMetricsConfigProvider) configProvider;
+    schedulerService = config.getSchedulerService();
+    appAttributes = appAttributes(config.getAppIdentifier());
+    Meter meter = openTelemetry.meterBuilder(INSTRUMENTATION_SCOPE_NAME).build();
+    ObservableLongMeasurement poolThreads = meter.gaugeBuilder(POOL_THREADS)
+        .setDescription("Live threads of the Mule scheduler pool")
+        .setUnit("{thread}")
+        .ofLongs()
+        .buildObserver();
+    ObservableLongMeasurement poolRunnableThreads = meter.gaugeBuilder(POOL_RUNNABLE_THREADS)
+        .setDescription("Threads of the Mule scheduler pool in RUNNABLE state, including threads blocked in I/O")
+        .setUnit("{thread}")
+        .ofLongs()
+        .buildObserver();
+    ObservableLongMeasurement activeSchedulers = meter.gaugeBuilder(ACTIVE_SCHEDULERS)
+        .setDescription("Schedulers that are not shutdown")
+        .setUnit("{scheduler}")
+        .ofLongs()
+        .buildObserver();
+    batchCallback = meter.batchCallback(() -> sample(poolThreads, poolRunnableThreads, activeSchedulers),
+        poolThreads, poolRunnableThreads, activeSchedulers);
+    LOGGER.info("Initialized scheduler metrics provider");
+  }
+
+  private void sample(ObservableLongMeasurement poolThreads, ObservableLongMeasurement poolRunnableThreads,
+      ObservableLongMeasurement activeSchedulers) {
+    // [0] - live threads, [1] - runnable threads
+    Map<String, long[]> counts = new HashMap<>();
+    int count = enumerateThreads();
+    for (int i = 0; i < count; i++) {
+      Thread thread = threads[i];
+      threads[i] = null;
+      String pool = poolName(thread.getName());
+      if (pool == null)
+        continue;
+      long[] poolCounts = counts.computeIfAbsent(pool, k -> new long[2]);
+      poolCounts[0]++;
+      if (Thread.State.RUNNABLE.equals(thread.getState()))
+        poolCounts[1]++;
+    }
+    counts.forEach((pool, poolCounts) -> {
+      Attributes attributes = poolAttributes.computeIfAbsent(pool,
+          p -> appAttributes.toBuilder().put(MULE_SCHEDULER_POOL, p).build());
+      poolThreads.record(poolCounts[0], attributes);
+      poolRunnableThreads.record(poolCounts[1], attributes);
+    });
+    if (schedulerService != null) {
+      long active = 0;
+      for (SchedulerView schedulerView : schedulerService.getSchedulers()) {
+        if (!schedulerView.isShutdown())
+          active++;
+      }
+      activeSchedulers.record(active, appAttributes);
+    }
+  }
+
+  /**
+   * Enumerate live threads of the JVM into {@link #threads}, growing it when
+   * threads were added since the last collection.
+   *
+   * @return number of threads enumerated
+   */
+  private int enumerateThreads() {
+    ThreadGroup root = Thread.currentThread().getThreadGroup();
+    while (root.getParent() != null)
+      root = root.getParent();
+    int count;
+    while ((count = root.enumerate(threads, true)) == threads.length)
+      threads = new Thread[Math.max(16, threads.length * 2)];
+    return count;
+  }
+
+  /**
+   * Extract pool name from runtime thread names such as
+   * {@code [MuleRuntime].uber.02: [app].flow.CPU_LITE @1a2b3c}.
+   *
+   * @param threadName
+   *            {@link String} name of the thread
+   * @return pool name or null when the thread does not belong to a runtime pool
+   */
+  public static String poolName(String threadName) {
+    if (threadName == null || !threadName.startsWith(RUNTIME_THREAD_PREFIX))
+      return null;
+    int start = RUNTIME_THREAD_PREFIX.length();
+    int end = threadName.indexOf('.', start);
+    return end > start ? threadName.substring(start, end) : null;
+  }
+
+  private static Attributes appAttributes(AppIdentifier appIdentifier) {
+    AttributesBuilder builder = Attributes.builder();
+    if (appIdentifier != null) {
+      builder.put(MULE_APP_DOMAIN, appIdentifier.getName())
+          .put(MULE_ORGANIZATION_ID, appIdentifier.getOrgId())
+          .put(MULE_ENVIRONMENT_ID, appIdentifier.getEnvId());
+    }
+    return builder.build();
+  }
+
+  @Override
+  public void stop() {
+    if (batchCallback != null) {
+      batchCallback.close();
+      batchCallback = null;
+    }
+    poolAttributes.clear();
+    schedulerService = null;
+    threads = new Thread[0];
+  }
+
+  @Override
+  public void addMeteredComponent(String location) {
+    // Scheduler metrics are not component specific
+  }
+
+  @Override
+  public void captureProcessorMetrics(Component component, Error error, String location, SpanMeta spanMeta) {
+    // Scheduler metrics are not component specific
+  }
+
+  @Override
+  public void captureFlowMetrics(TransactionMeta transactionMeta, String flowName, Exception exception) {
+    // Scheduler metrics are not flow specific
+  }
+
+  @Override
+  public <N extends MetricBaseNotificationData<N>> void captureCustomMetric(N metricNotification) {
+    // Custom metrics are left to the third-party providers
+  }
+}
@@ -0,0 +1,52 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_FLOW_NAME;
+
+/**
+ * A {@link Sampler} that uses a sampler by the flow name attribute of the span,
+ * or a fallback sampler for all other spans.
+ */
+public class FlowNameSampler implements Sampler {
+
+  private final Map<String, Sampler> flowSamplers;
+  private final Sampler fallback;
+
+  /**
+   * @param flowSamplers
+   *            {@link Map} of flow names to the samplers
+   * @param fallback
+   *            {@link Sampler} for spans of other flows
+   */
+  public FlowNameSampler(Map<String, Sampler> flowSamplers, Sampler fallback) {
+    this.flowSamplers = flowSamplers;
+    this.fallback = fallback;
+  }
+
+  public Sampler getFallback() {
+    return fallback;
+  }
+
+  @Override
+  public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+      Attributes attributes, List<LinkData> parentLinks) {
+    String flowName = attributes.get(MULE_APP_FLOW_NAME);
+    Sampler sampler = flowName == null ? null : flowSamplers.get(flowName);
+    return (sampler == null ? fallback : sampler).shouldSample(parentContext, traceId, name, spanKind, attributes,
+        parentLinks);
+  }
+
+  @Override
+  public String getDescription() {
+    return "FlowNameSampler{flows=" + flowSamplers.keySet() + ", fallback=" + fallback.getDescription() + "}";
+  }
+}
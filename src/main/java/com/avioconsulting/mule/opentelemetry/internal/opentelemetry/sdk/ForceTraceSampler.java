@@ -0,0 +1,57 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_TRACE_FORCED;
+
+/**
+ * A {@link Sampler} that samples spans started with
+ * {@link com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes#MULE_TRACE_FORCED}
+ * attribute, and delegates all other spans.
+ *
+ * Spans started under a sampled local parent that carries the attribute are
+ * sampled too, and get the attribute themselves. This keeps the whole
+ * transaction of a forced root span sampled, even if the delegate is not
+ * parent based. Remote parents are left to the delegate.
+ */
+public class ForceTraceSampler implements Sampler {
+
+  private static final SamplingResult FORCED_CHILD = SamplingResult.create(SamplingDecision.RECORD_AND_SAMPLE,
+      Attributes.of(MULE_TRACE_FORCED, true));
+
+  private final Sampler delegate;
+
+  public ForceTraceSampler(Sampler delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+      Attributes attributes, List<LinkData> parentLinks) {
+    if (Boolean.TRUE.equals(attributes.get(MULE_TRACE_FORCED)))
+      return SamplingResult.recordAndSample();
+    if (isForced(Span.fromContext(parentContext)))
+      return FORCED_CHILD;
+    return delegate.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+  }
+
+  private static boolean isForced(Span parent) {
+    return parent instanceof ReadableSpan && parent.getSpanContext().isSampled()
+        && Boolean.TRUE.equals(((ReadableSpan) parent).getAttribute(MULE_TRACE_FORCED));
+  }
+
+  @Override
+  public String getDescription() {
+    return "ForceTraceSampler{" + delegate.getDescription() + "}";
+  }
+}
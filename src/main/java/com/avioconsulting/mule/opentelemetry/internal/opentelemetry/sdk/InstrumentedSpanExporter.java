@@ -0,0 +1,160 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * Span exporter wrapper that keeps export statistics of its delegate -
+ * - export calls and their latency
+ * - exported spans
+ * - failed export calls and their spans
+ *
+ * Statistics are always kept and exposed through JMX. Once {@link #initialize(OpenTelemetry)} is called, they are
+ * also reported as metrics with the `exporter` attribute.
+ * </pre>
+ */
+public class InstrumentedSpanExporter implements SpanExporter, InstrumentedSpanExporterMXBean {
+
+  public static final String EXPORT_DURATION = "mule.otel.exporter.export.duration";
+  public static final String SPANS_EXPORTED = "mule.otel.exporter.spans.exported";
+  public static final String EXPORT_FAILURES = "mule.otel.exporter.export.failures";
+  public static final AttributeKey<String> EXPORTER = AttributeKey.stringKey("exporter");
+  public static final AttributeKey<Boolean> SUCCESS = AttributeKey.booleanKey("success");
+
+  private final SpanExporter delegate;
+  private final String name;
+  private final Attributes successAttributes;
+  private final Attributes failureAttributes;
+  private final LongAdder exportCount = new LongAdder();
+  private final LongAdder exportedSpans = new LongAdder();
+  private final LongAdder exportFailures = new LongAdder();
+  private final LongAdder failedSpans = new LongAdder();
+  private final LongAdder exportNanos = new LongAdder();
+  private final AtomicLong lastExportNanos = new AtomicLong();
+  private volatile DoubleHistogram exportDuration;
+
+  public InstrumentedSpanExporter(SpanExporter delegate) {
+    this(delegate, delegate.getClass().getSimpleName());
+  }
+
+  public InstrumentedSpanExporter(SpanExporter delegate, String name) {
+    this.delegate = delegate;
+    this.name = name;
+    this.successAttributes = Attributes.of(EXPORTER, name, SUCCESS, true);
+    this.failureAttributes = Attributes.of(EXPORTER, name, SUCCESS, false);
+  }
+
+  /**
+   * Report the export statistics as metrics.
+   *
+   * @param openTelemetry
+   *            {@link OpenTelemetry}
+   */
+  public void initialize(OpenTelemetry openTelemetry) {
+    Meter meter = openTelemetry.meterBuilder(SpanExportPipeline.INSTRUMENTATION_SCOPE_NAME).build();
+    Attributes attributes = Attributes.of(EXPORTER, name);
+    meter.counterBuilder(SPANS_EXPORTED)
+        .setDescription("Spans sent to the exporter")
+        .setUnit("{span}")
+        .buildWithCallback(measurement -> {
+          measurement.record(exportedSpans.sum(), successAttributes);
+          measurement.record(failedSpans.sum(), failureAttributes);
+        });
+    meter.counterBuilder(EXPORT_FAILURES)
+        .setDescription("Failed export calls")
+        .setUnit("{export}")
+        .buildWithCallback(measurement -> measurement.record(exportFailures.sum(), attributes));
+    exportDuration = meter.histogramBuilder(EXPORT_DURATION)
+        .setDescription("Duration of export calls")
+        .setUnit("ms")
+        .build();
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    long start = System.nanoTime();
+    CompletableResultCode result = delegate.export(spans);
+    result.whenComplete(() -> {
+      long elapsed = System.nanoTime() - start;
+      exportCount.increment();
+      exportNanos.add(elapsed);
+      lastExportNanos.set(elapsed);
+      if (result.isSuccess()) {
+        exportedSpans.add(spans.size());
+      } else {
+        exportFailures.increment();
+        failedSpans.add(spans.size());
+      }
+      DoubleHistogram histogram = exportDuration;
+      if (histogram != null) {
+        // Root context avoids exemplar sampling against application spans
+        histogram.record(elapsed / 1_000_000.0, result.isSuccess() ? successAttributes : failureAttributes,
+            Context.root());
+      }
+    });
+    return result;
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return delegate.flush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return delegate.shutdown();
+  }
+
+  @Override
+  public String getExporter() {
+    return name;
+  }
+
+  @Override
+  public long getExportCount() {
+    return exportCount.sum();
+  }
+
+  @Override
+  public long getExportedSpans() {
+    return exportedSpans.sum();
+  }
+
+  @Override
+  public long getExportFailures() {
+    return exportFailures.sum();
+  }
+
+  @Override
+  public long getFailedSpans() {
+    return failedSpans.sum();
+  }
+
+  @Override
+  public double getAverageExportLatencyMillis() {
+    long count = exportCount.sum();
+    return count == 0 ? 0 : exportNanos.sum() / 1_000_000.0 / count;
+  }
+
+  @Override
+  public double getLastExportLatencyMillis() {
+    return lastExportNanos.get() / 1_000_000.0;
+  }
+
+  @Override
+  public String toString() {
+    return "InstrumentedSpanExporter{" + delegate + "}";
+  }
+}
@@ -0,0 +1,21 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+/**
+ * JMX view of a span exporter, see {@link InstrumentedSpanExporter}.
+ */
+public interface InstrumentedSpanExporterMXBean {
+
+  String getExporter();
+
+  long getExportCount();
+
+  long getExportedSpans();
+
+  long getExportFailures();
+
+  long getFailedSpans();
+
+  double getAverageExportLatencyMillis();
+
+  double getLastExportLatencyMillis();
+}
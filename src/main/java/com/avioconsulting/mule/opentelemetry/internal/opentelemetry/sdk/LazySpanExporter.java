@@ -0,0 +1,93 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * {@link SpanExporter} that creates its delegate on first export, on the span
+ * processor's export thread instead of during application startup. Creating
+ * OTLP exporters sets up HTTP clients, gRPC channels and TLS, which the first
+ * span does not need.
+ *
+ * When the delegate cannot be created, the export fails and creation is tried
+ * again on next export.
+ */
+public class LazySpanExporter implements SpanExporter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LazySpanExporter.class);
+
+  private final String name;
+  private final Supplier<SpanExporter> factory;
+  private volatile SpanExporter delegate;
+  private volatile boolean shutdown;
+
+  /**
+   * @param name
+   *            exporter name for logging
+   * @param factory
+   *            creates the delegate exporter
+   */
+  public LazySpanExporter(String name, Supplier<SpanExporter> factory) {
+    this.name = name;
+    this.factory = factory;
+  }
+
+  private SpanExporter delegate() {
+    SpanExporter exporter = delegate;
+    if (exporter == null) {
+      synchronized (this) {
+        exporter = delegate;
+        if (exporter == null && !shutdown) {
+          long start = System.nanoTime();
+          delegate = exporter = factory.get();
+          LOGGER.info("Created trace exporter {} in {} ms", name, (System.nanoTime() - start) / 1_000_000);
+        }
+      }
+    }
+    return exporter;
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    SpanExporter exporter;
+    try {
+      exporter = delegate();
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to create trace exporter {}, {} spans are not exported", name, spans.size(), e);
+      return CompletableResultCode.ofFailure();
+    }
+    return exporter == null ? CompletableResultCode.ofFailure() : exporter.export(spans);
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    SpanExporter exporter = delegate;
+    return exporter == null ? CompletableResultCode.ofSuccess() : exporter.flush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    SpanExporter exporter;
+    synchronized (this) {
+      shutdown = true;
+      exporter = delegate;
+    }
+    // Nothing to release when no span was ever exported
+    return exporter == null ? CompletableResultCode.ofSuccess() : exporter.shutdown();
+  }
+
+  boolean isCreated() {
+    return delegate != null;
+  }
+
+  @Override
+  public String toString() {
+    return "LazySpanExporter{" + name + "}";
+  }
+}
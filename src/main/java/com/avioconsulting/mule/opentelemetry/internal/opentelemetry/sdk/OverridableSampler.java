@@ -0,0 +1,48 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link Sampler} that uses the sampler given by an override function for the
+ * configured sampler. Used for changing the sampling ratio at runtime.
+ */
+public class OverridableSampler implements Sampler {
+
+  private static final UnaryOperator<Sampler> NO_OVERRIDE = UnaryOperator.identity();
+
+  private final Sampler delegate;
+  private volatile UnaryOperator<Sampler> override = NO_OVERRIDE;
+
+  public OverridableSampler(Sampler delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * @param override
+   *            function that gives the sampler in effect for the configured
+   *            sampler, null to use the configured sampler
+   */
+  public void setOverride(UnaryOperator<Sampler> override) {
+    this.override = override == null ? NO_OVERRIDE : override;
+  }
+
+  @Override
+  public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+      Attributes attributes, List<LinkData> parentLinks) {
+    return override.apply(delegate).shouldSample(parentContext, traceId, name, spanKind, attributes,
+        parentLinks);
+  }
+
+  @Override
+  public String getDescription() {
+    return "OverridableSampler{" + override.apply(delegate).getDescription() + "}";
+  }
+}
@@ -0,0 +1,45 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+
+/**
+ * A {@link Sampler} that converts {@link SamplingDecision#DROP} decisions of
+ * the delegate into {@link SamplingDecision#RECORD_ONLY}.
+ * Spans that are not sampled are still recorded and seen by span processors
+ * such as {@link SpanMetricsProcessor}, but exporters only receive sampled
+ * spans.
+ *
+ * @since 2.4.0
+ */
+public class RecordOnlySampler implements Sampler {
+
+  private final Sampler delegate;
+
+  public RecordOnlySampler(Sampler delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+      Attributes attributes, List<LinkData> parentLinks) {
+    SamplingResult result = delegate.shouldSample(parentContext, traceId, name, spanKind, attributes,
+        parentLinks);
+    if (SamplingDecision.DROP.equals(result.getDecision())) {
+      return SamplingResult.recordOnly();
+    }
+    return result;
+  }
+
+  @Override
+  public String getDescription() {
+    return "RecordOnlySampler{" + delegate.getDescription() + "}";
+  }
+}
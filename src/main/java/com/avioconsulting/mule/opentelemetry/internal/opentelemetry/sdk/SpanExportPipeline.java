@@ -0,0 +1,410 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.adaptive.AdaptiveCompressionSpanExporter;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.adaptive.AdaptiveExportController;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.loadbalance.LoadBalancingSpanExporter;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <pre>
+ * Span processor for trace exporters owned by the module instead of the SDK autoconfiguration. It is used when -
+ * - striped batch span processor is selected with `mule.otel.span.processor.type=striped_batch`, see {@link StripedBatchSpanProcessor}
+ * - exporter metrics are enabled with `mule.otel.exporter.metrics.enabled=true`
+ * - adaptive export is enabled with `mule.otel.exporter.adaptive.enabled=true`, see {@link AdaptiveExportController}.
+ *   It needs adjustable batch settings.
+ * - lazy exporter creation is enabled with `mule.otel.exporter.lazy.init=true`, see {@link LazySpanExporter}
+ *
+ * The processor is always a {@link StripedBatchSpanProcessor}, with a single stripe when the batch processor is
+ * selected, so queue size and dropped spans come from a processor the module owns.
+ *
+ * The configured trace exporters are moved aside by {@link #customizeProperties(ConfigProperties)}, so the SDK does
+ * not create its own batch span processor for them. {@link #create(ConfigProperties, Map, ClassLoader, ExporterCustomizer)}
+ * still has them created by the SDK autoconfiguration, see {@link #autoConfigureExporter(String, Map, ClassLoader)},
+ * and uses the SDK batch span processor settings (`otel.bsp.*`).
+ *
+ * With exporter metrics enabled, queue size and dropped spans of the processor, and export statistics of each
+ * exporter (see {@link InstrumentedSpanExporter}) are reported as metrics and exposed as JMX MBeans under
+ * the `com.avioconsulting.mule.opentelemetry` domain.
+ * </pre>
+ */
+public class SpanExportPipeline implements SpanProcessor, SpanExportPipelineMXBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpanExportPipeline.class);
+  public static final String INSTRUMENTATION_SCOPE_NAME = "com.avioconsulting.mule.opentelemetry.exporter";
+  public static final String QUEUE_SIZE = "mule.otel.exporter.queue.size";
+  public static final String SPANS_DROPPED = "mule.otel.exporter.spans.dropped";
+  public static final String JMX_DOMAIN = "com.avioconsulting.mule.opentelemetry";
+
+  public static final String PROCESSOR_TYPE_KEY = "mule.otel.span.processor.type";
+  public static final String STRIPES_KEY = "mule.otel.span.processor.stripes";
+  public static final String EXPORTER_METRICS_ENABLED_KEY = "mule.otel.exporter.metrics.enabled";
+  public static final String ADAPTIVE_ENABLED_KEY = "mule.otel.exporter.adaptive.enabled";
+  public static final String LAZY_INIT_KEY = "mule.otel.exporter.lazy.init";
+  public static final String BATCH = "batch";
+  public static final String STRIPED_BATCH = "striped_batch";
+  static final String EXPORTERS_KEY = "mule.otel.span.processor.exporters";
+  private static final String OTEL_TRACES_EXPORTER_KEY = "otel.traces.exporter";
+
+  private final String serviceName;
+  private final String processorType;
+  private final List<String> exporterNames;
+  private final int maxQueueSize;
+  private final int maxExportBatchSize;
+  private final StripedBatchSpanProcessor processor;
+  private final List<InstrumentedSpanExporter> instrumentedExporters;
+  private final AdaptiveExportController adaptiveController;
+  private final List<ObjectName> mbeans = new ArrayList<>();
+
+  SpanExportPipeline(String serviceName, List<String> exporterNames, List<SpanExporter> exporters,
+      List<InstrumentedSpanExporter> instrumentedExporters, String processorType, int stripes, int maxQueueSize,
+      int maxExportBatchSize, long scheduleDelayNanos, long exportTimeoutNanos,
+      AdaptiveExportController adaptiveController) {
+    this.serviceName = serviceName;
+    this.processorType = processorType;
+    this.exporterNames = exporterNames;
+    this.maxQueueSize = maxQueueSize;
+    this.maxExportBatchSize = maxExportBatchSize;
+    this.instrumentedExporters = instrumentedExporters;
+    this.adaptiveController = adaptiveController;
+    // A single stripe behaves like the SDK batch span processor
+    processor = new StripedBatchSpanProcessor(SpanExporter.composite(exporters),
+        STRIPED_BATCH.equals(processorType) ? stripes : 1, maxQueueSize, maxExportBatchSize, scheduleDelayNanos,
+        exportTimeoutNanos);
+    if (adaptiveController != null)
+      adaptiveController.setListener(processor::setBatchSettings);
+  }
+
+  public static boolean isEnabled(ConfigProperties config) {
+    return STRIPED_BATCH.equalsIgnoreCase(config.getString(PROCESSOR_TYPE_KEY, BATCH))
+        || config.getBoolean(EXPORTER_METRICS_ENABLED_KEY, false)
+        || config.getBoolean(ADAPTIVE_ENABLED_KEY, false)
+        || config.getBoolean(LAZY_INIT_KEY, false);
+  }
+
+  /**
+   * Properties customizer to use with
+   * {@link io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer#addPropertiesCustomizer}.
+   * When the pipeline is enabled, the configured trace exporters are moved aside
+   * so SDK does not create its own batch span processor for them.
+   *
+   * @param config
+   *            {@link ConfigProperties}
+   * @return properties to override
+   */
+  public static Map<String, String> customizeProperties(ConfigProperties config) {
+    if (!isEnabled(config))
+      return Collections.emptyMap();
+    Map<String, String> properties = new HashMap<>();
+    properties.put(EXPORTERS_KEY, String.join(",", config.getList(OTEL_TRACES_EXPORTER_KEY,
+        Collections.singletonList("otlp"))));
+    properties.put(OTEL_TRACES_EXPORTER_KEY, "none");
+    return properties;
+  }
+
+  /**
+   * Create the pipeline for the trace exporters moved aside by
+   * {@link #customizeProperties(ConfigProperties)}.
+   *
+   * @param config
+   *            {@link ConfigProperties}
+   * @param properties
+   *            properties supplied to the SDK autoconfiguration, used again
+   *            to create the exporters
+   * @param serviceClassLoader
+   *            {@link ClassLoader} to load exporter providers from
+   * @param exporterCustomizer
+   *            applied to each exporter after adaptive compression, load
+   *            balancing and instrumentation, like
+   *            {@link io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer#addSpanExporterCustomizer}
+   *            but with the exporter name
+   * @return pipeline or null when it is not enabled or no exporters are
+   *         configured
+   */
+  public static SpanExportPipeline create(ConfigProperties config, Map<String, String> properties,
+      ClassLoader serviceClassLoader, ExporterCustomizer exporterCustomizer) {
+    if (!isEnabled(config))
+      return null;
+    List<String> names = config.getList(EXPORTERS_KEY);
+    if (names.isEmpty() || names.contains("none"))
+      return null;
+    boolean exporterMetricsEnabled = config.getBoolean(EXPORTER_METRICS_ENABLED_KEY, false);
+    boolean lazyInit = config.getBoolean(LAZY_INIT_KEY, false);
+    String processorType = config.getString(PROCESSOR_TYPE_KEY, BATCH).toLowerCase();
+    int stripes = config.getInt(STRIPES_KEY, 0);
+    if (stripes <= 0)
+      stripes = Runtime.getRuntime().availableProcessors();
+    int maxQueueSize = config.getInt("otel.bsp.max.queue.size", 2048);
+    int maxExportBatchSize = config.getInt("otel.bsp.max.export.batch.size", 512);
+    long scheduleDelayNanos = config.getDuration("otel.bsp.schedule.delay", Duration.ofMillis(5000)).toNanos();
+    AdaptiveExportController adaptiveController = null;
+    if (config.getBoolean(ADAPTIVE_ENABLED_KEY, false)) {
+      int stripeQueueSize = maxQueueSize / (STRIPED_BATCH.equals(processorType) ? stripes : 1);
+      adaptiveController = new AdaptiveExportController(maxExportBatchSize,
+          Math.min(maxExportBatchSize * 8, stripeQueueSize), scheduleDelayNanos,
+          "gzip".equals(config.getString("otel.exporter.otlp.traces.compression",
+              config.getString("otel.exporter.otlp.compression"))));
+    }
+    final AdaptiveExportController controller = adaptiveController;
+    List<SpanExporter> exporters = new ArrayList<>(names.size());
+    List<InstrumentedSpanExporter> instrumentedExporters = new ArrayList<>();
+    for (String name : names) {
+      SpanExporter exporter = lazyInit
+          ? new LazySpanExporter(name,
+              () -> createExporter(name, properties, serviceClassLoader, config, controller))
+          : createExporter(name, properties, serviceClassLoader, config, controller);
+      if (exporterMetricsEnabled) {
+        // Instrument before customizing, so spans replayed by wrappers such as the
+        // spooling exporter are measured when they are actually sent
+        InstrumentedSpanExporter instrumented = new InstrumentedSpanExporter(exporter, name);
+        instrumentedExporters.add(instrumented);
+        exporter = instrumented;
+      }
+      exporters.add(exporterCustomizer.customize(name, exporter, config));
+    }
+    SpanExportPipeline pipeline = new SpanExportPipeline(config.getString("otel.service.name", "unknown_service"),
+        names, exporters, instrumentedExporters, processorType, stripes, maxQueueSize, maxExportBatchSize,
+        scheduleDelayNanos, config.getDuration("otel.bsp.export.timeout", Duration.ofMillis(30000)).toNanos(),
+        adaptiveController);
+    LOGGER.info("Using {} span processor{} for trace exporters {}", processorType,
+        adaptiveController == null ? "" : " with adaptive export", names);
+    if (BATCH.equals(processorType))
+      LOGGER.info("Module batch span processor replaces the SDK batch span processor for trace exporters {}",
+          names);
+    if (adaptiveController != null)
+      LOGGER.info(
+          "Adaptive export changes batch size and schedule delay at runtime, which the SDK batch span processor "
+              + "does not allow. Trace exporters {} use the module {} span processor, starting from otel.bsp.* "
+              + "settings",
+          names, processorType);
+    return pipeline;
+  }
+
+  private static SpanExporter createExporter(String name, Map<String, String> properties,
+      ClassLoader serviceClassLoader, ConfigProperties config, AdaptiveExportController adaptiveController) {
+    SpanExporter exporter = autoConfigureExporter(name, properties, serviceClassLoader);
+    if (adaptiveController != null)
+      exporter = AdaptiveCompressionSpanExporter.customize(exporter, adaptiveController);
+    return LoadBalancingSpanExporter.customize(exporter, config);
+  }
+
+  /**
+   * Create a trace exporter with the SDK autoconfiguration, so its name,
+   * provider and settings are resolved exactly as for exporters the SDK
+   * creates for itself. The SDK built here only creates the exporter. It has
+   * no resource detection, metric or log exporters, and is shut down right
+   * away without shutting the exporter down.
+   *
+   * @param name
+   *            exporter name, as in `otel.traces.exporter`
+   * @param properties
+   *            properties supplied to the SDK autoconfiguration
+   * @param serviceClassLoader
+   *            {@link ClassLoader} to load exporter providers from
+   * @return {@link SpanExporter}
+   */
+  static SpanExporter autoConfigureExporter(String name, Map<String, String> properties,
+      ClassLoader serviceClassLoader) {
+    Map<String, String> overrides = new HashMap<>();
+    overrides.put(OTEL_TRACES_EXPORTER_KEY, name);
+    overrides.put("otel.metrics.exporter", "none");
+    overrides.put("otel.logs.exporter", "none");
+    // Matches no provider class
+    overrides.put("otel.java.enabled.resource.providers", "none");
+    AtomicReference<SpanExporter> created = new AtomicReference<>();
+    OpenTelemetrySdk sdk = AutoConfiguredOpenTelemetrySdk.builder()
+        .setServiceClassLoader(serviceClassLoader)
+        .addPropertiesSupplier(() -> properties)
+        .addPropertiesCustomizer(config -> overrides)
+        .addSpanExporterCustomizer((exporter, config) -> {
+          created.set(exporter);
+          // Span processor of this SDK never gets spans
+          return SpanExporter.composite();
+        })
+        .build()
+        .getOpenTelemetrySdk();
+    sdk.getSdkTracerProvider().shutdown();
+    sdk.getSdkMeterProvider().shutdown();
+    sdk.getSdkLoggerProvider().shutdown();
+    return created.get();
+  }
+
+  /**
+   * Register processor and exporter metrics, and JMX MBeans when exporter
+   * metrics are enabled.
+   *
+   * @param openTelemetry
+   *            {@link OpenTelemetry}
+   */
+  public void initialize(OpenTelemetry openTelemetry) {
+    if (STRIPED_BATCH.equals(processorType) || adaptiveController != null)
+      processor.initialize(openTelemetry);
+    if (adaptiveController != null)
+      adaptiveController.initialize(openTelemetry, INSTRUMENTATION_SCOPE_NAME);
+    if (instrumentedExporters.isEmpty())
+      return;
+    Meter meter = openTelemetry.meterBuilder(INSTRUMENTATION_SCOPE_NAME).build();
+    Attributes attributes = Attributes.empty();
+    meter.gaugeBuilder(QUEUE_SIZE).ofLongs()
+        .setDescription("Spans waiting in the span processor queue")
+        .setUnit("{span}")
+        .buildWithCallback(measurement -> measurement.record(getQueueSize(), attributes));
+    meter.counterBuilder(SPANS_DROPPED)
+        .setDescription("Spans dropped by the span processor because the queue was full")
+        .setUnit("{span}")
+        .buildWithCallback(measurement -> measurement.record(getDroppedSpans(), attributes));
+    registerMBean(this, "type=SpanExportPipeline,service=" + ObjectName.quote(serviceName));
+    for (InstrumentedSpanExporter exporter : instrumentedExporters) {
+      exporter.initialize(openTelemetry);
+      registerMBean(exporter, "type=SpanExporter,service=" + ObjectName.quote(serviceName) + ",name="
+          + ObjectName.quote(exporter.getExporter()));
+    }
+  }
+
+  private void registerMBean(Object mbean, String properties) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = ObjectName.getInstance(JMX_DOMAIN + ":" + properties);
+      // Left behind by a previous deployment of the same service
+      if (server.isRegistered(name))
+        server.unregisterMBean(name);
+      server.registerMBean(mbean, name);
+      mbeans.add(name);
+    } catch (JMException e) {
+      LOGGER.warn("Failed to register MBean {}", properties, e);
+    }
+  }
+
+  private void unregisterMBeans() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (ObjectName name : mbeans) {
+      try {
+        if (server.isRegistered(name))
+          server.unregisterMBean(name);
+      } catch (JMException e) {
+        LOGGER.debug("Failed to unregister MBean {}", name, e);
+      }
+    }
+    mbeans.clear();
+  }
+
+  List<ObjectName> getMBeanNames() {
+    return Collections.unmodifiableList(mbeans);
+  }
+
+  StripedBatchSpanProcessor getProcessor() {
+    return processor;
+  }
+
+  List<InstrumentedSpanExporter> getInstrumentedExporters() {
+    return instrumentedExporters;
+  }
+
+  @Override
+  public String getProcessorType() {
+    return processorType;
+  }
+
+  @Override
+  public String[] getExporters() {
+    return exporterNames.toArray(new String[0]);
+  }
+
+  @Override
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  @Override
+  public int getMaxExportBatchSize() {
+    return maxExportBatchSize;
+  }
+
+  @Override
+  public long getQueueSize() {
+    return processor.getQueueSize();
+  }
+
+  @Override
+  public long getDroppedSpans() {
+    return processor.getDroppedSpans();
+  }
+
+  @Override
+  public void onStart(Context parentContext, ReadWriteSpan span) {
+    processor.onStart(parentContext, span);
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return processor.isStartRequired();
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    processor.onEnd(span);
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return processor.isEndRequired();
+  }
+
+  @Override
+  public CompletableResultCode forceFlush() {
+    return processor.forceFlush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    unregisterMBeans();
+    return processor.shutdown();
+  }
+
+  /**
+   * Customizer of a trace exporter of the pipeline.
+   */
+  @FunctionalInterface
+  public interface ExporterCustomizer {
+
+    /**
+     * @param name
+     *            exporter name, as in `otel.traces.exporter`
+     * @param exporter
+     *            {@link SpanExporter} to customize
+     * @param config
+     *            {@link ConfigProperties}
+     * @return customized {@link SpanExporter}
+     */
+    SpanExporter customize(String name, SpanExporter exporter, ConfigProperties config);
+  }
+
+  @Override
+  public String toString() {
+    return "SpanExportPipeline{processor=" + processor + ", exporters=" + exporterNames + "}";
+  }
+}
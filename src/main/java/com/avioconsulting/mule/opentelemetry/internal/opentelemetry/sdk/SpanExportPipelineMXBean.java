@@ -0,0 +1,19 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+/**
+ * JMX view of the span processor queue, see {@link SpanExportPipeline}.
+ */
+public interface SpanExportPipelineMXBean {
+
+  String getProcessorType();
+
+  String[] getExporters();
+
+  int getMaxQueueSize();
+
+  int getMaxExportBatchSize();
+
+  long getQueueSize();
+
+  long getDroppedSpans();
+}
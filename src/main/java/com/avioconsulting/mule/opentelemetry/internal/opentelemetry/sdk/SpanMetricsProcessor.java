@@ -0,0 +1,184 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.metrics.Aggregation;
+import io.opentelemetry.sdk.metrics.InstrumentSelector;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.SdkMeterProviderBuilder;
+import io.opentelemetry.sdk.metrics.View;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * Span processor that derives request rate, error rate and duration (RED) metrics from ended spans.
+ *
+ * Only SERVER, CLIENT and CONSUMER spans are aggregated. Measurements are keyed by span name, span kind and status code -
+ * - mule.span.duration - exponential histogram of span durations in milliseconds
+ * - mule.span.calls - counter of ended spans
+ *
+ * Combined with {@link RecordOnlySampler}, spans dropped by the sampler are still recorded (but not exported), so these
+ * metrics stay accurate at any trace sampling ratio.
+ *
+ * The SDK exposes the span status only through a full span data copy. Spans the module ends pass their status with
+ * {@link #setEndingStatus(Span, StatusCode)} instead, other spans fall back to the copy.
+ * </pre>
+ *
+ * @since 2.4.0
+ */
+public class SpanMetricsProcessor implements SpanProcessor {
+
+  public static final String INSTRUMENTATION_SCOPE_NAME = "com.avioconsulting.mule.opentelemetry.spanmetrics";
+  public static final String SPAN_DURATION = "mule.span.duration";
+  public static final String SPAN_CALLS = "mule.span.calls";
+
+  public static final AttributeKey<String> SPAN_NAME = AttributeKey.stringKey("span.name");
+  public static final AttributeKey<String> SPAN_KIND = AttributeKey.stringKey("span.kind");
+  public static final AttributeKey<String> STATUS_CODE = AttributeKey.stringKey("status.code");
+
+  /**
+   * Upper limit of distinct span names to protect metrics backend from
+   * unbounded cardinality. Any new span names beyond this limit are reported
+   * as {@link #OVERFLOW_SPAN_NAME}.
+   */
+  static final int MAX_SPAN_NAMES = 1000;
+  static final String OVERFLOW_SPAN_NAME = "_OTHER";
+
+  private static final int STATUS_COUNT = StatusCode.values().length;
+  private static final double NANOS_PER_MILLI = 1_000_000d;
+
+  private final Map<String, Attributes[]> attributesByName = new ConcurrentHashMap<>();
+  private volatile DoubleHistogram duration;
+  private volatile LongCounter calls;
+  private final ThreadLocal<EndingStatus> endingStatus = ThreadLocal.withInitial(EndingStatus::new);
+
+  /**
+   * Create instruments with the {@link OpenTelemetry} instance. The SDK is
+   * built after this processor is registered, so any spans ending before this
+   * call are ignored.
+   *
+   * @param openTelemetry
+   *            {@link OpenTelemetry}
+   */
+  public void initialize(OpenTelemetry openTelemetry) {
+    Meter meter = openTelemetry.meterBuilder(INSTRUMENTATION_SCOPE_NAME).build();
+    calls = meter.counterBuilder(SPAN_CALLS)
+        .setDescription("Number of ended spans by name, kind and status")
+        .setUnit("{call}")
+        .build();
+    duration = meter.histogramBuilder(SPAN_DURATION)
+        .setDescription("Duration of spans by name, kind and status")
+        .setUnit("ms")
+        .build();
+  }
+
+  /**
+   * Set the status a span is about to end with. Must be called on the thread
+   * that ends the span, right before ending it.
+   *
+   * @param span
+   *            {@link Span} to end
+   * @param statusCode
+   *            {@link StatusCode} of the span, null for unset
+   */
+  public void setEndingStatus(Span span, StatusCode statusCode) {
+    EndingStatus status = endingStatus.get();
+    status.span = span;
+    status.statusCode = statusCode == null ? StatusCode.UNSET : statusCode;
+  }
+
+  /**
+   * Register a view to aggregate span durations with base2 exponential
+   * histogram.
+   *
+   * @param builder
+   *            {@link SdkMeterProviderBuilder}
+   * @return SdkMeterProviderBuilder
+   */
+  public static SdkMeterProviderBuilder registerViews(SdkMeterProviderBuilder builder) {
+    return builder.registerView(InstrumentSelector.builder()
+        .setMeterName(INSTRUMENTATION_SCOPE_NAME)
+        .setType(InstrumentType.HISTOGRAM)
+        .build(),
+        View.builder().setAggregation(Aggregation.base2ExponentialBucketHistogram()).build());
+  }
+
+  @Override
+  public void onStart(Context parentContext, ReadWriteSpan span) {
+    // nothing to do here
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    // Taken for every span, so the thread does not keep ended spans reachable
+    StatusCode endingStatusCode = endingStatus.get().take(span);
+    DoubleHistogram durationHistogram = duration;
+    if (durationHistogram == null)
+      return;
+    SpanKind kind = span.getKind();
+    if (!SpanKind.SERVER.equals(kind) && !SpanKind.CLIENT.equals(kind) && !SpanKind.CONSUMER.equals(kind))
+      return;
+    StatusCode statusCode = endingStatusCode != null ? endingStatusCode
+        : span.toSpanData().getStatus().getStatusCode();
+    Attributes attributes = attributesFor(span.getName(), kind, statusCode);
+    durationHistogram.record(span.getLatencyNanos() / NANOS_PER_MILLI, attributes);
+    calls.add(1, attributes);
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  private Attributes attributesFor(String spanName, SpanKind kind, StatusCode statusCode) {
+    Attributes[] byKindAndStatus = attributesByName.get(spanName);
+    if (byKindAndStatus == null) {
+      if (attributesByName.size() >= MAX_SPAN_NAMES) {
+        spanName = OVERFLOW_SPAN_NAME;
+      }
+      byKindAndStatus = attributesByName.computeIfAbsent(spanName,
+          k -> new Attributes[SpanKind.values().length * STATUS_COUNT]);
+    }
+    int index = kind.ordinal() * STATUS_COUNT + statusCode.ordinal();
+    Attributes attributes = byKindAndStatus[index];
+    if (attributes == null) {
+      attributes = Attributes.of(SPAN_NAME, spanName, SPAN_KIND, kind.name(), STATUS_CODE, statusCode.name());
+      // Benign race, any thread may publish an equivalent instance
+      byKindAndStatus[index] = attributes;
+    }
+    return attributes;
+  }
+
+  private static final class EndingStatus {
+    private Object span;
+    private StatusCode statusCode;
+
+    /**
+     * @return status set for the span, null if it was not set
+     */
+    private StatusCode take(ReadableSpan endedSpan) {
+      if (span != endedSpan)
+        return null;
+      span = null;
+      return statusCode;
+    }
+  }
+}
@@ -0,0 +1,347 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <pre>
+ * Batch span processor with multiple queues (stripes), each drained by its own export worker thread.
+ *
+ * The SDK batch span processor has a single queue and a single worker, which becomes a point of contention and
+ * drops when many threads end spans at a high rate. This processor keeps the same settings -
+ * - max queue size: total for all stripes, each stripe holds maxQueueSize / stripes spans. New spans are dropped
+ *   when the stripe of the ending thread is full.
+ * - max export batch size: per export call, a worker exports as soon as its stripe has this many spans
+ * - schedule delay: max delay between exports of a stripe
+ * - export timeout: max time to wait for an export call, also the deadline of a flush
+ *
+ * Like the SDK batch span processor, a flush (see {@link #forceFlush()} and {@link #shutdown()}) exports the spans
+ * queued when it is requested. Spans ended during the flush are left for the next export, so flushing completes
+ * under steady traffic.
+ *
+ * Spans are assigned to a stripe by ending thread, so each queue mostly has few producers. Per stripe queue size,
+ * exported spans and dropped spans are reported as metrics with the `stripe` attribute, see
+ * {@link #initialize(OpenTelemetry)}.
+ * </pre>
+ */
+public class StripedBatchSpanProcessor implements SpanProcessor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StripedBatchSpanProcessor.class);
+  public static final String INSTRUMENTATION_SCOPE_NAME = "com.avioconsulting.mule.opentelemetry.spanprocessor";
+  public static final String QUEUE_SIZE = "mule.otel.span_processor.queue.size";
+  public static final String SPANS_EXPORTED = "mule.otel.span_processor.spans.exported";
+  public static final String SPANS_DROPPED = "mule.otel.span_processor.spans.dropped";
+  public static final AttributeKey<Long> STRIPE = AttributeKey.longKey("stripe");
+
+  private final SpanExporter exporter;
+  private final Stripe[] stripes;
+  private final int stripeQueueSize;
+  private final AtomicBoolean shutdown = new AtomicBoolean();
+  private volatile int exportBatchSize;
+  private volatile long scheduleDelayNanos;
+
+  public StripedBatchSpanProcessor(SpanExporter exporter, int stripeCount, int maxQueueSize, int maxExportBatchSize,
+      long scheduleDelayNanos, long exportTimeoutNanos) {
+    if (stripeCount < 1)
+      throw new IllegalArgumentException("Stripe count must be at least 1");
+    this.exporter = exporter;
+    this.stripes = new Stripe[stripeCount];
+    this.stripeQueueSize = Math.max(1, maxQueueSize / stripeCount);
+    this.exportBatchSize = Math.min(maxExportBatchSize, stripeQueueSize);
+    this.scheduleDelayNanos = scheduleDelayNanos;
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(i, stripeQueueSize, exportTimeoutNanos);
+    }
+  }
+
+  /**
+   * Change batch settings of all stripes. Export batch size is capped to the
+   * stripe queue size.
+   *
+   * @param maxExportBatchSize
+   *            max spans per export call
+   * @param scheduleDelayNanos
+   *            max delay between exports of a stripe
+   */
+  public void setBatchSettings(int maxExportBatchSize, long scheduleDelayNanos) {
+    this.exportBatchSize = Math.max(1, Math.min(maxExportBatchSize, stripeQueueSize));
+    this.scheduleDelayNanos = scheduleDelayNanos;
+    // Workers re-evaluate their schedule with new settings
+    for (Stripe stripe : stripes)
+      LockSupport.unpark(stripe.worker);
+  }
+
+  int getExportBatchSize() {
+    return exportBatchSize;
+  }
+
+  long getScheduleDelayNanos() {
+    return scheduleDelayNanos;
+  }
+
+  /**
+   * Register per-stripe queue size, exported and dropped span metrics.
+   *
+   * @param openTelemetry
+   *            {@link OpenTelemetry}
+   */
+  public void initialize(OpenTelemetry openTelemetry) {
+    Meter meter = openTelemetry.meterBuilder(INSTRUMENTATION_SCOPE_NAME).build();
+    meter.gaugeBuilder(QUEUE_SIZE).ofLongs()
+        .setDescription("Spans waiting in the span processor queue")
+        .setUnit("{span}")
+        .buildWithCallback(measurement -> {
+          for (Stripe stripe : stripes)
+            measurement.record(stripe.queueSize.get(), stripe.attributes);
+        });
+    meter.counterBuilder(SPANS_EXPORTED)
+        .setDescription("Spans exported by the span processor")
+        .setUnit("{span}")
+        .buildWithCallback(measurement -> {
+          for (Stripe stripe : stripes)
+            measurement.record(stripe.exported.get(), stripe.attributes);
+        });
+    meter.counterBuilder(SPANS_DROPPED)
+        .setDescription("Spans dropped by the span processor because the queue was full")
+        .setUnit("{span}")
+        .buildWithCallback(measurement -> {
+          for (Stripe stripe : stripes)
+            measurement.record(stripe.dropped.get(), stripe.attributes);
+        });
+  }
+
+  @Override
+  public void onStart(Context parentContext, ReadWriteSpan span) {
+    // nothing to do here
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    if (!span.getSpanContext().isSampled() || shutdown.get())
+      return;
+    stripes[(int) (Thread.currentThread().getId() % stripes.length)].offer(span);
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  @Override
+  public CompletableResultCode forceFlush() {
+    List<CompletableResultCode> results = new ArrayList<>(stripes.length);
+    for (Stripe stripe : stripes)
+      results.add(stripe.flush());
+    return CompletableResultCode.ofAll(results);
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    if (!shutdown.compareAndSet(false, true))
+      return CompletableResultCode.ofSuccess();
+    CompletableResultCode result = new CompletableResultCode();
+    CompletableResultCode flushed = forceFlush();
+    flushed.whenComplete(() -> {
+      for (Stripe stripe : stripes)
+        stripe.stop();
+      exporter.shutdown().whenComplete(() -> {
+        if (flushed.isSuccess())
+          result.succeed();
+        else
+          result.fail();
+      });
+    });
+    return result;
+  }
+
+  int getStripeCount() {
+    return stripes.length;
+  }
+
+  long getQueueSize() {
+    long size = 0;
+    for (Stripe stripe : stripes)
+      size += stripe.queueSize.get();
+    return size;
+  }
+
+  long getDroppedSpans() {
+    long dropped = 0;
+    for (Stripe stripe : stripes)
+      dropped += stripe.dropped.get();
+    return dropped;
+  }
+
+  @Override
+  public String toString() {
+    return "StripedBatchSpanProcessor{exporter=" + exporter + ", stripes=" + stripes.length + "}";
+  }
+
+  private final class Stripe implements Runnable {
+    private final Queue<ReadableSpan> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicReference<CompletableResultCode> flushRequest = new AtomicReference<>();
+    private final Attributes attributes;
+    private final int maxQueueSize;
+    private final long exportTimeoutNanos;
+    private final List<SpanData> batch;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private Stripe(int index, int maxQueueSize, long exportTimeoutNanos) {
+      this.attributes = Attributes.of(STRIPE, (long) index);
+      this.maxQueueSize = maxQueueSize;
+      this.exportTimeoutNanos = exportTimeoutNanos;
+      this.batch = new ArrayList<>(exportBatchSize);
+      this.worker = new Thread(this, "otel-striped-span-processor-" + index);
+      worker.setDaemon(true);
+      worker.start();
+    }
+
+    private void offer(ReadableSpan span) {
+      int size = queueSize.incrementAndGet();
+      if (size > maxQueueSize) {
+        queueSize.decrementAndGet();
+        dropped.incrementAndGet();
+        return;
+      }
+      queue.offer(span);
+      if (size == exportBatchSize) {
+        LockSupport.unpark(worker);
+      }
+    }
+
+    private CompletableResultCode flush() {
+      if (!running)
+        return CompletableResultCode.ofSuccess();
+      CompletableResultCode result = new CompletableResultCode();
+      if (!flushRequest.compareAndSet(null, result)) {
+        // Flush already in progress, it will cover spans queued so far
+        return flushRequest.get() == null ? CompletableResultCode.ofSuccess() : flushRequest.get();
+      }
+      LockSupport.unpark(worker);
+      return result;
+    }
+
+    private void stop() {
+      running = false;
+      LockSupport.unpark(worker);
+    }
+
+    @Override
+    public void run() {
+      long lastExport = System.nanoTime();
+      while (running) {
+        CompletableResultCode flush = flushRequest.get();
+        if (flush != null) {
+          boolean success = exportPending();
+          flushRequest.set(null);
+          if (success)
+            flush.succeed();
+          else
+            flush.fail();
+          lastExport = System.nanoTime();
+          continue;
+        }
+        // Settings are read on every iteration, so changes apply to the current wait
+        long nextExport = lastExport + scheduleDelayNanos;
+        if (queueSize.get() >= exportBatchSize || System.nanoTime() - nextExport >= 0) {
+          exportBatch();
+          lastExport = System.nanoTime();
+          continue;
+        }
+        LockSupport.parkNanos(this, nextExport - System.nanoTime());
+      }
+    }
+
+    /**
+     * Export spans queued when the flush was requested, within the export
+     * timeout.
+     *
+     * @return true if all of them were exported
+     */
+    private boolean exportPending() {
+      int pending = queueSize.get();
+      long deadline = System.nanoTime() + exportTimeoutNanos;
+      boolean success = true;
+      while (pending > 0) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          LOGGER.debug("Flush timed out with {} spans left to export", pending);
+          return false;
+        }
+        int polled = poll(Math.min(exportBatchSize, pending));
+        if (polled == 0) {
+          // Size is reserved before a span is queued, remaining spans are still being offered
+          break;
+        }
+        pending -= polled;
+        success &= export(remaining);
+      }
+      return success;
+    }
+
+    private boolean exportBatch() {
+      poll(exportBatchSize);
+      return export(exportTimeoutNanos);
+    }
+
+    private int poll(int maxSpans) {
+      ReadableSpan span;
+      while (batch.size() < maxSpans && (span = queue.poll()) != null) {
+        queueSize.decrementAndGet();
+        batch.add(span.toSpanData());
+      }
+      return batch.size();
+    }
+
+    private boolean export(long timeoutNanos) {
+      if (batch.isEmpty())
+        return true;
+      try {
+        CompletableResultCode result = exporter.export(new ArrayList<>(batch));
+        result.join(timeoutNanos, TimeUnit.NANOSECONDS);
+        if (result.isSuccess()) {
+          exported.addAndGet(batch.size());
+          return true;
+        }
+        LOGGER.debug("Exporter failed to export {} spans", batch.size());
+        return false;
+      } catch (RuntimeException e) {
+        LOGGER.warn("Exporter threw an exception exporting {} spans", batch.size(), e);
+        return false;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.adaptive;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * OTLP span exporter that sends each request with or without gzip
+ * compression, as decided by {@link AdaptiveExportController}, and reports
+ * the outcome of every export back to it.
+ */
+public class AdaptiveCompressionSpanExporter implements SpanExporter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveCompressionSpanExporter.class);
+  // Approximate protobuf encoding of ids, timestamps, kind, status and field
+  // tags of a span, and of the fields around an attribute, event and link
+  private static final int SPAN_BYTES = 72;
+  private static final int ATTRIBUTE_BYTES = 6;
+  private static final int EVENT_BYTES = 14;
+  private static final int LINK_BYTES = 40;
+  private static final int VALUE_BYTES = 8;
+
+  private final SpanExporter plain;
+  private final SpanExporter compressed;
+  private final AdaptiveExportController controller;
+  private final Function<String, SpanExporter> endpointCopier;
+
+  /**
+   * @param exporter
+   *            {@link SpanExporter} created by the SDK
+   * @param controller
+   *            {@link AdaptiveExportController}
+   * @return {@link AdaptiveCompressionSpanExporter} for OTLP exporters,
+   *         otherwise the same exporter
+   */
+  public static SpanExporter customize(SpanExporter exporter, AdaptiveExportController controller) {
+    AdaptiveCompressionSpanExporter adaptive;
+    if (exporter instanceof OtlpHttpSpanExporter) {
+      OtlpHttpSpanExporter otlp = (OtlpHttpSpanExporter) exporter;
+      adaptive = new AdaptiveCompressionSpanExporter(otlp.toBuilder().setCompression("none").build(),
+          otlp.toBuilder().setCompression("gzip").build(), controller,
+          endpoint -> customize(otlp.toBuilder().setEndpoint(endpoint).build(), controller));
+    } else if (exporter instanceof OtlpGrpcSpanExporter) {
+      OtlpGrpcSpanExporter otlp = (OtlpGrpcSpanExporter) exporter;
+      adaptive = new AdaptiveCompressionSpanExporter(otlp.toBuilder().setCompression("none").build(),
+          otlp.toBuilder().setCompression("gzip").build(), controller,
+          endpoint -> customize(otlp.toBuilder().setEndpoint(endpoint).build(), controller));
+    } else {
+      LOGGER.warn("Adaptive compression is only supported for OTLP exporters, not {}", exporter);
+      return exporter;
+    }
+    // Copies keep all other settings of the configured exporter
+    exporter.shutdown();
+    return adaptive;
+  }
+
+  AdaptiveCompressionSpanExporter(SpanExporter plain, SpanExporter compressed, AdaptiveExportController controller,
+      Function<String, SpanExporter> endpointCopier) {
+    this.plain = plain;
+    this.compressed = compressed;
+    this.controller = controller;
+    this.endpointCopier = endpointCopier;
+  }
+
+  /**
+   * @param endpoint
+   *            OTLP endpoint
+   * @return copy of this exporter sending to the endpoint, sharing the same
+   *         controller
+   */
+  public SpanExporter withEndpoint(String endpoint) {
+    return endpointCopier.apply(endpoint);
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    boolean compress = controller.shouldCompress();
+    long bytes = estimateSize(spans);
+    long start = System.nanoTime();
+    CompletableResultCode result = (compress ? compressed : plain).export(spans);
+    result.whenComplete(() -> {
+      // Failed exports do not tell how long a successful one takes
+      if (result.isSuccess())
+        controller.recordExport(spans.size(), bytes, System.nanoTime() - start, compress);
+    });
+    return result;
+  }
+
+  /**
+   * Estimate the OTLP request size of spans from their names, attribute keys
+   * and string values. The controller only compares payload sizes and
+   * latency per byte, which does not need the batch to be serialized an
+   * extra time.
+   *
+   * @param spans
+   *            spans to export
+   * @return estimated request size before compression, in bytes
+   */
+  static long estimateSize(Collection<SpanData> spans) {
+    long size = 0;
+    for (SpanData span : spans) {
+      size += SPAN_BYTES + span.getName().length() + estimateSize(span.getAttributes());
+      for (EventData event : span.getEvents())
+        size += EVENT_BYTES + event.getName().length() + estimateSize(event.getAttributes());
+      size += (long) span.getLinks().size() * LINK_BYTES;
+    }
+    return size;
+  }
+
+  private static long estimateSize(Attributes attributes) {
+    long[] size = new long[1];
+    attributes.forEach((key, value) -> {
+      size[0] += ATTRIBUTE_BYTES + key.getKey().length();
+      if (value instanceof String)
+        size[0] += ((String) value).length();
+      else if (value instanceof List)
+        size[0] += (long) ((List<?>) value).size() * VALUE_BYTES;
+      else
+        size[0] += VALUE_BYTES;
+    });
+    return size[0];
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return CompletableResultCode.ofAll(Arrays.asList(plain.flush(), compressed.flush()));
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return CompletableResultCode.ofAll(Arrays.asList(plain.shutdown(), compressed.shutdown()));
+  }
+
+  @Override
+  public String toString() {
+    return "AdaptiveCompressionSpanExporter{" + plain + "}";
+  }
+}
@@ -0,0 +1,259 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.adaptive;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * Adjusts span export batch settings and OTLP request compression from moving averages of the exports.
+ *
+ * Every export reports its span count, payload size, latency and whether it was compressed. Once per adjust interval -
+ * - When spans arrive faster than the batch fills within the schedule delay, batch size and delay are doubled, up to
+ *   the max batch size and the configured delay. Fewer, larger requests lower the per-request overhead.
+ * - When the batch fills to less than a quarter within the delay, batch size and delay are halved, down to the
+ *   configured batch size and the min delay. Spans reach the backend sooner when traffic is low.
+ * - When the average export latency is above {@link #LATENCY_TARGET_NANOS}, batch size is halved.
+ *
+ * Compression is off while the average payload is below {@link #MIN_COMPRESSION_BYTES}. Above that, the mode with
+ * the lower average latency per payload byte is used. This latency includes compression time, so it weighs CPU cost
+ * against network time. Every {@link #EXPLORE_INTERVAL}th export uses the other mode to keep its average current.
+ * </pre>
+ */
+public class AdaptiveExportController {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveExportController.class);
+
+  public static final String BATCH_SIZE = "mule.otel.exporter.adaptive.batch.size";
+  public static final String SCHEDULE_DELAY = "mule.otel.exporter.adaptive.schedule.delay";
+  public static final String COMPRESSION = "mule.otel.exporter.adaptive.compression";
+  public static final String PAYLOAD_SIZE = "mule.otel.exporter.adaptive.payload.size";
+  public static final String EXPORT_LATENCY = "mule.otel.exporter.adaptive.export.latency";
+  public static final String SPAN_RATE = "mule.otel.exporter.adaptive.span.rate";
+
+  static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  static final long LATENCY_TARGET_NANOS = TimeUnit.SECONDS.toNanos(1);
+  static final long MIN_COMPRESSION_BYTES = 16 * 1024;
+  static final int EXPLORE_INTERVAL = 20;
+  static final long MIN_SCHEDULE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final double ALPHA = 0.2;
+
+  private final int minBatchSize;
+  private final int maxBatchSize;
+  private final long minDelayNanos;
+  private final long maxDelayNanos;
+  private volatile BatchSettingsListener listener = (batchSize, delayNanos) -> {
+  };
+
+  private volatile int batchSize;
+  private volatile long delayNanos;
+  private volatile boolean compress;
+  private final MovingAverage payloadBytes = new MovingAverage();
+  private final MovingAverage latencyNanos = new MovingAverage();
+  private final MovingAverage spanRate = new MovingAverage();
+  private final MovingAverage plainNanosPerByte = new MovingAverage();
+  private final MovingAverage compressedNanosPerByte = new MovingAverage();
+  private long exportCount;
+  private long windowStartNanos;
+  private long windowSpans;
+
+  /**
+   * @param batchSize
+   *            configured batch size, used as the min batch size
+   * @param maxBatchSize
+   *            max batch size
+   * @param delayNanos
+   *            configured schedule delay, used as the max delay
+   * @param compress
+   *            initial compression
+   */
+  public AdaptiveExportController(int batchSize, int maxBatchSize, long delayNanos, boolean compress) {
+    this.minBatchSize = batchSize;
+    this.maxBatchSize = Math.max(batchSize, maxBatchSize);
+    this.maxDelayNanos = delayNanos;
+    this.minDelayNanos = Math.min(delayNanos, MIN_SCHEDULE_DELAY_NANOS);
+    this.batchSize = batchSize;
+    this.delayNanos = delayNanos;
+    this.compress = compress;
+    this.windowStartNanos = System.nanoTime();
+  }
+
+  /**
+   * @param listener
+   *            notified with new batch size and schedule delay nanos when they
+   *            change
+   */
+  public void setListener(BatchSettingsListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Report current settings and moving averages as metrics.
+   *
+   * @param openTelemetry
+   *            {@link OpenTelemetry}
+   * @param instrumentationScopeName
+   *            scope of the metrics
+   */
+  public void initialize(OpenTelemetry openTelemetry, String instrumentationScopeName) {
+    Meter meter = openTelemetry.meterBuilder(instrumentationScopeName).build();
+    meter.gaugeBuilder(BATCH_SIZE).ofLongs()
+        .setDescription("Current max spans per export")
+        .setUnit("{span}")
+        .buildWithCallback(measurement -> measurement.record(batchSize));
+    meter.gaugeBuilder(SCHEDULE_DELAY)
+        .setDescription("Current max delay between exports")
+        .setUnit("ms")
+        .buildWithCallback(measurement -> measurement.record(delayNanos / 1_000_000.0));
+    meter.gaugeBuilder(COMPRESSION).ofLongs()
+        .setDescription("1 when export requests are compressed, 0 otherwise")
+        .setUnit("1")
+        .buildWithCallback(measurement -> measurement.record(compress ? 1 : 0));
+    meter.gaugeBuilder(PAYLOAD_SIZE)
+        .setDescription("Moving average of estimated export request size before compression")
+        .setUnit("By")
+        .buildWithCallback(measurement -> measurement.record(getAveragePayloadBytes()));
+    meter.gaugeBuilder(EXPORT_LATENCY)
+        .setDescription("Moving average of export latency")
+        .setUnit("ms")
+        .buildWithCallback(measurement -> measurement.record(getAverageLatencyNanos() / 1_000_000.0));
+    meter.gaugeBuilder(SPAN_RATE)
+        .setDescription("Moving average of exported spans per second")
+        .setUnit("{span}/s")
+        .buildWithCallback(measurement -> measurement.record(getSpanRate()));
+  }
+
+  /**
+   * @return true when the next export should be compressed
+   */
+  public synchronized boolean shouldCompress() {
+    exportCount++;
+    if (payloadBytes.value() >= MIN_COMPRESSION_BYTES && exportCount % EXPLORE_INTERVAL == 0)
+      return !compress;
+    return compress;
+  }
+
+  /**
+   * Record a finished export and adjust settings when the adjust interval has
+   * passed.
+   *
+   * @param spans
+   *            spans in the export
+   * @param bytes
+   *            estimated request size before compression
+   * @param latency
+   *            export latency in nanos
+   * @param compressed
+   *            whether the request was compressed
+   */
+  public void recordExport(int spans, long bytes, long latency, boolean compressed) {
+    recordExport(spans, bytes, latency, compressed, System.nanoTime());
+  }
+
+  synchronized void recordExport(int spans, long bytes, long latency, boolean compressed, long nowNanos) {
+    payloadBytes.update(bytes);
+    latencyNanos.update(latency);
+    (compressed ? compressedNanosPerByte : plainNanosPerByte).update((double) latency / Math.max(1, bytes));
+    windowSpans += spans;
+    long elapsed = nowNanos - windowStartNanos;
+    if (elapsed >= ADJUST_INTERVAL_NANOS) {
+      spanRate.update(windowSpans * 1e9 / elapsed);
+      windowSpans = 0;
+      windowStartNanos = nowNanos;
+      adjust();
+    }
+  }
+
+  private void adjust() {
+    int newBatchSize = batchSize;
+    long newDelayNanos = delayNanos;
+    double spansPerDelay = spanRate.value() * delayNanos / 1e9;
+    if (latencyNanos.value() > LATENCY_TARGET_NANOS) {
+      newBatchSize = Math.max(minBatchSize, batchSize / 2);
+    } else if (spansPerDelay >= batchSize) {
+      newBatchSize = Math.min(maxBatchSize, batchSize * 2);
+      newDelayNanos = Math.min(maxDelayNanos, delayNanos * 2);
+    } else if (spansPerDelay < batchSize / 4.0) {
+      newBatchSize = Math.max(minBatchSize, batchSize / 2);
+      newDelayNanos = Math.max(minDelayNanos, delayNanos / 2);
+    }
+    boolean newCompress;
+    if (payloadBytes.value() < MIN_COMPRESSION_BYTES)
+      newCompress = false;
+    else if (compressedNanosPerByte.isEmpty() || plainNanosPerByte.isEmpty())
+      // Try the mode without measurements
+      newCompress = compressedNanosPerByte.isEmpty();
+    else
+      newCompress = compressedNanosPerByte.value() < plainNanosPerByte.value();
+    if (newCompress != compress) {
+      LOGGER.debug("Switching export compression {}", newCompress ? "on" : "off");
+      compress = newCompress;
+    }
+    if (newBatchSize != batchSize || newDelayNanos != delayNanos) {
+      LOGGER.debug("Adjusting export batch size to {} and schedule delay to {} ms", newBatchSize,
+          TimeUnit.NANOSECONDS.toMillis(newDelayNanos));
+      batchSize = newBatchSize;
+      delayNanos = newDelayNanos;
+      listener.onChange(newBatchSize, newDelayNanos);
+    }
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public long getScheduleDelayNanos() {
+    return delayNanos;
+  }
+
+  public boolean isCompress() {
+    return compress;
+  }
+
+  public synchronized double getAveragePayloadBytes() {
+    return payloadBytes.value();
+  }
+
+  public synchronized double getAverageLatencyNanos() {
+    return latencyNanos.value();
+  }
+
+  public synchronized double getSpanRate() {
+    return spanRate.value();
+  }
+
+  /**
+   * Receives batch settings changes.
+   */
+  public interface BatchSettingsListener {
+    void onChange(int batchSize, long scheduleDelayNanos);
+  }
+
+  /**
+   * Exponentially weighted moving average, guarded by the controller.
+   */
+  private static final class MovingAverage {
+    private double value;
+    private boolean empty = true;
+
+    private void update(double sample) {
+      if (empty) {
+        value = sample;
+        empty = false;
+      } else {
+        value += ALPHA * (sample - value);
+      }
+    }
+
+    private double value() {
+      return value;
+    }
+
+    private boolean isEmpty() {
+      return empty;
+    }
+  }
+}
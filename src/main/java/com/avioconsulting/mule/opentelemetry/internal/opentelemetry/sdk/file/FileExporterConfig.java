@@ -0,0 +1,86 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.file;
+
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigurationException;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import static com.avioconsulting.mule.opentelemetry.api.config.exporter.FileExporter.*;
+
+/**
+ * File exporter settings resolved from SDK {@link ConfigProperties}.
+ */
+final class FileExporterConfig {
+
+  enum Format {
+    JSON, PROTOBUF
+  }
+
+  private final Path directory;
+  private final String filePrefix;
+  private final Format format;
+  private final boolean gzip;
+  private final long maxFileSizeBytes;
+  private final long rotationIntervalMillis;
+  private final int queueSize;
+
+  FileExporterConfig(Path directory, String filePrefix, Format format, boolean gzip, long maxFileSizeBytes,
+      long rotationIntervalMillis, int queueSize) {
+    this.directory = directory;
+    this.filePrefix = filePrefix;
+    this.format = format;
+    this.gzip = gzip;
+    this.maxFileSizeBytes = maxFileSizeBytes;
+    this.rotationIntervalMillis = rotationIntervalMillis;
+    this.queueSize = queueSize;
+  }
+
+  static FileExporterConfig from(ConfigProperties config) {
+    String directory = config.getString(MULE_OTEL_EXPORTER_FILE_DIRECTORY, System.getProperty("java.io.tmpdir"));
+    String serviceName = config.getString("otel.service.name", "mule-app");
+    String format = config.getString(MULE_OTEL_EXPORTER_FILE_FORMAT, "json").trim().toLowerCase();
+    if (!format.equals("json") && !format.equals("protobuf")) {
+      throw new ConfigurationException("Unsupported " + MULE_OTEL_EXPORTER_FILE_FORMAT + " '" + format + "', use json or protobuf");
+    }
+    String compression = config.getString(MULE_OTEL_EXPORTER_FILE_COMPRESSION, "none").trim().toLowerCase();
+    if (!compression.equals("none") && !compression.equals("gzip")) {
+      throw new ConfigurationException(
+          "Unsupported " + MULE_OTEL_EXPORTER_FILE_COMPRESSION + " '" + compression + "', use none or gzip");
+    }
+    return new FileExporterConfig(Paths.get(directory), serviceName.replaceAll("[^A-Za-z0-9._-]", "_"),
+        format.equals("json") ? Format.JSON : Format.PROTOBUF, compression.equals("gzip"),
+        config.getLong(MULE_OTEL_EXPORTER_FILE_MAX_SIZE_MB, 100) * 1024 * 1024,
+        config.getDuration(MULE_OTEL_EXPORTER_FILE_ROTATION_INTERVAL, Duration.ofHours(1)).toMillis(),
+        config.getInt(MULE_OTEL_EXPORTER_FILE_QUEUE_SIZE, 2048));
+  }
+
+  Path getDirectory() {
+    return directory;
+  }
+
+  String getFilePrefix() {
+    return filePrefix;
+  }
+
+  Format getFormat() {
+    return format;
+  }
+
+  boolean isGzip() {
+    return gzip;
+  }
+
+  long getMaxFileSizeBytes() {
+    return maxFileSizeBytes;
+  }
+
+  long getRotationIntervalMillis() {
+    return rotationIntervalMillis;
+  }
+
+  int getQueueSize() {
+    return queueSize;
+  }
+}
@@ -0,0 +1,54 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.file;
+
+import com.avioconsulting.mule.opentelemetry.api.config.exporter.FileExporter;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.logs.ConfigurableLogRecordExporterProvider;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+
+import java.util.Collection;
+
+/**
+ * {@link LogRecordExporter} writing OTLP logs requests to rotating files. See
+ * {@link RotatingFileWriter}.
+ */
+public class FileLogRecordExporter implements LogRecordExporter {
+
+  private final RotatingFileWriter writer;
+
+  FileLogRecordExporter(FileExporterConfig config) {
+    this.writer = new RotatingFileWriter(config, "logs");
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<LogRecordData> logs) {
+    return writer.write(OtlpRequest.ofLogs(logs));
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return writer.flush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return writer.shutdown();
+  }
+
+  /**
+   * Provider for `otel.logs.exporter=mule-file`.
+   */
+  public static class Provider implements ConfigurableLogRecordExporterProvider {
+
+    @Override
+    public LogRecordExporter createExporter(ConfigProperties config) {
+      return new FileLogRecordExporter(FileExporterConfig.from(config));
+    }
+
+    @Override
+    public String getName() {
+      return FileExporter.MULE_FILE;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.file;
+
+import com.avioconsulting.mule.opentelemetry.api.config.exporter.FileExporter;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.metrics.ConfigurableMetricExporterProvider;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+
+import java.util.Collection;
+
+/**
+ * {@link MetricExporter} writing OTLP metrics requests to rotating files. See
+ * {@link RotatingFileWriter}.
+ */
+public class FileMetricExporter implements MetricExporter {
+
+  private final RotatingFileWriter writer;
+
+  FileMetricExporter(FileExporterConfig config) {
+    this.writer = new RotatingFileWriter(config, "metrics");
+  }
+
+  @Override
+  public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+    return AggregationTemporality.CUMULATIVE;
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<MetricData> metrics) {
+    return writer.write(OtlpRequest.ofMetrics(metrics));
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return writer.flush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return writer.shutdown();
+  }
+
+  /**
+   * Provider for `otel.metrics.exporter=mule-file`.
+   */
+  public static class Provider implements ConfigurableMetricExporterProvider {
+
+    @Override
+    public MetricExporter createExporter(ConfigProperties config) {
+      return new FileMetricExporter(FileExporterConfig.from(config));
+    }
+
+    @Override
+    public String getName() {
+      return FileExporter.MULE_FILE;
+    }
+  }
+}
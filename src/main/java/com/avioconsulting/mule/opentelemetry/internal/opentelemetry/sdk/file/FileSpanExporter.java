@@ -0,0 +1,58 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.file;
+
+import com.avioconsulting.mule.opentelemetry.api.config.exporter.FileExporter;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.traces.ConfigurableSpanExporterProvider;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.Collection;
+
+/**
+ * {@link SpanExporter} writing OTLP trace requests to rotating files. See
+ * {@link RotatingFileWriter}.
+ */
+public class FileSpanExporter implements SpanExporter {
+
+  private final RotatingFileWriter writer;
+
+  FileSpanExporter(FileExporterConfig config) {
+    this.writer = new RotatingFileWriter(config, "traces");
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    return writer.write(OtlpRequest.ofSpans(spans));
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return writer.flush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return writer.shutdown();
+  }
+
+  RotatingFileWriter getWriter() {
+    return writer;
+  }
+
+  /**
+   * Provider for `otel.traces.exporter=mule-file`.
+   */
+  public static class Provider implements ConfigurableSpanExporterProvider {
+
+    @Override
+    public SpanExporter createExporter(ConfigProperties config) {
+      return new FileSpanExporter(FileExporterConfig.from(config));
+    }
+
+    @Override
+    public String getName() {
+      return FileExporter.MULE_FILE;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.file;
+
+import io.opentelemetry.exporter.internal.marshal.Marshaler;
+import io.opentelemetry.exporter.internal.otlp.logs.LogsRequestMarshaler;
+import io.opentelemetry.exporter.internal.otlp.metrics.MetricsRequestMarshaler;
+import io.opentelemetry.exporter.internal.otlp.traces.TraceRequestMarshaler;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+/**
+ * <pre>
+ * OTLP export request of one signal, serialized to JSON or protobuf.
+ *
+ * OpenTelemetry Java has no public OTLP encoder, so this wraps the request marshalers of
+ * `opentelemetry-exporter-otlp-common`. They live in `io.opentelemetry.exporter.internal` and may change in any
+ * release. This is the only class using them, and the dependency is pinned to `opentelemetry.version` in the pom.
+ * </pre>
+ */
+final class OtlpRequest {
+
+  private final Marshaler marshaler;
+
+  private OtlpRequest(Marshaler marshaler) {
+    this.marshaler = marshaler;
+  }
+
+  static OtlpRequest ofSpans(Collection<SpanData> spans) {
+    return new OtlpRequest(TraceRequestMarshaler.create(spans));
+  }
+
+  static OtlpRequest ofMetrics(Collection<MetricData> metrics) {
+    return new OtlpRequest(MetricsRequestMarshaler.create(metrics));
+  }
+
+  static OtlpRequest ofLogs(Collection<LogRecordData> logs) {
+    return new OtlpRequest(LogsRequestMarshaler.create(logs));
+  }
+
+  void writeJsonTo(OutputStream out) throws IOException {
+    marshaler.writeJsonTo(out);
+  }
+
+  int getBinarySerializedSize() {
+    return marshaler.getBinarySerializedSize();
+  }
+
+  void writeBinaryTo(OutputStream out) throws IOException {
+    marshaler.writeBinaryTo(out);
+  }
+}
@@ -0,0 +1,281 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.file;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <pre>
+ * Writes {@link OtlpRequest}s of one signal to rotating files.
+ *
+ * - Exporters only enqueue requests in a bounded queue, a single writer thread serializes and writes them.
+ *   When the queue is full, the batch is dropped and counted.
+ * - Files are written through a buffered {@link FileChannel} stream, optionally gzip compressed. Buffers are
+ *   written to the file on flush and when the file is closed. A gzip file is complete only once it is closed,
+ *   flushes do not end a deflate block so that batches are compressed together.
+ * - A new file is started when the current file reaches the max size or is open longer than the rotation interval.
+ * - JSON format writes one OTLP JSON request per line. Protobuf format writes varint length-delimited OTLP requests,
+ *   the same as protobuf `writeDelimitedTo`.
+ * </pre>
+ */
+class RotatingFileWriter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RotatingFileWriter.class);
+  private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+  private static final int BUFFER_SIZE = 256 * 1024;
+  private static final long POLL_TIMEOUT_MILLIS = 1000;
+
+  private final FileExporterConfig config;
+  private final String signal;
+  private final BlockingQueue<Entry> queue;
+  private final Thread writerThread;
+  private final AtomicLong droppedBatches = new AtomicLong();
+  private final CompletableResultCode closeResult = new CompletableResultCode();
+  private volatile boolean running = true;
+
+  private CountingOutputStream fileStream;
+  private OutputStream out;
+  private Path currentFile;
+  private long fileOpenedAt;
+  private int fileSequence;
+
+  RotatingFileWriter(FileExporterConfig config, String signal) {
+    this.config = config;
+    this.signal = signal;
+    this.queue = new ArrayBlockingQueue<>(config.getQueueSize());
+    this.writerThread = new Thread(this::run, "otel-file-exporter-" + signal);
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Queue request for writing.
+   *
+   * @param request
+   *            {@link OtlpRequest} to write
+   * @return success when queued, failure when writer is full or stopped
+   */
+  CompletableResultCode write(OtlpRequest request) {
+    if (running && queue.offer(new Entry(request, null))) {
+      return CompletableResultCode.ofSuccess();
+    }
+    long dropped = droppedBatches.incrementAndGet();
+    if (dropped == 1 || dropped % 1000 == 0) {
+      LOGGER.warn("File exporter queue for {} is full, {} batches dropped so far", signal, dropped);
+    }
+    return CompletableResultCode.ofFailure();
+  }
+
+  /**
+   * @return result completed after everything queued so far is written to the
+   *         file
+   */
+  CompletableResultCode flush() {
+    CompletableResultCode result = new CompletableResultCode();
+    try {
+      if (!running || !queue.offer(new Entry(null, result), POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        result.fail();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.fail();
+    }
+    return result;
+  }
+
+  /**
+   * Stop accepting new batches. Writer thread stops after writing already queued
+   * batches.
+   *
+   * @return result completed when the current file is closed
+   */
+  CompletableResultCode shutdown() {
+    running = false;
+    return closeResult;
+  }
+
+  long getDroppedBatches() {
+    return droppedBatches.get();
+  }
+
+  Path getCurrentFile() {
+    return currentFile;
+  }
+
+  private void run() {
+    try {
+      while (running || !queue.isEmpty()) {
+        Entry entry;
+        try {
+          entry = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          break;
+        }
+        try {
+          rotateIfNeeded();
+          if (entry == null) {
+            continue;
+          }
+          if (entry.request != null) {
+            writeEntry(entry.request);
+          } else {
+            if (out != null)
+              ((NonClosingOutputStream) out).flushTarget();
+            entry.flushResult.succeed();
+          }
+        } catch (IOException | RuntimeException e) {
+          LOGGER.warn("Failed to write {} to {}", signal, currentFile, e);
+          if (entry != null && entry.flushResult != null)
+            entry.flushResult.fail();
+        }
+      }
+    } finally {
+      closeFile();
+      Entry entry;
+      while ((entry = queue.poll()) != null) {
+        if (entry.flushResult != null)
+          entry.flushResult.fail();
+      }
+      closeResult.succeed();
+    }
+  }
+
+  private void writeEntry(OtlpRequest request) throws IOException {
+    if (out == null)
+      openFile();
+    if (config.getFormat() == FileExporterConfig.Format.JSON) {
+      request.writeJsonTo(out);
+      out.write('\n');
+    } else {
+      writeVarint(out, request.getBinarySerializedSize());
+      request.writeBinaryTo(out);
+    }
+  }
+
+  private void rotateIfNeeded() {
+    if (out == null)
+      return;
+    if (fileStream.getCount() >= config.getMaxFileSizeBytes()
+        || System.currentTimeMillis() - fileOpenedAt >= config.getRotationIntervalMillis()) {
+      closeFile();
+    }
+  }
+
+  private void openFile() throws IOException {
+    Files.createDirectories(config.getDirectory());
+    String extension = config.getFormat() == FileExporterConfig.Format.JSON ? ".jsonl" : ".binpb";
+    if (config.isGzip())
+      extension = extension + ".gz";
+    currentFile = config.getDirectory().resolve(config.getFilePrefix() + "-" + signal + "-"
+        + LocalDateTime.now().format(FILE_TIMESTAMP) + "-" + (fileSequence++) + extension);
+    FileChannel channel = FileChannel.open(currentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    fileStream = new CountingOutputStream(Channels.newOutputStream(channel));
+    OutputStream stream = new BufferedOutputStream(fileStream, BUFFER_SIZE);
+    if (config.isGzip()) {
+      stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+    }
+    // Requests may flush or close the stream they write to
+    out = new NonClosingOutputStream(stream);
+    fileOpenedAt = System.currentTimeMillis();
+    LOGGER.debug("Writing {} to {}", signal, currentFile);
+  }
+
+  private void closeFile() {
+    if (out == null)
+      return;
+    try {
+      ((NonClosingOutputStream) out).closeTarget();
+    } catch (IOException e) {
+      LOGGER.warn("Failed to close {}", currentFile, e);
+    }
+    out = null;
+    fileStream = null;
+  }
+
+  private static void writeVarint(OutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static final class Entry {
+    private final OtlpRequest request;
+    private final CompletableResultCode flushResult;
+
+    private Entry(OtlpRequest request, CompletableResultCode flushResult) {
+      this.request = request;
+      this.flushResult = flushResult;
+    }
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    private long getCount() {
+      return count;
+    }
+  }
+
+  private static final class NonClosingOutputStream extends FilterOutputStream {
+
+    private NonClosingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void flushTarget() throws IOException {
+      out.flush();
+    }
+
+    private void closeTarget() throws IOException {
+      out.close();
+    }
+  }
+}
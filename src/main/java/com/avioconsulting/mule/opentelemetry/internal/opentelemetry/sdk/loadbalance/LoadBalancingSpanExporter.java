@@ -0,0 +1,224 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.loadbalance;
+
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.adaptive.AdaptiveCompressionSpanExporter;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigurationException;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * <pre>
+ * {@link SpanExporter} that distributes spans over several OTLP collector endpoints by trace id.
+ *
+ * - Each span is routed to the owner of its trace id on a consistent hash ring ({@link TraceIdHashRing}), so all
+ *   spans of a trace reach the same collector instance, as needed for tail sampling.
+ * - A batch is split into one export call per endpoint, exported in parallel.
+ * - When an endpoint fails an export, it is marked unhealthy for `retryIntervalMillis` and its spans fail over to the
+ *   next healthy endpoint on the ring. Traces of healthy endpoints do not move.
+ * - Once the retry interval passes, the endpoint receives its traces again. A successful export marks it healthy.
+ * - The export fails only when no endpoint could take the spans.
+ * </pre>
+ *
+ * Enable with {@link #ENDPOINTS_KEY} configuration property, see
+ * {@link #customize(SpanExporter, ConfigProperties)}.
+ */
+public class LoadBalancingSpanExporter implements SpanExporter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadBalancingSpanExporter.class);
+
+  public static final String ENDPOINTS_KEY = "mule.otel.exporter.otlp.traces.endpoints";
+  public static final String RETRY_INTERVAL_KEY = "mule.otel.exporter.otlp.endpoint.retry.interval.millis";
+  static final long DEFAULT_RETRY_INTERVAL_MILLIS = 30_000;
+  static final int MAX_ENDPOINTS = 64;
+
+  private final List<String> endpoints;
+  private final List<SpanExporter> delegates;
+  private final TraceIdHashRing ring;
+  private final long retryIntervalMillis;
+  private final AtomicLongArray unhealthyUntil;
+  private final AtomicLongArray exportedSpans;
+  private final AtomicLongArray failedSpans;
+
+  /**
+   * Exporter customizer to use with
+   * {@link io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer#addSpanExporterCustomizer}.
+   *
+   * @param exporter
+   *            {@link SpanExporter} configured by the SDK
+   * @param config
+   *            {@link ConfigProperties}
+   * @return {@link LoadBalancingSpanExporter} with a copy of the OTLP exporter
+   *         per endpoint when {@link #ENDPOINTS_KEY} has more than one
+   *         endpoint, otherwise the same exporter
+   */
+  public static SpanExporter customize(SpanExporter exporter, ConfigProperties config) {
+    List<String> endpoints = config.getList(ENDPOINTS_KEY);
+    if (endpoints.size() < 2)
+      return exporter;
+    if (endpoints.size() > MAX_ENDPOINTS)
+      throw new ConfigurationException("At most " + MAX_ENDPOINTS + " endpoints are supported in " + ENDPOINTS_KEY);
+    Function<String, SpanExporter> factory;
+    if (exporter instanceof OtlpHttpSpanExporter) {
+      factory = endpoint -> ((OtlpHttpSpanExporter) exporter).toBuilder().setEndpoint(endpoint).build();
+    } else if (exporter instanceof OtlpGrpcSpanExporter) {
+      factory = endpoint -> ((OtlpGrpcSpanExporter) exporter).toBuilder().setEndpoint(endpoint).build();
+    } else if (exporter instanceof AdaptiveCompressionSpanExporter) {
+      factory = ((AdaptiveCompressionSpanExporter) exporter)::withEndpoint;
+    } else {
+      return exporter;
+    }
+    List<SpanExporter> delegates = new ArrayList<>(endpoints.size());
+    for (String endpoint : endpoints) {
+      delegates.add(factory.apply(endpoint));
+    }
+    // Copies keep headers, TLS and compression settings of the configured
+    // exporter, which is not used anymore
+    exporter.shutdown();
+    LOGGER.info("Load balancing spans by trace id across {}", endpoints);
+    return new LoadBalancingSpanExporter(endpoints, delegates,
+        config.getLong(RETRY_INTERVAL_KEY, DEFAULT_RETRY_INTERVAL_MILLIS));
+  }
+
+  LoadBalancingSpanExporter(List<String> endpoints, List<SpanExporter> delegates, long retryIntervalMillis) {
+    this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+    this.delegates = delegates;
+    this.ring = new TraceIdHashRing(endpoints);
+    this.retryIntervalMillis = retryIntervalMillis;
+    this.unhealthyUntil = new AtomicLongArray(endpoints.size());
+    this.exportedSpans = new AtomicLongArray(endpoints.size());
+    this.failedSpans = new AtomicLongArray(endpoints.size());
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    return export(spans, 0L);
+  }
+
+  /**
+   * @param spans
+   *            spans to export
+   * @param attempted
+   *            bit mask of endpoints already attempted for these spans
+   * @return result of all endpoint exports
+   */
+  private CompletableResultCode export(Collection<SpanData> spans, long attempted) {
+    List<List<SpanData>> groups = route(spans, attempted, System.currentTimeMillis());
+    if (groups == null)
+      return CompletableResultCode.ofFailure();
+    List<CompletableResultCode> results = new ArrayList<>(groups.size());
+    for (int endpoint = 0; endpoint < groups.size(); endpoint++) {
+      List<SpanData> group = groups.get(endpoint);
+      if (group != null)
+        results.add(exportTo(endpoint, group, attempted | (1L << endpoint)));
+    }
+    return CompletableResultCode.ofAll(results);
+  }
+
+  private List<List<SpanData>> route(Collection<SpanData> spans, long attempted, long now) {
+    List<List<SpanData>> groups = new ArrayList<>(Collections.nCopies(delegates.size(), null));
+    String lastTraceId = null;
+    int endpoint = -1;
+    for (SpanData span : spans) {
+      String traceId = span.getTraceId();
+      // Spans of a trace are often next to each other in a batch
+      if (!traceId.equals(lastTraceId)) {
+        endpoint = select(traceId, attempted, now);
+        lastTraceId = traceId;
+      }
+      if (endpoint < 0)
+        return null;
+      List<SpanData> group = groups.get(endpoint);
+      if (group == null) {
+        group = new ArrayList<>();
+        groups.set(endpoint, group);
+      }
+      group.add(span);
+    }
+    return groups;
+  }
+
+  int select(String traceId, long attempted, long now) {
+    int position = ring.positionOf(TraceIdHashRing.hashTraceId(traceId));
+    for (int i = 0; i < ring.size(); i++) {
+      int endpoint = ring.ownerAt(position + i);
+      if ((attempted & (1L << endpoint)) == 0 && unhealthyUntil.get(endpoint) <= now)
+        return endpoint;
+    }
+    return -1;
+  }
+
+  private CompletableResultCode exportTo(int endpoint, List<SpanData> spans, long attempted) {
+    CompletableResultCode result = new CompletableResultCode();
+    CompletableResultCode delegateResult = delegates.get(endpoint).export(spans);
+    delegateResult.whenComplete(() -> {
+      if (delegateResult.isSuccess()) {
+        exportedSpans.addAndGet(endpoint, spans.size());
+        if (unhealthyUntil.getAndSet(endpoint, 0) != 0)
+          LOGGER.info("Collector endpoint {} is available again", endpoints.get(endpoint));
+        result.succeed();
+        return;
+      }
+      failedSpans.addAndGet(endpoint, spans.size());
+      if (unhealthyUntil.getAndSet(endpoint, System.currentTimeMillis() + retryIntervalMillis) == 0)
+        LOGGER.warn("Collector endpoint {} failed to export spans, failing over for {} ms",
+            endpoints.get(endpoint), retryIntervalMillis);
+      CompletableResultCode failover = export(spans, attempted);
+      failover.whenComplete(() -> {
+        if (failover.isSuccess())
+          result.succeed();
+        else
+          result.fail();
+      });
+    });
+    return result;
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    List<CompletableResultCode> results = new ArrayList<>(delegates.size());
+    for (SpanExporter delegate : delegates)
+      results.add(delegate.flush());
+    return CompletableResultCode.ofAll(results);
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    List<CompletableResultCode> results = new ArrayList<>(delegates.size());
+    for (SpanExporter delegate : delegates)
+      results.add(delegate.shutdown());
+    return CompletableResultCode.ofAll(results);
+  }
+
+  public List<String> getEndpoints() {
+    return endpoints;
+  }
+
+  public boolean isHealthy(int endpoint) {
+    return unhealthyUntil.get(endpoint) <= System.currentTimeMillis();
+  }
+
+  public long getExportedSpans(int endpoint) {
+    return exportedSpans.get(endpoint);
+  }
+
+  public long getFailedSpans(int endpoint) {
+    return failedSpans.get(endpoint);
+  }
+
+  @Override
+  public String toString() {
+    return "LoadBalancingSpanExporter{endpoints=" + endpoints + "}";
+  }
+}
@@ -0,0 +1,92 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.loadbalance;
+
+import io.opentelemetry.api.internal.OtelEncodingUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hash ring of endpoints. Each endpoint owns
+ * {@link #VIRTUAL_NODES} points on the ring, so removing an endpoint only moves
+ * the traces it owned, spread over the remaining endpoints.
+ */
+final class TraceIdHashRing {
+
+  static final int VIRTUAL_NODES = 128;
+
+  private final long[] points;
+  private final int[] owners;
+
+  TraceIdHashRing(List<String> endpoints) {
+    int size = endpoints.size() * VIRTUAL_NODES;
+    long[][] entries = new long[size][];
+    for (int endpoint = 0; endpoint < endpoints.size(); endpoint++) {
+      for (int node = 0; node < VIRTUAL_NODES; node++) {
+        entries[endpoint * VIRTUAL_NODES + node] = new long[] {
+            hash(endpoints.get(endpoint) + "#" + node), endpoint };
+      }
+    }
+    Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+    points = new long[size];
+    owners = new int[size];
+    for (int i = 0; i < size; i++) {
+      points[i] = entries[i][0];
+      owners[i] = (int) entries[i][1];
+    }
+  }
+
+  /**
+   * @param hash
+   *            hash of the trace id, see {@link #hashTraceId(String)}
+   * @return position of the first ring point at or after the hash
+   */
+  int positionOf(long hash) {
+    int position = Arrays.binarySearch(points, hash);
+    if (position < 0)
+      position = -position - 1;
+    return position == points.length ? 0 : position;
+  }
+
+  /**
+   * @param position
+   *            ring position, wraps around
+   * @return endpoint index owning the position
+   */
+  int ownerAt(int position) {
+    return owners[position % owners.length];
+  }
+
+  int size() {
+    return points.length;
+  }
+
+  /**
+   * Hash the low 64 bits of the trace id. W3C trace ids are random, but are
+   * still mixed in case the generator is not.
+   *
+   * @param traceId
+   *            32 hex characters trace id
+   * @return hash on the ring
+   */
+  static long hashTraceId(String traceId) {
+    return mix(OtelEncodingUtils.longFromBase16String(traceId, 16));
+  }
+
+  private static long hash(String value) {
+    // FNV-1a
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b;
+      hash *= 0x100000001b3L;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long value) {
+    // SplitMix64 finalizer
+    value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+    value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+    return value ^ (value >>> 31);
+  }
+}
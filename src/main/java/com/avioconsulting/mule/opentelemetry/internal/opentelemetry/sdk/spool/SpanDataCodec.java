@@ -0,0 +1,345 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.AttributeType;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.TraceStateBuilder;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ * Compact binary encoding of a batch of {@link SpanData}.
+ *
+ * A batch is encoded as -
+ * - version
+ * - table of distinct {@link Resource}s
+ * - table of distinct {@link InstrumentationScopeInfo}s
+ * - spans, referring to resource and scope by table index
+ *
+ * Spans in a batch usually share one resource and scope, so these are written only once per batch.
+ * </pre>
+ */
+public final class SpanDataCodec {
+
+  private static final int VERSION = 1;
+
+  private SpanDataCodec() {
+  }
+
+  public static byte[] encode(Collection<SpanData> spans) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * Math.max(1, spans.size()));
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      Map<Resource, Integer> resources = new IdentityHashMap<>();
+      Map<InstrumentationScopeInfo, Integer> scopes = new IdentityHashMap<>();
+      for (SpanData span : spans) {
+        resources.putIfAbsent(span.getResource(), resources.size());
+        scopes.putIfAbsent(span.getInstrumentationScopeInfo(), scopes.size());
+      }
+      out.writeInt(VERSION);
+      out.writeInt(resources.size());
+      for (Resource resource : ordered(resources)) {
+        writeString(out, resource.getSchemaUrl());
+        writeAttributes(out, resource.getAttributes());
+      }
+      out.writeInt(scopes.size());
+      for (InstrumentationScopeInfo scope : ordered(scopes)) {
+        writeString(out, scope.getName());
+        writeString(out, scope.getVersion());
+        writeString(out, scope.getSchemaUrl());
+        writeAttributes(out, scope.getAttributes());
+      }
+      out.writeInt(spans.size());
+      for (SpanData span : spans) {
+        out.writeInt(resources.get(span.getResource()));
+        out.writeInt(scopes.get(span.getInstrumentationScopeInfo()));
+        writeSpan(out, span);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static List<SpanData> decode(byte[] record) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IllegalStateException("Unsupported span batch version " + version);
+      }
+      Resource[] resources = new Resource[in.readInt()];
+      for (int i = 0; i < resources.length; i++) {
+        String schemaUrl = readString(in);
+        resources[i] = Resource.create(readAttributes(in), schemaUrl);
+      }
+      InstrumentationScopeInfo[] scopes = new InstrumentationScopeInfo[in.readInt()];
+      for (int i = 0; i < scopes.length; i++) {
+        String name = readString(in);
+        String scopeVersion = readString(in);
+        String schemaUrl = readString(in);
+        scopes[i] = InstrumentationScopeInfo.builder(name == null ? "" : name)
+            .setVersion(scopeVersion)
+            .setSchemaUrl(schemaUrl)
+            .setAttributes(readAttributes(in))
+            .build();
+      }
+      int count = in.readInt();
+      List<SpanData> spans = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        Resource resource = resources[in.readInt()];
+        InstrumentationScopeInfo scope = scopes[in.readInt()];
+        spans.add(readSpan(in, resource, scope));
+      }
+      return spans;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static <T> List<T> ordered(Map<T, Integer> table) {
+    List<T> values = new ArrayList<>(Collections.nCopies(table.size(), null));
+    table.forEach((value, index) -> values.set(index, value));
+    return values;
+  }
+
+  private static void writeSpan(DataOutputStream out, SpanData span) throws IOException {
+    writeSpanContext(out, span.getSpanContext());
+    writeSpanContext(out, span.getParentSpanContext());
+    writeString(out, span.getName());
+    out.writeByte(span.getKind().ordinal());
+    out.writeLong(span.getStartEpochNanos());
+    out.writeLong(span.getEndEpochNanos());
+    out.writeByte(span.getStatus().getStatusCode().ordinal());
+    writeString(out, span.getStatus().getDescription());
+    writeAttributes(out, span.getAttributes());
+    out.writeInt(span.getTotalAttributeCount());
+    out.writeInt(span.getEvents().size());
+    for (EventData event : span.getEvents()) {
+      writeString(out, event.getName());
+      out.writeLong(event.getEpochNanos());
+      writeAttributes(out, event.getAttributes());
+      out.writeInt(event.getTotalAttributeCount());
+    }
+    out.writeInt(span.getTotalRecordedEvents());
+    out.writeInt(span.getLinks().size());
+    for (LinkData link : span.getLinks()) {
+      writeSpanContext(out, link.getSpanContext());
+      writeAttributes(out, link.getAttributes());
+      out.writeInt(link.getTotalAttributeCount());
+    }
+    out.writeInt(span.getTotalRecordedLinks());
+  }
+
+  private static SpanData readSpan(DataInputStream in, Resource resource, InstrumentationScopeInfo scope)
+      throws IOException {
+    SpooledSpanData.Builder builder = SpooledSpanData.builder()
+        .setResource(resource)
+        .setInstrumentationScopeInfo(scope)
+        .setSpanContext(readSpanContext(in))
+        .setParentSpanContext(readSpanContext(in))
+        .setName(readString(in))
+        .setKind(SpanKind.values()[in.readByte()])
+        .setStartEpochNanos(in.readLong())
+        .setEndEpochNanos(in.readLong());
+    StatusCode statusCode = StatusCode.values()[in.readByte()];
+    String description = readString(in);
+    builder.setStatus(StatusData.create(statusCode, description == null ? "" : description))
+        .setAttributes(readAttributes(in))
+        .setTotalAttributeCount(in.readInt());
+    int eventCount = in.readInt();
+    List<EventData> events = new ArrayList<>(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      String name = readString(in);
+      long epochNanos = in.readLong();
+      Attributes attributes = readAttributes(in);
+      events.add(EventData.create(epochNanos, name, attributes, in.readInt()));
+    }
+    builder.setEvents(events).setTotalRecordedEvents(in.readInt());
+    int linkCount = in.readInt();
+    List<LinkData> links = new ArrayList<>(linkCount);
+    for (int i = 0; i < linkCount; i++) {
+      SpanContext spanContext = readSpanContext(in);
+      Attributes attributes = readAttributes(in);
+      links.add(LinkData.create(spanContext, attributes, in.readInt()));
+    }
+    return builder.setLinks(links).setTotalRecordedLinks(in.readInt()).build();
+  }
+
+  private static void writeSpanContext(DataOutputStream out, SpanContext spanContext) throws IOException {
+    out.writeBoolean(spanContext.isValid());
+    if (!spanContext.isValid())
+      return;
+    writeString(out, spanContext.getTraceId());
+    writeString(out, spanContext.getSpanId());
+    out.writeByte(spanContext.getTraceFlags().asByte());
+    out.writeBoolean(spanContext.isRemote());
+    Map<String, String> traceState = spanContext.getTraceState().asMap();
+    out.writeInt(traceState.size());
+    for (Map.Entry<String, String> entry : traceState.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+
+  private static SpanContext readSpanContext(DataInputStream in) throws IOException {
+    if (!in.readBoolean())
+      return SpanContext.getInvalid();
+    String traceId = readString(in);
+    String spanId = readString(in);
+    TraceFlags traceFlags = TraceFlags.fromByte(in.readByte());
+    boolean remote = in.readBoolean();
+    int stateSize = in.readInt();
+    TraceState traceState = TraceState.getDefault();
+    if (stateSize > 0) {
+      TraceStateBuilder stateBuilder = TraceState.builder();
+      for (int i = 0; i < stateSize; i++) {
+        stateBuilder.put(readString(in), readString(in));
+      }
+      traceState = stateBuilder.build();
+    }
+    return remote ? SpanContext.createFromRemoteParent(traceId, spanId, traceFlags, traceState)
+        : SpanContext.create(traceId, spanId, traceFlags, traceState);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void writeAttributes(DataOutputStream out, Attributes attributes) throws IOException {
+    out.writeInt(attributes.size());
+    for (Map.Entry<AttributeKey<?>, Object> entry : attributes.asMap().entrySet()) {
+      AttributeKey<?> key = entry.getKey();
+      out.writeByte(key.getType().ordinal());
+      writeString(out, key.getKey());
+      Object value = entry.getValue();
+      switch (key.getType()) {
+        case STRING:
+          writeString(out, (String) value);
+          break;
+        case BOOLEAN:
+          out.writeBoolean((Boolean) value);
+          break;
+        case LONG:
+          out.writeLong((Long) value);
+          break;
+        case DOUBLE:
+          out.writeDouble((Double) value);
+          break;
+        case STRING_ARRAY:
+          List<String> strings = (List<String>) value;
+          out.writeInt(strings.size());
+          for (String s : strings)
+            writeString(out, s);
+          break;
+        case BOOLEAN_ARRAY:
+          List<Boolean> booleans = (List<Boolean>) value;
+          out.writeInt(booleans.size());
+          for (Boolean b : booleans)
+            out.writeBoolean(b);
+          break;
+        case LONG_ARRAY:
+          List<Long> longs = (List<Long>) value;
+          out.writeInt(longs.size());
+          for (Long l : longs)
+            out.writeLong(l);
+          break;
+        case DOUBLE_ARRAY:
+          List<Double> doubles = (List<Double>) value;
+          out.writeInt(doubles.size());
+          for (Double d : doubles)
+            out.writeDouble(d);
+          break;
+      }
+    }
+  }
+
+  private static Attributes readAttributes(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    if (size == 0)
+      return Attributes.empty();
+    AttributesBuilder builder = Attributes.builder();
+    for (int i = 0; i < size; i++) {
+      int type = in.readByte();
+      String key = readString(in);
+      switch (AttributeType.values()[type]) {
+        case STRING:
+          builder.put(AttributeKey.stringKey(key), readString(in));
+          break;
+        case BOOLEAN:
+          builder.put(AttributeKey.booleanKey(key), in.readBoolean());
+          break;
+        case LONG:
+          builder.put(AttributeKey.longKey(key), in.readLong());
+          break;
+        case DOUBLE:
+          builder.put(AttributeKey.doubleKey(key), in.readDouble());
+          break;
+        case STRING_ARRAY:
+          List<String> strings = new ArrayList<>();
+          for (int n = in.readInt(); n > 0; n--)
+            strings.add(readString(in));
+          builder.put(AttributeKey.stringArrayKey(key), strings);
+          break;
+        case BOOLEAN_ARRAY:
+          List<Boolean> booleans = new ArrayList<>();
+          for (int n = in.readInt(); n > 0; n--)
+            booleans.add(in.readBoolean());
+          builder.put(AttributeKey.booleanArrayKey(key), booleans);
+          break;
+        case LONG_ARRAY:
+          List<Long> longs = new ArrayList<>();
+          for (int n = in.readInt(); n > 0; n--)
+            longs.add(in.readLong());
+          builder.put(AttributeKey.longArrayKey(key), longs);
+          break;
+        case DOUBLE_ARRAY:
+          List<Double> doubles = new ArrayList<>();
+          for (int n = in.readInt(); n > 0; n--)
+            doubles.add(in.readDouble());
+          builder.put(AttributeKey.doubleArrayKey(key), doubles);
+          break;
+      }
+    }
+    return builder.build();
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0)
+      return null;
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
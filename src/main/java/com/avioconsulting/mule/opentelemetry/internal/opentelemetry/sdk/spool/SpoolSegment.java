@@ -0,0 +1,207 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <pre>
+ * Size-capped, memory-mapped, append-only segment file of records.
+ *
+ * Layout -
+ * - header: magic (int), read position (int), write position (int)
+ * - records: length (int) followed by record bytes
+ *
+ * Positions are kept in the header, so records that are not consumed survive a restart. Records are consumed in
+ * the order they were appended. When all records are consumed, positions are reset to the start of the segment.
+ * When the segment is full, consumed space is reclaimed by moving pending records to the start of the segment.
+ *
+ * Closing the segment unmaps the file and closes its channel. A closed segment is empty and rejects appends.
+ * </pre>
+ */
+final class SpoolSegment implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpoolSegment.class);
+  private static final int MAGIC = 0x4F54534C;
+  private static final int READ_POSITION_OFFSET = 4;
+  private static final int WRITE_POSITION_OFFSET = 8;
+  static final int HEADER_SIZE = 16;
+  private static final int LENGTH_SIZE = 4;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  private int readPosition;
+  private int writePosition;
+  private boolean closed;
+
+  SpoolSegment(Path file, int capacity) throws IOException {
+    if (capacity <= HEADER_SIZE + LENGTH_SIZE) {
+      throw new IllegalArgumentException("Spool capacity must be greater than " + (HEADER_SIZE + LENGTH_SIZE));
+    }
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    this.capacity = capacity;
+    if (buffer.getInt(0) == MAGIC && isValid(buffer.getInt(READ_POSITION_OFFSET),
+        buffer.getInt(WRITE_POSITION_OFFSET))) {
+      readPosition = buffer.getInt(READ_POSITION_OFFSET);
+      writePosition = buffer.getInt(WRITE_POSITION_OFFSET);
+    } else {
+      buffer.putInt(0, MAGIC);
+      updatePositions(HEADER_SIZE, HEADER_SIZE);
+    }
+  }
+
+  private boolean isValid(int read, int write) {
+    return read >= HEADER_SIZE && read <= write && write <= capacity;
+  }
+
+  /**
+   * Append a record at the end of the segment.
+   *
+   * @param record
+   *            bytes to append
+   * @return false if the segment does not have space for the record
+   */
+  synchronized boolean append(byte[] record) {
+    if (closed)
+      return false;
+    int required = LENGTH_SIZE + record.length;
+    if (writePosition + required > capacity) {
+      compact();
+      if (writePosition + required > capacity)
+        return false;
+    }
+    buffer.putInt(writePosition, record.length);
+    ByteBuffer target = buffer.duplicate();
+    target.position(writePosition + LENGTH_SIZE);
+    target.put(record);
+    updatePositions(readPosition, writePosition + required);
+    return true;
+  }
+
+  /**
+   * Read the oldest record without consuming it.
+   *
+   * @return record bytes or null when the segment is empty
+   */
+  synchronized byte[] peek() {
+    if (closed || readPosition >= writePosition)
+      return null;
+    int length = buffer.getInt(readPosition);
+    byte[] record = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(readPosition + LENGTH_SIZE);
+    source.get(record);
+    return record;
+  }
+
+  /**
+   * Consume the oldest record returned by {@link #peek()}.
+   */
+  synchronized void commit() {
+    if (closed || readPosition >= writePosition)
+      return;
+    int next = readPosition + LENGTH_SIZE + buffer.getInt(readPosition);
+    if (next >= writePosition) {
+      updatePositions(HEADER_SIZE, HEADER_SIZE);
+    } else {
+      updatePositions(next, writePosition);
+    }
+  }
+
+  synchronized boolean isEmpty() {
+    return closed || readPosition >= writePosition;
+  }
+
+  /**
+   * @return bytes used by pending records
+   */
+  synchronized int size() {
+    return closed ? 0 : writePosition - readPosition;
+  }
+
+  private void compact() {
+    if (readPosition == HEADER_SIZE)
+      return;
+    int pending = writePosition - readPosition;
+    ByteBuffer source = buffer.duplicate();
+    source.position(readPosition);
+    source.limit(writePosition);
+    ByteBuffer target = buffer.duplicate();
+    target.position(HEADER_SIZE);
+    // Pending records are copied in chunks, source and target may overlap
+    byte[] chunk = new byte[Math.min(pending, 64 * 1024)];
+    while (source.hasRemaining()) {
+      int length = Math.min(chunk.length, source.remaining());
+      source.get(chunk, 0, length);
+      target.put(chunk, 0, length);
+    }
+    updatePositions(HEADER_SIZE, HEADER_SIZE + pending);
+  }
+
+  private void updatePositions(int read, int write) {
+    readPosition = read;
+    writePosition = write;
+    buffer.putInt(READ_POSITION_OFFSET, read);
+    buffer.putInt(WRITE_POSITION_OFFSET, write);
+  }
+
+  synchronized void force() {
+    if (!closed)
+      buffer.force();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed)
+      return;
+    closed = true;
+    try {
+      buffer.force();
+      unmap(buffer);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Release the mapping now instead of when the buffer is garbage collected,
+   * so the file is not held open after the spool is closed. There is no
+   * public API for it before Java 19, so the cleaner is invoked reflectively.
+   * The buffer must not be accessed afterwards.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner;
+      try {
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (NoSuchMethodException e) {
+        // Java 8
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+        return;
+      }
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      invokeCleaner.invoke(theUnsafe.get(null), buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.debug("Failed to unmap span spool, it is released when garbage collected", e);
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+
+import java.util.List;
+
+/**
+ * Immutable {@link SpanData} decoded by {@link SpanDataCodec}.
+ */
+final class SpooledSpanData implements SpanData {
+
+  private final String name;
+  private final SpanKind kind;
+  private final SpanContext spanContext;
+  private final SpanContext parentSpanContext;
+  private final StatusData status;
+  private final long startEpochNanos;
+  private final long endEpochNanos;
+  private final Attributes attributes;
+  private final List<EventData> events;
+  private final List<LinkData> links;
+  private final int totalRecordedEvents;
+  private final int totalRecordedLinks;
+  private final int totalAttributeCount;
+  private final InstrumentationScopeInfo instrumentationScopeInfo;
+  private final Resource resource;
+
+  private SpooledSpanData(Builder builder) {
+    name = builder.name;
+    kind = builder.kind;
+    spanContext = builder.spanContext;
+    parentSpanContext = builder.parentSpanContext;
+    status = builder.status;
+    startEpochNanos = builder.startEpochNanos;
+    endEpochNanos = builder.endEpochNanos;
+    attributes = builder.attributes;
+    events = builder.events;
+    links = builder.links;
+    totalRecordedEvents = builder.totalRecordedEvents;
+    totalRecordedLinks = builder.totalRecordedLinks;
+    totalAttributeCount = builder.totalAttributeCount;
+    instrumentationScopeInfo = builder.instrumentationScopeInfo;
+    resource = builder.resource;
+  }
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public SpanKind getKind() {
+    return kind;
+  }
+
+  @Override
+  public SpanContext getSpanContext() {
+    return spanContext;
+  }
+
+  @Override
+  public SpanContext getParentSpanContext() {
+    return parentSpanContext;
+  }
+
+  @Override
+  public StatusData getStatus() {
+    return status;
+  }
+
+  @Override
+  public long getStartEpochNanos() {
+    return startEpochNanos;
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public List<EventData> getEvents() {
+    return events;
+  }
+
+  @Override
+  public List<LinkData> getLinks() {
+    return links;
+  }
+
+  @Override
+  public long getEndEpochNanos() {
+    return endEpochNanos;
+  }
+
+  @Override
+  public boolean hasEnded() {
+    return true;
+  }
+
+  @Override
+  public int getTotalRecordedEvents() {
+    return totalRecordedEvents;
+  }
+
+  @Override
+  public int getTotalRecordedLinks() {
+    return totalRecordedLinks;
+  }
+
+  @Override
+  public int getTotalAttributeCount() {
+    return totalAttributeCount;
+  }
+
+  @Deprecated
+  public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+    return InstrumentationLibraryInfo.create(instrumentationScopeInfo.getName(),
+        instrumentationScopeInfo.getVersion(), instrumentationScopeInfo.getSchemaUrl());
+  }
+
+  @Override
+  public InstrumentationScopeInfo getInstrumentationScopeInfo() {
+    return instrumentationScopeInfo;
+  }
+
+  @Override
+  public Resource getResource() {
+    return resource;
+  }
+
+  @Override
+  public String toString() {
+    return "SpooledSpanData{name='" + name + "', spanContext=" + spanContext + "}";
+  }
+
+  static final class Builder {
+    private String name;
+    private SpanKind kind;
+    private SpanContext spanContext;
+    private SpanContext parentSpanContext;
+    private StatusData status;
+    private long startEpochNanos;
+    private long endEpochNanos;
+    private Attributes attributes;
+    private List<EventData> events;
+    private List<LinkData> links;
+    private int totalRecordedEvents;
+    private int totalRecordedLinks;
+    private int totalAttributeCount;
+    private InstrumentationScopeInfo instrumentationScopeInfo;
+    private Resource resource;
+
+    Builder setName(String name) {
+      this.name = name;
+      return this;
+    }
+
+    Builder setKind(SpanKind kind) {
+      this.kind = kind;
+      return this;
+    }
+
+    Builder setSpanContext(SpanContext spanContext) {
+      this.spanContext = spanContext;
+      return this;
+    }
+
+    Builder setParentSpanContext(SpanContext parentSpanContext) {
+      this.parentSpanContext = parentSpanContext;
+      return this;
+    }
+
+    Builder setStatus(StatusData status) {
+      this.status = status;
+      return this;
+    }
+
+    Builder setStartEpochNanos(long startEpochNanos) {
+      this.startEpochNanos = startEpochNanos;
+      return this;
+    }
+
+    Builder setEndEpochNanos(long endEpochNanos) {
+      this.endEpochNanos = endEpochNanos;
+      return this;
+    }
+
+    Builder setAttributes(Attributes attributes) {
+      this.attributes = attributes;
+      return this;
+    }
+
+    Builder setEvents(List<EventData> events) {
+      this.events = events;
+      return this;
+    }
+
+    Builder setLinks(List<LinkData> links) {
+      this.links = links;
+      return this;
+    }
+
+    Builder setTotalRecordedEvents(int totalRecordedEvents) {
+      this.totalRecordedEvents = totalRecordedEvents;
+      return this;
+    }
+
+    Builder setTotalRecordedLinks(int totalRecordedLinks) {
+      this.totalRecordedLinks = totalRecordedLinks;
+      return this;
+    }
+
+    Builder setTotalAttributeCount(int totalAttributeCount) {
+      this.totalAttributeCount = totalAttributeCount;
+      return this;
+    }
+
+    Builder setInstrumentationScopeInfo(InstrumentationScopeInfo instrumentationScopeInfo) {
+      this.instrumentationScopeInfo = instrumentationScopeInfo;
+      return this;
+    }
+
+    Builder setResource(Resource resource) {
+      this.resource = resource;
+      return this;
+    }
+
+    SpooledSpanData build() {
+      return new SpooledSpanData(this);
+    }
+  }
+}
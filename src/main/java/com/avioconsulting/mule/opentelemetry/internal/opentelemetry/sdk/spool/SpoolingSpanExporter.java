@@ -0,0 +1,261 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool;
+
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigurationException;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * {@link SpanExporter} wrapper that spools batches to local disk while the delegate exporter (collector) is
+ * unavailable, and replays them in order once it is available again.
+ *
+ * - A batch failed by the delegate is appended to a memory-mapped {@link SpoolSegment}. The exporter is then
+ *   considered unhealthy.
+ * - While unhealthy, new batches are appended to the spool directly without waiting on the delegate. This keeps the
+ *   batch span processor queue draining, instead of filling up and dropping spans during export timeouts.
+ * - A single background thread replays spooled batches, oldest first, at most `replayBatchesPerSecond`. Live
+ *   batches are exported directly once healthy, so replay does not starve live traffic.
+ * - While unhealthy, replay attempts act as health probes and are retried every `retryIntervalMillis`.
+ * - Batches that do not fit in the spool are dropped and counted.
+ * </pre>
+ *
+ * Enable with {@link #SPOOL_DIRECTORY_KEY} configuration property, see
+ * {@link #customize(SpanExporter, ConfigProperties)}.
+ */
+public class SpoolingSpanExporter implements SpanExporter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpoolingSpanExporter.class);
+
+  public static final String SPOOL_DIRECTORY_KEY = "mule.otel.exporter.spool.directory";
+  public static final String SPOOL_MAX_SIZE_MB_KEY = "mule.otel.exporter.spool.max.size.mb";
+  public static final String SPOOL_REPLAY_BATCHES_PER_SECOND_KEY = "mule.otel.exporter.spool.replay.batches.per.second";
+  public static final String SPOOL_RETRY_INTERVAL_KEY = "mule.otel.exporter.spool.retry.interval.millis";
+
+  static final int DEFAULT_MAX_SIZE_MB = 64;
+  // Spool is a single mapping addressed with int positions
+  static final int MAX_SIZE_MB = 2047;
+  static final int DEFAULT_REPLAY_BATCHES_PER_SECOND = 5;
+  static final long DEFAULT_RETRY_INTERVAL_MILLIS = 5000;
+  private static final long REPLAY_EXPORT_TIMEOUT_SECONDS = 30;
+
+  private final SpanExporter delegate;
+  private final SpoolSegment segment;
+  private final long retryIntervalMillis;
+  private final ScheduledExecutorService replayExecutor;
+  private volatile boolean healthy = true;
+  private volatile long nextReplayAttempt = 0;
+  private final AtomicLong spooledSpans = new AtomicLong();
+  private final AtomicLong replayedSpans = new AtomicLong();
+  private final AtomicLong droppedSpans = new AtomicLong();
+
+  /**
+   * Exporter customizer to use with
+   * {@link io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer#addSpanExporterCustomizer}.
+   * The SDK does not pass exporter names to customizers, so the spool file is
+   * keyed by the exporter class.
+   *
+   * @param exporter
+   *            {@link SpanExporter} configured by the SDK
+   * @param config
+   *            {@link ConfigProperties}
+   * @return {@link SpoolingSpanExporter} wrapping the exporter when
+   *         {@link #SPOOL_DIRECTORY_KEY} is set, otherwise the same exporter
+   */
+  public static SpanExporter customize(SpanExporter exporter, ConfigProperties config) {
+    return customize(exporter.getClass().getSimpleName(), exporter, config);
+  }
+
+  /**
+   * Wrap a named exporter. Each exporter gets its own spool file, named after
+   * the service and the exporter.
+   *
+   * @param exporterName
+   *            exporter name, as in `otel.traces.exporter`
+   * @param exporter
+   *            {@link SpanExporter} to wrap
+   * @param config
+   *            {@link ConfigProperties}
+   * @return {@link SpoolingSpanExporter} wrapping the exporter when
+   *         {@link #SPOOL_DIRECTORY_KEY} is set, otherwise the same exporter
+   * @throws ConfigurationException
+   *             when {@link #SPOOL_MAX_SIZE_MB_KEY} is not between 1 and
+   *             {@link #MAX_SIZE_MB}
+   */
+  public static SpanExporter customize(String exporterName, SpanExporter exporter, ConfigProperties config) {
+    String directory = config.getString(SPOOL_DIRECTORY_KEY);
+    if (directory == null || directory.trim().isEmpty())
+      return exporter;
+    long maxSizeMb = config.getLong(SPOOL_MAX_SIZE_MB_KEY, DEFAULT_MAX_SIZE_MB);
+    if (maxSizeMb < 1 || maxSizeMb > MAX_SIZE_MB)
+      throw new ConfigurationException("Invalid value for " + SPOOL_MAX_SIZE_MB_KEY + ": " + maxSizeMb
+          + ", must be between 1 and " + MAX_SIZE_MB);
+    Path file = Paths.get(directory, fileName(config.getString("otel.service.name", "mule-app")) + "-"
+        + fileName(exporterName) + ".spool");
+    try {
+      return new SpoolingSpanExporter(exporter, file, (int) (maxSizeMb * 1024L * 1024L),
+          config.getInt(SPOOL_REPLAY_BATCHES_PER_SECOND_KEY, DEFAULT_REPLAY_BATCHES_PER_SECOND),
+          config.getLong(SPOOL_RETRY_INTERVAL_KEY, DEFAULT_RETRY_INTERVAL_MILLIS));
+    } catch (IOException e) {
+      LOGGER.error("Failed to open span spool {}, spans will not be spooled", file, e);
+      return exporter;
+    }
+  }
+
+  private static String fileName(String name) {
+    return name.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  SpoolingSpanExporter(SpanExporter delegate, Path file, int maxSizeBytes, int replayBatchesPerSecond,
+      long retryIntervalMillis) throws IOException {
+    this.delegate = delegate;
+    this.segment = new SpoolSegment(file, maxSizeBytes);
+    this.retryIntervalMillis = retryIntervalMillis;
+    this.replayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "otel-span-spool-replay");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long replayDelayMillis = Math.max(1, 1000 / Math.max(1, replayBatchesPerSecond));
+    replayExecutor.scheduleWithFixedDelay(this::replayNext, replayDelayMillis, replayDelayMillis,
+        TimeUnit.MILLISECONDS);
+    LOGGER.info("Spooling spans to {} (max {} bytes, {} pending) when exporter is unavailable", file,
+        maxSizeBytes, segment.size());
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    // Batch collection may be reused by the caller after the result completes
+    List<SpanData> batch = new ArrayList<>(spans);
+    if (!healthy) {
+      return spool(batch);
+    }
+    CompletableResultCode delegateResult = delegate.export(batch);
+    CompletableResultCode result = new CompletableResultCode();
+    delegateResult.whenComplete(() -> {
+      if (delegateResult.isSuccess()) {
+        result.succeed();
+      } else {
+        if (healthy) {
+          LOGGER.warn("Span export failed, spooling spans until exporter is available");
+          healthy = false;
+          nextReplayAttempt = System.currentTimeMillis() + retryIntervalMillis;
+        }
+        CompletableResultCode spooled = spool(batch);
+        if (spooled.isSuccess())
+          result.succeed();
+        else
+          result.fail();
+      }
+    });
+    return result;
+  }
+
+  private CompletableResultCode spool(List<SpanData> batch) {
+    try {
+      if (segment.append(SpanDataCodec.encode(batch))) {
+        spooledSpans.addAndGet(batch.size());
+        return CompletableResultCode.ofSuccess();
+      }
+      LOGGER.debug("Span spool is full, dropping {} spans", batch.size());
+    } catch (UncheckedIOException | IllegalArgumentException e) {
+      LOGGER.warn("Failed to spool {} spans", batch.size(), e);
+    }
+    droppedSpans.addAndGet(batch.size());
+    return CompletableResultCode.ofFailure();
+  }
+
+  void replayNext() {
+    try {
+      if (!healthy && System.currentTimeMillis() < nextReplayAttempt)
+        return;
+      byte[] record = segment.peek();
+      if (record == null) {
+        // Nothing to probe with, let the next live export verify the exporter
+        healthy = true;
+        return;
+      }
+      List<SpanData> batch;
+      try {
+        batch = SpanDataCodec.decode(record);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Skipping unreadable spooled span batch", e);
+        segment.commit();
+        return;
+      }
+      CompletableResultCode result = delegate.export(batch).join(REPLAY_EXPORT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      if (result.isSuccess()) {
+        segment.commit();
+        replayedSpans.addAndGet(batch.size());
+        if (!healthy) {
+          LOGGER.info("Span exporter is available again, replaying spooled spans");
+          healthy = true;
+        }
+      } else {
+        healthy = false;
+        nextReplayAttempt = System.currentTimeMillis() + retryIntervalMillis;
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to replay spooled spans", e);
+    }
+  }
+
+  boolean isHealthy() {
+    return healthy;
+  }
+
+  boolean hasPendingSpans() {
+    return !segment.isEmpty();
+  }
+
+  long getSpooledSpans() {
+    return spooledSpans.get();
+  }
+
+  long getReplayedSpans() {
+    return replayedSpans.get();
+  }
+
+  long getDroppedSpans() {
+    return droppedSpans.get();
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    segment.force();
+    return delegate.flush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    replayExecutor.shutdownNow();
+    try {
+      segment.close();
+    } catch (IOException e) {
+      LOGGER.warn("Failed to close span spool", e);
+    }
+    LOGGER.info("Span spool closed - spooled {}, replayed {}, dropped {} spans", spooledSpans.get(),
+        replayedSpans.get(), droppedSpans.get());
+    return delegate.shutdown();
+  }
+
+  @Override
+  public String toString() {
+    return "SpoolingSpanExporter{" + delegate + "}";
+  }
+}
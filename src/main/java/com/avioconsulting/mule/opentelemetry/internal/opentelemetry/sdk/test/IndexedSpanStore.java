@@ -0,0 +1,179 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.test;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * <pre>
+ * Bounded store of exported {@link SpanData}, indexed by trace id and span name for test assertions.
+ *
+ * Spans are kept in a ring of `maxSpans` in the order they were exported. When full, the oldest span is evicted
+ * from the ring and its indexes. All query methods return snapshots.
+ * </pre>
+ */
+public class IndexedSpanStore {
+
+  public static final int DEFAULT_MAX_SPANS = 10_000;
+
+  private SpanData[] ring;
+  private int head;
+  private int size;
+  private long evicted;
+  private final Map<String, ArrayDeque<SpanData>> byTraceId = new HashMap<>();
+  private final Map<String, ArrayDeque<SpanData>> byName = new HashMap<>();
+
+  public IndexedSpanStore() {
+    this(DEFAULT_MAX_SPANS);
+  }
+
+  public IndexedSpanStore(int maxSpans) {
+    this.ring = new SpanData[maxSpans];
+  }
+
+  /**
+   * Change the capacity. Existing spans are cleared.
+   *
+   * @param maxSpans
+   *            maximum spans to keep
+   */
+  public synchronized void setMaxSpans(int maxSpans) {
+    if (maxSpans != ring.length) {
+      ring = new SpanData[maxSpans];
+    }
+    clear();
+  }
+
+  synchronized void addAll(Collection<SpanData> spans) {
+    for (SpanData span : spans) {
+      if (size == ring.length) {
+        evictOldest();
+      }
+      ring[(head + size) % ring.length] = span;
+      size++;
+      byTraceId.computeIfAbsent(span.getTraceId(), k -> new ArrayDeque<>()).addLast(span);
+      byName.computeIfAbsent(span.getName(), k -> new ArrayDeque<>()).addLast(span);
+    }
+  }
+
+  private void evictOldest() {
+    SpanData oldest = ring[head];
+    ring[head] = null;
+    head = (head + 1) % ring.length;
+    size--;
+    evicted++;
+    // Oldest span is always at the head of its index entries
+    removeFirst(byTraceId, oldest.getTraceId());
+    removeFirst(byName, oldest.getName());
+  }
+
+  private static void removeFirst(Map<String, ArrayDeque<SpanData>> index, String key) {
+    ArrayDeque<SpanData> spans = index.get(key);
+    spans.pollFirst();
+    if (spans.isEmpty())
+      index.remove(key);
+  }
+
+  /**
+   * @return all spans in the order they were exported
+   */
+  public synchronized List<SpanData> getSpans() {
+    List<SpanData> spans = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      spans.add(ring[(head + i) % ring.length]);
+    }
+    return spans;
+  }
+
+  public synchronized List<SpanData> getSpansByTraceId(String traceId) {
+    return snapshot(byTraceId.get(traceId));
+  }
+
+  public synchronized List<SpanData> getSpansByName(String name) {
+    return snapshot(byName.get(name));
+  }
+
+  /**
+   * @param name
+   *            span name
+   * @return most recently exported span with the name
+   */
+  public synchronized Optional<SpanData> findSpan(String name) {
+    ArrayDeque<SpanData> spans = byName.get(name);
+    return spans == null ? Optional.empty() : Optional.of(spans.peekLast());
+  }
+
+  /**
+   * @param traceId
+   *            trace id
+   * @param name
+   *            span name
+   * @return first span of the trace with the name
+   */
+  public synchronized Optional<SpanData> findSpan(String traceId, String name) {
+    return find(byTraceId.get(traceId), span -> span.getName().equals(name));
+  }
+
+  /**
+   * @param parent
+   *            parent span
+   * @return spans of the same trace whose parent is the given span
+   */
+  public synchronized List<SpanData> getChildren(SpanData parent) {
+    ArrayDeque<SpanData> spans = byTraceId.get(parent.getTraceId());
+    if (spans == null)
+      return Collections.emptyList();
+    List<SpanData> children = new ArrayList<>();
+    for (SpanData span : spans) {
+      if (span.getParentSpanId().equals(parent.getSpanId()))
+        children.add(span);
+    }
+    return children;
+  }
+
+  /**
+   * @return number of trace ids with spans in the store
+   */
+  public synchronized int getTraceCount() {
+    return byTraceId.size();
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * @return spans evicted to stay within max spans since the last clear
+   */
+  public synchronized long getEvictedCount() {
+    return evicted;
+  }
+
+  public synchronized void clear() {
+    Arrays.fill(ring, null);
+    head = 0;
+    size = 0;
+    evicted = 0;
+    byTraceId.clear();
+    byName.clear();
+  }
+
+  private static List<SpanData> snapshot(ArrayDeque<SpanData> spans) {
+    return spans == null ? Collections.emptyList() : new ArrayList<>(spans);
+  }
+
+  private static Optional<SpanData> find(ArrayDeque<SpanData> spans, Predicate<SpanData> predicate) {
+    if (spans == null)
+      return Optional.empty();
+    return spans.stream().filter(predicate).findFirst();
+  }
+}
@@ -0,0 +1,49 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.test;
+
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Test exporter that keeps exported {@link SpanData} as-is in
+ * {@link #spans}, a bounded {@link IndexedSpanStore}, for tests and benchmarks
+ * to query. Unlike {@link DelegatedLoggingSpanTestExporter}, spans are not
+ * converted or logged unless logging is enabled.
+ */
+public class IndexedSpanTestExporter implements SpanExporter {
+  public static final String MAX_SPANS_KEY = "mule.otel.test.exporter.max.spans";
+  public static final String LOGGING_ENABLED_KEY = "mule.otel.test.exporter.logging.enabled";
+  public static final IndexedSpanStore spans = new IndexedSpanStore();
+  private static final Logger logger = Logger.getLogger(IndexedSpanTestExporter.class.getName());
+  private final boolean loggingEnabled;
+
+  public IndexedSpanTestExporter(ConfigProperties config) {
+    this.loggingEnabled = config.getBoolean(LOGGING_ENABLED_KEY, false);
+    spans.setMaxSpans(config.getInt(MAX_SPANS_KEY, IndexedSpanStore.DEFAULT_MAX_SPANS));
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> batch) {
+    spans.addAll(batch);
+    if (loggingEnabled && logger.isLoggable(Level.INFO)) {
+      batch.forEach(span -> logger.log(Level.INFO, span.toString()));
+    }
+    return CompletableResultCode.ofSuccess();
+  }
+
+  @Override
+  public CompletableResultCode flush() {
+    return CompletableResultCode.ofSuccess();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    // Spans are kept for assertions after the app stops, tests clear them explicitly
+    return CompletableResultCode.ofSuccess();
+  }
+}
@@ -0,0 +1,25 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.test;
+
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.traces.ConfigurableSpanExporterProvider;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * Used during tests. This is not configured in module service loader provider,
+ * so cannot be used by module.
+ *
+ * This stores spans in {@link IndexedSpanTestExporter#spans} for tests to
+ * query and verify.
+ */
+public class IndexedSpanTestExporterProvider implements ConfigurableSpanExporterProvider {
+  @Override
+  public SpanExporter createExporter(ConfigProperties config) {
+    return new IndexedSpanTestExporter(config);
+  }
+
+  @Override
+  public String getName() {
+    return "indexedInMemory";
+  }
+
+}
@@ -7,7 +7,6 @@ import io.opentelemetry.context.propagation.TextMapGetter;
 import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.component.ComponentIdentifier;
 import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
-import org.mule.runtime.api.component.location.Location;
 import org.mule.runtime.api.event.Event;
 import org.mule.runtime.api.message.Error;
 import org.mule.runtime.api.message.Message;
@@ -30,12 +29,24 @@ public abstract class AbstractProcessorComponent implements ProcessorComponent {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractProcessorComponent.class);
 
-  protected ConfigurationComponentLocator configurationComponentLocator;
+  protected ComponentIndex componentIndex;
 
   @Override
   public ProcessorComponent withConfigurationComponentLocator(
       ConfigurationComponentLocator configurationComponentLocator) {
-    this.configurationComponentLocator = configurationComponentLocator;
+    return withComponentIndex(new ComponentIndex(configurationComponentLocator));
+  }
+
+  /**
+   * Use given {@link ComponentIndex} for locating components and their
+   * configuration.
+   *
+   * @param componentIndex
+   *            {@link ComponentIndex}
+   * @return ProcessorComponent
+   */
+  public ProcessorComponent withComponentIndex(ComponentIndex componentIndex) {
+    this.componentIndex = componentIndex;
     return this;
   }
 
@@ -99,8 +110,7 @@ public abstract class AbstractProcessorComponent implements ProcessorComponent {
   }
 
   protected Map<String, String> getProcessorCommonTags(Component component) {
-    ComponentWrapper componentWrapper = new ComponentWrapper(component,
-        configurationComponentLocator);
+    ComponentWrapper componentWrapper = new ComponentWrapper(component, componentIndex);
     Map<String, String> tags = new HashMap<>();
     tags.put(MULE_APP_PROCESSOR_NAMESPACE.getKey(),
         component.getIdentifier().getNamespace());
@@ -167,8 +177,8 @@ public abstract class AbstractProcessorComponent implements ProcessorComponent {
   }
 
   protected Optional<Component> getSourceComponent(EnrichedServerNotification notification) {
-    return configurationComponentLocator.find(Location.builderFromStringRepresentation(
-        notification.getEvent().getContext().getOriginatingLocation().getLocation()).build());
+    return componentIndex
+        .findComponent(notification.getEvent().getContext().getOriginatingLocation().getLocation());
   }
 
   protected enum ContextMapGetter implements TextMapGetter<Map<String, String>> {
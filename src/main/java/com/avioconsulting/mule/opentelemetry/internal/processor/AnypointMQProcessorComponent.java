@@ -74,7 +74,7 @@ public class AnypointMQProcessorComponent extends AbstractProcessorComponent {
 
   @Override
   protected <A> Map<String, String> getAttributes(Component component, TypedValue<A> attributes) {
-    ComponentWrapper componentWrapper = new ComponentWrapper(component, configurationComponentLocator);
+    ComponentWrapper componentWrapper = new ComponentWrapper(component, componentIndex);
     Map<String, String> connectionParams = componentWrapper.getConfigConnectionParameters();
 
     Map<String, String> tags = new HashMap<>();
@@ -124,7 +124,9 @@ public class AnypointMQProcessorComponent extends AbstractProcessorComponent {
         .withStatsCode(StatusCode.OK)
         .withSpanKind(SpanKind.CONSUMER)
         .withContext(
-            traceContextHandler.getTraceContext(attributes.getProperties(), ContextMapGetter.INSTANCE));
+            traceContextHandler.getTraceContext(attributes.getProperties(), ContextMapGetter.INSTANCE))
+        .withForceTrace(
+            traceContextHandler.isForceTraceRequested(attributes.getProperties(), ContextMapGetter.INSTANCE));
   }
 
   @Override
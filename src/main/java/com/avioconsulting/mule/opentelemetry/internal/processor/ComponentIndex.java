@@ -0,0 +1,407 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.traces.TraceComponent;
+import com.avioconsulting.mule.opentelemetry.internal.util.ComponentsUtil;
+import io.opentelemetry.api.common.Attributes;
+import org.mule.runtime.api.component.Component;
+import org.mule.runtime.api.component.ComponentIdentifier;
+import org.mule.runtime.api.component.location.ComponentLocation;
+import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
+import org.mule.runtime.api.component.location.Location;
+import org.mule.runtime.api.component.location.LocationPart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import static com.avioconsulting.mule.opentelemetry.internal.processor.ComponentWrapper.COMPONENT_NAMESPACE_KEY;
+import static com.avioconsulting.mule.opentelemetry.internal.processor.ComponentWrapper.COMPONENT_NAME_KEY;
+
+/**
+ * <pre>
+ * Index of the application components, used by tracing code paths instead of querying
+ * {@link ConfigurationComponentLocator} for every processor execution.
+ *
+ * {@link #build()} indexes all component locations of the application in parallel on a fork-join pool, with -
+ * - component identifier
+ * - root container name and whether it is a sub-flow
+ * - whether it is the first processor of a flow
+ * - parent location and route container location
+ * - metric attributes of metered processors, set when the processor is intercepted
+ *
+ * Components are registered with the locator as they are created, so they can not all be resolved when the
+ * index is built. Components, their parameters, and config-ref (connection) parameters are resolved on first
+ * lookup and kept in the index.
+ *
+ * Set "mule.otel.component.index.parallelism" system property to change the number of threads used for
+ * building the index, defaults to number of available processors.
+ * </pre>
+ */
+public class ComponentIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ComponentIndex.class);
+  public static final String MULE_OTEL_COMPONENT_INDEX_PARALLELISM_PROPERTY_NAME = "mule.otel.component.index.parallelism";
+  private static final String COMPONENT_PARAMETERS_ANNOTATION = "{config}componentParameters";
+  /**
+   * Locations indexed by a single task before splitting.
+   */
+  static final int SPLIT_THRESHOLD = 256;
+
+  private final ConfigurationComponentLocator configurationComponentLocator;
+  private final Map<String, IndexedLocation> locations = new ConcurrentHashMap<>();
+  private final Map<String, Component> components = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, String>> parameters = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, String>> configParameters = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, String>> configConnectionParameters = new ConcurrentHashMap<>();
+  private volatile boolean built;
+
+  public ComponentIndex(ConfigurationComponentLocator configurationComponentLocator) {
+    this.configurationComponentLocator = configurationComponentLocator;
+  }
+
+  public ConfigurationComponentLocator getConfigurationComponentLocator() {
+    return configurationComponentLocator;
+  }
+
+  /**
+   * Index all component locations of the application. Until this is called, all
+   * lookups fall back to {@link ConfigurationComponentLocator}.
+   */
+  public void build() {
+    long start = System.nanoTime();
+    List<ComponentLocation> allLocations = new ArrayList<>(configurationComponentLocator.findAllLocations());
+    int parallelism = Math.max(1, Integer.getInteger(MULE_OTEL_COMPONENT_INDEX_PARALLELISM_PROPERTY_NAME,
+        Runtime.getRuntime().availableProcessors()));
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new IndexTask(allLocations, 0, allLocations.size()));
+    } finally {
+      pool.shutdown();
+    }
+    built = true;
+    LOGGER.info("Indexed {} component locations with parallelism {} in {} ms", locations.size(), parallelism,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  public boolean isBuilt() {
+    return built;
+  }
+
+  public int size() {
+    return locations.size();
+  }
+
+  /**
+   * @return Unmodifiable {@link Collection} of all indexed locations
+   */
+  public Collection<IndexedLocation> getIndexedLocations() {
+    return Collections.unmodifiableCollection(locations.values());
+  }
+
+  private final class IndexTask extends RecursiveAction {
+    private final List<ComponentLocation> allLocations;
+    private final int from;
+    private final int to;
+
+    private IndexTask(List<ComponentLocation> allLocations, int from, int to) {
+      this.allLocations = allLocations;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= SPLIT_THRESHOLD) {
+        for (int i = from; i < to; i++) {
+          ComponentLocation location = allLocations.get(i);
+          locations.put(location.getLocation(), new IndexedLocation(location));
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(new IndexTask(allLocations, from, middle), new IndexTask(allLocations, middle, to));
+      }
+    }
+  }
+
+  /**
+   * Get the indexed entry for given location.
+   *
+   * @param location
+   *            {@link String} location of a component
+   * @return {@link IndexedLocation} or null when location is not indexed
+   */
+  public IndexedLocation get(String location) {
+    return location == null ? null : locations.get(location);
+  }
+
+  /**
+   * Set the metric attributes of a metered location. Locations are metered when
+   * they are intercepted, while flows are being created.
+   *
+   * @param location
+   *            {@link String} location of a component
+   * @param metricAttributes
+   *            {@link Attributes} to record the metrics of the location with
+   */
+  public void setMetricAttributes(String location, Attributes metricAttributes) {
+    IndexedLocation indexed = get(location);
+    if (indexed != null)
+      indexed.metricAttributes = metricAttributes;
+  }
+
+  /**
+   * Find a component location, such as a flow or a sub-flow, by its location.
+   *
+   * @param location
+   *            {@link String} location of a component
+   * @return Optional {@link ComponentLocation}
+   */
+  public Optional<ComponentLocation> findLocation(String location) {
+    if (!built)
+      return ComponentsUtil.findLocation(location, configurationComponentLocator);
+    return Optional.ofNullable(get(location)).map(IndexedLocation::getLocation);
+  }
+
+  public boolean isFirstProcessor(ComponentLocation location) {
+    IndexedLocation indexed = get(location.getLocation());
+    return indexed != null ? indexed.isFirstProcessor() : ComponentsUtil.isFirstProcessor(location);
+  }
+
+  /**
+   * Gets the async scope when the location is its first processor, see
+   * {@link ComponentsUtil#getAsyncScopeLocation(ComponentLocation)}.
+   *
+   * @param location
+   *            {@link ComponentLocation}
+   * @return String location of the async scope, otherwise null
+   */
+  public String getAsyncScopeLocation(ComponentLocation location) {
+    IndexedLocation indexed = get(location.getLocation());
+    return indexed != null ? indexed.getAsyncScopeLocation() : ComponentsUtil.getAsyncScopeLocation(location);
+  }
+
+  public String getLocationParent(String location) {
+    IndexedLocation indexed = get(location);
+    return indexed != null ? indexed.getLocationParent() : ComponentsUtil.getLocationParent(location);
+  }
+
+  /**
+   * Gets the parent container for router's route, see
+   * {@link ComponentsUtil#getRouteContainerLocation(TraceComponent)}.
+   *
+   * @param traceComponent
+   *            {@link TraceComponent}
+   * @return String
+   */
+  public String getRouteContainerLocation(TraceComponent traceComponent) {
+    if (traceComponent.getComponentLocation() == null)
+      return null;
+    IndexedLocation indexed = get(traceComponent.getComponentLocation().getLocation());
+    return indexed != null ? indexed.getRouteContainerLocation()
+        : ComponentsUtil.getRouteContainerLocation(traceComponent);
+  }
+
+  /**
+   * Find a component by its location.
+   *
+   * @param location
+   *            {@link String} location of a component
+   * @return Optional {@link Component}
+   */
+  public Optional<Component> findComponent(String location) {
+    Component component = components.get(location);
+    if (component == null) {
+      component = configurationComponentLocator
+          .find(Location.builderFromStringRepresentation(location).build()).orElse(null);
+      if (component != null)
+        components.put(location, component);
+    }
+    return Optional.ofNullable(component);
+  }
+
+  /**
+   * Find a component by its location, including the processors of sub-flows.
+   *
+   * @param location
+   *            {@link ComponentLocation} of a component
+   * @return Optional {@link Component}
+   */
+  public Optional<Component> findComponent(ComponentLocation location) {
+    Optional<Component> component = findComponent(location.getLocation());
+    if (!component.isPresent()) {
+      // sub-flows are not beans by definitions,
+      // so any processors within sub-flows won't be found by location
+      // lookup by identifiers and then match the location to find it
+      component = ComponentsUtil.findComponent(location.getComponentIdentifier().getIdentifier(),
+          location.getLocation(), configurationComponentLocator);
+      component.ifPresent(c -> components.put(location.getLocation(), c));
+    }
+    return component;
+  }
+
+  /**
+   * Get the parameters of a component.
+   *
+   * @param component
+   *            {@link Component}
+   * @return Unmodifiable {@link Map} of parameters
+   */
+  public Map<String, String> getParameters(Component component) {
+    String location = component.getLocation() != null ? component.getLocation().getLocation() : null;
+    if (location == null)
+      return readParameters(component);
+    return parameters.computeIfAbsent(location, l -> readParameters(component));
+  }
+
+  /**
+   * Get the parameters of a global configuration element, with its namespace and
+   * name.
+   *
+   * @param configRef
+   *            {@link String} name of the global configuration element
+   * @return {@link Map} of parameters, empty when not found
+   */
+  public Map<String, String> getConfigParameters(String configRef) {
+    if (configRef == null)
+      return Collections.emptyMap();
+    return configParameters.computeIfAbsent(configRef,
+        ref -> findExtendedParameters(ref, Location.builder().globalName(ref)));
+  }
+
+  /**
+   * Get the connection parameters of a global configuration element, with its
+   * namespace and name.
+   *
+   * @param configRef
+   *            {@link String} name of the global configuration element
+   * @return {@link Map} of parameters, empty when not found
+   */
+  public Map<String, String> getConfigConnectionParameters(String configRef) {
+    if (configRef == null)
+      return Collections.emptyMap();
+    return configConnectionParameters.computeIfAbsent(configRef,
+        ref -> findExtendedParameters(ref, Location.builder().globalName(ref).addConnectionPart()));
+  }
+
+  private Map<String, String> findExtendedParameters(String configRef, Location.Builder location) {
+    try {
+      return configurationComponentLocator.find(location.build())
+          .map(this::toExtendedParameters).orElse(Collections.emptyMap());
+    } catch (Exception ex) {
+      LOGGER.trace(
+          "Failed to extract connection parameters for {}. Ignoring this failure - {}", configRef,
+          ex.getMessage());
+      return Collections.emptyMap();
+    }
+  }
+
+  private Map<String, String> toExtendedParameters(Component component) {
+    Map<String, String> map = new HashMap<>(readParameters(component));
+    map.put(COMPONENT_NAMESPACE_KEY, component.getIdentifier().getNamespace());
+    map.put(COMPONENT_NAME_KEY, component.getIdentifier().getName());
+    return Collections.unmodifiableMap(map);
+  }
+
+  private static Map<String, String> readParameters(Component component) {
+    Map<String, String> componentParameters = (Map<String, String>) component
+        .getAnnotation(QName.valueOf(COMPONENT_PARAMETERS_ANNOTATION));
+    return componentParameters == null ? Collections.emptyMap()
+        : Collections.unmodifiableMap(componentParameters);
+  }
+
+  /**
+   * Indexed information of a component location.
+   */
+  public static final class IndexedLocation {
+    private final ComponentLocation location;
+    private final ComponentIdentifier identifier;
+    private final String rootContainerName;
+    private final boolean inSubFlow;
+    private final boolean firstProcessor;
+    private final String locationParent;
+    private final String routeContainerLocation;
+    private final String asyncScopeLocation;
+    private volatile Attributes metricAttributes;
+
+    IndexedLocation(ComponentLocation location) {
+      this.location = location;
+      this.identifier = location.getComponentIdentifier().getIdentifier();
+      this.rootContainerName = location.getRootContainerName();
+      List<LocationPart> parts = location.getParts();
+      this.inSubFlow = !parts.isEmpty() && parts.get(0).getPartIdentifier()
+          .map(tci -> "sub-flow".equals(tci.getIdentifier().getName())).orElse(false);
+      this.firstProcessor = ComponentsUtil.isFirstProcessor(location);
+      this.locationParent = ComponentsUtil.getLocationParent(location.getLocation());
+      this.routeContainerLocation = ComponentsUtil.getRouteContainerLocation(location);
+      this.asyncScopeLocation = ComponentsUtil.getAsyncScopeLocation(location);
+    }
+
+    public ComponentLocation getLocation() {
+      return location;
+    }
+
+    public ComponentIdentifier getIdentifier() {
+      return identifier;
+    }
+
+    public String getRootContainerName() {
+      return rootContainerName;
+    }
+
+    /**
+     * @return true if this component is a sub-flow or belongs to a sub-flow
+     */
+    public boolean isInSubFlow() {
+      return inSubFlow;
+    }
+
+    public boolean isFirstProcessor() {
+      return firstProcessor;
+    }
+
+    public String getLocationParent() {
+      return locationParent;
+    }
+
+    /**
+     * @return location of the router when this component is a processor of a
+     *         route, otherwise null
+     */
+    public String getRouteContainerLocation() {
+      return routeContainerLocation;
+    }
+
+    /**
+     * @return location of the async scope when this component is its first
+     *         processor, otherwise null
+     */
+    public String getAsyncScopeLocation() {
+      return asyncScopeLocation;
+    }
+
+    /**
+     * @return true if this component is a flow
+     */
+    public boolean isFlow() {
+      return "flow".equals(identifier.getName()) && location.getLocation().equals(rootContainerName);
+    }
+
+    /**
+     * @return metric attributes when this component is metered, otherwise null
+     */
+    public Attributes getMetricAttributes() {
+      return metricAttributes;
+    }
+  }
+}
@@ -43,7 +43,7 @@ public class DBProcessorComponent extends AbstractProcessorComponent {
 
   @Override
   protected <A> Map<String, String> getAttributes(Component component, TypedValue<A> attributes) {
-    ComponentWrapper componentWrapper = new ComponentWrapper(component, configurationComponentLocator);
+    ComponentWrapper componentWrapper = new ComponentWrapper(component, componentIndex);
     Map<String, String> connectionParams = componentWrapper.getConfigConnectionParameters();
 
     Map<String, String> tags = new HashMap<>();
@@ -9,7 +9,6 @@ import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.context.Context;
 import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.component.ComponentIdentifier;
-import org.mule.runtime.api.component.location.Location;
 import org.mule.runtime.api.metadata.TypedValue;
 import org.mule.runtime.api.notification.EnrichedServerNotification;
 
@@ -87,15 +86,15 @@ public class FlowProcessorComponent extends AbstractProcessorComponent {
     }
     startTraceComponent.getTags().put(MULE_APP_FLOW_SOURCE_NAME.getKey(), sourceIdentifier.getName());
     startTraceComponent.getTags().put(MULE_APP_FLOW_SOURCE_NAMESPACE.getKey(), sourceIdentifier.getNamespace());
-    Component sourceComponent = configurationComponentLocator.find(Location.builderFromStringRepresentation(
-        notification.getEvent().getContext().getOriginatingLocation().getLocation()).build()).get();
-    ComponentWrapper sourceWrapper = new ComponentWrapper(sourceComponent, configurationComponentLocator);
+    Component sourceComponent = componentIndex
+        .findComponent(notification.getEvent().getContext().getOriginatingLocation().getLocation()).get();
+    ComponentWrapper sourceWrapper = new ComponentWrapper(sourceComponent, componentIndex);
     startTraceComponent.getTags().put(MULE_APP_FLOW_SOURCE_CONFIG_REF.getKey(), sourceWrapper.getConfigRef());
     // Find if there is a processor component to handle flow source component.
     // If exists, allow it to process notification and build any additional tags to
     // include in a trace.
     ProcessorComponent processorComponentFor = ProcessorComponentService.getInstance()
-        .getProcessorComponentFor(sourceIdentifier, configurationComponentLocator);
+        .getProcessorComponentFor(sourceIdentifier, componentIndex);
     if (processorComponentFor != null) {
       TraceComponent sourceTrace = processorComponentFor.getSourceStartTraceComponent(notification,
           traceContextHandler);
@@ -106,7 +105,8 @@ public class FlowProcessorComponent extends AbstractProcessorComponent {
         startTraceComponent.withSpanKind(sourceKind)
             .withSpanName(sourceTrace.getSpanName())
             .withTransactionId(sourceTrace.getTransactionId())
-            .withContext(sourceTrace.getContext());
+            .withContext(sourceTrace.getContext())
+            .withForceTrace(sourceTrace.isForceTrace());
       }
     }
     return startTraceComponent;
@@ -125,7 +125,7 @@ public class FlowProcessorComponent extends AbstractProcessorComponent {
     // If exists, allow it to process notification and build any additional tags to
     // include in a trace.
     ProcessorComponent processorComponent = ProcessorComponentService.getInstance()
-        .getProcessorComponentFor(sourceIdentifier, configurationComponentLocator);
+        .getProcessorComponentFor(sourceIdentifier, componentIndex);
     if (processorComponent != null) {
       TraceComponent sourceTrace = processorComponent.getSourceEndTraceComponent(notification,
           traceContextHandler);
@@ -0,0 +1,118 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.FlowTraceLevel;
+import com.avioconsulting.mule.opentelemetry.internal.processor.ComponentIndex.IndexedLocation;
+import org.mule.runtime.api.component.location.ComponentLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.avioconsulting.mule.opentelemetry.internal.processor.TraceLevelSnapshot.CONFIGURED_SAMPLING_RATIO;
+
+/**
+ * <pre>
+ * Per-location decision table of {@link FlowTraceLevel}s, resolved when the application is deployed.
+ *
+ * Every indexed location of {@link ComponentIndex} is mapped to the first {@link FlowTraceLevels} matching its
+ * root container, so the tracing code paths only look up the location. Locations that are not indexed are
+ * resolved on first lookup.
+ * </pre>
+ */
+public final class FlowTraceLevelTable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FlowTraceLevelTable.class);
+
+  static final FlowTraceLevelTable EMPTY = new FlowTraceLevelTable(Collections.emptyList());
+
+  private final List<FlowTraceLevels> flowTraceLevels;
+  private final Map<String, Optional<FlowTraceLevels>> byLocation = new ConcurrentHashMap<>();
+  private final Map<String, Optional<FlowTraceLevels>> byContainer = new ConcurrentHashMap<>();
+
+  private FlowTraceLevelTable(List<FlowTraceLevels> flowTraceLevels) {
+    this.flowTraceLevels = flowTraceLevels;
+  }
+
+  /**
+   * Resolve the flow trace levels for all locations of the application.
+   *
+   * @param flowTraceLevels
+   *            {@link FlowTraceLevel}s of the module configuration, can be null
+   * @param componentIndex
+   *            built {@link ComponentIndex}
+   * @return FlowTraceLevelTable
+   */
+  static FlowTraceLevelTable build(List<FlowTraceLevel> flowTraceLevels, ComponentIndex componentIndex) {
+    if (flowTraceLevels == null || flowTraceLevels.isEmpty())
+      return EMPTY;
+    List<FlowTraceLevels> resolved = new ArrayList<>(flowTraceLevels.size());
+    for (FlowTraceLevel flowTraceLevel : flowTraceLevels) {
+      resolved.add(new FlowTraceLevels(flowTraceLevel));
+    }
+    FlowTraceLevelTable table = new FlowTraceLevelTable(Collections.unmodifiableList(resolved));
+    for (IndexedLocation location : componentIndex.getIndexedLocations()) {
+      table.byLocation.put(location.getLocation().getLocation(),
+          table.forContainer(location.getRootContainerName()));
+    }
+    LOGGER.info("Resolved {} flow trace levels for {} locations of {} flows", resolved.size(),
+        table.byLocation.size(), table.byContainer.size());
+    return table;
+  }
+
+  public boolean isEmpty() {
+    return flowTraceLevels.isEmpty();
+  }
+
+  private Optional<FlowTraceLevels> forContainer(String containerName) {
+    if (containerName == null)
+      return Optional.empty();
+    return byContainer.computeIfAbsent(containerName, name -> flowTraceLevels.stream()
+        .filter(ftl -> ftl.matches(name)).findFirst());
+  }
+
+  /**
+   * @param location
+   *            {@link ComponentLocation} of a processor, can be null
+   * @return {@link FlowTraceLevels} of the processor's flow, or null to use the
+   *         global trace levels
+   */
+  public FlowTraceLevels get(ComponentLocation location) {
+    if (flowTraceLevels.isEmpty() || location == null)
+      return null;
+    Optional<FlowTraceLevels> entry = byLocation.get(location.getLocation());
+    if (entry == null) {
+      entry = forContainer(location.getRootContainerName());
+      byLocation.put(location.getLocation(), entry);
+    }
+    return entry.orElse(null);
+  }
+
+  /**
+   * @param flowName
+   *            name of a flow
+   * @return {@link FlowTraceLevels} of the flow, or null to use the global
+   *         trace levels
+   */
+  public FlowTraceLevels getForFlow(String flowName) {
+    if (flowTraceLevels.isEmpty())
+      return null;
+    return forContainer(flowName).orElse(null);
+  }
+
+  /**
+   * @return {@link Map} of sampling ratios by the name of flows that set one
+   */
+  Map<String, Double> getSamplingRatios() {
+    Map<String, Double> ratios = new HashMap<>();
+    byContainer.forEach((name, entry) -> entry
+        .filter(ftl -> ftl.getSamplingRatio() != CONFIGURED_SAMPLING_RATIO)
+        .ifPresent(ftl -> ratios.put(name, ftl.getSamplingRatio())));
+    return ratios;
+  }
+}
@@ -0,0 +1,132 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.FlowTraceLevel;
+import com.avioconsulting.mule.opentelemetry.api.config.MuleComponent;
+import org.mule.runtime.api.component.ComponentIdentifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static com.avioconsulting.mule.opentelemetry.internal.processor.TraceLevelSnapshot.CONFIGURED_SAMPLING_RATIO;
+
+/**
+ * Immutable trace levels of a {@link FlowTraceLevel}, see
+ * {@link FlowTraceLevelTable}. Settings that are not set use the global trace
+ * levels of {@link TraceLevelSnapshot}.
+ */
+public final class FlowTraceLevels {
+
+  private final String flowName;
+  private final Pattern pattern;
+  private final Boolean spanAllProcessors;
+  private final List<MuleComponent> ignoreMuleComponents;
+  private final double samplingRatio;
+  private final Duration slowTransactionThreshold;
+  private final Map<ComponentIdentifier, Boolean> ignored = new ConcurrentHashMap<>();
+
+  FlowTraceLevels(FlowTraceLevel flowTraceLevel) {
+    String name = flowTraceLevel.getFlowName();
+    if (name == null || name.trim().isEmpty())
+      throw new IllegalArgumentException("Flow name of the flow trace levels cannot be empty");
+    this.flowName = name.trim();
+    this.pattern = toPattern(flowName);
+    this.spanAllProcessors = flowTraceLevel.getSpanAllProcessors();
+    this.ignoreMuleComponents = flowTraceLevel.getIgnoreMuleComponents() == null ? null
+        : Collections.unmodifiableList(new ArrayList<>(flowTraceLevel.getIgnoreMuleComponents()));
+    this.samplingRatio = flowTraceLevel.getSamplingRatio() == null ? CONFIGURED_SAMPLING_RATIO
+        : flowTraceLevel.getSamplingRatio();
+    TraceLevelSnapshot.validateRatio(samplingRatio);
+    this.slowTransactionThreshold = toThreshold(flowTraceLevel.getSlowTransactionThreshold());
+  }
+
+  /**
+   * @param millis
+   *            slow transaction threshold in milliseconds, can be null
+   * @return {@link Duration} of the threshold, or null
+   */
+  static Duration toThreshold(Long millis) {
+    if (millis == null)
+      return null;
+    if (millis < 0)
+      throw new IllegalArgumentException("Slow transaction threshold cannot be negative - " + millis);
+    return Duration.ofMillis(millis);
+  }
+
+  private static Pattern toPattern(String flowName) {
+    StringBuilder regex = new StringBuilder();
+    for (String part : flowName.split("\\*", -1)) {
+      if (regex.length() > 0)
+        regex.append(".*");
+      regex.append(Pattern.quote(part));
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /**
+   * @param containerName
+   *            name of a flow or a sub-flow
+   * @return true if flow name or pattern matches the container
+   */
+  boolean matches(String containerName) {
+    return containerName != null && pattern.matcher(containerName).matches();
+  }
+
+  /**
+   * @return flow name or pattern
+   */
+  public String getFlowName() {
+    return flowName;
+  }
+
+  /**
+   * @return span all processors setting, null to use the global setting
+   */
+  public Boolean getSpanAllProcessors() {
+    return spanAllProcessors;
+  }
+
+  /**
+   * @return ignored components, null to use the global setting
+   */
+  public List<MuleComponent> getIgnoreMuleComponents() {
+    return ignoreMuleComponents;
+  }
+
+  /**
+   * @return sampling ratio, or
+   *         {@link TraceLevelSnapshot#CONFIGURED_SAMPLING_RATIO} to use the
+   *         global setting
+   */
+  public double getSamplingRatio() {
+    return samplingRatio;
+  }
+
+  /**
+   * @return slow transaction threshold, null to use the global setting
+   */
+  public Duration getSlowTransactionThreshold() {
+    return slowTransactionThreshold;
+  }
+
+  /**
+   * @param identifier
+   *            {@link ComponentIdentifier} of a processor
+   * @return true if processor matches any of {@link #getIgnoreMuleComponents()}
+   */
+  public boolean isIgnored(ComponentIdentifier identifier) {
+    return ignored.computeIfAbsent(identifier,
+        id -> TraceLevelSnapshot.matchesAny(ignoreMuleComponents, id));
+  }
+
+  @Override
+  public String toString() {
+    return "FlowTraceLevels{flowName='" + flowName + "', spanAllProcessors=" + spanAllProcessors
+        + ", ignoreMuleComponents=" + ignoreMuleComponents + ", samplingRatio=" + samplingRatio
+        + ", slowTransactionThreshold=" + slowTransactionThreshold + "}";
+  }
+}
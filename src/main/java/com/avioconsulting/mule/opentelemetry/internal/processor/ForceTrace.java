@@ -0,0 +1,136 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import org.mule.runtime.api.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static com.avioconsulting.mule.opentelemetry.internal.util.OpenTelemetryUtil.getEventTransactionId;
+
+/**
+ * <pre>
+ * Forces a single transaction to be sampled, with spans for all processors, when the inbound HTTP request or
+ * Anypoint MQ message has the configured force trace header (or property) with the shared secret as value.
+ *
+ * - Disabled unless both header name and secret are configured
+ * - At most `maxPerMinute` transactions are forced in a minute, other requests are traced as usual
+ * - Forced transactions are tracked until they end, tracing code paths check {@link #isForced(Event)} only
+ *   when at least one forced transaction is in progress
+ * </pre>
+ */
+public class ForceTrace {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ForceTrace.class);
+
+  static final ForceTrace DISABLED = new ForceTrace(null, null, 0);
+
+  private final String headerName;
+  private final byte[] secret;
+  private final int maxPerMinute;
+  private final LongSupplier nanoClock;
+  private final Set<String> transactions = ConcurrentHashMap.newKeySet();
+  private long windowStart;
+  private int forcedInWindow;
+
+  public ForceTrace(String headerName, String secret, int maxPerMinute) {
+    this(headerName, secret, maxPerMinute, System::nanoTime);
+  }
+
+  ForceTrace(String headerName, String secret, int maxPerMinute, LongSupplier nanoClock) {
+    boolean enabled = headerName != null && !headerName.trim().isEmpty() && secret != null && !secret.isEmpty()
+        && maxPerMinute > 0;
+    this.headerName = enabled ? headerName.trim() : null;
+    this.secret = enabled ? secret.getBytes(StandardCharsets.UTF_8) : null;
+    this.maxPerMinute = maxPerMinute;
+    this.nanoClock = nanoClock;
+    this.windowStart = nanoClock.getAsLong();
+  }
+
+  static ForceTrace of(TraceLevelConfiguration traceLevelConfiguration) {
+    ForceTrace forceTrace = new ForceTrace(traceLevelConfiguration.getForceTraceHeader(),
+        traceLevelConfiguration.getForceTraceSecret(), traceLevelConfiguration.getForceTraceMaxPerMinute());
+    if (forceTrace.isEnabled())
+      LOGGER.info("Force trace enabled with '{}' header, limited to {} transactions per minute",
+          forceTrace.headerName, forceTrace.maxPerMinute);
+    return forceTrace.isEnabled() ? forceTrace : DISABLED;
+  }
+
+  public boolean isEnabled() {
+    return headerName != null;
+  }
+
+  /**
+   * Check if the inbound carrier requests forced tracing. A valid request counts
+   * towards the rate limit.
+   *
+   * @param carrier
+   *            HTTP headers or message properties
+   * @param textMapGetter
+   *            {@link TextMapGetter} for the carrier
+   * @param <T>
+   *            carrier type
+   * @return true if the transaction must be forced
+   */
+  public <T> boolean isRequested(T carrier, TextMapGetter<T> textMapGetter) {
+    if (headerName == null || carrier == null)
+      return false;
+    String value = textMapGetter.get(carrier, headerName);
+    if (value == null)
+      return false;
+    if (!MessageDigest.isEqual(secret, value.trim().getBytes(StandardCharsets.UTF_8))) {
+      LOGGER.debug("Ignoring '{}' with an invalid secret", headerName);
+      return false;
+    }
+    if (!tryAcquire()) {
+      LOGGER.warn("Ignoring '{}', more than {} transactions forced in a minute", headerName, maxPerMinute);
+      return false;
+    }
+    return true;
+  }
+
+  private synchronized boolean tryAcquire() {
+    long now = nanoClock.getAsLong();
+    if (now - windowStart >= TimeUnit.MINUTES.toNanos(1)) {
+      windowStart = now;
+      forcedInWindow = 0;
+    }
+    if (forcedInWindow >= maxPerMinute)
+      return false;
+    forcedInWindow++;
+    return true;
+  }
+
+  /**
+   * @param transactionId
+   *            id of the forced transaction that started
+   */
+  public void started(String transactionId) {
+    LOGGER.info("Forcing trace for transaction {}", transactionId);
+    transactions.add(transactionId);
+  }
+
+  /**
+   * @param transactionId
+   *            id of the forced transaction that ended
+   */
+  public void ended(String transactionId) {
+    transactions.remove(transactionId);
+  }
+
+  /**
+   * @param event
+   *            {@link Event} being processed
+   * @return true if the event belongs to a forced transaction
+   */
+  public boolean isForced(Event event) {
+    return !transactions.isEmpty() && transactions.contains(getEventTransactionId(event));
+  }
+}
@@ -142,7 +142,7 @@ public class HttpProcessorComponent extends AbstractProcessorComponent {
 
   @Override
   protected <A> Map<String, String> getAttributes(Component component, TypedValue<A> attributes) {
-    ComponentWrapper componentWrapper = new ComponentWrapper(component, configurationComponentLocator);
+    ComponentWrapper componentWrapper = new ComponentWrapper(component, componentIndex);
     Map<String, String> tags = new HashMap<>();
     if (isRequester(component.getIdentifier())) {
       tags.putAll(getRequesterTags(componentWrapper));
@@ -189,7 +189,9 @@ public class HttpProcessorComponent extends AbstractProcessorComponent {
         .withTags(tags)
         .withTransactionId(getTransactionId(notification))
         .withSpanName(HttpSpanUtil.spanName(tags, attributes.getListenerPath()))
-        .withContext(traceContextHandler.getTraceContext(attributes.getHeaders(), ContextMapGetter.INSTANCE));
+        .withContext(traceContextHandler.getTraceContext(attributes.getHeaders(), ContextMapGetter.INSTANCE))
+        .withForceTrace(traceContextHandler.isForceTraceRequested(attributes.getHeaders(),
+            ContextMapGetter.INSTANCE));
   }
 
   @Override
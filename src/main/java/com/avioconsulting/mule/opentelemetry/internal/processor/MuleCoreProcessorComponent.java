@@ -55,8 +55,7 @@ public class MuleCoreProcessorComponent extends AbstractProcessorComponent {
   @Override
   protected <A> Map<String, String> getAttributes(Component component, TypedValue<A> attributes) {
     Map<String, String> tags = new HashMap<>();
-    ComponentWrapper componentWrapper = new ComponentWrapper(component,
-        configurationComponentLocator);
+    ComponentWrapper componentWrapper = new ComponentWrapper(component, componentIndex);
     if (ComponentsUtil.isFlowRef(component.getLocation())) {
       tags.put("mule.app.processor.flowRef.name", componentWrapper.getParameter("name"));
     }
@@ -66,8 +65,7 @@ public class MuleCoreProcessorComponent extends AbstractProcessorComponent {
   @Override
   public TraceComponent getEndTraceComponent(EnrichedServerNotification notification) {
     TraceComponent endTraceComponent = super.getEndTraceComponent(notification);
-    ComponentWrapper componentWrapper = new ComponentWrapper(notification.getComponent(),
-        configurationComponentLocator);
+    ComponentWrapper componentWrapper = new ComponentWrapper(notification.getComponent(), componentIndex);
     if (ComponentsUtil.isFlowRef(notification.getComponent().getLocation())) {
       endTraceComponent.getTags().put("mule.app.processor.flowRef.name", componentWrapper.getParameter("name"));
     }
@@ -7,11 +7,17 @@ import com.avioconsulting.mule.opentelemetry.api.store.TransactionMeta;
 import com.avioconsulting.mule.opentelemetry.api.store.TransactionStore;
 import com.avioconsulting.mule.opentelemetry.api.traces.TraceComponent;
 import com.avioconsulting.mule.opentelemetry.internal.connection.OpenTelemetryConnection;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.BuiltInMetricsProvider;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics.Operation;
+import com.avioconsulting.mule.opentelemetry.internal.processor.ComponentIndex.IndexedLocation;
 import com.avioconsulting.mule.opentelemetry.internal.processor.service.ProcessorComponentService;
 import com.avioconsulting.mule.opentelemetry.internal.util.ComponentsUtil;
 import io.opentelemetry.api.trace.SpanKind;
 import org.mule.runtime.api.component.ComponentIdentifier;
+import org.mule.runtime.api.component.location.ComponentLocation;
 import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
+import org.mule.runtime.api.event.Event;
 import org.mule.runtime.api.metadata.TypedValue;
 import org.mule.runtime.api.notification.AsyncMessageNotification;
 import org.mule.runtime.api.notification.EnrichedServerNotification;
@@ -21,16 +27,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_SCOPE_SUBFLOW_NAME;
-import static com.avioconsulting.mule.opentelemetry.internal.util.ComponentsUtil.findLocation;
 import static com.avioconsulting.mule.opentelemetry.internal.util.ComponentsUtil.isFlowRef;
+import static com.avioconsulting.mule.opentelemetry.internal.util.OpenTelemetryUtil.getEventTransactionId;
 
 /**
  * Notification Processor bean. This is injected through registry-bootstrap into
@@ -44,12 +52,15 @@ public class MuleNotificationProcessor {
   public static final String MULE_OTEL_SPAN_PROCESSORS_ENABLE_PROPERTY_NAME = "mule.otel.span.processors.enable";
 
   private Supplier<OpenTelemetryConnection> connectionSupplier;
-  private boolean spanAllProcessors;
   private TraceLevelConfiguration traceLevelConfiguration;
+  private TraceLevels traceLevels;
+  private ForceTrace forceTrace = ForceTrace.DISABLED;
+  private Duration slowTransactionThreshold;
   private OpenTelemetryConnection openTelemetryConnection;
 
   ConfigurationComponentLocator configurationComponentLocator;
-  private final List<String> interceptSpannedComponents = new ArrayList<>();
+  private final ComponentIndex componentIndex;
+  private final Set<String> interceptSpannedComponents = ConcurrentHashMap.newKeySet();
   private final List<String> meteredComponentLocations = new ArrayList<>();
   private ProcessorComponentService processorComponentService;
   private final ProcessorComponent flowProcessorComponent;
@@ -63,10 +74,21 @@ public class MuleNotificationProcessor {
   @Inject
   public MuleNotificationProcessor(ConfigurationComponentLocator configurationComponentLocator) {
     this.configurationComponentLocator = configurationComponentLocator;
+    componentIndex = new ComponentIndex(configurationComponentLocator);
     flowProcessorComponent = new FlowProcessorComponent()
-        .withConfigurationComponentLocator(configurationComponentLocator);
+        .withComponentIndex(componentIndex);
     genericProcessorComponent = new GenericProcessorComponent()
-        .withConfigurationComponentLocator(configurationComponentLocator);
+        .withComponentIndex(componentIndex);
+  }
+
+  /**
+   * {@link ComponentIndex} of the application, used instead of
+   * {@link ConfigurationComponentLocator} by all tracing code paths.
+   *
+   * @return {@link ComponentIndex}
+   */
+  public ComponentIndex getComponentIndex() {
+    return componentIndex;
   }
 
   /**
@@ -88,6 +110,7 @@ public class MuleNotificationProcessor {
    */
   public void addMeteredComponentLocation(String location) {
     if (openTelemetryConnection != null && !openTelemetryConnection.isTurnOffMetrics()) {
+      componentIndex.setMetricAttributes(location, BuiltInMetricsProvider.processorAttributesFor(location));
       openTelemetryConnection.getMetricsProviders().addMeteredComponent(location);
     }
   }
@@ -108,29 +131,102 @@ public class MuleNotificationProcessor {
     return traceLevelConfiguration;
   }
 
+  /**
+   * Trace levels that can be changed at runtime, available after
+   * {@link #init(OpenTelemetryConnection, TraceLevelConfiguration)}.
+   *
+   * @return {@link TraceLevels}
+   */
+  public TraceLevels getTraceLevels() {
+    return traceLevels;
+  }
+
+  /**
+   * {@link ForceTrace} of the configuration, available after
+   * {@link #init(OpenTelemetryConnection, TraceLevelConfiguration)}.
+   *
+   * @return {@link ForceTrace}
+   */
+  public ForceTrace getForceTrace() {
+    return forceTrace;
+  }
+
+  /**
+   * Trace levels in effect for an event, with all processor spans for forced
+   * transactions.
+   */
+  private TraceLevelSnapshot levelsFor(Event event) {
+    TraceLevelSnapshot levels = traceLevels.get();
+    return forceTrace.isForced(event) ? levels.forcedTrace() : levels;
+  }
+
   public void init(OpenTelemetryConnection connection,
       TraceLevelConfiguration traceLevelConfiguration) {
     this.openTelemetryConnection = connection;
-    this.spanAllProcessors = Boolean.parseBoolean(System.getProperty(MULE_OTEL_SPAN_PROCESSORS_ENABLE_PROPERTY_NAME,
+    boolean spanAllProcessors = Boolean.parseBoolean(System.getProperty(MULE_OTEL_SPAN_PROCESSORS_ENABLE_PROPERTY_NAME,
         Boolean.toString(traceLevelConfiguration.isSpanAllProcessors())));
     this.traceLevelConfiguration = traceLevelConfiguration;
     processorComponentService = ProcessorComponentService.getInstance();
+    if (!componentIndex.isBuilt()) {
+      // Interceptor factory consults the index while flows are being created,
+      // build it before that.
+      componentIndex.build();
+    }
+    // Flow metric attributes are built before flows run
+    for (IndexedLocation indexed : componentIndex.getIndexedLocations()) {
+      if (indexed.isFlow() && connection != null && !connection.isTurnOffMetrics())
+        connection.getMetricsProviders().addMeteredFlow(indexed.getRootContainerName());
+    }
+    this.traceLevels = new TraceLevels(traceLevelConfiguration, spanAllProcessors,
+        FlowTraceLevelTable.build(traceLevelConfiguration.getFlowTraceLevels(), componentIndex));
+    this.forceTrace = ForceTrace.of(traceLevelConfiguration);
+    this.slowTransactionThreshold = FlowTraceLevels
+        .toThreshold(traceLevelConfiguration.getSlowTransactionThreshold());
+  }
+
+  /**
+   * Slow transaction threshold for transactions started by a flow, null when
+   * processor spans are not deferred.
+   */
+  private Duration slowTransactionThreshold(String flowName) {
+    FlowTraceLevels flow = traceLevels.get().getFlowTraceLevels(flowName);
+    if (flow != null && flow.getSlowTransactionThreshold() != null)
+      return flow.getSlowTransactionThreshold();
+    return slowTransactionThreshold;
   }
 
   public void handleProcessorStartEvent(MessageProcessorNotification notification) {
-    String location = notification.getComponent().getLocation().getLocation();
-    if (ComponentsUtil.isAsyncScope(notification.getComponent().getLocation().getComponentIdentifier())) {
-      // Async scopes are handled via AsyncMessageNotifications.
-      // Creating one here will create duplicate spans
-      return;
-    }
-    if (interceptSpannedComponents.contains(location)) {
-      logger.trace(
-          "Component {} will be processed by interceptor, skipping notification processing to create span",
-          location);
-      return;
+    long overheadStart = ModuleOverheadMetrics.start();
+    try {
+      String location = notification.getComponent().getLocation().getLocation();
+      if (ComponentsUtil.isAsyncScope(notification.getComponent().getLocation().getComponentIdentifier())) {
+        // Async scopes are handled via AsyncMessageNotifications.
+        // Creating one here will create duplicate spans
+        return;
+      }
+      TraceLevelSnapshot levels = levelsFor(notification.getEvent());
+      if (!levels.isTracingEnabled())
+        return;
+      String asyncScopeLocation = componentIndex.getAsyncScopeLocation(notification.getComponent().getLocation());
+      if (asyncScopeLocation != null) {
+        // First processor of an async scope marks the end of its wait to be
+        // scheduled
+        openTelemetryConnection.startAsyncExecution(TraceComponent.of(notification.getComponent().getLocation())
+            .withTransactionId(getEventTransactionId(notification.getEvent()))
+            .withEventContextId(notification.getEvent().getContext().getId())
+            .withStartTime(Instant.ofEpochMilli(notification.getTimestamp())), asyncScopeLocation);
+      }
+      if (isInterceptSpanned(notification.getComponent().getLocation(), levels)) {
+        logger.trace(
+            "Component {} will be processed by interceptor, skipping notification processing to create span",
+            location);
+        return;
+      }
+      processComponentStartSpan(notification, levels);
+    } finally {
+      ModuleOverheadMetrics.record(Operation.PROCESSOR_START, notification.getComponent().getIdentifier(),
+          overheadStart);
     }
-    processComponentStartSpan(notification);
   }
 
   /**
@@ -140,7 +236,26 @@ public class MuleNotificationProcessor {
    *            AsyncMessageNotification
    */
   public void handleAsyncScheduledEvent(AsyncMessageNotification notification) {
-    processComponentStartSpan(notification);
+    TraceLevelSnapshot levels = levelsFor(notification.getEvent());
+    if (levels.isTracingEnabled())
+      processComponentStartSpan(notification, levels);
+  }
+
+  /**
+   * Check if the interceptor creates the span for a component location. Locations
+   * intercepted when flows were created can be excluded from interception at
+   * runtime, spans for those are created from notifications.
+   *
+   * @param location
+   *            {@link ComponentLocation} of target processor
+   * @param levels
+   *            {@link TraceLevelSnapshot} in effect
+   * @return true if span is created by the interceptor
+   */
+  public boolean isInterceptSpanned(ComponentLocation location, TraceLevelSnapshot levels) {
+    return interceptSpannedComponents.contains(location.getLocation())
+        && (componentIndex.isFirstProcessor(location)
+            || !levels.isInterceptionDisabled(location.getComponentIdentifier().getIdentifier()));
   }
 
   /**
@@ -150,20 +265,28 @@ public class MuleNotificationProcessor {
    * @param notification
    *            {@link EnrichedServerNotification}
    */
-  private void processComponentStartSpan(EnrichedServerNotification notification) {
+  private void processComponentStartSpan(EnrichedServerNotification notification, TraceLevelSnapshot levels) {
     try {
-      ProcessorComponent processorComponent = getProcessorComponent(notification.getComponent().getIdentifier());
+      ProcessorComponent processorComponent = getProcessorComponent(notification.getComponent().getIdentifier(),
+          notification.getComponent().getLocation(), levels);
       if (processorComponent != null) {
         logger.trace("Handling '{}:{}' processor start event context id {} correlation id {} ",
             notification.getResourceIdentifier(), notification.getComponent().getIdentifier(),
             notification.getEvent().getContext().getId(),
             notification.getEvent().getCorrelationId());
+        String location = notification.getComponent().getLocation().getLocation();
+        IndexedLocation indexed = componentIndex.get(location);
         TraceComponent traceComponent = processorComponent.getStartTraceComponent(notification)
             .withStartTime(Instant.ofEpochMilli(notification.getTimestamp()))
             .withEventContextId(notification.getEvent().getContext().getId())
             .withComponentLocation(notification.getComponent().getLocation());
-        openTelemetryConnection.addProcessorSpan(traceComponent,
-            ComponentsUtil.getLocationParent(notification.getComponent().getLocation().getLocation()));
+        if (indexed != null) {
+          openTelemetryConnection.addProcessorSpan(traceComponent.withMetricAttributes(indexed.getMetricAttributes()),
+              indexed.getLocationParent(), indexed.getRouteContainerLocation());
+        } else {
+          openTelemetryConnection.addProcessorSpan(traceComponent, componentIndex.getLocationParent(location),
+              componentIndex.getRouteContainerLocation(traceComponent));
+        }
       }
     } catch (Exception ex) {
       logger.error("Error in handling processor start event", ex);
@@ -179,6 +302,9 @@ public class MuleNotificationProcessor {
    *
    * If a specific processor isn't found and `spanAllProcessors` is <code>true</code> then {@link GenericProcessorComponent} will be returned to process target component.
    *
+   * `spanAllProcessors` and ignored components set for the processor's flow in {@link FlowTraceLevelTable} take
+   * precedence over the global settings.
+   *
    * </pre>
    * 
    * @param notification
@@ -192,14 +318,48 @@ public class MuleNotificationProcessor {
   }
 
   public ProcessorComponent getProcessorComponent(ComponentIdentifier identifier) {
-    boolean ignored = traceLevelConfiguration.getIgnoreMuleComponents().stream()
-        .anyMatch(mc -> mc.getNamespace().equalsIgnoreCase(identifier.getNamespace())
-            & (mc.getName().equalsIgnoreCase(identifier.getName()) || "*".equalsIgnoreCase(mc.getName())));
-    if (spanAllProcessors && ignored)
+    return getProcessorComponent(identifier, traceLevels.get());
+  }
+
+  /**
+   * Same as {@link #getProcessorComponent(ComponentIdentifier)} for the trace
+   * levels already read by the caller.
+   *
+   * @param identifier
+   *            {@link ComponentIdentifier} of target processor
+   * @param levels
+   *            {@link TraceLevelSnapshot} in effect
+   * @return ProcessorComponent or null
+   */
+  public ProcessorComponent getProcessorComponent(ComponentIdentifier identifier, TraceLevelSnapshot levels) {
+    return getProcessorComponent(identifier, null, levels);
+  }
+
+  /**
+   * Same as {@link #getProcessorComponent(ComponentIdentifier)} for the trace
+   * levels already read by the caller, with the trace levels of the processor's
+   * flow.
+   *
+   * @param identifier
+   *            {@link ComponentIdentifier} of target processor
+   * @param location
+   *            {@link ComponentLocation} of target processor, null for using
+   *            the global trace levels
+   * @param levels
+   *            {@link TraceLevelSnapshot} in effect
+   * @return ProcessorComponent or null
+   */
+  public ProcessorComponent getProcessorComponent(ComponentIdentifier identifier, ComponentLocation location,
+      TraceLevelSnapshot levels) {
+    if (!levels.isProcessorSpansEnabled())
+      return null;
+    FlowTraceLevels flow = levels.getFlowTraceLevels(location);
+    boolean spanAllProcessors = levels.isSpanAllProcessorsActive(flow);
+    if (spanAllProcessors && levels.isIgnored(identifier, flow))
       return null;
 
     ProcessorComponent processorComponent = processorComponentService
-        .getProcessorComponentFor(identifier, configurationComponentLocator);
+        .getProcessorComponentFor(identifier, componentIndex);
 
     if (processorComponent == null && spanAllProcessors) {
       processorComponent = genericProcessorComponent;
@@ -208,9 +368,18 @@ public class MuleNotificationProcessor {
   }
 
   public void handleProcessorEndEvent(EnrichedServerNotification notification) {
+    long overheadStart = ModuleOverheadMetrics.start();
     String location = notification.getComponent().getLocation().getLocation();
     try {
-      ProcessorComponent processorComponent = getProcessorComponent(notification.getComponent().getIdentifier());
+      TraceLevelSnapshot levels = levelsFor(notification.getEvent());
+      ProcessorComponent processorComponent = levels.isTracingEnabled()
+          ? getProcessorComponent(notification.getComponent().getIdentifier(),
+              notification.getComponent().getLocation(), levels)
+          : null;
+      if (processorComponent == null && traceLevels.isChanged()) {
+        // Span may have been started with the levels in effect before a change
+        processorComponent = getStartedProcessorComponent(notification);
+      }
       if (processorComponent != null) {
         logger.trace("Handling '{}:{}' processor end event context id {} correlation id {} ",
             notification.getResourceIdentifier(), notification.getComponent().getIdentifier(),
@@ -231,29 +400,28 @@ public class MuleNotificationProcessor {
                 .toString();
             logger.trace("Resolved to value '{}'", targetFlowName);
           }
-          findLocation(targetFlowName,
-              configurationComponentLocator)
-                  .filter(ComponentsUtil::isSubFlow)
-                  .ifPresent(subFlowComp -> {
-                    TraceComponent subflowTrace = TraceComponent.of(subFlowComp)
-                        .withTransactionId(traceComponent.getTransactionId())
-                        .withSpanName(subFlowComp.getLocation())
-                        .withSpanKind(SpanKind.INTERNAL)
-                        .withTags(Collections.singletonMap(MULE_APP_SCOPE_SUBFLOW_NAME.getKey(),
-                            subFlowComp.getLocation()))
-                        .withStatsCode(traceComponent.getStatusCode())
-                        .withEndTime(traceComponent.getEndTime())
-                        .withContext(traceComponent.getContext())
-                        .withEventContextId(notification.getEvent().getContext().getId());
-                    SpanMeta subFlow = openTelemetryConnection.endProcessorSpan(subflowTrace,
-                        notification.getEvent().getError().orElse(null));
-                    if (subFlow != null) {
-                      openTelemetryConnection.getMetricsProviders().captureProcessorMetrics(
-                          notification.getComponent(),
-                          notification.getEvent().getError().orElse(null), location,
-                          spanMeta);
-                    }
-                  });
+          componentIndex.findLocation(targetFlowName)
+              .filter(ComponentsUtil::isSubFlow)
+              .ifPresent(subFlowComp -> {
+                TraceComponent subflowTrace = TraceComponent.of(subFlowComp)
+                    .withTransactionId(traceComponent.getTransactionId())
+                    .withSpanName(subFlowComp.getLocation())
+                    .withSpanKind(SpanKind.INTERNAL)
+                    .withTags(Collections.singletonMap(MULE_APP_SCOPE_SUBFLOW_NAME.getKey(),
+                        subFlowComp.getLocation()))
+                    .withStatsCode(traceComponent.getStatusCode())
+                    .withEndTime(traceComponent.getEndTime())
+                    .withContext(traceComponent.getContext())
+                    .withEventContextId(notification.getEvent().getContext().getId());
+                SpanMeta subFlow = openTelemetryConnection.endProcessorSpan(subflowTrace,
+                    notification.getEvent().getError().orElse(null));
+                if (subFlow != null) {
+                  openTelemetryConnection.getMetricsProviders().captureProcessorMetrics(
+                      notification.getComponent(),
+                      notification.getEvent().getError().orElse(null), location,
+                      spanMeta);
+                }
+              });
         }
 
         if (spanMeta != null) {
@@ -264,11 +432,36 @@ public class MuleNotificationProcessor {
     } catch (Exception ex) {
       logger.error("Error in handling processor end event", ex);
       throw ex;
+    } finally {
+      ModuleOverheadMetrics.record(Operation.PROCESSOR_END, notification.getComponent().getIdentifier(),
+          overheadStart);
     }
   }
 
+  /**
+   * {@link ProcessorComponent} to end a processor span that is open in the
+   * transaction store, regardless of the trace levels in effect.
+   *
+   * @param notification
+   *            processor end notification
+   * @return ProcessorComponent or null when no span is open for the processor
+   */
+  private ProcessorComponent getStartedProcessorComponent(EnrichedServerNotification notification) {
+    String contextScopedLocation = notification.getEvent().getContext().getId() + "/"
+        + notification.getComponent().getLocation().getLocation();
+    if (!openTelemetryConnection.hasProcessorSpan(getEventTransactionId(notification.getEvent()),
+        contextScopedLocation))
+      return null;
+    ProcessorComponent processorComponent = processorComponentService
+        .getProcessorComponentFor(notification.getComponent().getIdentifier(), componentIndex);
+    return processorComponent == null ? genericProcessorComponent : processorComponent;
+  }
+
   public void handleFlowStartEvent(PipelineMessageNotification notification) {
+    long overheadStart = ModuleOverheadMetrics.start();
     try {
+      if (!traceLevels.get().isTracingEnabled())
+        return;
       logger.trace("Handling '{}' flow start event context id {} correlation id {} ",
           notification.getResourceIdentifier(), notification.getEvent().getContext().getId(),
           notification.getEvent().getCorrelationId());
@@ -276,6 +469,10 @@ public class MuleNotificationProcessor {
           .getSourceStartTraceComponent(notification, openTelemetryConnection)
           .withStartTime(Instant.ofEpochMilli(notification.getTimestamp()))
           .withEventContextId(notification.getEvent().getContext().getId());
+      if (traceComponent.isForceTrace())
+        forceTrace.started(traceComponent.getTransactionId());
+      else
+        traceComponent.withSlowTransactionThreshold(slowTransactionThreshold(traceComponent.getName()));
       openTelemetryConnection.startTransaction(traceComponent);
     } catch (Exception ex) {
       logger.error(
@@ -284,10 +481,18 @@ public class MuleNotificationProcessor {
               + " flow start event",
           ex);
       throw ex;
+    } finally {
+      ModuleOverheadMetrics.record(Operation.FLOW_START, notification.getComponent().getIdentifier(),
+          overheadStart);
     }
   }
 
   public void handleFlowEndEvent(PipelineMessageNotification notification) {
+    if (openTelemetryConnection.isShutdown()) {
+      // Open transactions were already ended on shutdown
+      return;
+    }
+    long overheadStart = ModuleOverheadMetrics.start();
     try {
       logger.trace("Handling '{}' flow end event context id {} correlation id {} ",
           notification.getResourceIdentifier(), notification.getEvent().getContext().getId(),
@@ -309,10 +514,17 @@ public class MuleNotificationProcessor {
         transactionMeta = openTelemetryConnection.endTransaction(traceComponent,
             notification.getException());
       }
+      if (transactionMeta == null) {
+        // Flow started after tracing was disabled at runtime, or the transaction
+        // was already ended on shutdown
+        logger.debug("No open transaction for {}, skipping flow end",
+            traceComponent.contextScopedLocation());
+        return;
+      }
+      if (transactionMeta.isForceTraced())
+        forceTrace.ended(transactionMeta.getTransactionId());
 
-      openTelemetryConnection.getMetricsProviders().captureFlowMetrics(
-          Objects.requireNonNull(transactionMeta,
-              "Transaction for " + traceComponent.contextScopedLocation() + " cannot be null"),
+      openTelemetryConnection.getMetricsProviders().captureFlowMetrics(transactionMeta,
           notification.getResourceIdentifier(),
           notification.getException());
 
@@ -321,6 +533,9 @@ public class MuleNotificationProcessor {
           "Error in handling " + notification.getResourceIdentifier() + " flow end event",
           ex);
       throw ex;
+    } finally {
+      ModuleOverheadMetrics.record(Operation.FLOW_END, notification.getComponent().getIdentifier(),
+          overheadStart);
     }
   }
 }
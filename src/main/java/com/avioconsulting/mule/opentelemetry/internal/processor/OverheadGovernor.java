@@ -0,0 +1,302 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.SpanExportPipeline;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * Steps tracing granularity down when the module adds too much load to a struggling worker, and back up when
+ * the pressure clears. See {@link TracingStage} for the stages.
+ *
+ * Pressure is evaluated at a fixed interval from -
+ * - module overhead: time spent by the module on its own processing, as a ratio of available CPU time
+ * - exporter queue: span processor queue fill ratio, when a {@link SpanExportPipeline} is in use
+ *
+ * Mule scheduler pools are not a signal. Their maximum sizes are not exposed by Mule's public API, and the
+ * share of RUNNABLE threads among live threads stays near 1 for pools that start threads on demand.
+ *
+ * Each signal is divided by its threshold, and the highest is the pressure. Tracing steps down one stage
+ * when pressure is at or above 1 for `stepdown.intervals` consecutive evaluations. It steps up one stage
+ * only when pressure is below the `recovery.factor` for `stepup.intervals` consecutive evaluations.
+ *
+ * Every transition increments `mule.otel.governor.transitions` counter and emits a log record event. Current
+ * stage is reported with `mule.otel.governor.stage` gauge.
+ *
+ * Settings are read from `mule.otel.overhead.governor.*` system properties, see {@link Settings}.
+ * </pre>
+ */
+public class OverheadGovernor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OverheadGovernor.class);
+
+  public static final String INSTRUMENTATION_SCOPE_NAME = "com.avioconsulting.mule.opentelemetry.governor";
+  public static final String STAGE = "mule.otel.governor.stage";
+  public static final String TRANSITIONS = "mule.otel.governor.transitions";
+  public static final String TRANSITION_EVENT = "mule.otel.governor.transition";
+  public static final AttributeKey<String> EVENT_NAME = AttributeKey.stringKey("event.name");
+  public static final AttributeKey<String> FROM_STAGE = AttributeKey.stringKey("mule.otel.governor.stage.from");
+  public static final AttributeKey<String> TO_STAGE = AttributeKey.stringKey("mule.otel.governor.stage.to");
+  public static final AttributeKey<Double> OVERHEAD = AttributeKey.doubleKey("mule.otel.governor.overhead");
+  public static final AttributeKey<Double> QUEUE_FILL = AttributeKey.doubleKey("mule.otel.governor.queue_fill");
+
+  /**
+   * Load signals, each as a ratio.
+   */
+  public interface Signals {
+
+    /**
+     * @return time spent by the module since last call, as a ratio of available
+     *         CPU time
+     */
+    double overhead();
+
+    /**
+     * @return span processor queue fill ratio
+     */
+    double queueFill();
+  }
+
+  private final TraceLevels traceLevels;
+  private final Settings settings;
+  private final Signals signals;
+  private ScheduledExecutorService executor;
+  private LongCounter transitions;
+  private ObservableLongGauge stageGauge;
+  private io.opentelemetry.api.logs.Logger eventLogger;
+  private int pressuredEvaluations;
+  private int relievedEvaluations;
+
+  public OverheadGovernor(TraceLevels traceLevels, Settings settings, Signals signals) {
+    this.traceLevels = traceLevels;
+    this.settings = settings;
+    this.signals = signals;
+  }
+
+  /**
+   * Start evaluating the pressure.
+   *
+   * @param openTelemetry
+   *            {@link OpenTelemetry} for recording transitions
+   */
+  public synchronized void start(OpenTelemetry openTelemetry) {
+    if (executor != null)
+      return;
+    Meter meter = openTelemetry.meterBuilder(INSTRUMENTATION_SCOPE_NAME).build();
+    transitions = meter.counterBuilder(TRANSITIONS)
+        .setDescription("Tracing stage transitions made by the overhead governor")
+        .setUnit("{transition}")
+        .build();
+    stageGauge = meter.gaugeBuilder(STAGE)
+        .setDescription("Tracing stage, 0 for all processors up to 3 for sampled root spans")
+        .setUnit("{stage}")
+        .ofLongs()
+        .buildWithCallback(measurement -> measurement.record(traceLevels.get().getStage().ordinal()));
+    eventLogger = openTelemetry.getLogsBridge().get(INSTRUMENTATION_SCOPE_NAME);
+    ModuleOverheadMetrics.setAccounting(true);
+    executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "otel-overhead-governor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::safeEvaluate, settings.intervalMillis, settings.intervalMillis,
+        TimeUnit.MILLISECONDS);
+    LOGGER.info("Started overhead governor with {}", settings);
+  }
+
+  public synchronized void stop() {
+    if (executor == null)
+      return;
+    executor.shutdownNow();
+    executor = null;
+    if (stageGauge != null)
+      stageGauge.close();
+    ModuleOverheadMetrics.setAccounting(false);
+  }
+
+  private void safeEvaluate() {
+    try {
+      evaluate();
+    } catch (Exception e) {
+      LOGGER.warn("Failed to evaluate tracing overhead", e);
+    }
+  }
+
+  /**
+   * Evaluate the pressure once and change the tracing stage if needed.
+   *
+   * @return {@link TracingStage} after evaluation
+   */
+  TracingStage evaluate() {
+    double overhead = signals.overhead();
+    double queueFill = signals.queueFill();
+    double pressure = Math.max(overhead / settings.overheadThreshold, queueFill / settings.queueThreshold);
+    TracingStage current = traceLevels.get().getStage();
+    TracingStage target = current;
+    if (pressure >= 1) {
+      relievedEvaluations = 0;
+      if (++pressuredEvaluations >= settings.stepDownIntervals) {
+        pressuredEvaluations = 0;
+        target = current.down();
+      }
+    } else if (pressure < settings.recoveryFactor) {
+      pressuredEvaluations = 0;
+      if (++relievedEvaluations >= settings.stepUpIntervals) {
+        relievedEvaluations = 0;
+        target = current.up();
+      }
+    } else {
+      // Between recovery and threshold, hold the current stage
+      pressuredEvaluations = 0;
+      relievedEvaluations = 0;
+    }
+    if (target != current) {
+      traceLevels.setStage(target, settings.samplingRatio);
+      recordTransition(current, target, overhead, queueFill);
+    }
+    return target;
+  }
+
+  private void recordTransition(TracingStage from, TracingStage to, double overhead, double queueFill) {
+    boolean down = to.compareTo(from) > 0;
+    String message = String.format("Tracing stage changed from %s to %s (overhead=%.3f, queue fill=%.3f)", from,
+        to, overhead, queueFill);
+    if (down)
+      LOGGER.warn(message);
+    else
+      LOGGER.info(message);
+    if (transitions != null)
+      transitions.add(1, Attributes.of(FROM_STAGE, from.name(), TO_STAGE, to.name()));
+    if (eventLogger != null) {
+      eventLogger.logRecordBuilder()
+          .setSeverity(down ? Severity.WARN : Severity.INFO)
+          .setBody(message)
+          .setAttribute(EVENT_NAME, TRANSITION_EVENT)
+          .setAttribute(FROM_STAGE, from.name())
+          .setAttribute(TO_STAGE, to.name())
+          .setAttribute(OVERHEAD, overhead)
+          .setAttribute(QUEUE_FILL, queueFill)
+          .emit();
+    }
+  }
+
+  /**
+   * Governor settings from `mule.otel.overhead.governor.*` system properties.
+   */
+  public static final class Settings {
+    public static final String PREFIX = "mule.otel.overhead.governor.";
+
+    final long intervalMillis;
+    final double overheadThreshold;
+    final double queueThreshold;
+    final double recoveryFactor;
+    final int stepDownIntervals;
+    final int stepUpIntervals;
+    final double samplingRatio;
+
+    Settings(long intervalMillis, double overheadThreshold, double queueThreshold, double recoveryFactor,
+        int stepDownIntervals, int stepUpIntervals, double samplingRatio) {
+      if (overheadThreshold <= 0 || queueThreshold <= 0)
+        throw new IllegalArgumentException("Overhead governor thresholds must be greater than 0");
+      if (recoveryFactor <= 0 || recoveryFactor > 1)
+        throw new IllegalArgumentException("Overhead governor recovery factor must be between 0 and 1");
+      this.intervalMillis = Math.max(100, intervalMillis);
+      this.overheadThreshold = overheadThreshold;
+      this.queueThreshold = queueThreshold;
+      this.recoveryFactor = recoveryFactor;
+      this.stepDownIntervals = Math.max(1, stepDownIntervals);
+      this.stepUpIntervals = Math.max(1, stepUpIntervals);
+      this.samplingRatio = samplingRatio;
+    }
+
+    /**
+     * <pre>
+     * - interval.millis: evaluation interval, defaults to 5000
+     * - overhead.threshold: module overhead ratio of CPU time, defaults to 0.05
+     * - queue.threshold: exporter queue fill ratio, defaults to 0.8
+     * - recovery.factor: ratio of the thresholds to step back up under, defaults to 0.7
+     * - stepdown.intervals: consecutive evaluations over threshold to step down, defaults to 2
+     * - stepup.intervals: consecutive evaluations under recovery to step up, defaults to 6
+     * - sampling.ratio: sampling ratio for sampled root spans stage, defaults to 0.1
+     * </pre>
+     *
+     * @return Settings
+     */
+    public static Settings fromSystemProperties() {
+      return new Settings(Long.getLong(PREFIX + "interval.millis", 5000),
+          doubleProperty("overhead.threshold", 0.05),
+          doubleProperty("queue.threshold", 0.8),
+          doubleProperty("recovery.factor", 0.7),
+          Integer.getInteger(PREFIX + "stepdown.intervals", 2),
+          Integer.getInteger(PREFIX + "stepup.intervals", 6),
+          doubleProperty("sampling.ratio", 0.1));
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+      String value = System.getProperty(PREFIX + name);
+      return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    @Override
+    public String toString() {
+      return "Settings{" +
+          "intervalMillis=" + intervalMillis +
+          ", overheadThreshold=" + overheadThreshold +
+          ", queueThreshold=" + queueThreshold +
+          ", recoveryFactor=" + recoveryFactor +
+          ", stepDownIntervals=" + stepDownIntervals +
+          ", stepUpIntervals=" + stepUpIntervals +
+          ", samplingRatio=" + samplingRatio +
+          '}';
+    }
+  }
+
+  /**
+   * {@link Signals} of the running application.
+   */
+  public static class RuntimeSignals implements Signals {
+
+    private final SpanExportPipeline spanExportPipeline;
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private long lastOverheadNanos = ModuleOverheadMetrics.getTotalNanos();
+    private long lastSampleNanos = System.nanoTime();
+
+    /**
+     * @param spanExportPipeline
+     *            {@link SpanExportPipeline} or null when not in use
+     */
+    public RuntimeSignals(SpanExportPipeline spanExportPipeline) {
+      this.spanExportPipeline = spanExportPipeline;
+    }
+
+    @Override
+    public double overhead() {
+      long overheadNanos = ModuleOverheadMetrics.getTotalNanos();
+      long now = System.nanoTime();
+      long elapsed = now - lastSampleNanos;
+      double ratio = elapsed <= 0 ? 0 : (double) (overheadNanos - lastOverheadNanos) / (elapsed * processors);
+      lastOverheadNanos = overheadNanos;
+      lastSampleNanos = now;
+      return ratio;
+    }
+
+    @Override
+    public double queueFill() {
+      if (spanExportPipeline == null || spanExportPipeline.getMaxQueueSize() <= 0)
+        return 0;
+      return (double) spanExportPipeline.getQueueSize() / spanExportPipeline.getMaxQueueSize();
+    }
+  }
+}
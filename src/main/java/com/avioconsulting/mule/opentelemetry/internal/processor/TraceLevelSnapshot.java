@@ -0,0 +1,323 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.MuleComponent;
+import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.FlowNameSampler;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.mule.runtime.api.component.ComponentIdentifier;
+import org.mule.runtime.api.component.location.ComponentLocation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable trace levels in effect, see {@link TraceLevels}. A new snapshot is
+ * published for every runtime change, so a single read gives a consistent view
+ * of all the settings.
+ *
+ * Ignore and interception decisions are kept by component identifier for the
+ * life of the snapshot. Flow specific trace levels are resolved at deployment
+ * in {@link FlowTraceLevelTable} and take precedence over the global settings.
+ */
+public final class TraceLevelSnapshot {
+
+  /**
+   * Sampling ratio value for using the sampler configured with
+   * `otel.traces.sampler`.
+   */
+  public static final double CONFIGURED_SAMPLING_RATIO = -1;
+
+  private final boolean tracingEnabled;
+  private final boolean spanAllProcessors;
+  private final List<MuleComponent> ignoreMuleComponents;
+  private final List<MuleComponent> interceptionDisabledComponents;
+  private final List<MuleComponent> interceptionEnabledComponents;
+  private final double samplingRatio;
+  private final TracingStage stage;
+  private final double stageSamplingRatio;
+  private final FlowTraceLevelTable flowTraceLevelTable;
+  private final Sampler sampler;
+  private final Map<String, Sampler> flowSamplers;
+  private volatile FlowNameSampler flowNameSampler;
+  private volatile TraceLevelSnapshot forcedTrace;
+  private final Map<ComponentIdentifier, Boolean> ignored = new ConcurrentHashMap<>();
+  private final Map<ComponentIdentifier, Boolean> interceptionDisabled = new ConcurrentHashMap<>();
+
+  private TraceLevelSnapshot(boolean tracingEnabled, boolean spanAllProcessors,
+      List<MuleComponent> ignoreMuleComponents, List<MuleComponent> interceptionDisabledComponents,
+      List<MuleComponent> interceptionEnabledComponents, double samplingRatio, TracingStage stage,
+      double stageSamplingRatio, FlowTraceLevelTable flowTraceLevelTable) {
+    validateRatio(samplingRatio);
+    validateRatio(stageSamplingRatio);
+    this.tracingEnabled = tracingEnabled;
+    this.spanAllProcessors = spanAllProcessors;
+    this.ignoreMuleComponents = copyOf(ignoreMuleComponents);
+    this.interceptionDisabledComponents = copyOf(interceptionDisabledComponents);
+    this.interceptionEnabledComponents = copyOf(interceptionEnabledComponents);
+    this.samplingRatio = samplingRatio;
+    this.stage = stage;
+    this.stageSamplingRatio = stageSamplingRatio;
+    this.flowTraceLevelTable = flowTraceLevelTable;
+    this.sampler = samplerFor(samplingRatio);
+    Map<String, Sampler> samplers = new HashMap<>();
+    flowTraceLevelTable.getSamplingRatios().forEach((flow, ratio) -> samplers.put(flow, samplerFor(ratio)));
+    this.flowSamplers = Collections.unmodifiableMap(samplers);
+  }
+
+  /**
+   * Sampler for a ratio, lowered at {@link TracingStage#SAMPLED_ROOT_SPANS}
+   * stage.
+   */
+  private Sampler samplerFor(double ratio) {
+    double effectiveRatio = ratio;
+    if (stage == TracingStage.SAMPLED_ROOT_SPANS && stageSamplingRatio != CONFIGURED_SAMPLING_RATIO)
+      effectiveRatio = ratio == CONFIGURED_SAMPLING_RATIO ? stageSamplingRatio
+          : Math.min(ratio, stageSamplingRatio);
+    return effectiveRatio == CONFIGURED_SAMPLING_RATIO ? null
+        : Sampler.parentBased(Sampler.traceIdRatioBased(effectiveRatio));
+  }
+
+  static void validateRatio(double ratio) {
+    if (ratio != CONFIGURED_SAMPLING_RATIO && !(ratio >= 0 && ratio <= 1))
+      throw new IllegalArgumentException(
+          "Sampling ratio must be between 0 and 1, or " + CONFIGURED_SAMPLING_RATIO + " but was " + ratio);
+  }
+
+  /**
+   * Trace levels from the module configuration.
+   *
+   * @param traceLevelConfiguration
+   *            {@link TraceLevelConfiguration}
+   * @param spanAllProcessors
+   *            effective span all processors setting, which can be overridden
+   *            by system property
+   * @param flowTraceLevelTable
+   *            {@link FlowTraceLevelTable} resolved for the application
+   * @return TraceLevelSnapshot
+   */
+  static TraceLevelSnapshot of(TraceLevelConfiguration traceLevelConfiguration, boolean spanAllProcessors,
+      FlowTraceLevelTable flowTraceLevelTable) {
+    return new TraceLevelSnapshot(true, spanAllProcessors, traceLevelConfiguration.getIgnoreMuleComponents(),
+        traceLevelConfiguration.getInterceptionDisabledComponents(),
+        traceLevelConfiguration.getInterceptionEnabledComponents(), CONFIGURED_SAMPLING_RATIO,
+        TracingStage.ALL_PROCESSORS, CONFIGURED_SAMPLING_RATIO, flowTraceLevelTable);
+  }
+
+  private static List<MuleComponent> copyOf(List<MuleComponent> components) {
+    return components == null ? Collections.emptyList()
+        : Collections.unmodifiableList(new ArrayList<>(components));
+  }
+
+  public boolean isTracingEnabled() {
+    return tracingEnabled;
+  }
+
+  public boolean isSpanAllProcessors() {
+    return spanAllProcessors;
+  }
+
+  public List<MuleComponent> getIgnoreMuleComponents() {
+    return ignoreMuleComponents;
+  }
+
+  public List<MuleComponent> getInterceptionDisabledComponents() {
+    return interceptionDisabledComponents;
+  }
+
+  public List<MuleComponent> getInterceptionEnabledComponents() {
+    return interceptionEnabledComponents;
+  }
+
+  public double getSamplingRatio() {
+    return samplingRatio;
+  }
+
+  /**
+   * @return tracing stage set by {@link OverheadGovernor}
+   */
+  public TracingStage getStage() {
+    return stage;
+  }
+
+  public double getStageSamplingRatio() {
+    return stageSamplingRatio;
+  }
+
+  /**
+   * @return true if spans are created for processors at current stage
+   */
+  public boolean isProcessorSpansEnabled() {
+    return stage.compareTo(TracingStage.ROOT_SPANS) < 0;
+  }
+
+  /**
+   * @return true if spans are created for all processors at current stage
+   */
+  public boolean isSpanAllProcessorsActive() {
+    return spanAllProcessors && stage == TracingStage.ALL_PROCESSORS;
+  }
+
+  /**
+   * @param flow
+   *            {@link FlowTraceLevels} of the processor's flow, can be null
+   * @return true if spans are created for all processors of the flow at current
+   *         stage
+   */
+  public boolean isSpanAllProcessorsActive(FlowTraceLevels flow) {
+    if (flow == null || flow.getSpanAllProcessors() == null)
+      return isSpanAllProcessorsActive();
+    return flow.getSpanAllProcessors() && stage == TracingStage.ALL_PROCESSORS;
+  }
+
+  /**
+   * @param location
+   *            {@link ComponentLocation} of a processor, can be null
+   * @return {@link FlowTraceLevels} of the processor's flow, or null when the
+   *         global trace levels apply
+   */
+  public FlowTraceLevels getFlowTraceLevels(ComponentLocation location) {
+    return flowTraceLevelTable.get(location);
+  }
+
+  /**
+   * @param flowName
+   *            name of a flow
+   * @return {@link FlowTraceLevels} of the flow, or null when the global trace
+   *         levels apply
+   */
+  public FlowTraceLevels getFlowTraceLevels(String flowName) {
+    return flowTraceLevelTable.getForFlow(flowName);
+  }
+
+  /**
+   * @return parent based trace id ratio sampler for {@link #getSamplingRatio()},
+   *         lowered at {@link TracingStage#SAMPLED_ROOT_SPANS} stage, or null
+   *         when the configured sampler is used
+   */
+  public Sampler getSampler() {
+    return sampler;
+  }
+
+  /**
+   * Sampler in effect including the flow specific sampling ratios.
+   *
+   * @param configured
+   *            {@link Sampler} configured with `otel.traces.sampler`
+   * @return Sampler
+   */
+  public Sampler getSampler(Sampler configured) {
+    Sampler fallback = sampler == null ? configured : sampler;
+    if (flowSamplers.isEmpty())
+      return fallback;
+    FlowNameSampler current = flowNameSampler;
+    if (current == null || current.getFallback() != fallback) {
+      current = new FlowNameSampler(flowSamplers, fallback);
+      flowNameSampler = current;
+    }
+    return current;
+  }
+
+  /**
+   * @param identifier
+   *            {@link ComponentIdentifier} of a processor
+   * @return true if processor matches any of {@link #getIgnoreMuleComponents()}
+   */
+  public boolean isIgnored(ComponentIdentifier identifier) {
+    return ignored.computeIfAbsent(identifier, id -> matchesAny(ignoreMuleComponents, id));
+  }
+
+  /**
+   * @param identifier
+   *            {@link ComponentIdentifier} of a processor
+   * @param flow
+   *            {@link FlowTraceLevels} of the processor's flow, can be null
+   * @return true if processor is ignored by the flow's or the global ignored
+   *         components
+   */
+  public boolean isIgnored(ComponentIdentifier identifier, FlowTraceLevels flow) {
+    if (flow == null || flow.getIgnoreMuleComponents() == null)
+      return isIgnored(identifier);
+    return flow.isIgnored(identifier);
+  }
+
+  /**
+   * Interception disabled components that are not explicitly enabled, same as
+   * the decision made when flows are created. Interception can only be narrowed
+   * by changing these at runtime.
+   *
+   * @param identifier
+   *            {@link ComponentIdentifier} of a processor
+   * @return true if processor must not be intercepted
+   */
+  public boolean isInterceptionDisabled(ComponentIdentifier identifier) {
+    return interceptionDisabled.computeIfAbsent(identifier,
+        id -> matchesAny(interceptionDisabledComponents, id) && !matchesAny(interceptionEnabledComponents, id));
+  }
+
+  static boolean matchesAny(List<MuleComponent> components, ComponentIdentifier identifier) {
+    for (MuleComponent mc : components) {
+      if (mc.getNamespace().equalsIgnoreCase(identifier.getNamespace())
+          && (mc.getName().equalsIgnoreCase(identifier.getName()) || "*".equalsIgnoreCase(mc.getName())))
+        return true;
+    }
+    return false;
+  }
+
+  TraceLevelSnapshot withTracingEnabled(boolean tracingEnabled) {
+    return new TraceLevelSnapshot(tracingEnabled, spanAllProcessors, ignoreMuleComponents,
+        interceptionDisabledComponents, interceptionEnabledComponents, samplingRatio, stage, stageSamplingRatio,
+        flowTraceLevelTable);
+  }
+
+  TraceLevelSnapshot withSpanAllProcessors(boolean spanAllProcessors) {
+    return new TraceLevelSnapshot(tracingEnabled, spanAllProcessors, ignoreMuleComponents,
+        interceptionDisabledComponents, interceptionEnabledComponents, samplingRatio, stage, stageSamplingRatio,
+        flowTraceLevelTable);
+  }
+
+  TraceLevelSnapshot withIgnoreMuleComponents(List<MuleComponent> ignoreMuleComponents) {
+    return new TraceLevelSnapshot(tracingEnabled, spanAllProcessors, ignoreMuleComponents,
+        interceptionDisabledComponents, interceptionEnabledComponents, samplingRatio, stage, stageSamplingRatio,
+        flowTraceLevelTable);
+  }
+
+  TraceLevelSnapshot withInterceptionDisabledComponents(List<MuleComponent> interceptionDisabledComponents) {
+    return new TraceLevelSnapshot(tracingEnabled, spanAllProcessors, ignoreMuleComponents,
+        interceptionDisabledComponents, interceptionEnabledComponents, samplingRatio, stage, stageSamplingRatio,
+        flowTraceLevelTable);
+  }
+
+  TraceLevelSnapshot withSamplingRatio(double samplingRatio) {
+    return new TraceLevelSnapshot(tracingEnabled, spanAllProcessors, ignoreMuleComponents,
+        interceptionDisabledComponents, interceptionEnabledComponents, samplingRatio, stage, stageSamplingRatio,
+        flowTraceLevelTable);
+  }
+
+  /**
+   * Trace levels for a transaction forced with {@link ForceTrace}, creating
+   * spans for all processors regardless of the flow trace levels and the
+   * tracing stage. Ignored components still apply.
+   *
+   * @return TraceLevelSnapshot
+   */
+  public TraceLevelSnapshot forcedTrace() {
+    TraceLevelSnapshot forced = forcedTrace;
+    if (forced == null) {
+      forced = new TraceLevelSnapshot(tracingEnabled, true, ignoreMuleComponents, interceptionDisabledComponents,
+          interceptionEnabledComponents, samplingRatio, TracingStage.ALL_PROCESSORS, CONFIGURED_SAMPLING_RATIO,
+          FlowTraceLevelTable.EMPTY);
+      forcedTrace = forced;
+    }
+    return forced;
+  }
+
+  TraceLevelSnapshot withStage(TracingStage stage, double stageSamplingRatio) {
+    return new TraceLevelSnapshot(tracingEnabled, spanAllProcessors, ignoreMuleComponents,
+        interceptionDisabledComponents, interceptionEnabledComponents, samplingRatio, stage, stageSamplingRatio,
+        flowTraceLevelTable);
+  }
+}
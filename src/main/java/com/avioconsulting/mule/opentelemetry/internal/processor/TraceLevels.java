@@ -0,0 +1,235 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.MuleComponent;
+import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.SpanExportPipeline.JMX_DOMAIN;
+
+/**
+ * <pre>
+ * Trace levels that can be changed at runtime through JMX, without redeploying the application.
+ * Registered as `com.avioconsulting.mule.opentelemetry:type=TraceLevels,service="&lt;app name&gt;"`.
+ *
+ * Every change publishes a new {@link TraceLevelSnapshot}. Tracing code paths read the snapshot once with
+ * {@link #get()} and use it for all decisions on that path.
+ *
+ * - Tracing can only be disabled and enabled again, it cannot be enabled if turned off in the configuration
+ * - Interception decisions are made when flows are created, they can only be narrowed at runtime
+ * - Flow trace levels are resolved when the application is deployed, runtime changes apply to the settings
+ *   that flows do not override
+ * </pre>
+ */
+public class TraceLevels implements TraceLevelsMXBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TraceLevels.class);
+
+  private final TraceLevelSnapshot configured;
+  private final AtomicReference<TraceLevelSnapshot> snapshot;
+  private ObjectName mbeanName;
+  private volatile boolean changed;
+
+  public TraceLevels(TraceLevelConfiguration traceLevelConfiguration, boolean spanAllProcessors) {
+    this(traceLevelConfiguration, spanAllProcessors, FlowTraceLevelTable.EMPTY);
+  }
+
+  public TraceLevels(TraceLevelConfiguration traceLevelConfiguration, boolean spanAllProcessors,
+      FlowTraceLevelTable flowTraceLevelTable) {
+    configured = TraceLevelSnapshot.of(traceLevelConfiguration, spanAllProcessors, flowTraceLevelTable);
+    snapshot = new AtomicReference<>(configured);
+  }
+
+  /**
+   * @return {@link TraceLevelSnapshot} in effect
+   */
+  public TraceLevelSnapshot get() {
+    return snapshot.get();
+  }
+
+  /**
+   * Processor spans started before a change may not be traced with the levels in
+   * effect, so their end must not be decided by the current levels.
+   *
+   * @return true if trace levels were changed at runtime at least once
+   */
+  public boolean isChanged() {
+    return changed;
+  }
+
+  /**
+   * Sampler for the sampling ratio set at runtime.
+   *
+   * @return {@link Sampler} or null when the configured sampler is used
+   */
+  public Sampler getSampler() {
+    return snapshot.get().getSampler();
+  }
+
+  /**
+   * Sampler in effect, including flow specific sampling ratios.
+   *
+   * @param configured
+   *            {@link Sampler} configured with `otel.traces.sampler`
+   * @return {@link Sampler}
+   */
+  public Sampler getSampler(Sampler configured) {
+    return snapshot.get().getSampler(configured);
+  }
+
+  private void update(String attribute, UnaryOperator<TraceLevelSnapshot> change) {
+    TraceLevelSnapshot updated = snapshot.updateAndGet(change);
+    changed = true;
+    LOGGER.info("Trace levels changed at runtime - {}: tracingEnabled={}, spanAllProcessors={}, "
+        + "ignoreMuleComponents={}, interceptionDisabledComponents={}, samplingRatio={}, stage={}", attribute,
+        updated.isTracingEnabled(), updated.isSpanAllProcessors(), updated.getIgnoreMuleComponents(),
+        updated.getInterceptionDisabledComponents(), updated.getSamplingRatio(), updated.getStage());
+  }
+
+  @Override
+  public boolean isTracingEnabled() {
+    return get().isTracingEnabled();
+  }
+
+  @Override
+  public void setTracingEnabled(boolean tracingEnabled) {
+    update("tracingEnabled", s -> s.withTracingEnabled(tracingEnabled));
+  }
+
+  @Override
+  public boolean isSpanAllProcessors() {
+    return get().isSpanAllProcessors();
+  }
+
+  @Override
+  public void setSpanAllProcessors(boolean spanAllProcessors) {
+    update("spanAllProcessors", s -> s.withSpanAllProcessors(spanAllProcessors));
+  }
+
+  @Override
+  public String getIgnoreMuleComponents() {
+    return format(get().getIgnoreMuleComponents());
+  }
+
+  @Override
+  public void setIgnoreMuleComponents(String ignoreMuleComponents) {
+    List<MuleComponent> components = parse(ignoreMuleComponents);
+    update("ignoreMuleComponents", s -> s.withIgnoreMuleComponents(components));
+  }
+
+  @Override
+  public String getInterceptionDisabledComponents() {
+    return format(get().getInterceptionDisabledComponents());
+  }
+
+  @Override
+  public void setInterceptionDisabledComponents(String interceptionDisabledComponents) {
+    List<MuleComponent> components = parse(interceptionDisabledComponents);
+    update("interceptionDisabledComponents", s -> s.withInterceptionDisabledComponents(components));
+  }
+
+  @Override
+  public double getSamplingRatio() {
+    return get().getSamplingRatio();
+  }
+
+  @Override
+  public void setSamplingRatio(double samplingRatio) {
+    // Invalid ratio fails the snapshot creation, nothing is published
+    update("samplingRatio", s -> s.withSamplingRatio(samplingRatio));
+  }
+
+  @Override
+  public String getTracingStage() {
+    return get().getStage().name();
+  }
+
+  /**
+   * Change the tracing stage, keeping all other trace levels.
+   *
+   * @param stage
+   *            {@link TracingStage}
+   * @param stageSamplingRatio
+   *            sampling ratio for {@link TracingStage#SAMPLED_ROOT_SPANS}
+   */
+  public void setStage(TracingStage stage, double stageSamplingRatio) {
+    update("stage", s -> s.withStage(stage, stageSamplingRatio));
+  }
+
+  @Override
+  public void reset() {
+    // Stage is managed by the overhead governor
+    update("reset", s -> s.getStage() == TracingStage.ALL_PROCESSORS ? configured
+        : configured.withStage(s.getStage(), s.getStageSamplingRatio()));
+  }
+
+  static List<MuleComponent> parse(String components) {
+    List<MuleComponent> parsed = new ArrayList<>();
+    if (components == null)
+      return parsed;
+    for (String component : components.split(",")) {
+      String value = component.trim();
+      if (value.isEmpty())
+        continue;
+      int separator = value.indexOf(':');
+      if (separator <= 0 || separator == value.length() - 1)
+        throw new IllegalArgumentException(
+            "Component must be in 'namespace:name' format, but was '" + value + "'");
+      parsed.add(new MuleComponent(value.substring(0, separator).trim(), value.substring(separator + 1).trim()));
+    }
+    return parsed;
+  }
+
+  private static String format(List<MuleComponent> components) {
+    return components.stream().map(MuleComponent::toString).collect(Collectors.joining(","));
+  }
+
+  /**
+   * Register this as an MBean for given service.
+   *
+   * @param serviceName
+   *            name of the application
+   */
+  public void registerMBean(String serviceName) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = ObjectName
+          .getInstance(JMX_DOMAIN + ":type=TraceLevels,service=" + ObjectName.quote(serviceName));
+      // Left behind by a previous deployment of the same application
+      if (server.isRegistered(name))
+        server.unregisterMBean(name);
+      server.registerMBean(this, name);
+      mbeanName = name;
+    } catch (JMException e) {
+      LOGGER.warn("Failed to register trace levels MBean for {}", serviceName, e);
+    }
+  }
+
+  public void unregisterMBean() {
+    if (mbeanName == null)
+      return;
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(mbeanName))
+        server.unregisterMBean(mbeanName);
+    } catch (JMException e) {
+      LOGGER.debug("Failed to unregister MBean {}", mbeanName, e);
+    }
+    mbeanName = null;
+  }
+
+  ObjectName getMBeanName() {
+    return mbeanName;
+  }
+}
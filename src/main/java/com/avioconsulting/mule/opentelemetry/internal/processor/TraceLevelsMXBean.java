@@ -0,0 +1,47 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+/**
+ * JMX view of the trace levels in effect, see {@link TraceLevels}.
+ */
+public interface TraceLevelsMXBean {
+
+  boolean isTracingEnabled();
+
+  void setTracingEnabled(boolean tracingEnabled);
+
+  boolean isSpanAllProcessors();
+
+  void setSpanAllProcessors(boolean spanAllProcessors);
+
+  /**
+   * @return comma separated `namespace:name` of ignored components
+   */
+  String getIgnoreMuleComponents();
+
+  void setIgnoreMuleComponents(String ignoreMuleComponents);
+
+  /**
+   * @return comma separated `namespace:name` of components not to intercept
+   */
+  String getInterceptionDisabledComponents();
+
+  void setInterceptionDisabledComponents(String interceptionDisabledComponents);
+
+  /**
+   * @return ratio of sampled traces, or -1 when the configured sampler is used
+   */
+  double getSamplingRatio();
+
+  void setSamplingRatio(double samplingRatio);
+
+  /**
+   * @return tracing stage set by the overhead governor, see
+   *         {@link TracingStage}
+   */
+  String getTracingStage();
+
+  /**
+   * Restore the trace levels from the module configuration.
+   */
+  void reset();
+}
@@ -0,0 +1,39 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+/**
+ * Tracing granularity stages, from the most to the least detailed. See
+ * {@link OverheadGovernor}.
+ */
+public enum TracingStage {
+  /**
+   * Spans as configured by trace levels.
+   */
+  ALL_PROCESSORS,
+  /**
+   * Spans for flows, connectors and routers, same as
+   * {@code spanAllProcessors=false}.
+   */
+  CONNECTOR_SPANS,
+  /**
+   * Spans for flows only.
+   */
+  ROOT_SPANS,
+  /**
+   * Spans for flows only, with a reduced sampling ratio.
+   */
+  SAMPLED_ROOT_SPANS;
+
+  /**
+   * @return next less detailed stage, or this when there is none
+   */
+  public TracingStage down() {
+    return this == SAMPLED_ROOT_SPANS ? this : values()[ordinal() + 1];
+  }
+
+  /**
+   * @return next more detailed stage, or this when there is none
+   */
+  public TracingStage up() {
+    return this == ALL_PROCESSORS ? this : values()[ordinal() - 1];
+  }
+}
@@ -1,8 +1,9 @@
 package com.avioconsulting.mule.opentelemetry.internal.processor.service;
 
 import com.avioconsulting.mule.opentelemetry.api.processor.ProcessorComponent;
+import com.avioconsulting.mule.opentelemetry.internal.processor.AbstractProcessorComponent;
+import com.avioconsulting.mule.opentelemetry.internal.processor.ComponentIndex;
 import org.mule.runtime.api.component.ComponentIdentifier;
-import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
 import org.mule.runtime.api.util.LazyValue;
 
 import java.util.*;
@@ -28,10 +29,13 @@ public class ProcessorComponentService {
   }
 
   public ProcessorComponent getProcessorComponentFor(ComponentIdentifier identifier,
-      ConfigurationComponentLocator configurationComponentLocator) {
+      ComponentIndex componentIndex) {
     for (ProcessorComponent pc : processorComponents) {
       if (pc.canHandle(identifier)) {
-        pc.withConfigurationComponentLocator(configurationComponentLocator);
+        if (pc instanceof AbstractProcessorComponent)
+          ((AbstractProcessorComponent) pc).withComponentIndex(componentIndex);
+        else
+          pc.withConfigurationComponentLocator(componentIndex.getConfigurationComponentLocator());
         return pc;
       }
     }
@@ -0,0 +1,317 @@
+package com.avioconsulting.mule.opentelemetry.internal.store;
+
+import com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ * Critical path and self time analysis of a transaction, computed when the root span ends.
+ *
+ * Processor spans of the transaction are recorded as they end. Before a processor span ends, its self time
+ * is computed from the child spans recorded so far and set with {@link SemanticAttributes#MULE_TRACE_SELF_TIME}.
+ * Timings come from the processor start and end times tracked by the store, and span ids from the span contexts,
+ * so ending spans are never copied to {@code SpanData}.
+ * When the transaction ends, spans are arranged by their parent span and -
+ *
+ * - Self time of each span is its duration minus the time covered by its child spans
+ * - Critical path is walked back from the end of the root span, picking the child that ended last before
+ *   the current point in time and continuing from its start. Parallel routes (eg. scatter-gather) that
+ *   finished earlier are not on the path.
+ *
+ * Steps of the critical path and their self times are set on the root span with
+ * {@link SemanticAttributes#MULE_TRACE_CRITICAL_PATH} attributes.
+ * </pre>
+ */
+final class CriticalPath {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CriticalPath.class);
+
+  /**
+   * Maximum steps of the critical path set on the root span.
+   */
+  static final int MAX_STEPS = 32;
+
+  /**
+   * Maximum spans recorded for a transaction. Transactions with more spans are
+   * not analyzed.
+   */
+  static final int MAX_SPANS = 10_000;
+
+  private final Queue<Timing> spans = new ConcurrentLinkedQueue<>();
+  private final Map<String, List<long[]>> childIntervals = new ConcurrentHashMap<>();
+  private final AtomicInteger recorded = new AtomicInteger();
+
+  /**
+   * Record an ended processor span.
+   *
+   * @param span
+   *            ended {@link Span}
+   * @param location
+   *            location of the processor
+   * @param startTime
+   *            start time of the span
+   * @param endTime
+   *            end time of the span, null if it ended now
+   */
+  void record(Span span, String location, Instant startTime, Instant endTime) {
+    if (startTime != null)
+      record(span, location, epochNanos(startTime), epochNanos(endTime == null ? Instant.now() : endTime));
+  }
+
+  /**
+   * Record an ended processor span.
+   *
+   * @param span
+   *            ended {@link Span}
+   * @param location
+   *            location of the processor
+   * @param start
+   *            start of the span in epoch nanos
+   * @param end
+   *            end of the span in epoch nanos
+   */
+  void record(Span span, String location, long start, long end) {
+    if (!(span instanceof ReadableSpan) || recorded.incrementAndGet() > MAX_SPANS)
+      return;
+    String parentSpanId = ((ReadableSpan) span).getParentSpanContext().getSpanId();
+    spans.add(new Timing(span.getSpanContext().getSpanId(), parentSpanId, location, start, end));
+    childIntervals.computeIfAbsent(parentSpanId, id -> Collections.synchronizedList(new ArrayList<>()))
+        .add(new long[] { start, end });
+  }
+
+  /**
+   * Set the self time of a processor span, from its child spans recorded so far.
+   * Must be called before the span ends, after its child spans are recorded.
+   *
+   * @param span
+   *            processor {@link Span} about to end
+   * @param startTime
+   *            start time of the span
+   * @param endTime
+   *            end time of the span
+   */
+  void setSelfTime(Span span, Instant startTime, Instant endTime) {
+    if (startTime == null || endTime == null || !span.isRecording() || recorded.get() > MAX_SPANS)
+      return;
+    long start = epochNanos(startTime);
+    long end = epochNanos(endTime);
+    List<long[]> children = childIntervals.remove(span.getSpanContext().getSpanId());
+    long selfTime;
+    if (children == null) {
+      selfTime = Math.max(0, end - start);
+    } else {
+      synchronized (children) {
+        selfTime = selfTime(start, end, children);
+      }
+    }
+    span.setAttribute(SemanticAttributes.MULE_TRACE_SELF_TIME, toMillis(selfTime));
+  }
+
+  /**
+   * Analyze recorded spans and set the critical path attributes on the root
+   * span. Must be called before the root span ends.
+   *
+   * @param rootSpan
+   *            root {@link Span} of the transaction
+   * @param startTime
+   *            start time of the root span
+   * @param endTime
+   *            end time of the root span, null to end now
+   */
+  void apply(Span rootSpan, Instant startTime, Instant endTime) {
+    if (startTime == null || !rootSpan.isRecording() || spans.isEmpty())
+      return;
+    if (recorded.get() > MAX_SPANS) {
+      LOGGER.debug("Skipping critical path of trace {} with more than {} spans",
+          rootSpan.getSpanContext().getTraceId(), MAX_SPANS);
+      return;
+    }
+    long end = endTime == null ? epochNanos(Instant.now()) : epochNanos(endTime);
+    List<Step> steps = analyze(rootSpan.getSpanContext().getSpanId(), epochNanos(startTime), end, spans);
+    if (steps.isEmpty())
+      return;
+    List<String> locations = new ArrayList<>(steps.size());
+    List<Double> selfTimes = new ArrayList<>(steps.size());
+    Step slowest = steps.get(0);
+    for (Step step : steps) {
+      locations.add(step.getLocation());
+      selfTimes.add(toMillis(step.getSelfTimeNanos()));
+      if (step.getSelfTimeNanos() > slowest.getSelfTimeNanos())
+        slowest = step;
+    }
+    rootSpan.setAttribute(SemanticAttributes.MULE_TRACE_CRITICAL_PATH, locations);
+    rootSpan.setAttribute(SemanticAttributes.MULE_TRACE_CRITICAL_PATH_SELF_TIME, selfTimes);
+    rootSpan.setAttribute(SemanticAttributes.MULE_TRACE_SLOWEST_STEP, slowest.getLocation());
+    rootSpan.setAttribute(SemanticAttributes.MULE_TRACE_SLOWEST_STEP_SELF_TIME,
+        toMillis(slowest.getSelfTimeNanos()));
+  }
+
+  /**
+   * Compute the critical path of a transaction.
+   *
+   * @param rootSpanId
+   *            span id of the root span
+   * @param start
+   *            start of the root span in epoch nanos
+   * @param end
+   *            end of the root span in epoch nanos
+   * @param timings
+   *            ended spans of the transaction
+   * @return {@link List} of {@link Step}s on the critical path, a span is
+   *         followed by its own steps
+   */
+  static List<Step> analyze(String rootSpanId, long start, long end, Collection<Timing> timings) {
+    Node root = new Node(null, start, end);
+    Map<String, Node> nodes = new HashMap<>(timings.size() * 2);
+    for (Timing timing : timings) {
+      nodes.put(timing.spanId, new Node(timing.location, timing.start, timing.end));
+    }
+    for (Timing timing : timings) {
+      Node node = nodes.get(timing.spanId);
+      Node parent = rootSpanId.equals(timing.parentSpanId) ? root : nodes.get(timing.parentSpanId);
+      // Spans whose parent was not recorded are attributed to the root span
+      (parent == null || parent == node ? root : parent).children.add(node);
+    }
+    List<Step> steps = new ArrayList<>();
+    walk(root, root.end, steps);
+    return steps;
+  }
+
+  private static void walk(Node node, long until, List<Step> steps) {
+    if (node.children.isEmpty())
+      return;
+    node.children.sort(Comparator.comparingLong((Node n) -> n.end).reversed());
+    List<Node> onPath = new ArrayList<>();
+    List<Long> clippedEnds = new ArrayList<>();
+    long cursor = until;
+    for (Node child : node.children) {
+      if (child.start >= cursor || child.end <= node.start)
+        continue;
+      onPath.add(child);
+      clippedEnds.add(Math.min(child.end, cursor));
+      cursor = child.start;
+    }
+    for (int i = onPath.size() - 1; i >= 0 && steps.size() < MAX_STEPS; i--) {
+      Node child = onPath.get(i);
+      steps.add(new Step(child.location, child.end - child.start, selfTime(child)));
+      walk(child, clippedEnds.get(i), steps);
+    }
+  }
+
+  private static long selfTime(Node node) {
+    List<long[]> children = new ArrayList<>(node.children.size());
+    for (Node child : node.children) {
+      children.add(new long[] { child.start, child.end });
+    }
+    return selfTime(node.start, node.end, children);
+  }
+
+  /**
+   * @return duration between start and end minus the union of the child
+   *         intervals
+   */
+  static long selfTime(long start, long end, List<long[]> children) {
+    long covered = 0;
+    long coveredUntil = start;
+    List<long[]> sorted = new ArrayList<>(children);
+    sorted.sort(Comparator.comparingLong(interval -> interval[0]));
+    for (long[] child : sorted) {
+      long from = Math.max(child[0], coveredUntil);
+      long to = Math.min(child[1], end);
+      if (to > from) {
+        covered += to - from;
+        coveredUntil = to;
+      }
+    }
+    return Math.max(0, end - start - covered);
+  }
+
+  private static long epochNanos(Instant instant) {
+    return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000d;
+  }
+
+  private static final class Node {
+    private final String location;
+    private final long start;
+    private final long end;
+    private final List<Node> children = new ArrayList<>();
+
+    private Node(String location, long start, long end) {
+      this.location = location;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * Timing of an ended span.
+   */
+  static final class Timing {
+    private final String spanId;
+    private final String parentSpanId;
+    private final String location;
+    private final long start;
+    private final long end;
+
+    Timing(String spanId, String parentSpanId, String location, long start, long end) {
+      this.spanId = spanId;
+      this.parentSpanId = parentSpanId;
+      this.location = location;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * A step of the critical path.
+   */
+  static final class Step {
+    private final String location;
+    private final long durationNanos;
+    private final long selfTimeNanos;
+
+    Step(String location, long durationNanos, long selfTimeNanos) {
+      this.location = location;
+      this.durationNanos = durationNanos;
+      this.selfTimeNanos = selfTimeNanos;
+    }
+
+    public String getLocation() {
+      return location;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    public long getSelfTimeNanos() {
+      return selfTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+      return location + "=" + selfTimeNanos;
+    }
+  }
+}
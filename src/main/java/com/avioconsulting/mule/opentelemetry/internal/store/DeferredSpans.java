@@ -0,0 +1,227 @@
+package com.avioconsulting.mule.opentelemetry.internal.store;
+
+import com.avioconsulting.mule.opentelemetry.api.traces.TraceComponent;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <pre>
+ * Processor spans of a transaction that are started only if the transaction turns out to be slow or failed.
+ *
+ * Processors record their {@link TraceComponent}, parent and end time in a ring instead of starting a span. No span
+ * builder is created for them. When the transaction ends -
+ *
+ * - If it took at least the slow transaction threshold, or any processor or the flow failed, span builders are
+ *   created from the recorded trace components, and spans are started and ended with the recorded timings under
+ *   the root span
+ * - Otherwise the ring is dropped, and no processor spans reach the span processors or exporters
+ *
+ * The ring starts small and grows with the transaction, up to `capacity` processors. It then keeps the last
+ * `capacity` processors of the transaction. Processors whose parent was overwritten are created under the root
+ * span.
+ * </pre>
+ */
+final class DeferredSpans {
+
+  private static final int ROOT = -1;
+  private static final int INITIAL_SLOTS = 16;
+
+  private final long thresholdNanos;
+  private final int capacity;
+  private int[] sequences;
+  private int[] parents;
+  private long[] endNanos;
+  private TraceComponent[] components;
+  private Object[] builderFactories;
+  private Object[] updaters;
+  private int next;
+  private boolean failed;
+
+  DeferredSpans(Duration threshold, int capacity) {
+    this.thresholdNanos = threshold.toNanos();
+    this.capacity = capacity;
+  }
+
+  /**
+   * @param traceComponent
+   *            {@link TraceComponent} of an ending processor or flow
+   * @return true if the component ended with an error
+   */
+  static boolean isFailed(TraceComponent traceComponent) {
+    return traceComponent.getErrorMessage() != null || StatusCode.ERROR.equals(traceComponent.getStatusCode());
+  }
+
+  /**
+   * Record a processor span that started.
+   *
+   * @param traceComponent
+   *            {@link TraceComponent} of the processor
+   * @param spanBuilderFactory
+   *            creates the {@link SpanBuilder} of the processor span from the
+   *            trace component, if the span is started
+   * @param parent
+   *            sequence of the parent processor span, negative for the root
+   *            span
+   * @return sequence of the processor span
+   */
+  synchronized int add(TraceComponent traceComponent, Function<TraceComponent, SpanBuilder> spanBuilderFactory,
+      int parent) {
+    int sequence = next++;
+    int slot = slot(sequence);
+    sequences[slot] = sequence;
+    parents[slot] = parent < 0 ? ROOT : parent;
+    endNanos[slot] = 0;
+    components[slot] = traceComponent;
+    builderFactories[slot] = spanBuilderFactory;
+    updaters[slot] = null;
+    return sequence;
+  }
+
+  /**
+   * Slot of a new sequence, growing the ring until it reaches the capacity.
+   */
+  private int slot(int sequence) {
+    int slots = sequences == null ? 0 : sequences.length;
+    if (sequence >= slots && slots < capacity) {
+      int size = Math.max(INITIAL_SLOTS, slots * 2);
+      while (size <= sequence && size < capacity)
+        size *= 2;
+      size = Math.min(capacity, size);
+      if (sequences == null) {
+        sequences = new int[size];
+        parents = new int[size];
+        endNanos = new long[size];
+        components = new TraceComponent[size];
+        builderFactories = new Object[size];
+        updaters = new Object[size];
+      } else {
+        sequences = Arrays.copyOf(sequences, size);
+        parents = Arrays.copyOf(parents, size);
+        endNanos = Arrays.copyOf(endNanos, size);
+        components = Arrays.copyOf(components, size);
+        builderFactories = Arrays.copyOf(builderFactories, size);
+        updaters = Arrays.copyOf(updaters, size);
+      }
+    }
+    return sequence % capacity;
+  }
+
+  /**
+   * Record a processor span that ended.
+   *
+   * @param sequence
+   *            sequence returned by {@link #add(TraceComponent, Function, int)}
+   * @param spanUpdater
+   *            {@link Consumer} to update the span when it is started, can be
+   *            null
+   * @param endTime
+   *            {@link Instant} the span ended at, null for now
+   * @param failed
+   *            true if the processor failed
+   */
+  synchronized void end(int sequence, Consumer<Span> spanUpdater, Instant endTime, boolean failed) {
+    this.failed |= failed;
+    int slot = sequence % capacity;
+    if (sequences == null || slot >= sequences.length || sequences[slot] != sequence || components[slot] == null)
+      return;
+    endNanos[slot] = epochNanos(endTime == null ? Instant.now() : endTime);
+    updaters[slot] = spanUpdater;
+  }
+
+  /**
+   * Start and end the recorded spans if the transaction was slow or failed.
+   *
+   * @param rootSpan
+   *            root {@link Span} of the transaction, not ended yet
+   * @param startTime
+   *            {@link Instant} the transaction started at
+   * @param endTime
+   *            {@link Instant} the transaction ended at
+   * @param rootFailed
+   *            true if the flow failed
+   * @param ended
+   *            {@link EndedSpan} called with each created span
+   * @return true if the transaction took at least the threshold
+   */
+  @SuppressWarnings("unchecked")
+  synchronized boolean materialize(Span rootSpan, Instant startTime, Instant endTime, boolean rootFailed,
+      EndedSpan ended) {
+    boolean slow = startTime != null && endTime != null
+        && Duration.between(startTime, endTime).toNanos() >= thresholdNanos;
+    if (sequences == null || !rootSpan.isRecording() || !(slow || failed || rootFailed)) {
+      clear();
+      return slow;
+    }
+    int oldest = Math.max(0, next - capacity);
+    Context rootContext = rootSpan.storeInContext(Context.root());
+    Context[] contexts = new Context[sequences.length];
+    Span[] spans = new Span[sequences.length];
+    for (int sequence = oldest; sequence < next; sequence++) {
+      int slot = sequence % capacity;
+      if (sequences[slot] != sequence || endNanos[slot] == 0)
+        continue;
+      int parent = parents[slot];
+      Context parentContext = parent < oldest || contexts[parent % capacity] == null ? rootContext
+          : contexts[parent % capacity];
+      spans[slot] = ((Function<TraceComponent, SpanBuilder>) builderFactories[slot]).apply(components[slot])
+          .setParent(parentContext).startSpan();
+      contexts[slot] = spans[slot].storeInContext(parentContext);
+    }
+    // Child spans start after their parent, ending in reverse order ends them
+    // before their parent
+    for (int sequence = next - 1; sequence >= oldest; sequence--) {
+      int slot = sequence % capacity;
+      Span span = spans[slot];
+      if (span == null)
+        continue;
+      if (updaters[slot] != null)
+        ((Consumer<Span>) updaters[slot]).accept(span);
+      span.end(endNanos[slot], TimeUnit.NANOSECONDS);
+      ended.accept(span, components[slot].getLocation(), epochNanos(components[slot].getStartTime()),
+          endNanos[slot]);
+    }
+    clear();
+    return slow;
+  }
+
+  private void clear() {
+    sequences = null;
+    parents = null;
+    endNanos = null;
+    components = null;
+    builderFactories = null;
+    updaters = null;
+  }
+
+  private static long epochNanos(Instant instant) {
+    return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+  }
+
+  /**
+   * Receives deferred spans as they are ended.
+   */
+  @FunctionalInterface
+  interface EndedSpan {
+
+    /**
+     * @param span
+     *            ended {@link Span}
+     * @param location
+     *            location of the processor
+     * @param start
+     *            start of the span in epoch nanos
+     * @param end
+     *            end of the span in epoch nanos
+     */
+    void accept(Span span, String location, long start, long end);
+  }
+}
@@ -14,12 +14,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
@@ -36,11 +38,15 @@ public class FlowSpan implements Serializable {
   private final Map<String, ProcessorSpan> childSpans = new ConcurrentHashMap<>();
   private Map<String, String> tags = new HashMap<>();
   private String apikitConfigName;
+  private final transient CriticalPath criticalPath;
+  private transient DeferredSpans deferredSpans;
+  private transient Span deferredParent;
 
   public FlowSpan(String flowName, Span span, String transactionId) {
     this.flowName = flowName;
     this.span = span;
     this.transactionId = transactionId;
+    this.criticalPath = PropertiesUtil.isCriticalPathEnabled() ? new CriticalPath() : null;
   }
 
   public Span getSpan() {
@@ -56,8 +62,29 @@ public class FlowSpan implements Serializable {
   }
 
   /**
-   * Add a span created from given {@code SpanBuilder} for the processor
-   * identified at the given location {@code String}.
+   * Defer processor spans of this transaction until it ends, see
+   * {@link DeferredSpans}.
+   *
+   * @param slowTransactionThreshold
+   *            {@link Duration} after which the transaction is slow, null to
+   *            start processor spans as usual
+   * @return FlowSpan
+   */
+  public FlowSpan deferProcessorSpans(Duration slowTransactionThreshold) {
+    if (slowTransactionThreshold != null) {
+      deferredSpans = new DeferredSpans(slowTransactionThreshold, PropertiesUtil.getSlowTransactionMaxSpans());
+      // Stands in for deferred spans, so context propagated from them refers to
+      // the root span
+      deferredParent = Span.wrap(getSpan().getSpanContext());
+    }
+    return this;
+  }
+
+  /**
+   * Add a span for the processor identified at the given location
+   * {@code String}. The span builder is created with given factory, unless
+   * processor spans are deferred. Deferred spans are built only if the
+   * transaction turns out to be slow or failed, see {@link DeferredSpans}.
    * When containerName {@code String} is provided, an existing span of that
    * container (eg. Flow) is set as the parent span of this processor span.
    *
@@ -65,18 +92,21 @@ public class FlowSpan implements Serializable {
    *            {@link String}
    * @param traceComponent
    *            {@link TraceComponent}
-   * @param spanBuilder
-   *            {@link SpanBuilder}
+   * @param spanBuilderFactory
+   *            creates the {@link SpanBuilder} from the trace component
    * @return Span
    */
-  public SpanMeta addProcessorSpan(String containerName, TraceComponent traceComponent, SpanBuilder spanBuilder) {
+  public SpanMeta addProcessorSpan(String containerName, TraceComponent traceComponent,
+      Function<TraceComponent, SpanBuilder> spanBuilderFactory) {
     LOGGER.trace("Adding Span at location {} for flow {} trace transaction {} context {}",
         traceComponent.contextScopedLocation(),
         this.getRootSpanName(),
         this.transactionId, this.getSpan().getSpanContext().toString());
+    int deferredParentSequence = -1;
+    Context parentContext = null;
     if (containerName != null) {
       if (getFlowName().equals(containerName)) {
-        spanBuilder.setParent(getSpan().storeInContext(Context.current()));
+        parentContext = getSpan().storeInContext(Context.current());
       } else {
         String contextScopedContainer = traceComponent.contextScopedPath(containerName);
         ProcessorSpan ps = new ProcessorSpan(getSpan(), traceComponent.getLocation(), transactionId,
@@ -89,14 +119,27 @@ public class FlowSpan implements Serializable {
         }
         LOGGER.debug("Parent span existence check for {} at {}", traceComponent.getLocation(),
             parentSpan.getLocation());
-        spanBuilder.setParent(parentSpan.getContext());
+        parentContext = parentSpan.getContext();
+        deferredParentSequence = parentSpan.getDeferredSequence();
       }
     }
     extractAPIKitConfigName(traceComponent);
     resetSpanNameIfNeeded(traceComponent);
-    Span span = spanBuilder.startSpan();
+    Span span;
+    int deferredSequence = -1;
+    if (deferredSpans != null) {
+      deferredSequence = deferredSpans.add(traceComponent, spanBuilderFactory, deferredParentSequence);
+      span = deferredParent;
+    } else {
+      SpanBuilder spanBuilder = spanBuilderFactory.apply(traceComponent);
+      if (parentContext != null)
+        spanBuilder.setParent(parentContext);
+      span = spanBuilder.startSpan();
+    }
     ProcessorSpan ps = new ProcessorSpan(span, traceComponent.getLocation(), transactionId,
-        traceComponent.getStartTime(), flowName).setTags(traceComponent.getTags());
+        traceComponent.getStartTime(), flowName).setTags(traceComponent.getTags())
+        .setMetricAttributes(traceComponent.getMetricAttributes())
+        .setDeferredSequence(deferredSequence);
     LOGGER.trace("Adding span for {}:{} - {}", traceComponent.contextScopedLocation(), traceComponent.getSpanName(),
         span.getSpanContext().getSpanId());
     childSpans.putIfAbsent(traceComponent.contextScopedLocation(), ps);
@@ -148,9 +191,14 @@ public class FlowSpan implements Serializable {
       endRouteSpans(traceComponent, endTime);
 
       removed.setEndTime(endTime);
-      if (spanUpdater != null)
-        spanUpdater.accept(removed.getSpan());
-      removed.getSpan().end(endTime);
+      Consumer<Span> updater = withSelfTime(withAsyncTimes(removed, spanUpdater, endTime), removed.getStartTime(),
+          endTime);
+      if (!endDeferredSpan(removed, updater, endTime, DeferredSpans.isFailed(traceComponent))) {
+        if (updater != null)
+          updater.accept(removed.getSpan());
+        removed.getSpan().end(endTime);
+        recordEnded(removed);
+      }
       return removed;
     }
     return null;
@@ -206,6 +254,160 @@ public class FlowSpan implements Serializable {
             k,
             this.getRootSpanName(),
             this.transactionId, removed.getSpan().getSpanContext());
+        removed.setEndTime(endTime);
+        Consumer<Span> updater = withSelfTime(null, removed.getStartTime(), endTime);
+        if (!endDeferredSpan(removed, updater, endTime, false)) {
+          if (updater != null)
+            updater.accept(removed.getSpan());
+          removed.getSpan().end(endTime);
+          recordEnded(removed);
+        }
+      }
+    });
+  }
+
+  /**
+   * Record the time an async scope started executing its processors.
+   *
+   * @param traceComponent
+   *            {@link TraceComponent} of the first processor in the async
+   *            scope
+   * @param asyncScopeLocation
+   *            location of the async scope
+   */
+  public void startAsyncExecution(TraceComponent traceComponent, String asyncScopeLocation) {
+    ProcessorSpan asyncSpan = getParentSpan(traceComponent, asyncScopeLocation);
+    if (asyncSpan != null && asyncSpan.getExecutionStartTime() == null)
+      asyncSpan.setExecutionStartTime(traceComponent.getStartTime());
+  }
+
+  /**
+   * Add queue wait and execution times of an async scope to the span updater.
+   */
+  private static Consumer<Span> withAsyncTimes(ProcessorSpan processorSpan, Consumer<Span> spanUpdater,
+      Instant endTime) {
+    Instant executionStart = processorSpan.getExecutionStartTime();
+    if (executionStart == null || processorSpan.getStartTime() == null || endTime == null)
+      return spanUpdater;
+    long queueWait = Math.max(0, Duration.between(processorSpan.getStartTime(), executionStart).toMillis());
+    long execution = Math.max(0, Duration.between(executionStart, endTime).toMillis());
+    return span -> {
+      if (spanUpdater != null)
+        spanUpdater.accept(span);
+      span.setAttribute(SemanticAttributes.MULE_APP_ASYNC_QUEUE_WAIT, queueWait);
+      span.setAttribute(SemanticAttributes.MULE_APP_ASYNC_EXECUTION_TIME, execution);
+    };
+  }
+
+  /**
+   * Add self time of a processor span to the span updater when critical path is
+   * enabled. Child spans must be recorded with
+   * {@link #recordEnded(ProcessorSpan)} before the updater runs.
+   *
+   * @param spanUpdater
+   *            {@link Consumer} to update the span, can be null
+   * @param startTime
+   *            {@link Instant} the span started at
+   * @param endTime
+   *            {@link Instant} the span ends at, null for now
+   * @return span updater, can be null
+   */
+  public Consumer<Span> withSelfTime(Consumer<Span> spanUpdater, Instant startTime, Instant endTime) {
+    if (criticalPath == null)
+      return spanUpdater;
+    Instant end = endTime == null ? Instant.now() : endTime;
+    return span -> {
+      if (spanUpdater != null)
+        spanUpdater.accept(span);
+      criticalPath.setSelfTime(span, startTime, end);
+    };
+  }
+
+  /**
+   * Record an ended processor span for the critical path of this transaction.
+   *
+   * @param processorSpan
+   *            ended {@link ProcessorSpan}
+   */
+  public void recordEnded(ProcessorSpan processorSpan) {
+    if (criticalPath != null)
+      criticalPath.record(processorSpan.getSpan(), processorSpan.getLocation(), processorSpan.getStartTime(),
+          processorSpan.getEndTime());
+  }
+
+  /**
+   * Record the end of a deferred processor span.
+   *
+   * @param processorSpan
+   *            ended {@link ProcessorSpan}
+   * @param spanUpdater
+   *            {@link Consumer} to update the span if it is started, can be null
+   * @param endTime
+   *            {@link Instant} the span ended at
+   * @param failed
+   *            true if the processor failed
+   * @return false if the span is not deferred and must be ended by the caller
+   */
+  public boolean endDeferredSpan(ProcessorSpan processorSpan, Consumer<Span> spanUpdater, Instant endTime,
+      boolean failed) {
+    if (deferredSpans == null || processorSpan.getDeferredSequence() < 0)
+      return false;
+    deferredSpans.end(processorSpan.getDeferredSequence(), spanUpdater, endTime, failed);
+    return true;
+  }
+
+  /**
+   * Start the deferred processor spans if the transaction was slow or failed.
+   * Must be called before the flow span ends.
+   *
+   * @param startTime
+   *            {@link Instant} the transaction started at
+   * @param endTime
+   *            {@link Instant} the transaction ended at
+   * @param failed
+   *            true if the flow failed
+   */
+  public void materializeDeferredSpans(Instant startTime, Instant endTime, boolean failed) {
+    if (deferredSpans == null)
+      return;
+    boolean slow = deferredSpans.materialize(getSpan(), startTime, endTime, failed,
+        (span, location, start, end) -> {
+          if (criticalPath != null)
+            criticalPath.record(span, location, start, end);
+        });
+    if (slow)
+      getSpan().setAttribute(SemanticAttributes.MULE_TRANSACTION_SLOW, true);
+  }
+
+  /**
+   * Set the critical path of this transaction on the flow span. Must be called
+   * before the flow span ends.
+   *
+   * @param startTime
+   *            {@link Instant} the flow span started at
+   * @param endTime
+   *            {@link Instant} the flow span ends at
+   */
+  public void applyCriticalPath(Instant startTime, Instant endTime) {
+    if (criticalPath != null)
+      criticalPath.apply(getSpan(), startTime, endTime);
+  }
+
+  /**
+   * End all processor spans that are still open, for example when the
+   * application stops before the flow completes.
+   *
+   * @param spanUpdater
+   *            {@link Consumer} to update each span before it ends
+   * @param endTime
+   *            {@link Instant} to end spans at
+   */
+  public void endOpenSpans(Consumer<Span> spanUpdater, Instant endTime) {
+    childSpans.keySet().forEach(location -> {
+      ProcessorSpan removed = childSpans.remove(location);
+      if (removed != null) {
+        removed.setEndTime(endTime);
+        spanUpdater.accept(removed.getSpan());
         removed.getSpan().end(endTime);
       }
     });
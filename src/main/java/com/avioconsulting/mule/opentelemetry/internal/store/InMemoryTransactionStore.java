@@ -5,10 +5,13 @@ import com.avioconsulting.mule.opentelemetry.api.store.TransactionMeta;
 import com.avioconsulting.mule.opentelemetry.api.store.TransactionStore;
 import com.avioconsulting.mule.opentelemetry.api.traces.TraceComponent;
 import com.avioconsulting.mule.opentelemetry.api.traces.TransactionContext;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics;
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics.Operation;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
+import org.mule.runtime.api.component.ComponentIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,6 +19,7 @@ import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * In-memory {@link TransactionStore}. This implementation uses
@@ -38,6 +42,16 @@ public class InMemoryTransactionStore implements TransactionStore {
   @Override
   public void startTransaction(
       final TraceComponent traceComponent, final String rootFlowName, SpanBuilder rootFlowSpanBuilder) {
+    long overheadStart = ModuleOverheadMetrics.start();
+    try {
+      doStartTransaction(traceComponent, rootFlowName, rootFlowSpanBuilder);
+    } finally {
+      ModuleOverheadMetrics.record(Operation.STORE_START_TRANSACTION, identifierOf(traceComponent), overheadStart);
+    }
+  }
+
+  private void doStartTransaction(
+      final TraceComponent traceComponent, final String rootFlowName, SpanBuilder rootFlowSpanBuilder) {
     final String transactionId = traceComponent.getTransactionId();
     Transaction transaction = getTransaction(traceComponent.getTransactionId());
     if (transaction != null) {
@@ -45,7 +59,7 @@ public class InMemoryTransactionStore implements TransactionStore {
           "Start transaction {} for flow '{}' - Adding to existing transaction",
           transactionId,
           rootFlowName);
-      transaction.getRootFlowSpan().addProcessorSpan(null, traceComponent, rootFlowSpanBuilder);
+      transaction.getRootFlowSpan().addProcessorSpan(null, traceComponent, component -> rootFlowSpanBuilder);
     } else {
       Span span = rootFlowSpanBuilder.startSpan();
       LOGGER.trace(
@@ -59,8 +73,9 @@ public class InMemoryTransactionStore implements TransactionStore {
           new Transaction(traceComponent.getTransactionId(), span.getSpanContext().getTraceId(), rootFlowName,
               new FlowSpan(rootFlowName, span, transactionId)
                   .setTags(traceComponent.getTags())
-                  .setRootSpanName(traceComponent.getSpanName()),
-              traceComponent.getStartTime()));
+                  .setRootSpanName(traceComponent.getSpanName())
+                  .deferProcessorSpans(traceComponent.getSlowTransactionThreshold()),
+              traceComponent.getStartTime(), traceComponent.isForceTrace()));
     }
   }
 
@@ -108,6 +123,17 @@ public class InMemoryTransactionStore implements TransactionStore {
   public TransactionMeta endTransaction(
       TraceComponent traceComponent,
       Consumer<Span> spanUpdater) {
+    long overheadStart = ModuleOverheadMetrics.start();
+    try {
+      return doEndTransaction(traceComponent, spanUpdater);
+    } finally {
+      ModuleOverheadMetrics.record(Operation.STORE_END_TRANSACTION, identifierOf(traceComponent), overheadStart);
+    }
+  }
+
+  private TransactionMeta doEndTransaction(
+      TraceComponent traceComponent,
+      Consumer<Span> spanUpdater) {
     LOGGER.trace("End transaction {} for flow '{}'", traceComponent, traceComponent.getName());
     Consumer<Span> endSpan = (span) -> {
       if (spanUpdater != null)
@@ -124,15 +150,27 @@ public class InMemoryTransactionStore implements TransactionStore {
     if (transaction != null) {
       if (transaction.getRootFlowName().equals(traceComponent.getName())) {
         Transaction removed = transactionMap.remove(traceComponent.getTransactionId());
+        removed.getRootFlowSpan().materializeDeferredSpans(removed.getStartTime(), traceComponent.getEndTime(),
+            DeferredSpans.isFailed(traceComponent));
+        removed.getRootFlowSpan().applyCriticalPath(removed.getStartTime(), traceComponent.getEndTime());
         endSpan.accept(removed.getRootFlowSpan().getSpan());
         removed.setEndTime(traceComponent.getEndTime());
       } else {
         // This is a flow invoked by a flow-ref and not the main flow
-        ProcessorSpan processorSpan = transaction.getRootFlowSpan()
+        FlowSpan rootFlowSpan = transaction.getRootFlowSpan();
+        ProcessorSpan processorSpan = rootFlowSpan
             .findSpan(traceComponent.contextScopedPath(traceComponent.getName()));
         if (processorSpan != null) {
-          endSpan.accept(processorSpan.getSpan());
           processorSpan.setEndTime(traceComponent.getEndTime());
+          Consumer<Span> updater = rootFlowSpan.withSelfTime(spanUpdater, processorSpan.getStartTime(),
+              traceComponent.getEndTime());
+          if (!rootFlowSpan.endDeferredSpan(processorSpan, updater,
+              traceComponent.getEndTime(), DeferredSpans.isFailed(traceComponent))) {
+            if (updater != null)
+              updater.accept(processorSpan.getSpan());
+            processorSpan.getSpan().end(traceComponent.getEndTime());
+            rootFlowSpan.recordEnded(processorSpan);
+          }
         }
 
         return processorSpan;
@@ -143,6 +181,22 @@ public class InMemoryTransactionStore implements TransactionStore {
 
   @Override
   public SpanMeta addProcessorSpan(String containerName, TraceComponent traceComponent, SpanBuilder spanBuilder) {
+    return addProcessorSpan(containerName, traceComponent, component -> spanBuilder);
+  }
+
+  @Override
+  public SpanMeta addProcessorSpan(String containerName, TraceComponent traceComponent,
+      Function<TraceComponent, SpanBuilder> spanBuilderFactory) {
+    long overheadStart = ModuleOverheadMetrics.start();
+    try {
+      return doAddProcessorSpan(containerName, traceComponent, spanBuilderFactory);
+    } finally {
+      ModuleOverheadMetrics.record(Operation.STORE_ADD_PROCESSOR_SPAN, identifierOf(traceComponent), overheadStart);
+    }
+  }
+
+  private SpanMeta doAddProcessorSpan(String containerName, TraceComponent traceComponent,
+      Function<TraceComponent, SpanBuilder> spanBuilderFactory) {
     Transaction transaction = getTransaction(traceComponent.getTransactionId());
     if (transaction == null) {
       return null;
@@ -153,7 +207,7 @@ public class InMemoryTransactionStore implements TransactionStore {
         traceComponent.getLocation());
     SpanMeta span = transaction
         .getRootFlowSpan()
-        .addProcessorSpan(containerName, traceComponent, spanBuilder);
+        .addProcessorSpan(containerName, traceComponent, spanBuilderFactory);
     LOGGER.trace(
         "Adding Processor span to transaction {} for locator span '{}': OT SpanId {}, TraceId {}",
         traceComponent.getTransactionId(),
@@ -166,6 +220,16 @@ public class InMemoryTransactionStore implements TransactionStore {
   @Override
   public SpanMeta endProcessorSpan(
       String transactionId, TraceComponent traceComponent, Consumer<Span> spanUpdater, Instant endTime) {
+    long overheadStart = ModuleOverheadMetrics.start();
+    try {
+      return doEndProcessorSpan(transactionId, traceComponent, spanUpdater, endTime);
+    } finally {
+      ModuleOverheadMetrics.record(Operation.STORE_END_PROCESSOR_SPAN, identifierOf(traceComponent), overheadStart);
+    }
+  }
+
+  private SpanMeta doEndProcessorSpan(
+      String transactionId, TraceComponent traceComponent, Consumer<Span> spanUpdater, Instant endTime) {
     LOGGER.trace(
         "Ending Processor span of transaction {} for location '{}'",
         transactionId,
@@ -179,4 +243,40 @@ public class InMemoryTransactionStore implements TransactionStore {
         .getRootFlowSpan()
         .endProcessorSpan(traceComponent, spanUpdater, endTime);
   }
+
+  @Override
+  public int endOpenTransactions(Consumer<Span> spanUpdater) {
+    Instant endTime = Instant.now();
+    int ended = 0;
+    for (String transactionId : transactionMap.keySet()) {
+      Transaction removed = transactionMap.remove(transactionId);
+      if (removed == null)
+        continue;
+      FlowSpan rootFlowSpan = removed.getRootFlowSpan();
+      rootFlowSpan.endOpenSpans(spanUpdater, endTime);
+      spanUpdater.accept(rootFlowSpan.getSpan());
+      rootFlowSpan.getSpan().end(endTime);
+      removed.setEndTime(endTime);
+      ended++;
+    }
+    return ended;
+  }
+
+  @Override
+  public boolean hasProcessorSpan(String transactionId, String contextScopedLocation) {
+    Transaction transaction = getTransaction(transactionId);
+    return transaction != null && transaction.getRootFlowSpan().findSpan(contextScopedLocation) != null;
+  }
+
+  @Override
+  public void startAsyncExecution(TraceComponent traceComponent, String asyncScopeLocation) {
+    Transaction transaction = getTransaction(traceComponent.getTransactionId());
+    if (transaction != null)
+      transaction.getRootFlowSpan().startAsyncExecution(traceComponent, asyncScopeLocation);
+  }
+
+  private static ComponentIdentifier identifierOf(TraceComponent traceComponent) {
+    return traceComponent.getComponentLocation() == null ? null
+        : traceComponent.getComponentLocation().getComponentIdentifier().getIdentifier();
+  }
 }
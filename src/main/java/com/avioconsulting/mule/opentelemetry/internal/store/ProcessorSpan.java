@@ -1,6 +1,7 @@
 package com.avioconsulting.mule.opentelemetry.internal.store;
 
 import com.avioconsulting.mule.opentelemetry.api.store.SpanMeta;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.context.Context;
 
@@ -18,6 +19,9 @@ public class ProcessorSpan implements SpanMeta {
   private final String flowName;
   private Context context;
   private Map<String, String> tags = new HashMap<>();
+  private int deferredSequence = -1;
+  private volatile Instant executionStartTime;
+  private Attributes metricAttributes;
 
   public ProcessorSpan(Span span, String location, String transactionId, Instant startTime, String flowName) {
     this.span = span;
@@ -86,4 +90,43 @@ public class ProcessorSpan implements SpanMeta {
     this.tags = tags;
     return this;
   }
+
+  /**
+   * @return time an async scope started executing its processors, null if it
+   *         did not start or this is not an async scope
+   */
+  public Instant getExecutionStartTime() {
+    return executionStartTime;
+  }
+
+  public ProcessorSpan setExecutionStartTime(Instant executionStartTime) {
+    this.executionStartTime = executionStartTime;
+    return this;
+  }
+
+  /**
+   * @return pre-built metric attributes of a metered location, null if the
+   *         location is not metered
+   */
+  public Attributes getMetricAttributes() {
+    return metricAttributes;
+  }
+
+  public ProcessorSpan setMetricAttributes(Attributes metricAttributes) {
+    this.metricAttributes = metricAttributes;
+    return this;
+  }
+
+  /**
+   * @return sequence in {@link DeferredSpans} when span is deferred, otherwise
+   *         -1
+   */
+  int getDeferredSequence() {
+    return deferredSequence;
+  }
+
+  ProcessorSpan setDeferredSequence(int deferredSequence) {
+    this.deferredSequence = deferredSequence;
+    return this;
+  }
 }
@@ -12,15 +12,22 @@ public class Transaction implements TransactionMeta {
   private final FlowSpan rootFlowSpan;
   private final String traceId;
   private final Instant startTime;
+  private final boolean forceTraced;
   private Instant endTime;
 
   public Transaction(String transactionId, String traceId, String rootFlowName, FlowSpan rootFlowSpan,
       Instant startTime) {
+    this(transactionId, traceId, rootFlowName, rootFlowSpan, startTime, false);
+  }
+
+  public Transaction(String transactionId, String traceId, String rootFlowName, FlowSpan rootFlowSpan,
+      Instant startTime, boolean forceTraced) {
     this.transactionId = transactionId;
     this.rootFlowName = rootFlowName;
     this.rootFlowSpan = rootFlowSpan;
     this.traceId = traceId;
     this.startTime = startTime;
+    this.forceTraced = forceTraced;
   }
 
   @Override
@@ -57,6 +64,11 @@ public class Transaction implements TransactionMeta {
     return endTime;
   }
 
+  @Override
+  public boolean isForceTraced() {
+    return forceTraced;
+  }
+
   public void setEndTime(Instant endTime) {
     this.endTime = endTime;
   }
@@ -36,6 +36,10 @@ public class ComponentsUtil {
     return location.getComponentIdentifier().getIdentifier().getName().equals("flow-ref");
   }
 
+  public static boolean isHttpRequest(ComponentIdentifier identifier) {
+    return "http".equals(identifier.getNamespace()) && "request".equals(identifier.getName());
+  }
+
   public static Optional<Component> findComponent(ComponentIdentifier identifier, String location,
       ConfigurationComponentLocator configurationComponentLocator) {
     return configurationComponentLocator
@@ -65,9 +69,23 @@ public class ComponentsUtil {
    * @return String
    */
   public static String getRouteContainerLocation(TraceComponent traceComponent) {
+    return traceComponent.getComponentLocation() != null
+        ? getRouteContainerLocation(traceComponent.getComponentLocation())
+        : null;
+  }
+
+  /**
+   * Gets the parent container for router's route, see
+   * {@link #getRouteContainerLocation(TraceComponent)}.
+   *
+   * @param componentLocation
+   *            {@link ComponentLocation}
+   * @return String
+   */
+  public static String getRouteContainerLocation(ComponentLocation componentLocation) {
     String parentLocation = null;
-    if (traceComponent.getComponentLocation() != null) {
-      List<LocationPart> parts = traceComponent.getComponentLocation().getParts();
+    if (componentLocation.getParts() != null) {
+      List<LocationPart> parts = componentLocation.getParts();
       if (parts.size() > 2) {
         int routeIndex = parts.size() - 3;
         LocationPart parentPart = parts.get(routeIndex);
@@ -136,6 +154,26 @@ public class ComponentsUtil {
         .isPresent();
   }
 
+  /**
+   * Gets the async scope when the location is the first processor inside it.
+   * For example, `flow-1/processors/2/processors/0` location of a logger in
+   * `mule:async` at `flow-1/processors/2` returns `flow-1/processors/2`.
+   *
+   * @param componentLocation
+   *            {@link ComponentLocation}
+   * @return String location of the async scope, otherwise null
+   */
+  public static String getAsyncScopeLocation(ComponentLocation componentLocation) {
+    List<LocationPart> parts = componentLocation.getParts();
+    if (parts == null || parts.size() < 5 || !"0".equals(parts.get(parts.size() - 1).getPartPath())
+        || !"processors".equals(parts.get(parts.size() - 2).getPartPath()))
+      return null;
+    return parts.get(parts.size() - 3).getPartIdentifier()
+        .filter(ComponentsUtil::isAsyncScope)
+        .map(tci -> getLocationParent(componentLocation.getLocation()))
+        .orElse(null);
+  }
+
   public static boolean isAsyncScope(TypedComponentIdentifier identifier) {
     return SCOPE.equals(identifier.getType()) && identifier.getIdentifier().getName().equals("async");
   }
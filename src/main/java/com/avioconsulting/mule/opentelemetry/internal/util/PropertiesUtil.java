@@ -4,12 +4,32 @@ import java.util.Locale;
 
 public class PropertiesUtil {
   public static final String MULE_OTEL_USE_APIKIT_SPAN_NAMES = "mule.otel.use.apikit.span.names";
+  public static final String MULE_OTEL_CRITICAL_PATH_ENABLED = "mule.otel.critical.path.enabled";
+  public static final String MULE_OTEL_SLOW_TRANSACTION_MAX_SPANS = "mule.otel.slow.transaction.max.spans";
+  public static final String MULE_OTEL_HTTP_REQUEST_CONTEXT_INJECTION_ENABLED =
+      "mule.otel.http.request.context.injection.enabled";
 
   /**
    * Should APIKit Flow names be used to name http root spans? Default true.
    */
   private static boolean useAPIKitSpanNames = true;
 
+  /**
+   * Should critical path of transactions be set on root spans? Default false.
+   */
+  private static boolean criticalPathEnabled = false;
+
+  /**
+   * Maximum deferred processor spans kept for a transaction when slow
+   * transaction threshold is set. Default 256.
+   */
+  private static int slowTransactionMaxSpans = 256;
+
+  /**
+   * Should trace context be added to http:request headers? Default false.
+   */
+  private static boolean httpRequestContextInjectionEnabled = false;
+
   private PropertiesUtil() {
   }
 
@@ -22,6 +42,12 @@ public class PropertiesUtil {
     if (useAPIKitSpanNames != null) {
       PropertiesUtil.useAPIKitSpanNames = Boolean.parseBoolean(useAPIKitSpanNames);
     }
+    criticalPathEnabled = Boolean.parseBoolean(getProperty(MULE_OTEL_CRITICAL_PATH_ENABLED));
+    String slowTransactionMaxSpans = getProperty(MULE_OTEL_SLOW_TRANSACTION_MAX_SPANS);
+    PropertiesUtil.slowTransactionMaxSpans = slowTransactionMaxSpans == null ? 256
+        : Math.max(1, Integer.parseInt(slowTransactionMaxSpans));
+    httpRequestContextInjectionEnabled = Boolean
+        .parseBoolean(getProperty(MULE_OTEL_HTTP_REQUEST_CONTEXT_INJECTION_ENABLED));
   }
 
   public static String getProperty(String name) {
@@ -42,4 +68,16 @@ public class PropertiesUtil {
   public static boolean isUseAPIKitSpanNames() {
     return useAPIKitSpanNames;
   }
+
+  public static boolean isCriticalPathEnabled() {
+    return criticalPathEnabled;
+  }
+
+  public static int getSlowTransactionMaxSpans() {
+    return slowTransactionMaxSpans;
+  }
+
+  public static boolean isHttpRequestContextInjectionEnabled() {
+    return httpRequestContextInjectionEnabled;
+  }
 }
@@ -0,0 +1,134 @@
+package com.avioconsulting.mule.opentelemetry;
+
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.test.DelegatedLoggingSpanTestExporter;
+import com.avioconsulting.mule.opentelemetry.internal.util.PropertiesUtil;
+import com.avioconsulting.mule.opentelemetry.test.util.SharedHeaders;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mule.tck.junit4.rule.DynamicPort;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+public class MuleOpenTelemetryHttpRequestInjectionTest extends AbstractMuleArtifactTraceTest {
+
+  @ClassRule
+  public static DynamicPort wireMockPort = new DynamicPort("wiremock.port");
+
+  @Rule
+  public WireMockRule wireMockRule = new WireMockRule(wireMockConfig().port(wireMockPort.getNumber()));
+
+  @Override
+  protected String getConfigFile() {
+    return "mule-opentelemetry-http-request-injection.xml";
+  }
+
+  @Override
+  protected void doSetUpBeforeMuleContextCreation() throws Exception {
+    super.doSetUpBeforeMuleContextCreation();
+    System.setProperty(PropertiesUtil.MULE_OTEL_HTTP_REQUEST_CONTEXT_INJECTION_ENABLED, "true");
+  }
+
+  @Override
+  protected void doTearDownAfterMuleContextDispose() throws Exception {
+    super.doTearDownAfterMuleContextDispose();
+    System.clearProperty(PropertiesUtil.MULE_OTEL_HTTP_REQUEST_CONTEXT_INJECTION_ENABLED);
+  }
+
+  @Before
+  public void setupDownstream() {
+    wireMockRule.stubFor(get(urlPathMatching("/downstream/.*")).willReturn(ok("downstream")));
+  }
+
+  @After
+  public void stopWireMock() {
+    wireMockRule.stop();
+  }
+
+  @Test
+  public void injectsRequestSpanContext_concurrentRequestsWithSharedHeaders() throws Exception {
+    sendConcurrently("test-injection/expression");
+
+    Set<String> expected = awaitClientSpanContexts("/downstream/expression");
+    List<LoggedRequest> received = wireMockRule.findAll(getRequestedFor(urlEqualTo("/downstream/expression")));
+    assertThat(received).hasSize(2)
+        .allSatisfy(request -> assertThat(request.getHeader("x-app-header")).isEqualTo("shared"));
+    assertThat(received.stream().map(request -> request.getHeader("traceparent")).collect(Collectors.toSet()))
+        .as("Each request carries the context of its own http:request span")
+        .isEqualTo(expected);
+    assertThat(SharedHeaders.get())
+        .as("Headers shared through vars.headers are not modified")
+        .doesNotContainKeys("traceparent", "tracestate");
+  }
+
+  @Test
+  public void doesNotModifyHeadersHeldInVariables() throws Exception {
+    sendConcurrently("test-injection/variable");
+
+    Set<String> expected = awaitClientSpanContexts("/downstream/variable");
+    List<LoggedRequest> received = wireMockRule.findAll(getRequestedFor(urlEqualTo("/downstream/variable")));
+    assertThat(received).hasSize(2)
+        .allSatisfy(request -> {
+          if (request.containsHeader("traceparent")) {
+            assertThat(expected)
+                .as("A propagated context belongs to a request span of this flow")
+                .contains(request.getHeader("traceparent"));
+          }
+        });
+    assertThat(received.stream().filter(request -> request.containsHeader("traceparent"))
+        .map(request -> request.getHeader("traceparent")).distinct().count())
+        .as("No request reuses the context of another request")
+        .isEqualTo(received.stream().filter(request -> request.containsHeader("traceparent")).count());
+    assertThat(SharedHeaders.get())
+        .as("Module never writes into vars.headers")
+        .doesNotContainKeys("traceparent", "tracestate");
+  }
+
+  private void sendConcurrently(String path) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    try {
+      CompletableFuture<?>[] calls = new CompletableFuture<?>[2];
+      for (int i = 0; i < calls.length; i++) {
+        calls[i] = CompletableFuture.runAsync(() -> {
+          try {
+            barrier.await(10, TimeUnit.SECONDS);
+            sendRequest(UUID.randomUUID().toString(), path, 200);
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }, executor);
+      }
+      CompletableFuture.allOf(calls).get(30, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Set<String> awaitClientSpanContexts(String spanName) {
+    await().untilAsserted(() -> assertThat(DelegatedLoggingSpanTestExporter.spanQueue)
+        .filteredOn(span -> span.getSpanKind().equals("CLIENT") && span.getSpanName().equals(spanName))
+        .hasSize(2));
+    return DelegatedLoggingSpanTestExporter.spanQueue.stream()
+        .filter(span -> span.getSpanKind().equals("CLIENT") && span.getSpanName().equals(spanName))
+        .map(span -> "00-" + span.getTraceId() + "-" + span.getSpanId() + "-01")
+        .collect(Collectors.toSet());
+  }
+}
@@ -19,6 +19,18 @@ public class SpanProcessorConfigurationTest {
         .containsEntry("otel.bsp.export.timeout", "4");
   }
 
+  @Test
+  public void getStripedSpanProcessorConfigMap() {
+    assertThat(new SpanProcessorConfiguration(1, 2, 3, 4).getConfigMap())
+        .doesNotContainKey("mule.otel.span.processor.type");
+    SpanProcessorConfiguration spc = new SpanProcessorConfiguration(1, 2, 3, 4)
+        .setProcessorType(SpanProcessorConfiguration.SpanProcessorType.STRIPED_BATCH).setStripes(4);
+    assertThat(spc.getConfigMap())
+        .containsEntry("mule.otel.span.processor.type", "striped_batch")
+        .containsEntry("mule.otel.span.processor.stripes", "4");
+    assertThat(spc).isNotEqualTo(new SpanProcessorConfiguration(1, 2, 3, 4));
+  }
+
   @Test
   public void testEquals() {
     SpanProcessorConfiguration spc1 = new SpanProcessorConfiguration(1, 2, 3, 4);
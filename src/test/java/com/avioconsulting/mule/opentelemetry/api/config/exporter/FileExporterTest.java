@@ -0,0 +1,35 @@
+package com.avioconsulting.mule.opentelemetry.api.config.exporter;
+
+import org.junit.Test;
+
+import static com.avioconsulting.mule.opentelemetry.api.config.exporter.FileExporter.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileExporterTest {
+
+  @Test
+  public void getExporterProperties() {
+    FileExporter exporter = new FileExporter("/tmp/otel", FileFormat.PROTOBUF, true);
+    assertThat(exporter.getExporterProperties())
+        .containsEntry(OTEL_TRACES_EXPORTER_KEY, "mule-file")
+        .containsEntry(OTEL_METRICS_EXPORTER_KEY, "mule-file")
+        .containsEntry(OTEL_LOGS_EXPORTER_KEY, "mule-file")
+        .containsEntry(MULE_OTEL_EXPORTER_FILE_DIRECTORY, "/tmp/otel")
+        .containsEntry(MULE_OTEL_EXPORTER_FILE_FORMAT, "protobuf")
+        .containsEntry(MULE_OTEL_EXPORTER_FILE_COMPRESSION, "gzip")
+        .containsEntry(MULE_OTEL_EXPORTER_FILE_MAX_SIZE_MB, "100")
+        .containsEntry(MULE_OTEL_EXPORTER_FILE_ROTATION_INTERVAL, "60m")
+        .containsEntry(MULE_OTEL_EXPORTER_FILE_QUEUE_SIZE, "2048");
+  }
+
+  @Test
+  public void configPropertiesOverrideExporterProperties() {
+    FileExporter exporter = new FileExporter("/tmp/otel", FileFormat.JSON, false);
+    exporter.getConfigProperties().put(OTEL_METRICS_EXPORTER_KEY, "none");
+    assertThat(exporter.getExporterProperties())
+        .containsEntry(OTEL_TRACES_EXPORTER_KEY, "mule-file")
+        .containsEntry(OTEL_METRICS_EXPORTER_KEY, "none")
+        .containsEntry(MULE_OTEL_EXPORTER_FILE_FORMAT, "json")
+        .containsEntry(MULE_OTEL_EXPORTER_FILE_COMPRESSION, "none");
+  }
+}
@@ -1,9 +1,11 @@
 package com.avioconsulting.mule.opentelemetry.api.config.exporter;
 
 import com.avioconsulting.mule.opentelemetry.api.config.Header;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool.SpoolingSpanExporter;
 import org.junit.Test;
 
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Objects;
 
@@ -72,4 +74,47 @@ public class OtlpExporterTest {
         .containsEntry(OTEL_EXPORTER_OTLP_CLIENT_CERTIFICATE, clientCert);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void verifySpoolProperties() {
+    OtlpExporter otlpExporter = new OtlpExporter("http://localhost", OtlpExporter.Protocol.HTTP_PROTOBUF,
+        OtlpExporter.OtlpRequestCompression.NONE, Collections.emptyList());
+    assertThat(otlpExporter.getExporterProperties())
+        .doesNotContainKey(SpoolingSpanExporter.SPOOL_DIRECTORY_KEY);
+    assertThat(otlpExporter.setSpoolDirectory("/tmp/spool").getExporterProperties())
+        .containsEntry(SpoolingSpanExporter.SPOOL_DIRECTORY_KEY, "/tmp/spool")
+        .containsEntry(SpoolingSpanExporter.SPOOL_MAX_SIZE_MB_KEY, "64")
+        .containsEntry(SpoolingSpanExporter.SPOOL_REPLAY_BATCHES_PER_SECOND_KEY, "5");
+  }
+
+  @Test
+  public void verifyAdditionalTraceEndpoints() {
+    OtlpExporter otlpExporter = new OtlpExporter("http://localhost:4318/v1", OtlpExporter.Protocol.HTTP_PROTOBUF,
+        OtlpExporter.OtlpRequestCompression.NONE, Collections.emptyList());
+    assertThat(otlpExporter.getExporterProperties())
+        .doesNotContainKey(OtlpExporter.MULE_OTEL_EXPORTER_OTLP_TRACES_ENDPOINTS);
+    assertThat(otlpExporter.setAdditionalTraceEndpoints(Arrays.asList("http://collector-2:4318/v1/",
+        "http://collector-3:4318/v1")).getExporterProperties())
+        .containsEntry(OtlpExporter.MULE_OTEL_EXPORTER_OTLP_TRACES_ENDPOINTS,
+            "http://localhost:4318/v1/traces,http://collector-2:4318/v1/traces,http://collector-3:4318/v1/traces")
+        .containsEntry(OtlpExporter.OTEL_EXPORTER_OTLP_METRICS_ENDPOINT, "http://localhost:4318/v1/metrics");
+
+    OtlpExporter grpcExporter = new OtlpExporter("http://localhost:4317", OtlpExporter.Protocol.GRPC,
+        OtlpExporter.OtlpRequestCompression.NONE, Collections.emptyList())
+        .setAdditionalTraceEndpoints(Collections.singletonList("http://collector-2:4317"));
+    assertThat(grpcExporter.getExporterProperties())
+        .containsEntry(OtlpExporter.MULE_OTEL_EXPORTER_OTLP_TRACES_ENDPOINTS,
+            "http://localhost:4317,http://collector-2:4317");
+  }
+
+  @Test
+  public void verifyAdaptiveExport() {
+    OtlpExporter otlpExporter = new OtlpExporter("http://localhost:4317", OtlpExporter.Protocol.GRPC,
+        OtlpExporter.OtlpRequestCompression.GZIP, Collections.emptyList());
+    assertThat(otlpExporter.getExporterProperties())
+        .doesNotContainKey(OtlpExporter.MULE_OTEL_EXPORTER_ADAPTIVE_ENABLED);
+    assertThat(otlpExporter.setAdaptiveExport(true).getExporterProperties())
+        .containsEntry(OtlpExporter.MULE_OTEL_EXPORTER_ADAPTIVE_ENABLED, "true")
+        .containsEntry(OtlpExporter.OTEL_EXPORTER_OTLP_COMPRESSION, "gzip");
+  }
+
+}
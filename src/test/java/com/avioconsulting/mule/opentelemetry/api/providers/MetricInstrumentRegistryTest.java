@@ -0,0 +1,101 @@
+package com.avioconsulting.mule.opentelemetry.api.providers;
+
+import com.avioconsulting.mule.opentelemetry.api.notifications.DoubleMetricNotificationData;
+import com.avioconsulting.mule.opentelemetry.api.notifications.LongMetricNotificationData;
+import com.avioconsulting.mule.opentelemetry.api.notifications.MetricBaseNotificationData;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.HistogramPointData;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetricInstrumentRegistryTest {
+
+  private InMemoryMetricReader metricReader;
+  private MetricInstrumentRegistry registry;
+
+  @Before
+  public void setup() {
+    metricReader = InMemoryMetricReader.create();
+    registry = new MetricInstrumentRegistry(
+        SdkMeterProvider.builder().registerMetricReader(metricReader).build().get("test"), 2);
+  }
+
+  @Test
+  public void recordsTypedLongCounter() {
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put("order.type", "online");
+    TestLongData data = new TestLongData().setMetricName("orders.count").setMetricType("COUNTER")
+        .setMetricAttributes(attributes).setLongValue(2);
+    assertThat(registry.record(data)).isTrue();
+    assertThat(registry.record(data.setLongValue(3))).isTrue();
+
+    LongPointData point = metric(metricReader.collectAllMetrics(), "orders.count").getLongSumData().getPoints()
+        .iterator().next();
+    assertThat(point.getValue()).isEqualTo(5);
+    assertThat(point.getAttributes().get(AttributeKey.stringKey("order.type"))).isEqualTo("online");
+  }
+
+  @Test
+  public void recordsTypedDoubleHistogram() {
+    TestDoubleData data = new TestDoubleData().setMetricName("order.amount").setMetricType("histogram")
+        .setDoubleValue(10.5);
+    assertThat(registry.record(data)).isTrue();
+
+    HistogramPointData point = metric(metricReader.collectAllMetrics(), "order.amount").getHistogramData()
+        .getPoints().iterator().next();
+    assertThat(point.getSum()).isEqualTo(10.5);
+  }
+
+  @Test
+  public void recordsUntypedValues() {
+    TestObjectData data = new TestObjectData().setMetricName("queue.size").setMetricType("up-down-counter")
+        .setMetricValue(4);
+    assertThat(registry.record(data)).isTrue();
+    assertThat(registry.record(data.setMetricValue("not a number"))).isFalse();
+
+    LongPointData point = metric(metricReader.collectAllMetrics(), "queue.size").getLongSumData().getPoints()
+        .iterator().next();
+    assertThat(point.getValue()).isEqualTo(4);
+  }
+
+  @Test
+  public void ignoresUnsupportedTypes() {
+    assertThat(registry.record(new TestLongData().setMetricName("cpu").setMetricType("gauge").setLongValue(1)))
+        .isFalse();
+    assertThat(metricReader.collectAllMetrics()).isEmpty();
+  }
+
+  @Test
+  public void recordsAttributeSetsBeyondCacheLimit() {
+    for (int i = 0; i < 5; i++) {
+      Map<String, String> attributes = new HashMap<>();
+      attributes.put("id", String.valueOf(i));
+      registry.record(new TestLongData().setMetricName("requests").setMetricType("counter")
+          .setMetricAttributes(attributes).setLongValue(1));
+    }
+    assertThat(metric(metricReader.collectAllMetrics(), "requests").getLongSumData().getPoints()).hasSize(5);
+  }
+
+  private static MetricData metric(Collection<MetricData> metrics, String name) {
+    return metrics.stream().filter(m -> m.getName().equals(name)).findFirst().orElseThrow(AssertionError::new);
+  }
+
+  private static class TestLongData extends LongMetricNotificationData<TestLongData> {
+  }
+
+  private static class TestDoubleData extends DoubleMetricNotificationData<TestDoubleData> {
+  }
+
+  private static class TestObjectData extends MetricBaseNotificationData<TestObjectData> {
+  }
+}
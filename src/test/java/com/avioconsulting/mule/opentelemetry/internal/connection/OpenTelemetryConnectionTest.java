@@ -9,6 +9,10 @@ import com.avioconsulting.mule.opentelemetry.internal.config.OpenTelemetryConfig
 import com.avioconsulting.mule.opentelemetry.internal.config.OpenTelemetryConfiguration;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 public class OpenTelemetryConnectionTest extends AbstractInternalTest {
@@ -31,4 +35,32 @@ public class OpenTelemetryConnectionTest extends AbstractInternalTest {
     verify(exporter).getExporterProperties();
     verify(spc).getConfigMap();
   }
-}
\ No newline at end of file
+
+  @Test
+  public void shutdownReleasesInstance() {
+    Map<String, String> exporterProperties = new HashMap<>();
+    exporterProperties.put("otel.traces.exporter", "none");
+    exporterProperties.put("otel.metrics.exporter", "none");
+    exporterProperties.put("otel.logs.exporter", "none");
+    ExporterConfiguration exporterConfig = mock(ExporterConfiguration.class);
+    OpenTelemetryExporter exporter = mock(OpenTelemetryExporter.class);
+    when(exporter.getExporterProperties()).thenReturn(exporterProperties);
+    when(exporterConfig.getExporter()).thenReturn(exporter);
+    OpenTelemetryConfiguration configuration = mock(OpenTelemetryConfiguration.class);
+    when(configuration.getExporterConfiguration()).thenReturn(exporterConfig);
+    when(configuration.isTurnOffMetrics()).thenReturn(true);
+    OpenTelemetryConfigWrapper wrapper = new OpenTelemetryConfigWrapper(configuration);
+    OpenTelemetryConnection instance = OpenTelemetryConnection.getInstance(wrapper);
+
+    instance.invalidate();
+    assertThat(instance.isShutdown()).as("Invalidated connection is still usable").isFalse();
+    assertThat(OpenTelemetryConnection.getInstance()).isSameAs(instance);
+
+    instance.shutdown(1000);
+    assertThat(instance.isShutdown()).isTrue();
+    assertThat(OpenTelemetryConnection.getInstance()).isNull();
+    // Only the first call shuts down
+    instance.shutdown(1000);
+    assertThat(OpenTelemetryConnection.getInstance(wrapper)).isNotSameAs(instance);
+  }
+}
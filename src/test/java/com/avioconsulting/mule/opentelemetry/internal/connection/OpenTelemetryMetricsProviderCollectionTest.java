@@ -0,0 +1,33 @@
+package com.avioconsulting.mule.opentelemetry.internal.connection;
+
+import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsConfigProvider;
+import com.avioconsulting.mule.opentelemetry.api.providers.OpenTelemetryMetricsProvider;
+import io.opentelemetry.api.OpenTelemetry;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class OpenTelemetryMetricsProviderCollectionTest {
+
+  @Test
+  public void countsMeasurementsDroppedBeforeInitialization() {
+    OpenTelemetryMetricsProvider provider = mock(OpenTelemetryMetricsProvider.class);
+    OpenTelemetryMetricsProviderCollection collection = new OpenTelemetryMetricsProviderCollection();
+    collection.add(provider);
+
+    collection.addMeteredComponent("flow/processors/0");
+    collection.captureFlowMetrics(null, "flow", null);
+    collection.captureProcessorMetrics(null, null, "flow/processors/0", null);
+    assertThat(collection.getDroppedMeasurements()).isEqualTo(2);
+    verify(provider, never()).addMeteredComponent(any());
+    verify(provider, never()).captureFlowMetrics(any(), any(), any());
+
+    collection.initialize(mock(OpenTelemetryMetricsConfigProvider.class), OpenTelemetry.noop());
+    verify(provider).addMeteredComponent("flow/processors/0");
+    collection.captureFlowMetrics(null, "flow", null);
+    verify(provider).captureFlowMetrics(null, "flow", null);
+    assertThat(collection.getDroppedMeasurements()).isEqualTo(2);
+  }
+}
@@ -4,9 +4,12 @@ import com.avioconsulting.mule.opentelemetry.api.processor.ProcessorComponent;
 import com.avioconsulting.mule.opentelemetry.internal.AbstractInternalTest;
 import com.avioconsulting.mule.opentelemetry.internal.connection.OpenTelemetryConnection;
 import com.avioconsulting.mule.opentelemetry.internal.processor.MuleNotificationProcessor;
+import com.avioconsulting.mule.opentelemetry.internal.util.PropertiesUtil;
 import com.avioconsulting.mule.opentelemetry.api.traces.TraceComponent;
 import com.avioconsulting.mule.opentelemetry.api.store.TransactionStore;
 import com.avioconsulting.mule.opentelemetry.test.util.TestInterceptionEvent;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.component.ComponentIdentifier;
@@ -18,9 +21,11 @@ import org.mule.runtime.api.event.Event;
 import org.mule.runtime.api.event.EventContext;
 import org.mule.runtime.api.interception.InterceptionAction;
 import org.mule.runtime.api.interception.InterceptionEvent;
+import org.mule.runtime.api.interception.ProcessorParameterValue;
 import org.mule.runtime.api.metadata.TypedValue;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -28,10 +33,23 @@ import java.util.concurrent.CompletableFuture;
 import static com.avioconsulting.mule.opentelemetry.api.store.TransactionStore.TRACE_CONTEXT_MAP_KEY;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class ProcessorTracingInterceptorTest extends AbstractInternalTest {
 
+  @Before
+  public void enableHttpRequestContextInjection() {
+    System.setProperty(PropertiesUtil.MULE_OTEL_HTTP_REQUEST_CONTEXT_INJECTION_ENABLED, "true");
+    PropertiesUtil.init();
+  }
+
+  @After
+  public void resetHttpRequestContextInjection() {
+    System.clearProperty(PropertiesUtil.MULE_OTEL_HTTP_REQUEST_CONTEXT_INJECTION_ENABLED);
+    PropertiesUtil.init();
+  }
+
   @Test
   public void injectContextInVars_NonProcessorComponent() {
     OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
@@ -294,4 +312,117 @@ public class ProcessorTracingInterceptorTest extends AbstractInternalTest {
         .doesNotContainKey(TransactionStore.TRACE_PREV_CONTEXT_MAP_KEY);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void injectContextInHttpRequestHeaders() {
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    Map<String, String> headers = new HashMap<>();
+    headers.put("tracestate", "app=set");
+    doAnswer(invocation -> {
+      ProcessorTracingInterceptor.RequestHeadersSetter setter = invocation.getArgument(3);
+      setter.set(invocation.getArgument(2), "traceparent", "request-span-context");
+      setter.set(invocation.getArgument(2), "tracestate", "module=set");
+      return null;
+    }).when(connection).injectTraceContext(eq("random-id"), eq("test-event-id/test-location"), eq(headers),
+        eq(ProcessorTracingInterceptor.RequestHeadersSetter.INSTANCE));
+    ProcessorParameterValue headersParameter = mock(ProcessorParameterValue.class);
+    when(headersParameter.resolveValue()).thenReturn(headers);
+
+    interceptHttpRequest(connection, Collections.singletonMap("headers", headersParameter));
+
+    assertThat(headers)
+        .as("Request span context replaces propagator headers set by the application")
+        .containsEntry("traceparent", "request-span-context")
+        .containsEntry("tracestate", "module=set");
+  }
+
+  @Test
+  public void injectContextInHttpRequestHeaders_headersInVariable() {
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    // Same map resolved for every execution, eg. #[vars.headers]
+    Map<String, String> headers = new HashMap<>();
+    headers.put("x-app", "value");
+    ProcessorParameterValue headersParameter = mock(ProcessorParameterValue.class);
+    when(headersParameter.resolveValue()).thenReturn(headers);
+    TestInterceptionEvent interceptionEvent = new TestInterceptionEvent("random-id");
+    interceptionEvent.addVariable("headers", headers);
+
+    interceptHttpRequest(connection, Collections.singletonMap("headers", headersParameter), interceptionEvent);
+
+    verify(connection, never()).injectTraceContext(any(), any(), any(), any());
+    assertThat(headers)
+        .as("Headers held by the application are not modified")
+        .containsOnlyKeys("x-app");
+  }
+
+  @Test
+  public void injectContextInHttpRequestHeaders_disabledByDefault() {
+    System.clearProperty(PropertiesUtil.MULE_OTEL_HTTP_REQUEST_CONTEXT_INJECTION_ENABLED);
+    PropertiesUtil.init();
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    ProcessorParameterValue headersParameter = mock(ProcessorParameterValue.class);
+    when(headersParameter.resolveValue()).thenReturn(new HashMap<>());
+
+    interceptHttpRequest(connection, Collections.singletonMap("headers", headersParameter));
+
+    verify(headersParameter, never()).resolveValue();
+    verify(connection, never()).injectTraceContext(any(), any(), any(), any());
+  }
+
+  @Test
+  public void injectContextInHttpRequestHeaders_immutableHeaders() {
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    doThrow(new UnsupportedOperationException()).when(connection).injectTraceContext(any(), any(), any(),
+        any());
+    ProcessorParameterValue headersParameter = mock(ProcessorParameterValue.class);
+    when(headersParameter.resolveValue()).thenReturn(Collections.emptyMap());
+
+    TestInterceptionEvent interceptionEvent = interceptHttpRequest(connection,
+        Collections.singletonMap("headers", headersParameter));
+
+    assertThat(interceptionEvent.getVariables())
+        .as("Context variable is still set when headers cannot be changed")
+        .containsKey(TRACE_CONTEXT_MAP_KEY);
+  }
+
+  private TestInterceptionEvent interceptHttpRequest(OpenTelemetryConnection connection,
+      Map<String, ProcessorParameterValue> parameters) {
+    return interceptHttpRequest(connection, parameters, new TestInterceptionEvent("random-id"));
+  }
+
+  private TestInterceptionEvent interceptHttpRequest(OpenTelemetryConnection connection,
+      Map<String, ProcessorParameterValue> parameters, TestInterceptionEvent interceptionEvent) {
+    TransactionStore transactionStore = mock(TransactionStore.class);
+    when(connection.getTransactionStore()).thenReturn(transactionStore);
+    when(connection.getTraceContext("random-id", "test-event-id/test-location"))
+        .thenReturn(Collections.singletonMap("traceparent", "request-span-context"));
+    ComponentLocation location = mock(ComponentLocation.class);
+    when(location.getLocation()).thenReturn("test-location");
+    when(location.getRootContainerName()).thenReturn("test-flow-name");
+    ComponentIdentifier ci = mock(ComponentIdentifier.class);
+    when(ci.getNamespace()).thenReturn("http");
+    when(ci.getName()).thenReturn("request");
+    TypedComponentIdentifier tci = mock(TypedComponentIdentifier.class);
+    when(tci.getIdentifier()).thenReturn(ci);
+    when(location.getComponentIdentifier()).thenReturn(tci);
+
+    ProcessorComponent processorComponent = mock(ProcessorComponent.class);
+    TraceComponent traceComponent = TraceComponent.of("test").withLocation("test-location")
+        .withEventContextId("test-event-id");
+    when(processorComponent.getStartTraceComponent(any(), any())).thenReturn(traceComponent);
+
+    MuleNotificationProcessor muleNotificationProcessor = mock(MuleNotificationProcessor.class);
+    when(muleNotificationProcessor.getOpenTelemetryConnection()).thenReturn(connection);
+    when(muleNotificationProcessor.hasConnection()).thenReturn(true);
+    when(muleNotificationProcessor.getProcessorComponent(any(ComponentIdentifier.class)))
+        .thenReturn(processorComponent);
+
+    ConfigurationComponentLocator configurationComponentLocator = mock(ConfigurationComponentLocator.class);
+    when(configurationComponentLocator.find(any(Location.class))).thenReturn(Optional.of(mock(Component.class)));
+
+    ProcessorTracingInterceptor interceptor = new ProcessorTracingInterceptor(muleNotificationProcessor,
+        configurationComponentLocator);
+    interceptor.before(location, parameters, interceptionEvent);
+    return interceptionEvent;
+  }
+
+}
@@ -0,0 +1,164 @@
+package com.avioconsulting.mule.opentelemetry.internal.metrics;
+
+import com.avioconsulting.mule.opentelemetry.api.providers.BuiltInMetricsConfigProvider;
+import com.avioconsulting.mule.opentelemetry.api.providers.NoopOpenTelemetryMetricsConfigProvider;
+import com.avioconsulting.mule.opentelemetry.api.store.SpanMeta;
+import com.avioconsulting.mule.opentelemetry.api.store.TransactionMeta;
+import com.avioconsulting.mule.opentelemetry.internal.store.ProcessorSpan;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.DoubleExemplarData;
+import io.opentelemetry.sdk.metrics.data.HistogramPointData;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.runtime.api.message.Error;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_FLOW_NAME;
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_PROCESSOR_LOCATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BuiltInMetricsProviderTest {
+
+  private InMemoryMetricReader metricReader;
+  private OpenTelemetrySdk openTelemetry;
+
+  @Before
+  public void setup() {
+    metricReader = InMemoryMetricReader.create();
+    openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build())
+        .build();
+  }
+
+  @Test
+  public void recordsFlowMetrics() {
+    BuiltInMetricsProvider provider = new BuiltInMetricsProvider();
+    provider.initialize(new BuiltInMetricsConfigProvider(), openTelemetry);
+    provider.addFlow("order-flow");
+
+    Instant start = Instant.now();
+    TransactionMeta transactionMeta = mock(TransactionMeta.class);
+    when(transactionMeta.getStartTime()).thenReturn(start);
+    when(transactionMeta.getEndTime()).thenReturn(start.plusMillis(25));
+    provider.captureFlowMetrics(transactionMeta, "order-flow", null);
+    provider.captureFlowMetrics(transactionMeta, "order-flow", new RuntimeException("failed"));
+
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    HistogramPointData duration = histogramPoint(metrics, BuiltInMetricsProvider.FLOW_DURATION);
+    assertThat(duration.getCount()).isEqualTo(2);
+    assertThat(duration.getSum()).isEqualTo(50.0);
+    assertThat(duration.getAttributes().get(MULE_APP_FLOW_NAME)).isEqualTo("order-flow");
+    assertThat(counterPoint(metrics, BuiltInMetricsProvider.FLOW_REQUESTS).getValue()).isEqualTo(2);
+    assertThat(counterPoint(metrics, BuiltInMetricsProvider.FLOW_ERRORS).getValue()).isEqualTo(1);
+  }
+
+  @Test
+  public void recordsOnlyMeteredProcessors() {
+    BuiltInMetricsProvider provider = new BuiltInMetricsProvider();
+    provider.initialize(new BuiltInMetricsConfigProvider(), openTelemetry);
+    provider.addMeteredComponent("order-flow/processors/1");
+
+    Instant start = Instant.now();
+    SpanMeta spanMeta = mock(SpanMeta.class);
+    when(spanMeta.getStartTime()).thenReturn(start);
+    when(spanMeta.getEndTime()).thenReturn(start.plusMillis(10));
+    provider.captureProcessorMetrics(null, mock(Error.class), "order-flow/processors/1", spanMeta);
+    provider.captureProcessorMetrics(null, null, "order-flow/processors/2", spanMeta);
+
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    HistogramPointData duration = histogramPoint(metrics, BuiltInMetricsProvider.PROCESSOR_DURATION);
+    assertThat(duration.getCount()).isEqualTo(1);
+    assertThat(duration.getAttributes().get(MULE_APP_PROCESSOR_LOCATION)).isEqualTo("order-flow/processors/1");
+    assertThat(duration.getAttributes().get(MULE_APP_FLOW_NAME)).isEqualTo("order-flow");
+    assertThat(counterPoint(metrics, BuiltInMetricsProvider.PROCESSOR_ERRORS).getValue()).isEqualTo(1);
+  }
+
+  @Test
+  public void recordsProcessorsWithAttributesResolvedAtDeploy() {
+    BuiltInMetricsProvider provider = new BuiltInMetricsProvider();
+    provider.initialize(new BuiltInMetricsConfigProvider(), openTelemetry);
+
+    Instant start = Instant.now();
+    ProcessorSpan metered = new ProcessorSpan(Span.getInvalid(), "order-flow/processors/1", "tx-1", start,
+        "order-flow");
+    ProcessorSpan notMetered = new ProcessorSpan(Span.getInvalid(), "order-flow/processors/2", "tx-1", start,
+        "order-flow");
+    metered.setMetricAttributes(BuiltInMetricsProvider.processorAttributesFor("order-flow/processors/1"));
+
+    provider.captureProcessorMetrics(null, null, "order-flow/processors/1",
+        metered.setEndTime(start.plusMillis(10)));
+    provider.captureProcessorMetrics(null, null, "order-flow/processors/2",
+        notMetered.setEndTime(start.plusMillis(10)));
+
+    HistogramPointData duration = histogramPoint(metricReader.collectAllMetrics(),
+        BuiltInMetricsProvider.PROCESSOR_DURATION);
+    assertThat(duration.getCount()).isEqualTo(1);
+    assertThat(duration.getAttributes()).isEqualTo(metered.getMetricAttributes());
+    assertThat(duration.getAttributes().get(MULE_APP_PROCESSOR_LOCATION)).isEqualTo("order-flow/processors/1");
+  }
+
+  @Test
+  public void recordsExemplarsForSampledTransactions() {
+    BuiltInMetricsProvider provider = new BuiltInMetricsProvider();
+    provider.initialize(new BuiltInMetricsConfigProvider(), openTelemetry);
+
+    Instant start = Instant.now();
+    SpanContext sampled = SpanContext.create("0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331",
+        TraceFlags.getSampled(), TraceState.getDefault());
+    SpanContext notSampled = SpanContext.create("1af7651916cd43dd8448eb211c80319c", "c7ad6b7169203331",
+        TraceFlags.getDefault(), TraceState.getDefault());
+    TransactionMeta sampledMeta = mock(TransactionMeta.class);
+    when(sampledMeta.getStartTime()).thenReturn(start);
+    when(sampledMeta.getEndTime()).thenReturn(start.plusMillis(900));
+    when(sampledMeta.getSpan()).thenReturn(Span.wrap(sampled));
+    TransactionMeta notSampledMeta = mock(TransactionMeta.class);
+    when(notSampledMeta.getStartTime()).thenReturn(start);
+    when(notSampledMeta.getEndTime()).thenReturn(start.plusMillis(5));
+    when(notSampledMeta.getSpan()).thenReturn(Span.wrap(notSampled));
+    provider.captureFlowMetrics(sampledMeta, "order-flow", null);
+    provider.captureFlowMetrics(notSampledMeta, "order-flow", null);
+
+    HistogramPointData duration = histogramPoint(metricReader.collectAllMetrics(),
+        BuiltInMetricsProvider.FLOW_DURATION);
+    assertThat(duration.getExemplars()).hasSize(1);
+    DoubleExemplarData exemplar = duration.getExemplars().get(0);
+    assertThat(exemplar.getValue()).isEqualTo(900.0);
+    assertThat(exemplar.getSpanContext().getTraceId()).isEqualTo(sampled.getTraceId());
+    assertThat(exemplar.getSpanContext().getSpanId()).isEqualTo(sampled.getSpanId());
+  }
+
+  @Test
+  public void inactiveForOtherConfigProviders() {
+    BuiltInMetricsProvider provider = new BuiltInMetricsProvider();
+    provider.initialize(new NoopOpenTelemetryMetricsConfigProvider(), openTelemetry);
+    provider.addMeteredComponent("order-flow/processors/1");
+    provider.captureFlowMetrics(mock(TransactionMeta.class), "order-flow", null);
+    assertThat(metricReader.collectAllMetrics()).isEmpty();
+  }
+
+  private static Optional<MetricData> metric(Collection<MetricData> metrics, String name) {
+    return metrics.stream().filter(m -> m.getName().equals(name)).findFirst();
+  }
+
+  private static HistogramPointData histogramPoint(Collection<MetricData> metrics, String name) {
+    return metric(metrics, name).orElseThrow(AssertionError::new).getHistogramData().getPoints().iterator()
+        .next();
+  }
+
+  private static LongPointData counterPoint(Collection<MetricData> metrics, String name) {
+    return metric(metrics, name).orElseThrow(AssertionError::new).getLongSumData().getPoints().iterator().next();
+  }
+}
@@ -0,0 +1,111 @@
+package com.avioconsulting.mule.opentelemetry.internal.metrics;
+
+import com.avioconsulting.mule.opentelemetry.internal.metrics.ModuleOverheadMetrics.Operation;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.ExponentialHistogramPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.runtime.api.component.ComponentIdentifier;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ModuleOverheadMetricsTest {
+
+  private InMemoryMetricReader metricReader;
+  private OpenTelemetrySdk openTelemetry;
+
+  @Before
+  public void setup() {
+    metricReader = InMemoryMetricReader.create();
+    openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(ModuleOverheadMetrics.registerViews(SdkMeterProvider.builder())
+            .registerMetricReader(metricReader).build())
+        .build();
+  }
+
+  @After
+  public void tearDown() {
+    ModuleOverheadMetrics.reset();
+  }
+
+  @Test
+  public void noMeasurementsWhenNotInitialized() {
+    long start = ModuleOverheadMetrics.start();
+    assertThat(start).isZero();
+    ModuleOverheadMetrics.record(Operation.INTERCEPTOR_BEFORE, httpRequest(), start);
+    assertThat(metricReader.collectAllMetrics()).isEmpty();
+  }
+
+  @Test
+  public void accountsTotalWithoutHistogram() throws InterruptedException {
+    ModuleOverheadMetrics.setAccounting(true);
+    try {
+      long total = ModuleOverheadMetrics.getTotalNanos();
+      long start = ModuleOverheadMetrics.start();
+      assertThat(start).isNotZero();
+      Thread.sleep(1);
+      ModuleOverheadMetrics.record(Operation.PROCESSOR_START, httpRequest(), start);
+      assertThat(ModuleOverheadMetrics.getTotalNanos() - total).isGreaterThanOrEqualTo(1_000_000L);
+      assertThat(metricReader.collectAllMetrics()).isEmpty();
+    } finally {
+      ModuleOverheadMetrics.setAccounting(false);
+    }
+  }
+
+  @Test
+  public void accountsNestedStoreOperationsOnce() throws InterruptedException {
+    ModuleOverheadMetrics.setAccounting(true);
+    try {
+      long total = ModuleOverheadMetrics.getTotalNanos();
+      long handlerStart = ModuleOverheadMetrics.start();
+      long storeStart = ModuleOverheadMetrics.start();
+      Thread.sleep(5);
+      ModuleOverheadMetrics.record(Operation.STORE_ADD_PROCESSOR_SPAN, httpRequest(), storeStart);
+      ModuleOverheadMetrics.record(Operation.INTERCEPTOR_BEFORE, httpRequest(), handlerStart);
+      long handlerNanos = System.nanoTime() - handlerStart;
+      assertThat(ModuleOverheadMetrics.getTotalNanos() - total)
+          .as("Store time is part of the handler time")
+          .isGreaterThanOrEqualTo(5_000_000L)
+          .isLessThanOrEqualTo(handlerNanos);
+    } finally {
+      ModuleOverheadMetrics.setAccounting(false);
+    }
+  }
+
+  @Test
+  public void recordsByOperationAndNamespace() {
+    ModuleOverheadMetrics.initialize(openTelemetry);
+    ModuleOverheadMetrics.record(Operation.INTERCEPTOR_BEFORE, httpRequest(), ModuleOverheadMetrics.start());
+    ModuleOverheadMetrics.record(Operation.INTERCEPTOR_BEFORE, httpRequest(), ModuleOverheadMetrics.start());
+    ModuleOverheadMetrics.record(Operation.STORE_END_TRANSACTION, null, ModuleOverheadMetrics.start());
+
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    MetricData overhead = metrics.stream()
+        .filter(m -> m.getName().equals(ModuleOverheadMetrics.OVERHEAD_DURATION))
+        .findFirst().orElseThrow(AssertionError::new);
+    assertThat(overhead.getInstrumentationScopeInfo().getName())
+        .isEqualTo(ModuleOverheadMetrics.INSTRUMENTATION_SCOPE_NAME);
+    assertThat(overhead.getUnit()).isEqualTo("ns");
+    assertThat(overhead.getExponentialHistogramData().getPoints()).hasSize(2);
+    ExponentialHistogramPointData interceptor = overhead.getExponentialHistogramData().getPoints().stream()
+        .filter(p -> "interceptor.before".equals(p.getAttributes().get(ModuleOverheadMetrics.OPERATION)))
+        .findFirst().orElseThrow(AssertionError::new);
+    assertThat(interceptor.getCount()).isEqualTo(2);
+    assertThat(interceptor.getAttributes().get(ModuleOverheadMetrics.COMPONENT_NAMESPACE)).isEqualTo("http");
+    ExponentialHistogramPointData store = overhead.getExponentialHistogramData().getPoints().stream()
+        .filter(p -> "store.endTransaction".equals(p.getAttributes().get(ModuleOverheadMetrics.OPERATION)))
+        .findFirst().orElseThrow(AssertionError::new);
+    assertThat(store.getAttributes().get(ModuleOverheadMetrics.COMPONENT_NAMESPACE))
+        .isEqualTo(ModuleOverheadMetrics.UNKNOWN_NAMESPACE);
+  }
+
+  private static ComponentIdentifier httpRequest() {
+    return ComponentIdentifier.builder().namespace("http").name("request").build();
+  }
+}
@@ -0,0 +1,110 @@
+package com.avioconsulting.mule.opentelemetry.internal.metrics;
+
+import com.avioconsulting.mule.opentelemetry.api.AppIdentifier;
+import com.avioconsulting.mule.opentelemetry.api.providers.BuiltInMetricsConfigProvider;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mule.runtime.api.scheduler.SchedulerService;
+import org.mule.runtime.api.scheduler.SchedulerView;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_DOMAIN;
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_SCHEDULER_POOL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SchedulerMetricsProviderTest {
+
+  private InMemoryMetricReader metricReader;
+  private OpenTelemetrySdk openTelemetry;
+  private final CountDownLatch release = new CountDownLatch(1);
+  private Thread ioThread;
+
+  @Before
+  public void setup() {
+    metricReader = InMemoryMetricReader.create();
+    openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build())
+        .build();
+    ioThread = new Thread(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, "[MuleRuntime].io.01: [test-app].test-flow.BLOCKING @1a2b3c");
+    ioThread.start();
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    release.countDown();
+    ioThread.join();
+  }
+
+  @Test
+  public void poolName() {
+    assertThat(SchedulerMetricsProvider.poolName("[MuleRuntime].uber.02: [app].flow.CPU_LITE @1a2b3c"))
+        .isEqualTo("uber");
+    assertThat(SchedulerMetricsProvider.poolName("[MuleRuntime].cpuLight.01")).isEqualTo("cpuLight");
+    assertThat(SchedulerMetricsProvider.poolName("main")).isNull();
+    assertThat(SchedulerMetricsProvider.poolName("[MuleRuntime]")).isNull();
+  }
+
+  @Test
+  public void samplesPoolsOnCollection() {
+    SchedulerView running = mock(SchedulerView.class);
+    SchedulerView shutdown = mock(SchedulerView.class);
+    when(shutdown.isShutdown()).thenReturn(true);
+    SchedulerService schedulerService = mock(SchedulerService.class);
+    when(schedulerService.getSchedulers()).thenReturn(Arrays.asList(running, shutdown));
+    BuiltInMetricsConfigProvider config = new BuiltInMetricsConfigProvider()
+        .setSchedulerMetricsEnabled(true)
+        .setSchedulerService(schedulerService);
+    config.initialise(new AppIdentifier("test-app", "org-1", "env-1"));
+
+    SchedulerMetricsProvider provider = new SchedulerMetricsProvider();
+    provider.initialize(config, openTelemetry);
+    await().until(() -> ioThread.getState() == Thread.State.WAITING);
+
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    LongPointData ioThreads = gauge(metrics, SchedulerMetricsProvider.POOL_THREADS).getLongGaugeData().getPoints()
+        .stream()
+        .filter(p -> "io".equals(p.getAttributes().get(MULE_SCHEDULER_POOL)))
+        .findFirst().orElseThrow(AssertionError::new);
+    assertThat(ioThreads.getValue()).isGreaterThanOrEqualTo(1);
+    assertThat(ioThreads.getAttributes().get(MULE_APP_DOMAIN)).isEqualTo("test-app");
+    assertThat(gauge(metrics, SchedulerMetricsProvider.POOL_RUNNABLE_THREADS).getLongGaugeData().getPoints())
+        .filteredOn(p -> "io".equals(p.getAttributes().get(MULE_SCHEDULER_POOL)))
+        .extracting(LongPointData::getValue)
+        .as("Threads waiting on a latch are not runnable")
+        .allSatisfy(runnable -> assertThat(runnable).isLessThan(ioThreads.getValue()));
+    assertThat(gauge(metrics, SchedulerMetricsProvider.ACTIVE_SCHEDULERS).getLongGaugeData().getPoints())
+        .extracting(LongPointData::getValue).containsExactly(1L);
+
+    provider.stop();
+    assertThat(metricReader.collectAllMetrics()).isEmpty();
+  }
+
+  @Test
+  public void inactiveUnlessEnabled() {
+    SchedulerMetricsProvider provider = new SchedulerMetricsProvider();
+    provider.initialize(new BuiltInMetricsConfigProvider(), openTelemetry);
+    assertThat(metricReader.collectAllMetrics()).isEmpty();
+  }
+
+  private static MetricData gauge(Collection<MetricData> metrics, String name) {
+    return metrics.stream().filter(m -> m.getName().equals(name)).findFirst().orElseThrow(AssertionError::new);
+  }
+}
@@ -0,0 +1,42 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.Test;
+
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_TRACE_FORCED;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ForceTraceSamplerTest {
+
+  @Test
+  public void samplesDescendantsOfForcedSpanWithNonParentBasedDelegate() {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .setSampler(new ForceTraceSampler(Sampler.alwaysOff()))
+        .addSpanProcessor(SimpleSpanProcessor.create(exporter)).build();
+    Tracer tracer = tracerProvider.get("test");
+
+    Span root = tracer.spanBuilder("root").setAttribute(MULE_TRACE_FORCED, true).startSpan();
+    Span child = tracer.spanBuilder("child").setParent(Context.root().with(root)).startSpan();
+    Span grandChild = tracer.spanBuilder("grand-child").setParent(Context.root().with(child)).startSpan();
+    Span other = tracer.spanBuilder("other").startSpan();
+    grandChild.end();
+    child.end();
+    root.end();
+    other.end();
+
+    assertThat(other.getSpanContext().isSampled()).isFalse();
+    assertThat(exporter.getFinishedSpanItems())
+        .extracting(span -> span.getName())
+        .containsExactly("grand-child", "child", "root");
+    assertThat(exporter.getFinishedSpanItems())
+        .allSatisfy(span -> assertThat(span.getAttributes().get(MULE_TRACE_FORCED)).isTrue());
+    tracerProvider.shutdown();
+  }
+}
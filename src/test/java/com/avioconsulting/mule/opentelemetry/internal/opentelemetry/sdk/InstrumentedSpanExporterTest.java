@@ -0,0 +1,88 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.HistogramPointData;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InstrumentedSpanExporterTest {
+
+  @Test
+  public void recordsExportStatistics() {
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build()).build();
+    AtomicBoolean fail = new AtomicBoolean();
+    InstrumentedSpanExporter exporter = new InstrumentedSpanExporter(
+        new FailingSpanExporter(InMemorySpanExporter.create(), fail), "otlp");
+    exporter.initialize(openTelemetry);
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(exporter)).build();
+
+    tracerProvider.get("test").spanBuilder("span-1").startSpan().end();
+    tracerProvider.get("test").spanBuilder("span-2").startSpan().end();
+    fail.set(true);
+    tracerProvider.get("test").spanBuilder("span-3").startSpan().end();
+
+    assertThat(exporter.getExportCount()).isEqualTo(3);
+    assertThat(exporter.getExportedSpans()).isEqualTo(2);
+    assertThat(exporter.getExportFailures()).isEqualTo(1);
+    assertThat(exporter.getFailedSpans()).isEqualTo(1);
+    assertThat(exporter.getAverageExportLatencyMillis()).isGreaterThanOrEqualTo(0);
+
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    assertThat(metric(metrics, InstrumentedSpanExporter.SPANS_EXPORTED).getLongSumData().getPoints())
+        .extracting(LongPointData::getValue).containsExactlyInAnyOrder(2L, 1L);
+    assertThat(metric(metrics, InstrumentedSpanExporter.EXPORT_FAILURES).getLongSumData().getPoints())
+        .extracting(LongPointData::getValue).containsExactly(1L);
+    assertThat(metric(metrics, InstrumentedSpanExporter.EXPORT_DURATION).getHistogramData().getPoints())
+        .extracting(HistogramPointData::getCount).containsExactlyInAnyOrder(2L, 1L);
+    assertThat(metric(metrics, InstrumentedSpanExporter.EXPORT_FAILURES).getLongSumData().getPoints())
+        .allMatch(point -> "otlp".equals(point.getAttributes().get(InstrumentedSpanExporter.EXPORTER)));
+    tracerProvider.shutdown();
+  }
+
+  private static MetricData metric(Collection<MetricData> metrics, String name) {
+    return metrics.stream().filter(metric -> metric.getName().equals(name)).findFirst()
+        .orElseThrow(() -> new AssertionError("Metric not found - " + name));
+  }
+
+  static class FailingSpanExporter implements SpanExporter {
+    private final SpanExporter delegate;
+    private final AtomicBoolean fail;
+
+    FailingSpanExporter(SpanExporter delegate, AtomicBoolean fail) {
+      this.delegate = delegate;
+      this.fail = fail;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+      return fail.get() ? CompletableResultCode.ofFailure() : delegate.export(spans);
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return delegate.shutdown();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LazySpanExporterTest {
+
+  private static final List<SpanData> SPANS = Collections.singletonList(TestSpanData.builder()
+      .setName("span")
+      .setKind(SpanKind.INTERNAL)
+      .setStatus(StatusData.unset())
+      .setStartEpochNanos(1)
+      .setEndEpochNanos(2)
+      .setHasEnded(true)
+      .build());
+
+  @Test
+  public void createsDelegateOnFirstExport() {
+    InMemorySpanExporter delegate = InMemorySpanExporter.create();
+    AtomicInteger created = new AtomicInteger();
+    LazySpanExporter exporter = new LazySpanExporter("test", () -> {
+      created.incrementAndGet();
+      return delegate;
+    });
+    assertThat(exporter.flush().isSuccess()).isTrue();
+    assertThat(exporter.isCreated()).isFalse();
+
+    assertThat(exporter.export(SPANS).isSuccess()).isTrue();
+    assertThat(exporter.export(SPANS).isSuccess()).isTrue();
+    assertThat(created).hasValue(1);
+    assertThat(delegate.getFinishedSpanItems()).hasSize(2);
+    assertThat(exporter.shutdown().isSuccess()).isTrue();
+    assertThat(delegate.export(SPANS).isSuccess()).as("Delegate is shut down").isFalse();
+  }
+
+  @Test
+  public void shutdownWithoutExportDoesNotCreateDelegate() {
+    AtomicInteger created = new AtomicInteger();
+    LazySpanExporter exporter = new LazySpanExporter("test", () -> {
+      created.incrementAndGet();
+      return InMemorySpanExporter.create();
+    });
+    assertThat(exporter.shutdown().isSuccess()).isTrue();
+    assertThat(exporter.export(SPANS).isSuccess()).isFalse();
+    assertThat(created).hasValue(0);
+  }
+
+  @Test
+  public void retriesFailedCreation() {
+    InMemorySpanExporter delegate = InMemorySpanExporter.create();
+    AtomicInteger attempts = new AtomicInteger();
+    LazySpanExporter exporter = new LazySpanExporter("test", () -> {
+      if (attempts.incrementAndGet() == 1)
+        throw new IllegalStateException("Not yet");
+      return delegate;
+    });
+    assertThat(exporter.export(SPANS).isSuccess()).isFalse();
+    assertThat(exporter.export(SPANS).isSuccess()).isTrue();
+    assertThat(delegate.getFinishedSpanItems()).hasSize(1);
+  }
+}
@@ -0,0 +1,169 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.test.IndexedSpanTestExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigurationException;
+import io.opentelemetry.sdk.autoconfigure.spi.internal.DefaultConfigProperties;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+public class SpanExportPipelineTest {
+
+  @Test
+  public void customizePropertiesWhenDisabled() {
+    assertThat(SpanExportPipeline.customizeProperties(config(Collections.emptyMap()))).isEmpty();
+  }
+
+  @Test
+  public void customizePropertiesMovesExportersAside() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("otel.traces.exporter", "otlp,logging");
+    properties.put(SpanExportPipeline.EXPORTER_METRICS_ENABLED_KEY, "true");
+    assertThat(SpanExportPipeline.customizeProperties(config(properties)))
+        .containsEntry("otel.traces.exporter", "none")
+        .containsEntry(SpanExportPipeline.EXPORTERS_KEY, "otlp,logging");
+
+    properties.remove(SpanExportPipeline.EXPORTER_METRICS_ENABLED_KEY);
+    properties.put(SpanExportPipeline.PROCESSOR_TYPE_KEY, SpanExportPipeline.STRIPED_BATCH);
+    assertThat(SpanExportPipeline.customizeProperties(config(properties)))
+        .containsEntry(SpanExportPipeline.EXPORTERS_KEY, "otlp,logging");
+  }
+
+  @Test
+  public void batchProcessorQueueSizeAndDroppedSpans() {
+    CountDownLatch release = new CountDownLatch(1);
+    SpanExporter blockingExporter = new SpanExporter() {
+      @Override
+      public CompletableResultCode export(Collection<SpanData> spans) {
+        CompletableResultCode result = new CompletableResultCode();
+        new Thread(() -> {
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException ignored) {
+          }
+          result.succeed();
+        }).start();
+        return result;
+      }
+
+      @Override
+      public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+      }
+
+      @Override
+      public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+      }
+    };
+    SpanExportPipeline pipeline = new SpanExportPipeline("test-service", Collections.singletonList("blocking"),
+        Collections.singletonList(blockingExporter), Collections.emptyList(), SpanExportPipeline.BATCH, 1, 16, 8,
+        TimeUnit.SECONDS.toNanos(60), TimeUnit.SECONDS.toNanos(30), null);
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder().addSpanProcessor(pipeline).build();
+    for (int i = 0; i < 30; i++)
+      tracerProvider.get("test").spanBuilder("span").startSpan().end();
+
+    // Queue is full and the rest is dropped, except a batch held by the blocked
+    // exporter if the worker took it before the queue filled up
+    await().untilAsserted(() -> {
+      assertThat(pipeline.getQueueSize()).isEqualTo(16);
+      assertThat(pipeline.getDroppedSpans()).isIn(6L, 14L);
+    });
+    release.countDown();
+    assertThat(pipeline.forceFlush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    assertThat(pipeline.getQueueSize()).isZero();
+    tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void createWithExporterMetrics() throws Exception {
+    IndexedSpanTestExporter.spans.clear();
+    Map<String, String> properties = new HashMap<>();
+    properties.put("otel.service.name", "pipeline-test");
+    properties.put(SpanExportPipeline.EXPORTER_METRICS_ENABLED_KEY, "true");
+    properties.put(SpanExportPipeline.EXPORTERS_KEY, "indexedInMemory");
+    SpanExportPipeline pipeline = SpanExportPipeline.create(config(properties), properties,
+        getClass().getClassLoader(), (name, exporter, config) -> exporter);
+    assertThat(pipeline).isNotNull();
+    assertThat(pipeline.getProcessorType()).isEqualTo(SpanExportPipeline.BATCH);
+    assertThat(pipeline.getProcessor().getStripeCount()).isEqualTo(1);
+    assertThat(pipeline.getExporters()).containsExactly("indexedInMemory");
+
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build()).build();
+    pipeline.initialize(openTelemetry);
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder().addSpanProcessor(pipeline).build();
+    tracerProvider.get("test").spanBuilder("span").startSpan().end();
+    pipeline.forceFlush().join(10, TimeUnit.SECONDS);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    List<ObjectName> names = pipeline.getMBeanNames();
+    assertThat(names).hasSize(2);
+    ObjectName exporterName = ObjectName.getInstance(SpanExportPipeline.JMX_DOMAIN
+        + ":type=SpanExporter,service=\"pipeline-test\",name=\"indexedInMemory\"");
+    assertThat(server.getAttribute(exporterName, "ExportedSpans")).isEqualTo(1L);
+    ObjectName pipelineName = ObjectName.getInstance(SpanExportPipeline.JMX_DOMAIN
+        + ":type=SpanExportPipeline,service=\"pipeline-test\"");
+    assertThat(server.getAttribute(pipelineName, "QueueSize")).isEqualTo(0L);
+    assertThat(server.getAttribute(pipelineName, "MaxQueueSize")).isEqualTo(2048);
+
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    assertThat(metrics).extracting(MetricData::getName).contains(SpanExportPipeline.QUEUE_SIZE,
+        SpanExportPipeline.SPANS_DROPPED, InstrumentedSpanExporter.SPANS_EXPORTED,
+        InstrumentedSpanExporter.EXPORT_DURATION);
+    assertThat(IndexedSpanTestExporter.spans.size()).isEqualTo(1);
+
+    tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+    assertThat(server.isRegistered(exporterName)).isFalse();
+    assertThat(server.isRegistered(pipelineName)).isFalse();
+  }
+
+  @Test
+  public void createWithAdaptiveExportUsesAdjustableProcessor() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(SpanExportPipeline.ADAPTIVE_ENABLED_KEY, "true");
+    properties.put(SpanExportPipeline.EXPORTERS_KEY, "indexedInMemory");
+    properties.put("otel.bsp.max.export.batch.size", "64");
+    SpanExportPipeline pipeline = SpanExportPipeline.create(config(properties), properties,
+        getClass().getClassLoader(), (name, exporter, config) -> exporter);
+    assertThat(pipeline).isNotNull();
+    // Non OTLP exporters are not wrapped, but batch settings still adapt
+    assertThat(pipeline.getProcessor().getExportBatchSize()).isEqualTo(64);
+    pipeline.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void autoConfigureExporterRejectsUnknownExporter() {
+    assertThatThrownBy(() -> SpanExportPipeline.autoConfigureExporter("unknown", Collections.emptyMap(),
+        getClass().getClassLoader()))
+        .isInstanceOf(ConfigurationException.class)
+        .hasMessageContaining("unknown");
+  }
+
+  private static ConfigProperties config(Map<String, String> properties) {
+    return DefaultConfigProperties.createFromMap(properties);
+  }
+}
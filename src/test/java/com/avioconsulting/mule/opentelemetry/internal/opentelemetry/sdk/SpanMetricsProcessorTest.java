@@ -0,0 +1,114 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.ExponentialHistogramPointData;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpanMetricsProcessorTest {
+
+  private InMemoryMetricReader metricReader;
+  private InMemorySpanExporter spanExporter;
+  private SpanMetricsProcessor spanMetricsProcessor;
+  private Tracer tracer;
+
+  @Before
+  public void setup() {
+    metricReader = InMemoryMetricReader.create();
+    spanExporter = InMemorySpanExporter.create();
+    spanMetricsProcessor = new SpanMetricsProcessor();
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(SpanMetricsProcessor.registerViews(SdkMeterProvider.builder())
+            .registerMetricReader(metricReader).build())
+        .setTracerProvider(SdkTracerProvider.builder()
+            .setSampler(new RecordOnlySampler(Sampler.alwaysOff()))
+            .addSpanProcessor(spanMetricsProcessor)
+            .addSpanProcessor(SimpleSpanProcessor.create(spanExporter))
+            .build())
+        .build();
+    spanMetricsProcessor.initialize(openTelemetry);
+    tracer = openTelemetry.getTracer("test");
+  }
+
+  @Test
+  public void recordsUnsampledSpans() {
+    tracer.spanBuilder("GET /orders").setSpanKind(SpanKind.SERVER).startSpan().end();
+    Span failed = tracer.spanBuilder("GET /orders").setSpanKind(SpanKind.SERVER).startSpan();
+    failed.setStatus(StatusCode.ERROR);
+    failed.end();
+
+    assertThat(spanExporter.getFinishedSpanItems()).isEmpty();
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    List<LongPointData> calls = metric(metrics, SpanMetricsProcessor.SPAN_CALLS).getLongSumData().getPoints()
+        .stream().collect(Collectors.toList());
+    assertThat(calls).hasSize(2)
+        .allSatisfy(point -> {
+          assertThat(point.getValue()).isEqualTo(1);
+          assertThat(point.getAttributes().get(SpanMetricsProcessor.SPAN_NAME)).isEqualTo("GET /orders");
+          assertThat(point.getAttributes().get(SpanMetricsProcessor.SPAN_KIND)).isEqualTo("SERVER");
+        })
+        .extracting(point -> point.getAttributes().get(SpanMetricsProcessor.STATUS_CODE))
+        .containsExactlyInAnyOrder("UNSET", "ERROR");
+    ExponentialHistogramPointData duration = metric(metrics, SpanMetricsProcessor.SPAN_DURATION)
+        .getExponentialHistogramData().getPoints().iterator().next();
+    assertThat(duration.getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void ignoresInternalSpans() {
+    tracer.spanBuilder("set-payload").setSpanKind(SpanKind.INTERNAL).startSpan().end();
+    assertThat(metricReader.collectAllMetrics()).isEmpty();
+  }
+
+  @Test
+  public void usesStatusSetBeforeEnding() {
+    Span failed = tracer.spanBuilder("GET /orders").setSpanKind(SpanKind.SERVER).startSpan();
+    failed.setStatus(StatusCode.ERROR);
+    spanMetricsProcessor.setEndingStatus(failed, StatusCode.ERROR);
+    failed.end();
+    Span other = tracer.spanBuilder("GET /orders").setSpanKind(SpanKind.SERVER).startSpan();
+    spanMetricsProcessor.setEndingStatus(tracer.spanBuilder("GET /items").startSpan(), StatusCode.ERROR);
+    other.end();
+
+    assertThat(metric(metricReader.collectAllMetrics(), SpanMetricsProcessor.SPAN_CALLS).getLongSumData()
+        .getPoints())
+        .extracting(point -> point.getAttributes().get(SpanMetricsProcessor.STATUS_CODE))
+        .as("Status set for another span is not used")
+        .containsExactlyInAnyOrder("ERROR", "UNSET");
+  }
+
+  @Test
+  public void limitsSpanNameCardinality() {
+    for (int i = 0; i <= SpanMetricsProcessor.MAX_SPAN_NAMES; i++) {
+      tracer.spanBuilder("span-" + i).setSpanKind(SpanKind.CLIENT).startSpan().end();
+    }
+    LongPointData overflow = metric(metricReader.collectAllMetrics(), SpanMetricsProcessor.SPAN_CALLS)
+        .getLongSumData().getPoints().stream()
+        .filter(point -> SpanMetricsProcessor.OVERFLOW_SPAN_NAME
+            .equals(point.getAttributes().get(SpanMetricsProcessor.SPAN_NAME)))
+        .findFirst().orElseThrow(AssertionError::new);
+    assertThat(overflow.getValue()).isEqualTo(1);
+  }
+
+  private static MetricData metric(Collection<MetricData> metrics, String name) {
+    return metrics.stream().filter(m -> m.getName().equals(name)).findFirst().orElseThrow(AssertionError::new);
+  }
+}
@@ -0,0 +1,170 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk;
+
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StripedBatchSpanProcessorTest {
+
+  private final InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+  private SdkTracerProvider tracerProvider;
+
+  @After
+  public void tearDown() {
+    if (tracerProvider != null)
+      tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void exportsSpansFromAllThreads() throws Exception {
+    StripedBatchSpanProcessor processor = new StripedBatchSpanProcessor(spanExporter, 4, 10_000, 100,
+        TimeUnit.SECONDS.toNanos(60), TimeUnit.SECONDS.toNanos(10));
+    Tracer tracer = tracer(processor, Sampler.alwaysOn());
+    int threads = 8;
+    int spansPerThread = 250;
+    CountDownLatch done = new CountDownLatch(threads);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread worker = new Thread(() -> {
+        for (int i = 0; i < spansPerThread; i++)
+          tracer.spanBuilder("span").startSpan().end();
+        done.countDown();
+      });
+      workers.add(worker);
+      worker.start();
+    }
+    done.await(10, TimeUnit.SECONDS);
+    // Full batches are exported without waiting for the schedule delay
+    await().untilAsserted(() -> assertThat(spanExporter.getFinishedSpanItems().size()).isGreaterThanOrEqualTo(
+        threads * spansPerThread - 4 * 100));
+    assertThat(processor.forceFlush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    List<SpanData> spans = spanExporter.getFinishedSpanItems();
+    assertThat(spans).hasSize(threads * spansPerThread);
+    Set<String> spanIds = spans.stream().map(SpanData::getSpanId).collect(Collectors.toSet());
+    assertThat(spanIds).hasSize(threads * spansPerThread);
+    assertThat(processor.getDroppedSpans()).isZero();
+  }
+
+  @Test
+  public void dropsWhenStripeIsFullAndReportsMetrics() {
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build()).build();
+    StripedBatchSpanProcessor processor = new StripedBatchSpanProcessor(spanExporter, 2, 20, 50,
+        TimeUnit.SECONDS.toNanos(60), TimeUnit.SECONDS.toNanos(10));
+    processor.initialize(openTelemetry);
+    Tracer tracer = tracer(processor, Sampler.alwaysOn());
+    // Each stripe holds 10 spans, batch size is capped to the stripe size
+    for (int i = 0; i < 25; i++)
+      tracer.spanBuilder("span").startSpan().end();
+    processor.forceFlush().join(10, TimeUnit.SECONDS);
+    long dropped = processor.getDroppedSpans();
+    assertThat(spanExporter.getFinishedSpanItems().size() + dropped).isEqualTo(25);
+
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    assertThat(sum(metrics, StripedBatchSpanProcessor.SPANS_EXPORTED))
+        .isEqualTo(spanExporter.getFinishedSpanItems().size());
+    assertThat(sum(metrics, StripedBatchSpanProcessor.SPANS_DROPPED)).isEqualTo(dropped);
+    assertThat(metrics).anyMatch(metric -> metric.getName().equals(StripedBatchSpanProcessor.QUEUE_SIZE));
+  }
+
+  @Test
+  public void appliesNewBatchSettingsToWaitingStripes() {
+    StripedBatchSpanProcessor processor = new StripedBatchSpanProcessor(spanExporter, 2, 100, 10,
+        TimeUnit.SECONDS.toNanos(60), TimeUnit.SECONDS.toNanos(10));
+    Tracer tracer = tracer(processor, Sampler.alwaysOn());
+    tracer.spanBuilder("span").startSpan().end();
+    processor.setBatchSettings(500, TimeUnit.MILLISECONDS.toNanos(50));
+    // Batch size is capped to the stripe size
+    assertThat(processor.getExportBatchSize()).isEqualTo(50);
+    assertThat(processor.getScheduleDelayNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    // Exported without waiting for the initial schedule delay
+    await().atMost(5, TimeUnit.SECONDS)
+        .untilAsserted(() -> assertThat(spanExporter.getFinishedSpanItems()).hasSize(1));
+  }
+
+  @Test
+  public void flushCompletesUnderSteadyTraffic() throws Exception {
+    StripedBatchSpanProcessor processor = new StripedBatchSpanProcessor(spanExporter, 1, 100_000, 10,
+        TimeUnit.SECONDS.toNanos(60), TimeUnit.SECONDS.toNanos(10));
+    Tracer tracer = tracer(processor, Sampler.alwaysOn());
+    AtomicBoolean producing = new AtomicBoolean(true);
+    Thread producer = new Thread(() -> {
+      while (producing.get())
+        tracer.spanBuilder("span").startSpan().end();
+    });
+    producer.start();
+    try {
+      await().until(() -> processor.getQueueSize() > 0);
+      CompletableResultCode flush = processor.forceFlush().join(10, TimeUnit.SECONDS);
+      assertThat(flush.isDone()).as("Flush ends while spans keep ending").isTrue();
+      assertThat(flush.isSuccess()).isTrue();
+    } finally {
+      producing.set(false);
+      producer.join(5_000);
+    }
+  }
+
+  @Test
+  public void flushFailsAfterExportTimeout() {
+    SpanExporter stuckExporter = mock(SpanExporter.class);
+    when(stuckExporter.export(any())).thenReturn(new CompletableResultCode());
+    when(stuckExporter.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
+    StripedBatchSpanProcessor processor = new StripedBatchSpanProcessor(stuckExporter, 1, 100, 1,
+        TimeUnit.SECONDS.toNanos(60), TimeUnit.MILLISECONDS.toNanos(200));
+    Tracer tracer = tracer(processor, Sampler.alwaysOn());
+    for (int i = 0; i < 5; i++)
+      tracer.spanBuilder("span").startSpan().end();
+
+    CompletableResultCode flush = processor.forceFlush().join(5, TimeUnit.SECONDS);
+    assertThat(flush.isDone()).as("Flush is bounded by the export timeout").isTrue();
+    assertThat(flush.isSuccess()).isFalse();
+  }
+
+  @Test
+  public void ignoresUnsampledSpans() {
+    StripedBatchSpanProcessor processor = new StripedBatchSpanProcessor(spanExporter, 2, 100, 10,
+        TimeUnit.SECONDS.toNanos(60), TimeUnit.SECONDS.toNanos(10));
+    Tracer tracer = tracer(processor, new RecordOnlySampler(Sampler.alwaysOff()));
+    tracer.spanBuilder("span").startSpan().end();
+    processor.forceFlush().join(10, TimeUnit.SECONDS);
+    assertThat(spanExporter.getFinishedSpanItems()).isEmpty();
+  }
+
+  private Tracer tracer(StripedBatchSpanProcessor processor, Sampler sampler) {
+    tracerProvider = SdkTracerProvider.builder().setSampler(sampler).addSpanProcessor(processor).build();
+    return tracerProvider.get("test");
+  }
+
+  private static long sum(Collection<MetricData> metrics, String name) {
+    return metrics.stream().filter(metric -> metric.getName().equals(name))
+        .flatMap(metric -> metric.getLongSumData().getPoints().stream())
+        .mapToLong(LongPointData::getValue).sum();
+  }
+}
@@ -0,0 +1,38 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.adaptive;
+
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveCompressionSpanExporterTest {
+
+  @Test
+  public void estimatesSizeFromNamesAndAttributes() {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(exporter)).build();
+    tracerProvider.get("test").spanBuilder("span").startSpan().end();
+    tracerProvider.get("test").spanBuilder("span")
+        .setAttribute("http.route", "/api/orders")
+        .setAttribute("http.status_code", 201L)
+        .startSpan()
+        .addEvent("event")
+        .end();
+    List<SpanData> spans = exporter.getFinishedSpanItems();
+
+    long plain = AdaptiveCompressionSpanExporter.estimateSize(Collections.singletonList(spans.get(0)));
+    long withAttributes = AdaptiveCompressionSpanExporter.estimateSize(Collections.singletonList(spans.get(1)));
+    assertThat(plain).isGreaterThan("span".length());
+    assertThat(withAttributes - plain)
+        .isGreaterThan(("http.route/api/orders" + "http.status_code" + "event").length());
+    assertThat(AdaptiveCompressionSpanExporter.estimateSize(spans)).isEqualTo(plain + withAttributes);
+    tracerProvider.shutdown();
+  }
+}
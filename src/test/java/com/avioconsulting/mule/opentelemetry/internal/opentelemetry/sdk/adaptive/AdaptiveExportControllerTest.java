@@ -0,0 +1,117 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.adaptive;
+
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveExportControllerTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void growsBatchWhenSpansArriveFaster() {
+    AdaptiveExportController controller = new AdaptiveExportController(100, 800, SECOND, false);
+    List<Integer> batchSizes = new ArrayList<>();
+    controller.setListener((batchSize, delayNanos) -> batchSizes.add(batchSize));
+    long now = System.nanoTime();
+    for (int i = 1; i <= 4; i++)
+      controller.recordExport(1000, 1000, 10 * MILLI, false, now + i * SECOND);
+    assertThat(batchSizes).containsExactly(200, 400, 800);
+    assertThat(controller.getBatchSize()).isEqualTo(800);
+    // Configured delay is the max delay
+    assertThat(controller.getScheduleDelayNanos()).isEqualTo(SECOND);
+    assertThat(controller.getSpanRate()).isBetween(900.0, 1000.0);
+  }
+
+  @Test
+  public void halvesBatchWhenExportsAreSlow() {
+    AdaptiveExportController controller = new AdaptiveExportController(100, 800, SECOND, false);
+    long now = System.nanoTime();
+    controller.recordExport(1000, 1000, 10 * MILLI, false, now + SECOND);
+    controller.recordExport(1000, 1000, 10 * MILLI, false, now + 2 * SECOND);
+    assertThat(controller.getBatchSize()).isEqualTo(400);
+    controller.recordExport(1000, 1000, 5 * SECOND, false, now + 3 * SECOND);
+    assertThat(controller.getBatchSize()).isEqualTo(200);
+  }
+
+  @Test
+  public void shortensDelayWhenSpansArriveSlower() {
+    AdaptiveExportController controller = new AdaptiveExportController(100, 800, 5 * SECOND, false);
+    long now = System.nanoTime();
+    controller.recordExport(1, 1000, 10 * MILLI, false, now + SECOND);
+    assertThat(controller.getScheduleDelayNanos()).isEqualTo(5 * SECOND / 2);
+    for (int i = 2; i <= 10; i++)
+      controller.recordExport(1, 1000, 10 * MILLI, false, now + i * SECOND);
+    assertThat(controller.getScheduleDelayNanos()).isEqualTo(AdaptiveExportController.MIN_SCHEDULE_DELAY_NANOS);
+    // Configured batch size is the min batch size
+    assertThat(controller.getBatchSize()).isEqualTo(100);
+  }
+
+  @Test
+  public void doesNotCompressSmallPayloads() {
+    AdaptiveExportController controller = new AdaptiveExportController(100, 800, SECOND, true);
+    long now = System.nanoTime();
+    controller.recordExport(100, 1000, 10 * MILLI, true, now + SECOND);
+    assertThat(controller.isCompress()).isFalse();
+    for (int i = 0; i < AdaptiveExportController.EXPLORE_INTERVAL * 2; i++)
+      assertThat(controller.shouldCompress()).isFalse();
+  }
+
+  @Test
+  public void compressesWhenItLowersLatencyPerByte() {
+    AdaptiveExportController controller = new AdaptiveExportController(100, 800, SECOND, false);
+    long now = System.nanoTime();
+    controller.recordExport(100, 100_000, 100 * MILLI, false, now + SECOND / 2);
+    // Compressed mode has no measurements yet
+    controller.recordExport(100, 100_000, 100 * MILLI, false, now + SECOND);
+    assertThat(controller.isCompress()).isTrue();
+    controller.recordExport(100, 100_000, 20 * MILLI, true, now + 2 * SECOND);
+    assertThat(controller.isCompress()).isTrue();
+    for (int i = 3; i <= 20; i++)
+      controller.recordExport(100, 100_000, 500 * MILLI, true, now + i * SECOND);
+    assertThat(controller.isCompress()).isFalse();
+  }
+
+  @Test
+  public void exploresOtherCompressionMode() {
+    AdaptiveExportController controller = new AdaptiveExportController(100, 800, SECOND, false);
+    controller.recordExport(100, 100_000, 100 * MILLI, false, System.nanoTime());
+    int compressed = 0;
+    for (int i = 0; i < AdaptiveExportController.EXPLORE_INTERVAL; i++)
+      if (controller.shouldCompress())
+        compressed++;
+    assertThat(compressed).isEqualTo(1);
+  }
+
+  @Test
+  public void reportsMetrics() {
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build()).build();
+    AdaptiveExportController controller = new AdaptiveExportController(100, 800, SECOND, false);
+    controller.initialize(openTelemetry, "test");
+    controller.recordExport(100, 2000, 10 * MILLI, false, System.nanoTime());
+
+    Collection<MetricData> metrics = metricReader.collectAllMetrics();
+    assertThat(metrics.stream().map(MetricData::getName).collect(Collectors.toList()))
+        .contains(AdaptiveExportController.BATCH_SIZE, AdaptiveExportController.SCHEDULE_DELAY,
+            AdaptiveExportController.COMPRESSION, AdaptiveExportController.PAYLOAD_SIZE,
+            AdaptiveExportController.EXPORT_LATENCY, AdaptiveExportController.SPAN_RATE);
+    assertThat(metrics.stream().filter(metric -> metric.getName().equals(AdaptiveExportController.BATCH_SIZE))
+        .flatMap(metric -> metric.getLongGaugeData().getPoints().stream())
+        .mapToLong(LongPointData::getValue).findFirst()).hasValue(100);
+    openTelemetry.getSdkMeterProvider().shutdown();
+  }
+}
@@ -0,0 +1,150 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.file;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileSpanExporterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void writesJsonLines() throws Exception {
+    FileSpanExporter exporter = new FileSpanExporter(config(FileExporterConfig.Format.JSON, false, 1024 * 1024));
+    List<SpanData> spans = createSpans(3);
+    assertThat(exporter.export(spans.subList(0, 2)).isSuccess()).isTrue();
+    assertThat(exporter.export(spans.subList(2, 3)).isSuccess()).isTrue();
+    assertThat(exporter.shutdown().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+
+    List<Path> files = files();
+    assertThat(files).hasSize(1);
+    assertThat(files.get(0).getFileName().toString()).startsWith("test-app-traces-").endsWith(".jsonl");
+    List<String> lines = Files.readAllLines(files.get(0), StandardCharsets.UTF_8);
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0)).startsWith("{\"resourceSpans\"")
+        .contains(spans.get(0).getTraceId(), spans.get(1).getSpanId());
+    assertThat(lines.get(1)).contains(spans.get(2).getSpanId());
+  }
+
+  @Test
+  public void writesGzipJsonLines() throws Exception {
+    FileSpanExporter exporter = new FileSpanExporter(config(FileExporterConfig.Format.JSON, true, 1024 * 1024));
+    List<SpanData> spans = createSpans(1);
+    exporter.export(spans);
+    assertThat(exporter.flush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    exporter.shutdown().join(10, TimeUnit.SECONDS);
+
+    Path file = files().get(0);
+    assertThat(file.getFileName().toString()).endsWith(".jsonl.gz");
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+      assertThat(reader.readLine()).contains(spans.get(0).getSpanId());
+    }
+  }
+
+  @Test
+  public void writesLengthDelimitedProtobuf() throws Exception {
+    FileSpanExporter exporter = new FileSpanExporter(
+        config(FileExporterConfig.Format.PROTOBUF, false, 1024 * 1024));
+    exporter.export(createSpans(2));
+    exporter.export(createSpans(1));
+    exporter.shutdown().join(10, TimeUnit.SECONDS);
+
+    Path file = files().get(0);
+    assertThat(file.getFileName().toString()).endsWith(".binpb");
+    int messages = 0;
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      int length;
+      while ((length = readVarint(in)) >= 0) {
+        in.readFully(new byte[length]);
+        messages++;
+      }
+    }
+    assertThat(messages).isEqualTo(2);
+  }
+
+  @Test
+  public void rotatesOnSize() throws Exception {
+    FileSpanExporter exporter = new FileSpanExporter(config(FileExporterConfig.Format.JSON, false, 1));
+    for (int i = 0; i < 3; i++) {
+      exporter.export(createSpans(1));
+      exporter.flush().join(10, TimeUnit.SECONDS);
+    }
+    exporter.shutdown().join(10, TimeUnit.SECONDS);
+    assertThat(files()).hasSize(3);
+  }
+
+  @Test
+  public void dropsWhenQueueIsFull() throws Exception {
+    FileExporterConfig config = new FileExporterConfig(folder.getRoot().toPath(), "test-app",
+        FileExporterConfig.Format.JSON, false, 1024 * 1024, 60_000, 1);
+    FileSpanExporter exporter = new FileSpanExporter(config);
+    List<SpanData> spans = createSpans(1);
+    for (int i = 0; i < 1000; i++) {
+      exporter.export(spans);
+    }
+    exporter.shutdown().join(10, TimeUnit.SECONDS);
+    assertThat(exporter.getWriter().getDroppedBatches()).isPositive();
+    assertThat(exporter.export(spans).isSuccess()).as("Rejected after shutdown").isFalse();
+  }
+
+  private FileExporterConfig config(FileExporterConfig.Format format, boolean gzip, long maxFileSizeBytes) {
+    return new FileExporterConfig(folder.getRoot().toPath(), "test-app", format, gzip, maxFileSizeBytes, 60_000,
+        128);
+  }
+
+  private List<Path> files() throws IOException {
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  private static int readVarint(InputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.read();
+      if (b < 0)
+        return -1;
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  private static List<SpanData> createSpans(int count) {
+    InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+    try (SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build()) {
+      Tracer tracer = tracerProvider.get("test");
+      for (int i = 0; i < count; i++) {
+        Span span = tracer.spanBuilder("span-" + i).setAttribute("index", i).startSpan();
+        span.end();
+      }
+      return spanExporter.getFinishedSpanItems();
+    }
+  }
+}
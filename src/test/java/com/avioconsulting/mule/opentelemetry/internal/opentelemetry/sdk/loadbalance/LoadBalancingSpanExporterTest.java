@@ -0,0 +1,177 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.loadbalance;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.autoconfigure.spi.internal.DefaultConfigProperties;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.IdGenerator;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoadBalancingSpanExporterTest {
+
+  private static final List<String> ENDPOINTS = Arrays.asList("http://collector-1:4317", "http://collector-2:4317",
+      "http://collector-3:4317");
+
+  @Rule
+  public WireMockRule collector1 = new WireMockRule(wireMockConfig().dynamicPort());
+  @Rule
+  public WireMockRule collector2 = new WireMockRule(wireMockConfig().dynamicPort());
+  @Rule
+  public WireMockRule collector3 = new WireMockRule(wireMockConfig().dynamicPort());
+
+  @Test
+  public void routesAllSpansOfTraceToSameEndpoint() {
+    List<InMemorySpanExporter> delegates = Arrays.asList(InMemorySpanExporter.create(),
+        InMemorySpanExporter.create(), InMemorySpanExporter.create());
+    LoadBalancingSpanExporter exporter = new LoadBalancingSpanExporter(ENDPOINTS, new ArrayList<>(delegates),
+        60_000);
+    assertThat(exporter.export(createSpans(300, 3)).join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+
+    Map<String, Set<Integer>> endpointsByTrace = new HashMap<>();
+    for (int i = 0; i < delegates.size(); i++) {
+      List<SpanData> spans = delegates.get(i).getFinishedSpanItems();
+      assertThat(spans).as("Spans exported to endpoint %s", i).isNotEmpty();
+      for (SpanData span : spans)
+        endpointsByTrace.computeIfAbsent(span.getTraceId(), k -> new HashSet<>()).add(i);
+    }
+    assertThat(endpointsByTrace).hasSize(300);
+    assertThat(endpointsByTrace.values()).allMatch(endpoints -> endpoints.size() == 1);
+  }
+
+  @Test
+  public void failsOverToNextEndpointOnTheRing() {
+    List<InMemorySpanExporter> delegates = Arrays.asList(InMemorySpanExporter.create(),
+        InMemorySpanExporter.create(), InMemorySpanExporter.create());
+    List<SpanExporter> exporters = new ArrayList<>(delegates);
+    exporters.set(1, new FailingSpanExporter());
+    LoadBalancingSpanExporter exporter = new LoadBalancingSpanExporter(ENDPOINTS, exporters, 60_000);
+    List<SpanData> spans = createSpans(300, 2);
+    Map<String, Integer> owners = spans.stream().map(SpanData::getTraceId).distinct()
+        .collect(Collectors.toMap(traceId -> traceId, traceId -> exporter.select(traceId, 0L, 0L)));
+
+    assertThat(exporter.export(spans).join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    assertThat(exporter.isHealthy(1)).isFalse();
+    assertThat(exporter.getFailedSpans(1)).isPositive();
+    assertThat(delegates.get(0).getFinishedSpanItems().size() + delegates.get(2).getFinishedSpanItems().size())
+        .isEqualTo(spans.size());
+    // Traces owned by healthy endpoints did not move
+    for (int endpoint : new int[] { 0, 2 }) {
+      for (SpanData span : delegates.get(endpoint).getFinishedSpanItems()) {
+        if (owners.get(span.getTraceId()) != 1)
+          assertThat(owners.get(span.getTraceId())).isEqualTo(endpoint);
+      }
+    }
+  }
+
+  @Test
+  public void failsWhenNoEndpointIsAvailable() {
+    LoadBalancingSpanExporter exporter = new LoadBalancingSpanExporter(ENDPOINTS.subList(0, 2),
+        Arrays.asList(new FailingSpanExporter(), new FailingSpanExporter()), 60_000);
+    assertThat(exporter.export(createSpans(10, 1)).join(10, TimeUnit.SECONDS).isSuccess()).isFalse();
+    assertThat(exporter.isHealthy(0)).isFalse();
+    assertThat(exporter.isHealthy(1)).isFalse();
+  }
+
+  @Test
+  public void balancesAcrossStubReceivers() {
+    collector1.stubFor(post(urlEqualTo("/v1/traces")).willReturn(aResponse().withStatus(200)));
+    collector2.stubFor(post(urlEqualTo("/v1/traces")).willReturn(aResponse().withStatus(503)));
+    collector3.stubFor(post(urlEqualTo("/v1/traces")).willReturn(aResponse().withStatus(200)));
+    Map<String, String> properties = new HashMap<>();
+    properties.put(LoadBalancingSpanExporter.ENDPOINTS_KEY, Arrays.asList(collector1, collector2, collector3)
+        .stream().map(collector -> "http://localhost:" + collector.port() + "/v1/traces")
+        .collect(Collectors.joining(",")));
+    SpanExporter otlpExporter = OtlpHttpSpanExporter.builder()
+        .setEndpoint("http://localhost:" + collector1.port() + "/v1/traces").build();
+    SpanExporter exporter = LoadBalancingSpanExporter.customize(otlpExporter,
+        DefaultConfigProperties.createFromMap(properties));
+    assertThat(exporter).isInstanceOf(LoadBalancingSpanExporter.class);
+    try {
+      assertThat(exporter.export(createSpans(100, 2)).join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+      assertThat(exporter.export(createSpans(100, 2)).join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+      // Unhealthy receiver is skipped until the retry interval passes
+      collector2.verify(1, postRequestedFor(urlEqualTo("/v1/traces")));
+      int requests1 = collector1.findAll(postRequestedFor(urlEqualTo("/v1/traces"))).size();
+      int requests3 = collector3.findAll(postRequestedFor(urlEqualTo("/v1/traces"))).size();
+      assertThat(requests1).isGreaterThanOrEqualTo(2);
+      assertThat(requests3).isGreaterThanOrEqualTo(2);
+      // Own traces in both exports, plus the traces of collector 2 failed over
+      assertThat(requests1 + requests3).isBetween(4, 6);
+    } finally {
+      exporter.shutdown().join(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void customizeKeepsExporterWithSingleEndpoint() {
+    SpanExporter otlpExporter = OtlpHttpSpanExporter.getDefault();
+    Map<String, String> properties = new HashMap<>();
+    properties.put(LoadBalancingSpanExporter.ENDPOINTS_KEY, "http://localhost:4318/v1/traces");
+    assertThat(LoadBalancingSpanExporter.customize(otlpExporter, DefaultConfigProperties.createFromMap(properties)))
+        .isSameAs(otlpExporter);
+    otlpExporter.shutdown();
+  }
+
+  private static List<SpanData> createSpans(int traces, int spansPerTrace) {
+    IdGenerator ids = IdGenerator.random();
+    List<SpanData> spans = new ArrayList<>();
+    for (int t = 0; t < traces; t++) {
+      String traceId = ids.generateTraceId();
+      for (int s = 0; s < spansPerTrace; s++) {
+        spans.add(TestSpanData.builder()
+            .setName("span-" + s)
+            .setKind(SpanKind.INTERNAL)
+            .setSpanContext(SpanContext.create(traceId, ids.generateSpanId(), TraceFlags.getSampled(),
+                TraceState.getDefault()))
+            .setStatus(StatusData.unset())
+            .setStartEpochNanos(1)
+            .setEndEpochNanos(2)
+            .setHasEnded(true)
+            .build());
+      }
+    }
+    return spans;
+  }
+
+  private static class FailingSpanExporter implements SpanExporter {
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+      return CompletableResultCode.ofFailure();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return CompletableResultCode.ofSuccess();
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigurationException;
+import io.opentelemetry.sdk.autoconfigure.spi.internal.DefaultConfigProperties;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+public class SpoolingSpanExporterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Rule
+  public WireMockRule collector = new WireMockRule(wireMockConfig().dynamicPort());
+
+  private InMemorySpanExporter spanExporter;
+  private SdkTracerProvider tracerProvider;
+
+  @Before
+  public void setup() {
+    spanExporter = InMemorySpanExporter.create();
+    tracerProvider = SdkTracerProvider.builder()
+        .setResource(Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), "test-app")))
+        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+  }
+
+  @After
+  public void tearDown() {
+    tracerProvider.shutdown();
+  }
+
+  @Test
+  public void codecRoundTripsSpans() {
+    List<SpanData> spans = createSpans();
+    List<SpanData> decoded = SpanDataCodec.decode(SpanDataCodec.encode(spans));
+    assertThat(decoded).hasSize(spans.size());
+    for (int i = 0; i < spans.size(); i++) {
+      SpanData expected = spans.get(i);
+      SpanData actual = decoded.get(i);
+      assertThat(actual.getName()).isEqualTo(expected.getName());
+      assertThat(actual.getKind()).isEqualTo(expected.getKind());
+      assertThat(actual.getSpanContext()).isEqualTo(expected.getSpanContext());
+      assertThat(actual.getParentSpanContext()).isEqualTo(expected.getParentSpanContext());
+      assertThat(actual.getStatus()).isEqualTo(expected.getStatus());
+      assertThat(actual.getStartEpochNanos()).isEqualTo(expected.getStartEpochNanos());
+      assertThat(actual.getEndEpochNanos()).isEqualTo(expected.getEndEpochNanos());
+      assertThat(actual.getAttributes()).isEqualTo(expected.getAttributes());
+      assertThat(actual.getEvents()).hasSameSizeAs(expected.getEvents());
+      assertThat(actual.getResource()).isEqualTo(expected.getResource());
+      assertThat(actual.getInstrumentationScopeInfo()).isEqualTo(expected.getInstrumentationScopeInfo());
+    }
+  }
+
+  @Test
+  public void segmentKeepsPendingRecordsAcrossRestart() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("test.spool");
+    try (SpoolSegment segment = new SpoolSegment(file, 1024)) {
+      assertThat(segment.append("first".getBytes(StandardCharsets.UTF_8))).isTrue();
+      assertThat(segment.append("second".getBytes(StandardCharsets.UTF_8))).isTrue();
+      assertThat(new String(segment.peek(), StandardCharsets.UTF_8)).isEqualTo("first");
+      segment.commit();
+    }
+    try (SpoolSegment segment = new SpoolSegment(file, 1024)) {
+      assertThat(new String(segment.peek(), StandardCharsets.UTF_8)).isEqualTo("second");
+      segment.commit();
+      assertThat(segment.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void segmentReclaimsConsumedSpaceWhenFull() throws Exception {
+    try (SpoolSegment segment = new SpoolSegment(folder.getRoot().toPath().resolve("full.spool"),
+        SpoolSegment.HEADER_SIZE + 2 * (4 + 10))) {
+      byte[] record = new byte[10];
+      assertThat(segment.append(record)).isTrue();
+      assertThat(segment.append(record)).isTrue();
+      assertThat(segment.append(record)).as("Segment is full").isFalse();
+      segment.commit();
+      assertThat(segment.append(record)).as("Consumed space is reclaimed").isTrue();
+      assertThat(segment.size()).isEqualTo(2 * (4 + 10));
+    }
+  }
+
+  @Test
+  public void closedSegmentReleasesFile() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("closed.spool");
+    SpoolSegment segment = new SpoolSegment(file, 1024);
+    assertThat(segment.append("pending".getBytes(StandardCharsets.UTF_8))).isTrue();
+    segment.close();
+    assertThat(segment.append("late".getBytes(StandardCharsets.UTF_8))).isFalse();
+    assertThat(segment.peek()).isNull();
+    assertThat(segment.isEmpty()).isTrue();
+    segment.close();
+    Files.delete(file);
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  public void customizeKeysSpoolFileByServiceAndExporter() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(SpoolingSpanExporter.SPOOL_DIRECTORY_KEY, folder.getRoot().getAbsolutePath());
+    properties.put(SpoolingSpanExporter.SPOOL_MAX_SIZE_MB_KEY, "1");
+    properties.put("otel.service.name", "order api");
+    ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+    SpanExporter otlp = SpoolingSpanExporter.customize("otlp", InMemorySpanExporter.create(), config);
+    SpanExporter other = SpoolingSpanExporter.customize("other", InMemorySpanExporter.create(), config);
+    try {
+      assertThat(folder.getRoot().toPath().resolve("order_api-otlp.spool")).exists();
+      assertThat(folder.getRoot().toPath().resolve("order_api-other.spool")).exists();
+    } finally {
+      otlp.shutdown();
+      other.shutdown();
+    }
+  }
+
+  @Test
+  public void customizeRejectsInvalidMaxSize() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(SpoolingSpanExporter.SPOOL_DIRECTORY_KEY, folder.getRoot().getAbsolutePath());
+    for (String size : Arrays.asList("0", "2048", "4096")) {
+      properties.put(SpoolingSpanExporter.SPOOL_MAX_SIZE_MB_KEY, size);
+      ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+      assertThatThrownBy(() -> SpoolingSpanExporter.customize("otlp", InMemorySpanExporter.create(), config))
+          .isInstanceOf(ConfigurationException.class)
+          .hasMessageContaining(SpoolingSpanExporter.SPOOL_MAX_SIZE_MB_KEY);
+    }
+  }
+
+  @Test
+  public void spoolsWhileCollectorIsUnavailableAndReplaysInOrder() throws Exception {
+    collector.stubFor(post(urlEqualTo("/v1/traces")).willReturn(aResponse().withStatus(503)));
+    OtlpHttpSpanExporter otlpExporter = OtlpHttpSpanExporter.builder()
+        .setEndpoint("http://localhost:" + collector.port() + "/v1/traces").build();
+    SpoolingSpanExporter exporter = new SpoolingSpanExporter(otlpExporter,
+        folder.getRoot().toPath().resolve("replay.spool"), 1024 * 1024, 20, 100);
+    try {
+      List<SpanData> spans = createSpans();
+      assertThat(exporter.export(spans.subList(0, 1)).join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+      assertThat(exporter.isHealthy()).isFalse();
+      assertThat(exporter.export(spans.subList(1, 2)).join(10, TimeUnit.SECONDS).isSuccess())
+          .as("Spooled without calling the collector").isTrue();
+      assertThat(exporter.getSpooledSpans()).isEqualTo(2);
+      assertThat(exporter.hasPendingSpans()).isTrue();
+
+      collector.stubFor(post(urlEqualTo("/v1/traces")).willReturn(aResponse().withStatus(200)));
+      await().untilAsserted(() -> {
+        assertThat(exporter.hasPendingSpans()).isFalse();
+        assertThat(exporter.getReplayedSpans()).isEqualTo(2);
+        assertThat(exporter.isHealthy()).isTrue();
+      });
+      assertThat(exporter.getDroppedSpans()).isZero();
+    } finally {
+      CompletableResultCode shutdown = exporter.shutdown();
+      shutdown.join(10, TimeUnit.SECONDS);
+    }
+  }
+
+  private List<SpanData> createSpans() {
+    Tracer tracer = tracerProvider.get("test", "1.0.0");
+    Span parent = tracer.spanBuilder("GET /orders").setSpanKind(SpanKind.SERVER)
+        .setAttribute("http.status_code", 200L)
+        .setAttribute(AttributeKey.stringArrayKey("tags"), Arrays.asList("a", "b"))
+        .setAttribute("mule.app.flow.name", "get-orders")
+        .startSpan();
+    try (Scope ignored = parent.makeCurrent()) {
+      Span child = tracer.spanBuilder("db:select").setAttribute("db.rows", 2.5d).setAttribute("cached", true)
+          .startSpan();
+      child.addEvent("query", Attributes.of(AttributeKey.longKey("rows"), 2L));
+      child.setStatus(StatusCode.ERROR, "timeout");
+      child.end();
+    }
+    parent.end();
+    return spanExporter.getFinishedSpanItems();
+  }
+}
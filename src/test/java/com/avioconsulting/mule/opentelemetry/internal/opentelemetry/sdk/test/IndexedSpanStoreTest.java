@@ -0,0 +1,70 @@
+package com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.test;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexedSpanStoreTest {
+
+  @Test
+  public void indexesSpansByTraceAndName() {
+    IndexedSpanStore store = new IndexedSpanStore(10);
+    List<SpanData> first = createTrace("flow-1");
+    List<SpanData> second = createTrace("flow-2");
+    store.addAll(first);
+    store.addAll(second);
+
+    assertThat(store.size()).isEqualTo(4);
+    assertThat(store.getTraceCount()).isEqualTo(2);
+    String traceId = first.get(0).getTraceId();
+    assertThat(store.getSpansByTraceId(traceId)).extracting(SpanData::getName)
+        .containsExactly("set-payload", "flow-1");
+    assertThat(store.getSpansByName("set-payload")).hasSize(2);
+    assertThat(store.findSpan("set-payload")).contains(second.get(0));
+    SpanData root = store.findSpan(traceId, "flow-1").orElseThrow(AssertionError::new);
+    assertThat(store.getChildren(root)).containsExactly(first.get(0));
+    assertThat(store.findSpan("missing")).isEmpty();
+  }
+
+  @Test
+  public void evictsOldestSpansWhenFull() {
+    IndexedSpanStore store = new IndexedSpanStore(3);
+    List<SpanData> first = createTrace("flow-1");
+    List<SpanData> second = createTrace("flow-2");
+    store.addAll(first);
+    store.addAll(second);
+
+    assertThat(store.size()).isEqualTo(3);
+    assertThat(store.getEvictedCount()).isEqualTo(1);
+    assertThat(store.getSpans()).containsExactly(first.get(1), second.get(0), second.get(1));
+    assertThat(store.getSpansByTraceId(first.get(0).getTraceId())).containsExactly(first.get(1));
+    assertThat(store.getSpansByName("set-payload")).containsExactly(second.get(0));
+
+    store.clear();
+    assertThat(store.size()).isZero();
+    assertThat(store.getTraceCount()).isZero();
+  }
+
+  private static List<SpanData> createTrace(String flowName) {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    try (SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(exporter)).build()) {
+      Tracer tracer = tracerProvider.get("test");
+      Span root = tracer.spanBuilder(flowName).startSpan();
+      try (Scope ignored = root.makeCurrent()) {
+        tracer.spanBuilder("set-payload").startSpan().end();
+      }
+      root.end();
+      return exporter.getFinishedSpanItems();
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import org.junit.Test;
+import org.mule.runtime.api.component.Component;
+import org.mule.runtime.api.component.ComponentIdentifier;
+import org.mule.runtime.api.component.TypedComponentIdentifier;
+import org.mule.runtime.api.component.location.ComponentLocation;
+import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
+import org.mule.runtime.api.component.location.Location;
+import org.mule.runtime.api.component.location.LocationPart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.mule.runtime.api.component.TypedComponentIdentifier.ComponentType.FLOW;
+import static org.mule.runtime.api.component.TypedComponentIdentifier.ComponentType.OPERATION;
+import static org.mule.runtime.api.component.TypedComponentIdentifier.ComponentType.ROUTE;
+import static org.mule.runtime.api.component.TypedComponentIdentifier.ComponentType.ROUTER;
+import static org.mule.runtime.api.component.TypedComponentIdentifier.ComponentType.SCOPE;
+
+public class ComponentIndexTest extends AbstractProcessorComponentTest {
+
+  @Test
+  public void indexesAllLocations() {
+    List<ComponentLocation> locations = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      locations.add(location(FLOW, "flow", "flow-" + i));
+      locations.add(location(FLOW, "flow", "flow-" + i, "processors", "0"));
+      locations.add(location(FLOW, "flow", "flow-" + i, "processors", "1"));
+    }
+    ConfigurationComponentLocator locator = mock(ConfigurationComponentLocator.class);
+    when(locator.findAllLocations()).thenReturn(locations);
+    ComponentIndex componentIndex = new ComponentIndex(locator);
+    componentIndex.build();
+
+    assertThat(componentIndex.isBuilt()).isTrue();
+    assertThat(componentIndex.size()).isEqualTo(3000);
+    assertThat(componentIndex.get("flow-10/processors/0").isFirstProcessor()).isTrue();
+    assertThat(componentIndex.get("flow-10/processors/1").isFirstProcessor()).isFalse();
+    assertThat(componentIndex.get("flow-10/processors/1").getRootContainerName()).isEqualTo("flow-10");
+    assertThat(componentIndex.getLocationParent("flow-10/processors/1")).isEqualTo("flow-10");
+    assertThat(componentIndex.findLocation("flow-999")).isPresent();
+    assertThat(componentIndex.findLocation("unknown-flow")).isEmpty();
+    verify(locator, times(1)).findAllLocations();
+  }
+
+  @Test
+  public void indexesSubFlowsAndRouteContainers() {
+    ComponentLocation subFlowProcessor = location(SCOPE, "sub-flow", "sub-flow-1", "processors", "0");
+    ComponentLocation routeProcessor = location(FLOW, "flow", "flow-1", "processors", "0", "route", "0",
+        "processors", "0");
+    ConfigurationComponentLocator locator = mock(ConfigurationComponentLocator.class);
+    when(locator.findAllLocations()).thenReturn(Arrays.asList(subFlowProcessor, routeProcessor));
+    ComponentIndex componentIndex = new ComponentIndex(locator);
+    componentIndex.build();
+
+    assertThat(componentIndex.get("sub-flow-1/processors/0").isInSubFlow()).isTrue();
+    assertThat(componentIndex.get("flow-1/processors/0/route/0/processors/0"))
+        .extracting("inSubFlow", "routeContainerLocation", "locationParent")
+        .containsExactly(false, "flow-1/processors/0/route/0", "flow-1/processors/0/route/0");
+  }
+
+  @Test
+  public void indexesFirstProcessorsOfAsyncScopes() {
+    ComponentLocation asyncProcessor = location(FLOW, "flow", "flow-1", "processors", "2", "processors", "0");
+    ComponentLocation nextAsyncProcessor = location(FLOW, "flow", "flow-1", "processors", "2", "processors", "1");
+    for (ComponentLocation location : Arrays.asList(asyncProcessor, nextAsyncProcessor)) {
+      List<LocationPart> parts = new ArrayList<>(location.getParts());
+      parts.set(2, part("2", typedIdentifier(SCOPE, "async")));
+      when(location.getParts()).thenReturn(parts);
+    }
+    ComponentLocation routeProcessor = location(FLOW, "flow", "flow-1", "processors", "0", "route", "0",
+        "processors", "0");
+    ConfigurationComponentLocator locator = mock(ConfigurationComponentLocator.class);
+    when(locator.findAllLocations()).thenReturn(Arrays.asList(asyncProcessor, nextAsyncProcessor, routeProcessor));
+    ComponentIndex componentIndex = new ComponentIndex(locator);
+    componentIndex.build();
+
+    assertThat(componentIndex.getAsyncScopeLocation(asyncProcessor)).isEqualTo("flow-1/processors/2");
+    assertThat(componentIndex.getAsyncScopeLocation(nextAsyncProcessor)).isNull();
+    assertThat(componentIndex.getAsyncScopeLocation(routeProcessor)).isNull();
+  }
+
+  @Test
+  public void keepsMetricAttributesOfMeteredLocations() {
+    ConfigurationComponentLocator locator = mock(ConfigurationComponentLocator.class);
+    when(locator.findAllLocations()).thenReturn(Arrays.asList(location(FLOW, "flow", "flow-1"),
+        location(FLOW, "flow", "flow-1", "processors", "0"), location(FLOW, "flow", "flow-1", "processors", "1")));
+    ComponentIndex componentIndex = new ComponentIndex(locator);
+    componentIndex.build();
+    Attributes attributes = Attributes.of(AttributeKey.stringKey("location"), "flow-1/processors/1");
+    componentIndex.setMetricAttributes("flow-1/processors/1", attributes);
+    componentIndex.setMetricAttributes("unknown-flow/processors/0", attributes);
+
+    assertThat(componentIndex.get("flow-1/processors/1").getMetricAttributes()).isSameAs(attributes);
+    assertThat(componentIndex.get("flow-1/processors/0").getMetricAttributes()).isNull();
+    assertThat(componentIndex.getIndexedLocations()).filteredOn(ComponentIndex.IndexedLocation::isFlow)
+        .extracting(ComponentIndex.IndexedLocation::getRootContainerName).containsExactly("flow-1");
+  }
+
+  @Test
+  public void fallsBackToLocatorUntilBuilt() {
+    ComponentLocation flow = location(FLOW, "flow", "flow-1");
+    ConfigurationComponentLocator locator = mock(ConfigurationComponentLocator.class);
+    when(locator.findAllLocations()).thenReturn(Collections.singletonList(flow));
+    ComponentIndex componentIndex = new ComponentIndex(locator);
+
+    assertThat(componentIndex.findLocation("flow-1")).hasValue(flow);
+    assertThat(componentIndex.findLocation("flow-1")).hasValue(flow);
+    verify(locator, times(2)).findAllLocations();
+  }
+
+  @Test
+  public void resolvesComponentsOnce() {
+    ComponentLocation componentLocation = getComponentLocation("http", "request");
+    Component component = getComponent(componentLocation, Collections.singletonMap("config-ref", "HTTP_Config"),
+        "http", "request");
+    Component connection = getComponent(getComponentLocation(), Collections.singletonMap("host", "localhost"),
+        "http", "request-connection");
+    ConfigurationComponentLocator locator = mock(ConfigurationComponentLocator.class);
+    when(locator.find(any(Location.class))).thenReturn(Optional.of(component), Optional.of(connection));
+    ComponentIndex componentIndex = new ComponentIndex(locator);
+
+    assertThat(componentIndex.findComponent("test/processors/0")).hasValue(component);
+    assertThat(componentIndex.findComponent("test/processors/0")).hasValue(component);
+    assertThat(componentIndex.getParameters(component)).containsEntry("config-ref", "HTTP_Config");
+    assertThat(componentIndex.getConfigConnectionParameters("HTTP_Config"))
+        .containsEntry("host", "localhost")
+        .containsEntry(ComponentWrapper.COMPONENT_NAMESPACE_KEY, "http")
+        .containsEntry(ComponentWrapper.COMPONENT_NAME_KEY, "request-connection");
+    assertThat(componentIndex.getConfigConnectionParameters("HTTP_Config")).containsEntry("host", "localhost");
+    verify(locator, times(2)).find(any(Location.class));
+  }
+
+  private ComponentLocation location(TypedComponentIdentifier.ComponentType rootType, String rootName,
+      String... path) {
+    ComponentLocation location = mock(ComponentLocation.class);
+    when(location.getLocation()).thenReturn(String.join("/", path));
+    when(location.getRootContainerName()).thenReturn(path[0]);
+    List<LocationPart> parts = new ArrayList<>();
+    parts.add(part(path[0], typedIdentifier(rootType, rootName)));
+    for (int i = 1; i < path.length; i++) {
+      TypedComponentIdentifier identifier = null;
+      if (i % 2 == 0)
+        identifier = "route".equals(path[i - 1]) ? typedIdentifier(ROUTE, "route")
+            : typedIdentifier(i == path.length - 1 ? OPERATION : ROUTER, "processor");
+      parts.add(part(path[i], identifier));
+    }
+    when(location.getParts()).thenReturn(parts);
+    TypedComponentIdentifier componentIdentifier = path.length == 1 ? typedIdentifier(rootType, rootName)
+        : typedIdentifier(OPERATION, "processor");
+    when(location.getComponentIdentifier()).thenReturn(componentIdentifier);
+    return location;
+  }
+
+  private LocationPart part(String partPath, TypedComponentIdentifier identifier) {
+    LocationPart part = mock(LocationPart.class);
+    when(part.getPartPath()).thenReturn(partPath);
+    when(part.getPartIdentifier()).thenReturn(Optional.ofNullable(identifier));
+    return part;
+  }
+
+  private TypedComponentIdentifier typedIdentifier(TypedComponentIdentifier.ComponentType type, String name) {
+    ComponentIdentifier identifier = getMockedIdentifier("mule", name);
+    TypedComponentIdentifier typedComponentIdentifier = mock(TypedComponentIdentifier.class);
+    when(typedComponentIdentifier.getType()).thenReturn(type);
+    when(typedComponentIdentifier.getIdentifier()).thenReturn(identifier);
+    return typedComponentIdentifier;
+  }
+}
@@ -0,0 +1,136 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.FlowTraceLevel;
+import com.avioconsulting.mule.opentelemetry.api.config.MuleComponent;
+import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.Test;
+import org.mule.runtime.api.component.ComponentIdentifier;
+import org.mule.runtime.api.component.location.ComponentLocation;
+import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes.MULE_APP_FLOW_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+public class FlowTraceLevelTableTest extends AbstractProcessorComponentTest {
+
+  private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+  private final List<FlowTraceLevel> flowTraceLevels = Arrays.asList(
+      new FlowTraceLevel("order-submit-flow", true, Collections.emptyList(), 1.0),
+      new FlowTraceLevel("order-*", true, Collections.singletonList(new MuleComponent("mule", "logger")), null),
+      new FlowTraceLevel("batch-*", false, null, 0.0));
+
+  @Test
+  public void resolvesIndexedLocations() {
+    ComponentIndex componentIndex = index(location("order-submit-flow/processors/0", "order-submit-flow"),
+        location("order-cancel-flow/processors/0", "order-cancel-flow"),
+        location("customer-flow/processors/0", "customer-flow"));
+    FlowTraceLevelTable table = FlowTraceLevelTable.build(flowTraceLevels, componentIndex);
+
+    assertThat(table.get(location("order-submit-flow/processors/0", "order-submit-flow")))
+        .as("First matching entry is used")
+        .extracting(FlowTraceLevels::getFlowName).isEqualTo("order-submit-flow");
+    assertThat(table.get(location("order-cancel-flow/processors/0", "order-cancel-flow")))
+        .extracting(FlowTraceLevels::getFlowName).isEqualTo("order-*");
+    assertThat(table.get(location("customer-flow/processors/0", "customer-flow"))).isNull();
+    assertThat(table.get(location("batch-sync/processors/0", "batch-sync")))
+        .as("Locations that are not indexed are resolved on lookup")
+        .extracting(FlowTraceLevels::getFlowName).isEqualTo("batch-*");
+    assertThat(table.getForFlow("order-cancel-flow").getSamplingRatio())
+        .isEqualTo(TraceLevelSnapshot.CONFIGURED_SAMPLING_RATIO);
+    assertThat(FlowTraceLevelTable.build(null, componentIndex).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void flowTraceLevelsOverrideGlobalLevels() {
+    ComponentIndex componentIndex = index();
+    TraceLevels traceLevels = new TraceLevels(
+        new TraceLevelConfiguration(false, Collections.singletonList(new MuleComponent("mule", "set-payload"))),
+        false, FlowTraceLevelTable.build(flowTraceLevels, componentIndex));
+    TraceLevelSnapshot levels = traceLevels.get();
+    ComponentIdentifier logger = getMockedIdentifier("mule", "logger");
+    ComponentIdentifier setPayload = getMockedIdentifier("mule", "set-payload");
+
+    FlowTraceLevels submit = levels.getFlowTraceLevels(location("order-submit-flow/processors/0",
+        "order-submit-flow"));
+    assertThat(levels.isSpanAllProcessorsActive(submit)).isTrue();
+    assertThat(levels.isIgnored(setPayload, submit)).isFalse();
+
+    FlowTraceLevels cancel = levels.getFlowTraceLevels(location("order-cancel-flow/processors/0",
+        "order-cancel-flow"));
+    assertThat(levels.isIgnored(logger, cancel)).isTrue();
+    assertThat(levels.isIgnored(setPayload, cancel)).isFalse();
+
+    FlowTraceLevels batch = levels.getFlowTraceLevels(location("batch-sync/processors/0", "batch-sync"));
+    assertThat(levels.isIgnored(setPayload, batch)).as("Global ignored components are used").isTrue();
+    assertThat(levels.isSpanAllProcessorsActive(null)).isFalse();
+
+    traceLevels.setStage(TracingStage.CONNECTOR_SPANS, 0.1);
+    assertThat(traceLevels.get().isSpanAllProcessorsActive(submit))
+        .as("Overhead governor stage applies to flows").isFalse();
+  }
+
+  @Test
+  public void samplesByFlowName() {
+    TraceLevels traceLevels = new TraceLevels(new TraceLevelConfiguration(false, Collections.emptyList()), false,
+        FlowTraceLevelTable.build(flowTraceLevels, index(location("order-submit-flow", "order-submit-flow"),
+            location("batch-sync", "batch-sync"), location("customer-flow", "customer-flow"))));
+    Sampler configured = Sampler.alwaysOn();
+    Sampler sampler = traceLevels.getSampler(configured);
+    assertThat(sampler).isSameAs(traceLevels.getSampler(configured));
+    assertThat(sample(sampler, "batch-sync")).isEqualTo(SamplingDecision.DROP);
+    assertThat(sample(sampler, "order-submit-flow")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    assertThat(sample(sampler, "customer-flow")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+
+    traceLevels.setSamplingRatio(0.0);
+    assertThat(sample(traceLevels.getSampler(configured), "customer-flow")).isEqualTo(SamplingDecision.DROP);
+    assertThat(sample(traceLevels.getSampler(configured), "order-submit-flow"))
+        .isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+
+    traceLevels.setStage(TracingStage.SAMPLED_ROOT_SPANS, 0.0);
+    assertThat(sample(traceLevels.getSampler(configured), "order-submit-flow"))
+        .as("Overhead governor stage lowers flow sampling ratios").isEqualTo(SamplingDecision.DROP);
+  }
+
+  @Test
+  public void rejectsInvalidFlowTraceLevels() {
+    assertThatThrownBy(() -> FlowTraceLevelTable.build(
+        Collections.singletonList(new FlowTraceLevel("order-*", null, null, 1.5)), index()))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> FlowTraceLevelTable.build(
+        Collections.singletonList(new FlowTraceLevel(" ", true, null, null)), index()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private SamplingDecision sample(Sampler sampler, String flowName) {
+    return sampler.shouldSample(Context.root(), TRACE_ID, flowName, SpanKind.SERVER,
+        Attributes.of(MULE_APP_FLOW_NAME, flowName), Collections.emptyList()).getDecision();
+  }
+
+  private ComponentIndex index(ComponentLocation... locations) {
+    ConfigurationComponentLocator locator = mock(ConfigurationComponentLocator.class);
+    when(locator.findAllLocations()).thenReturn(Arrays.asList(locations));
+    ComponentIndex componentIndex = new ComponentIndex(locator);
+    componentIndex.build();
+    return componentIndex;
+  }
+
+  private ComponentLocation location(String location, String rootContainerName) {
+    ComponentLocation componentLocation = getComponentLocation();
+    when(componentLocation.getLocation()).thenReturn(location);
+    when(componentLocation.getRootContainerName()).thenReturn(rootContainerName);
+    when(componentLocation.getParts()).thenReturn(Collections.emptyList());
+    return componentLocation;
+  }
+}
@@ -0,0 +1,113 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.FlowTraceLevel;
+import com.avioconsulting.mule.opentelemetry.api.config.MuleComponent;
+import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import org.junit.Test;
+import org.mule.runtime.api.event.Event;
+import org.mule.runtime.api.event.EventContext;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ForceTraceTest extends AbstractProcessorComponentTest {
+
+  private static final TextMapGetter<Map<String, String>> GETTER = new TextMapGetter<Map<String, String>>() {
+    @Override
+    public Iterable<String> keys(Map<String, String> carrier) {
+      return carrier.keySet();
+    }
+
+    @Override
+    public String get(Map<String, String> carrier, String key) {
+      return carrier.get(key);
+    }
+  };
+
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  public void requiresHeaderAndSecret() {
+    assertThat(ForceTrace.of(new TraceLevelConfiguration())).isSameAs(ForceTrace.DISABLED);
+    assertThat(ForceTrace.of(new TraceLevelConfiguration().setForceTrace("x-force-trace", null, 10)).isEnabled())
+        .isFalse();
+    assertThat(ForceTrace.DISABLED.isRequested(headers("x-force-trace", "s3cr3t"), GETTER)).isFalse();
+    assertThat(ForceTrace.of(new TraceLevelConfiguration().setForceTrace("x-force-trace", "s3cr3t", 10))
+        .isRequested(headers("x-force-trace", "s3cr3t"), GETTER)).isTrue();
+  }
+
+  @Test
+  public void rejectsInvalidSecret() {
+    ForceTrace forceTrace = new ForceTrace("x-force-trace", "s3cr3t", 10, clock::get);
+    assertThat(forceTrace.isRequested(headers("x-force-trace", "guess"), GETTER)).isFalse();
+    assertThat(forceTrace.isRequested(headers("x-other", "s3cr3t"), GETTER)).isFalse();
+    assertThat(forceTrace.isRequested(headers("x-force-trace", " s3cr3t "), GETTER)).isTrue();
+  }
+
+  @Test
+  public void limitsForcedTransactionsPerMinute() {
+    ForceTrace forceTrace = new ForceTrace("x-force-trace", "s3cr3t", 2, clock::get);
+    Map<String, String> headers = headers("x-force-trace", "s3cr3t");
+    assertThat(forceTrace.isRequested(headers, GETTER)).isTrue();
+    assertThat(forceTrace.isRequested(headers, GETTER)).isTrue();
+    assertThat(forceTrace.isRequested(headers, GETTER)).isFalse();
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(59));
+    assertThat(forceTrace.isRequested(headers, GETTER)).isFalse();
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertThat(forceTrace.isRequested(headers, GETTER)).isTrue();
+  }
+
+  @Test
+  public void tracksForcedTransactions() {
+    ForceTrace forceTrace = new ForceTrace("x-force-trace", "s3cr3t", 10, clock::get);
+    Event event = event("tx-1_1234");
+    assertThat(forceTrace.isForced(event)).isFalse();
+
+    forceTrace.started("tx-1");
+    assertThat(forceTrace.isForced(event)).isTrue();
+    assertThat(forceTrace.isForced(event("tx-2"))).isFalse();
+
+    forceTrace.ended("tx-1");
+    assertThat(forceTrace.isForced(event)).isFalse();
+  }
+
+  @Test
+  public void forcedTraceSpansAllProcessors() {
+    TraceLevelConfiguration configuration = new TraceLevelConfiguration(false,
+        Collections.singletonList(new MuleComponent("mule", "logger")), Collections.emptyList(),
+        Collections.emptyList(), Collections.singletonList(new FlowTraceLevel("order-*", false, null, null)));
+    TraceLevels traceLevels = new TraceLevels(configuration, false,
+        FlowTraceLevelTable.build(configuration.getFlowTraceLevels(), new ComponentIndex(null)));
+    traceLevels.setStage(TracingStage.ROOT_SPANS, 0.1);
+
+    TraceLevelSnapshot forced = traceLevels.get().forcedTrace();
+    assertThat(forced).isSameAs(traceLevels.get().forcedTrace());
+    assertThat(forced.isProcessorSpansEnabled()).isTrue();
+    assertThat(forced.isSpanAllProcessorsActive(forced.getFlowTraceLevels(getComponentLocation()))).isTrue();
+    assertThat(forced.isIgnored(getMockedIdentifier("mule", "logger"))).isTrue();
+    assertThat(traceLevels.get().isProcessorSpansEnabled()).isFalse();
+  }
+
+  private Map<String, String> headers(String name, String value) {
+    Map<String, String> headers = new HashMap<>();
+    headers.put(name, value);
+    return headers;
+  }
+
+  private Event event(String contextId) {
+    Event event = mock(Event.class);
+    EventContext eventContext = mock(EventContext.class);
+    when(eventContext.getId()).thenReturn(contextId);
+    when(event.getContext()).thenReturn(eventContext);
+    return event;
+  }
+}
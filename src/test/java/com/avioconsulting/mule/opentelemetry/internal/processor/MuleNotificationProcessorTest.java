@@ -1,5 +1,6 @@
 package com.avioconsulting.mule.opentelemetry.internal.processor;
 
+import com.avioconsulting.mule.opentelemetry.api.config.FlowTraceLevel;
 import com.avioconsulting.mule.opentelemetry.api.config.MuleComponent;
 import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
 import com.avioconsulting.mule.opentelemetry.internal.connection.OpenTelemetryConnection;
@@ -8,17 +9,25 @@ import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.component.location.ComponentLocation;
 import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
 import org.mule.runtime.api.event.Event;
+import org.mule.runtime.api.event.EventContext;
 import org.mule.runtime.api.message.Message;
 import org.mule.runtime.api.notification.MessageProcessorNotification;
+import org.mule.runtime.api.notification.PipelineMessageNotification;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 public class MuleNotificationProcessorTest extends AbstractProcessorComponentTest {
 
+  private static final String LOCATION = "test/processors/0";
+
   private ConfigurationComponentLocator configurationComponentLocator = mock(ConfigurationComponentLocator.class);
 
   @Test
@@ -108,4 +117,137 @@ public class MuleNotificationProcessorTest extends AbstractProcessorComponentTes
     verifyNoMoreInteractions(connection);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void handleProcessorStartEvent_withProcessorsIgnoredAtRuntime() {
+    Event event = mock(Event.class);
+    when(event.getCorrelationId()).thenReturn("testCorrelationId");
+    Message message = getMessage(null);
+    when(event.getMessage()).thenReturn(message);
+    ComponentLocation componentLocation = getComponentLocation("mule", "logger");
+    Component component = getComponent(componentLocation, Collections.emptyMap(), "mule", "logger");
+    Exception exception = mock(Exception.class);
+    MessageProcessorNotification notification = MessageProcessorNotification.createFrom(event, componentLocation,
+        component, exception, MessageProcessorNotification.MESSAGE_PROCESSOR_POST_INVOKE);
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    MuleNotificationProcessor notificationProcessor = new MuleNotificationProcessor(configurationComponentLocator);
+
+    notificationProcessor.init(connection, new TraceLevelConfiguration(true, Collections.emptyList()));
+    notificationProcessor.getTraceLevels().setIgnoreMuleComponents("mule:logger");
+    notificationProcessor.handleProcessorStartEvent(notification);
+
+    verifyNoMoreInteractions(connection);
+  }
+
+  @Test
+  public void handleProcessorEndEvent_withTracingDisabledAtRuntime() {
+    Event event = mock(Event.class);
+    when(event.getCorrelationId()).thenReturn("testCorrelationId");
+    Message message = getMessage(null);
+    when(event.getMessage()).thenReturn(message);
+    ComponentLocation componentLocation = getComponentLocation("mule", "logger");
+    Component component = getComponent(componentLocation, Collections.emptyMap(), "mule", "logger");
+    Exception exception = mock(Exception.class);
+    MessageProcessorNotification notification = MessageProcessorNotification.createFrom(event, componentLocation,
+        component, exception, MessageProcessorNotification.MESSAGE_PROCESSOR_POST_INVOKE);
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    MuleNotificationProcessor notificationProcessor = new MuleNotificationProcessor(configurationComponentLocator);
+
+    notificationProcessor.init(connection, new TraceLevelConfiguration(true, Collections.emptyList()));
+    notificationProcessor.getTraceLevels().setTracingEnabled(false);
+    notificationProcessor.handleProcessorStartEvent(notification);
+    notificationProcessor.handleProcessorEndEvent(notification);
+
+    // No span was started before the change, so there is nothing to end
+    verify(connection).hasProcessorSpan(any(), any());
+    verifyNoMoreInteractions(connection);
+  }
+
+  @Test
+  public void handleProcessorStartEvent_withSpanAllProcessorsDisabledForFlow() {
+    Event event = mock(Event.class);
+    when(event.getCorrelationId()).thenReturn("testCorrelationId");
+    Message message = getMessage(null);
+    when(event.getMessage()).thenReturn(message);
+    ComponentLocation componentLocation = getComponentLocation("mule", "logger");
+    Component component = getComponent(componentLocation, Collections.emptyMap(), "mule", "logger");
+    Exception exception = mock(Exception.class);
+    MessageProcessorNotification notification = MessageProcessorNotification.createFrom(event, componentLocation,
+        component, exception, MessageProcessorNotification.MESSAGE_PROCESSOR_POST_INVOKE);
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    MuleNotificationProcessor notificationProcessor = new MuleNotificationProcessor(configurationComponentLocator);
+
+    TraceLevelConfiguration traceLevelConfiguration = new TraceLevelConfiguration(true, Collections.emptyList(),
+        Collections.emptyList(), Collections.emptyList(),
+        Collections.singletonList(new FlowTraceLevel("test-*", false, null, null)));
+    notificationProcessor.init(connection, traceLevelConfiguration);
+    notificationProcessor.handleProcessorStartEvent(notification);
+
+    verifyNoMoreInteractions(connection);
+  }
+
+  @Test
+  public void handleFlowEndEvent_afterShutdown() {
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    when(connection.isShutdown()).thenReturn(true);
+    MuleNotificationProcessor notificationProcessor = new MuleNotificationProcessor(configurationComponentLocator);
+    notificationProcessor.init(connection, new TraceLevelConfiguration(false, Collections.emptyList()));
+
+    notificationProcessor.handleFlowEndEvent(mock(PipelineMessageNotification.class));
+
+    verify(connection).isShutdown();
+    verifyNoMoreInteractions(connection);
+  }
+
+  @Test
+  public void handleProcessorEndEvent_afterSpanAllProcessorsDisabledAtRuntime() {
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    MuleNotificationProcessor notificationProcessor = new MuleNotificationProcessor(configurationComponentLocator);
+    notificationProcessor.init(connection, new TraceLevelConfiguration(true, Collections.emptyList()));
+    MessageProcessorNotification notification = loggerNotification();
+    when(connection.hasProcessorSpan("test-event-id", "test-event-id/" + LOCATION))
+        .thenReturn(true);
+
+    // Logger span was started with spanAllProcessors
+    notificationProcessor.getTraceLevels().setSpanAllProcessors(false);
+    notificationProcessor.handleProcessorEndEvent(notification);
+
+    verify(connection).endProcessorSpan(
+        argThat(traceComponent -> LOCATION.equals(traceComponent.getLocation())),
+        any());
+  }
+
+  @Test
+  public void handleProcessorEndEvent_afterStageChange() {
+    OpenTelemetryConnection connection = mock(OpenTelemetryConnection.class);
+    MuleNotificationProcessor notificationProcessor = new MuleNotificationProcessor(configurationComponentLocator);
+    notificationProcessor.init(connection, new TraceLevelConfiguration(true, Collections.emptyList()));
+    MessageProcessorNotification notification = loggerNotification();
+    assertThat(notificationProcessor.getProcessorComponent(notification.getComponent().getIdentifier(),
+        notification.getComponent().getLocation(), notificationProcessor.getTraceLevels().get()))
+        .as("Processor is traced when it starts").isNotNull();
+    when(connection.hasProcessorSpan("test-event-id", "test-event-id/" + LOCATION))
+        .thenReturn(true);
+
+    // Overhead governor steps down before the processor ends
+    notificationProcessor.getTraceLevels().setStage(TracingStage.ROOT_SPANS, 1.0);
+    notificationProcessor.handleProcessorEndEvent(notification);
+
+    verify(connection).endProcessorSpan(
+        argThat(traceComponent -> LOCATION.equals(traceComponent.getLocation())),
+        any());
+  }
+
+  private MessageProcessorNotification loggerNotification() {
+    Event event = mock(Event.class);
+    EventContext eventContext = mock(EventContext.class);
+    when(eventContext.getId()).thenReturn("test-event-id");
+    when(event.getContext()).thenReturn(eventContext);
+    when(event.getError()).thenReturn(Optional.empty());
+    Message message = getMessage(null);
+    when(event.getMessage()).thenReturn(message);
+    ComponentLocation componentLocation = getComponentLocation("mule", "logger");
+    Component component = getComponent(componentLocation, Collections.emptyMap(), "mule", "logger");
+    return MessageProcessorNotification.createFrom(event, componentLocation, component, null,
+        MessageProcessorNotification.MESSAGE_PROCESSOR_POST_INVOKE);
+  }
+}
@@ -0,0 +1,132 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryLogRecordExporter;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OverheadGovernorTest {
+
+  private final TestSignals signals = new TestSignals();
+  private final TraceLevels traceLevels = new TraceLevels(
+      new TraceLevelConfiguration(true, Collections.emptyList()), true);
+  private final OverheadGovernor governor = new OverheadGovernor(traceLevels,
+      new OverheadGovernor.Settings(1000, 0.05, 0.8, 0.7, 2, 3, 0.1), signals);
+
+  @Test
+  public void stepsDownWhenPressureHolds() {
+    signals.queueFill = 0.9;
+    assertThat(governor.evaluate()).as("Single evaluation is not enough").isEqualTo(TracingStage.ALL_PROCESSORS);
+    assertThat(governor.evaluate()).isEqualTo(TracingStage.CONNECTOR_SPANS);
+    assertThat(traceLevels.get().isSpanAllProcessorsActive()).isFalse();
+    assertThat(traceLevels.get().isSpanAllProcessors()).as("Configured trace levels are kept").isTrue();
+
+    signals.overhead = 0.1;
+    governor.evaluate();
+    assertThat(governor.evaluate()).isEqualTo(TracingStage.ROOT_SPANS);
+    assertThat(traceLevels.get().isProcessorSpansEnabled()).isFalse();
+    assertThat(traceLevels.get().getSampler()).isNull();
+
+    governor.evaluate();
+    assertThat(governor.evaluate()).isEqualTo(TracingStage.SAMPLED_ROOT_SPANS);
+    assertThat(traceLevels.get().getSampler().getDescription()).contains("0.1");
+
+    governor.evaluate();
+    assertThat(governor.evaluate()).isEqualTo(TracingStage.SAMPLED_ROOT_SPANS);
+  }
+
+  @Test
+  public void stepsUpWithHysteresis() {
+    traceLevels.setStage(TracingStage.ROOT_SPANS, 0.1);
+    signals.queueFill = 0.6;
+    for (int i = 0; i < 5; i++) {
+      assertThat(governor.evaluate()).as("Below threshold but above recovery holds the stage")
+          .isEqualTo(TracingStage.ROOT_SPANS);
+    }
+    signals.queueFill = 0.4;
+    governor.evaluate();
+    governor.evaluate();
+    assertThat(governor.evaluate()).isEqualTo(TracingStage.CONNECTOR_SPANS);
+
+    signals.queueFill = 0.9;
+    assertThat(governor.evaluate()).isEqualTo(TracingStage.CONNECTOR_SPANS);
+    signals.queueFill = 0.4;
+    governor.evaluate();
+    governor.evaluate();
+    assertThat(governor.evaluate()).as("Pressure restarts the recovery count")
+        .isEqualTo(TracingStage.ALL_PROCESSORS);
+  }
+
+  @Test
+  public void resetKeepsStage() {
+    traceLevels.setStage(TracingStage.CONNECTOR_SPANS, 0.1);
+    traceLevels.setSpanAllProcessors(false);
+    traceLevels.reset();
+    assertThat(traceLevels.get().isSpanAllProcessors()).isTrue();
+    assertThat(traceLevels.getTracingStage()).isEqualTo("CONNECTOR_SPANS");
+  }
+
+  @Test
+  public void recordsTransitions() {
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    InMemoryLogRecordExporter logRecordExporter = InMemoryLogRecordExporter.create();
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build())
+        .setLoggerProvider(SdkLoggerProvider.builder()
+            .addLogRecordProcessor(SimpleLogRecordProcessor.create(logRecordExporter)).build())
+        .build();
+    governor.start(openTelemetry);
+    try {
+      signals.overhead = 0.2;
+      governor.evaluate();
+      governor.evaluate();
+
+      MetricData transitions = metricReader.collectAllMetrics().stream()
+          .filter(m -> m.getName().equals(OverheadGovernor.TRANSITIONS))
+          .findFirst().orElseThrow(AssertionError::new);
+      assertThat(transitions.getLongSumData().getPoints()).hasSize(1);
+      assertThat(transitions.getLongSumData().getPoints().iterator().next().getAttributes()
+          .get(OverheadGovernor.TO_STAGE)).isEqualTo("CONNECTOR_SPANS");
+      MetricData stage = metricReader.collectAllMetrics().stream()
+          .filter(m -> m.getName().equals(OverheadGovernor.STAGE))
+          .findFirst().orElseThrow(AssertionError::new);
+      assertThat(stage.getLongGaugeData().getPoints().iterator().next().getValue()).isEqualTo(1);
+
+      assertThat(logRecordExporter.getFinishedLogRecordItems()).hasSize(1);
+      LogRecordData event = logRecordExporter.getFinishedLogRecordItems().get(0);
+      assertThat(event.getAttributes().get(OverheadGovernor.EVENT_NAME))
+          .isEqualTo(OverheadGovernor.TRANSITION_EVENT);
+      assertThat(event.getAttributes().get(OverheadGovernor.FROM_STAGE)).isEqualTo("ALL_PROCESSORS");
+      assertThat(event.getAttributes().get(OverheadGovernor.OVERHEAD)).isEqualTo(0.2);
+    } finally {
+      governor.stop();
+      openTelemetry.getSdkMeterProvider().shutdown();
+      openTelemetry.getSdkLoggerProvider().shutdown();
+    }
+  }
+
+  private static class TestSignals implements OverheadGovernor.Signals {
+    double overhead;
+    double queueFill;
+
+    @Override
+    public double overhead() {
+      return overhead;
+    }
+
+    @Override
+    public double queueFill() {
+      return queueFill;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.avioconsulting.mule.opentelemetry.internal.processor;
+
+import com.avioconsulting.mule.opentelemetry.api.config.MuleComponent;
+import com.avioconsulting.mule.opentelemetry.api.config.TraceLevelConfiguration;
+import org.junit.Test;
+import org.mule.runtime.api.component.ComponentIdentifier;
+
+import javax.management.Attribute;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TraceLevelsTest extends AbstractProcessorComponentTest {
+
+  private final TraceLevelConfiguration configuration = new TraceLevelConfiguration(true,
+      Collections.singletonList(new MuleComponent("mule", "logger")),
+      Collections.singletonList(new MuleComponent("http", "*")),
+      Collections.singletonList(new MuleComponent("http", "request")));
+
+  @Test
+  public void publishesNewSnapshotOnChange() {
+    TraceLevels traceLevels = new TraceLevels(configuration, true);
+    TraceLevelSnapshot initial = traceLevels.get();
+    assertThat(initial.isTracingEnabled()).isTrue();
+    assertThat(initial.getSampler()).isNull();
+
+    traceLevels.setSpanAllProcessors(false);
+    traceLevels.setTracingEnabled(false);
+
+    assertThat(traceLevels.get()).isNotSameAs(initial);
+    assertThat(traceLevels.get())
+        .extracting("tracingEnabled", "spanAllProcessors")
+        .containsExactly(false, false);
+    assertThat(initial)
+        .extracting("tracingEnabled", "spanAllProcessors")
+        .as("Published snapshots do not change")
+        .containsExactly(true, true);
+
+    traceLevels.reset();
+    assertThat(traceLevels.get()).isSameAs(initial);
+  }
+
+  @Test
+  public void changesIgnoredComponents() {
+    TraceLevels traceLevels = new TraceLevels(configuration, true);
+    ComponentIdentifier logger = getMockedIdentifier("mule", "logger");
+    ComponentIdentifier setPayload = getMockedIdentifier("mule", "set-payload");
+    assertThat(traceLevels.getIgnoreMuleComponents()).isEqualTo("mule:logger");
+    assertThat(traceLevels.get().isIgnored(logger)).isTrue();
+    assertThat(traceLevels.get().isIgnored(setPayload)).isFalse();
+
+    traceLevels.setIgnoreMuleComponents(" mule:* , ee:transform");
+    assertThat(traceLevels.getIgnoreMuleComponents()).isEqualTo("mule:*,ee:transform");
+    assertThat(traceLevels.get().isIgnored(setPayload)).isTrue();
+
+    traceLevels.setIgnoreMuleComponents("");
+    assertThat(traceLevels.get().isIgnored(logger)).isFalse();
+  }
+
+  @Test
+  public void interceptionDisabledUnlessEnabled() {
+    TraceLevels traceLevels = new TraceLevels(configuration, true);
+    assertThat(traceLevels.get().isInterceptionDisabled(getMockedIdentifier("http", "listener"))).isTrue();
+    assertThat(traceLevels.get().isInterceptionDisabled(getMockedIdentifier("http", "request"))).isFalse();
+
+    traceLevels.setInterceptionDisabledComponents("db:select");
+    assertThat(traceLevels.get().isInterceptionDisabled(getMockedIdentifier("db", "select"))).isTrue();
+    assertThat(traceLevels.get().isInterceptionDisabled(getMockedIdentifier("http", "listener"))).isFalse();
+  }
+
+  @Test
+  public void changesSamplingRatio() {
+    TraceLevels traceLevels = new TraceLevels(configuration, true);
+    traceLevels.setSamplingRatio(0.25);
+    assertThat(traceLevels.getSamplingRatio()).isEqualTo(0.25);
+    assertThat(traceLevels.getSampler()).isNotNull();
+    assertThat(traceLevels.getSampler().getDescription()).contains("0.25");
+
+    assertThatThrownBy(() -> traceLevels.setSamplingRatio(2))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(traceLevels.getSamplingRatio()).isEqualTo(0.25);
+
+    traceLevels.setSamplingRatio(TraceLevelSnapshot.CONFIGURED_SAMPLING_RATIO);
+    assertThat(traceLevels.getSampler()).isNull();
+  }
+
+  @Test
+  public void rejectsInvalidComponents() {
+    TraceLevels traceLevels = new TraceLevels(configuration, true);
+    assertThatThrownBy(() -> traceLevels.setIgnoreMuleComponents("logger"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("namespace:name");
+    assertThat(traceLevels.getIgnoreMuleComponents()).isEqualTo("mule:logger");
+  }
+
+  @Test
+  public void registersMBean() throws Exception {
+    TraceLevels traceLevels = new TraceLevels(configuration, true);
+    traceLevels.registerMBean("trace-levels-test");
+    ObjectName name = traceLevels.getMBeanName();
+    try {
+      assertThat(name).hasToString(
+          "com.avioconsulting.mule.opentelemetry:type=TraceLevels,service=\"trace-levels-test\"");
+      ManagementFactory.getPlatformMBeanServer().setAttribute(name, new Attribute("SpanAllProcessors", false));
+      assertThat(traceLevels.isSpanAllProcessors()).isFalse();
+    } finally {
+      traceLevels.unregisterMBean();
+    }
+    assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(name)).isFalse();
+  }
+}
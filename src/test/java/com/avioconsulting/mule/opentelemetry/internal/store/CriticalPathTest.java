@@ -0,0 +1,138 @@
+package com.avioconsulting.mule.opentelemetry.internal.store;
+
+import com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes;
+import com.avioconsulting.mule.opentelemetry.internal.store.CriticalPath.Step;
+import com.avioconsulting.mule.opentelemetry.internal.store.CriticalPath.Timing;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class CriticalPathTest {
+
+  private static final String ROOT = "root";
+
+  @Test
+  public void sequentialProcessors() {
+    List<Step> steps = CriticalPath.analyze(ROOT, 0, 100, Arrays.asList(
+        new Timing("a", ROOT, "flow/processors/0", 0, 10),
+        new Timing("b", ROOT, "flow/processors/1", 10, 70),
+        new Timing("c", "b", "flow/processors/1/processors/0", 20, 50),
+        new Timing("d", ROOT, "flow/processors/2", 70, 95)));
+
+    assertThat(steps).extracting(Step::getLocation, Step::getDurationNanos, Step::getSelfTimeNanos)
+        .containsExactly(
+            tuple("flow/processors/0", 10L, 10L),
+            tuple("flow/processors/1", 60L, 30L),
+            tuple("flow/processors/1/processors/0", 30L, 30L),
+            tuple("flow/processors/2", 25L, 25L));
+  }
+
+  @Test
+  public void parallelRoutes() {
+    List<Step> steps = CriticalPath.analyze(ROOT, 0, 100, Arrays.asList(
+        new Timing("sg", ROOT, "flow/processors/0", 0, 90),
+        new Timing("r0", "sg", "flow/processors/0/route/0", 5, 40),
+        new Timing("r1", "sg", "flow/processors/0/route/1", 5, 85),
+        new Timing("r1p", "r1", "flow/processors/0/route/1/processors/0", 10, 80),
+        new Timing("r2", "sg", "flow/processors/0/route/2", 5, 60)));
+
+    assertThat(steps).extracting(Step::getLocation)
+        .as("Routes that finished earlier are not on the critical path")
+        .containsExactly("flow/processors/0", "flow/processors/0/route/1",
+            "flow/processors/0/route/1/processors/0");
+    assertThat(steps.get(0).getSelfTimeNanos()).as("Self time excludes overlapping routes").isEqualTo(10L);
+    assertThat(steps.get(1).getSelfTimeNanos()).isEqualTo(10L);
+  }
+
+  @Test
+  public void unknownParentsAreAttributedToRoot() {
+    List<Step> steps = CriticalPath.analyze(ROOT, 0, 100, Collections.singletonList(
+        new Timing("a", "missing", "flow/processors/0", 20, 30)));
+    assertThat(steps).extracting(Step::getLocation).containsExactly("flow/processors/0");
+    assertThat(CriticalPath.analyze(ROOT, 0, 100, Collections.emptyList())).isEmpty();
+  }
+
+  @Test
+  public void setsCriticalPathOnRootSpan() {
+    InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+    Tracer tracer = tracerProvider.get("test");
+    Span root = tracer.spanBuilder("flow").setStartTimestamp(0, TimeUnit.MILLISECONDS).startSpan();
+    CriticalPath criticalPath = new CriticalPath();
+    Span fast = child(tracer, root, 0, 5);
+    criticalPath.record(fast, "flow/processors/0", Instant.ofEpochMilli(0), Instant.ofEpochMilli(5));
+    Span slow = child(tracer, root, 5, 45);
+    criticalPath.record(slow, "flow/processors/1", Instant.ofEpochMilli(5), Instant.ofEpochMilli(45));
+
+    criticalPath.apply(root, Instant.ofEpochMilli(0), Instant.ofEpochMilli(50));
+    root.end(Instant.ofEpochMilli(50));
+
+    SpanData rootData = spanExporter.getFinishedSpanItems().stream()
+        .filter(span -> span.getName().equals("flow")).findFirst().get();
+    assertThat(rootData.getAttributes().get(SemanticAttributes.MULE_TRACE_CRITICAL_PATH))
+        .containsExactly("flow/processors/0", "flow/processors/1");
+    assertThat(rootData.getAttributes().get(SemanticAttributes.MULE_TRACE_CRITICAL_PATH_SELF_TIME))
+        .containsExactly(5.0, 40.0);
+    assertThat(rootData.getAttributes().get(SemanticAttributes.MULE_TRACE_SLOWEST_STEP))
+        .isEqualTo("flow/processors/1");
+    assertThat(rootData.getAttributes().get(SemanticAttributes.MULE_TRACE_SLOWEST_STEP_SELF_TIME))
+        .isEqualTo(40.0);
+    tracerProvider.shutdown();
+  }
+
+  @Test
+  public void setsSelfTimeOnEachProcessorSpan() {
+    InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+    Tracer tracer = tracerProvider.get("test");
+    Span root = tracer.spanBuilder("flow").setStartTimestamp(0, TimeUnit.MILLISECONDS).startSpan();
+    CriticalPath criticalPath = new CriticalPath();
+    Span scope = tracer.spanBuilder("scope").setParent(Context.root().with(root))
+        .setStartTimestamp(0, TimeUnit.MILLISECONDS).startSpan();
+    Span inner = tracer.spanBuilder("inner").setParent(Context.root().with(scope))
+        .setStartTimestamp(10, TimeUnit.MILLISECONDS).startSpan();
+    criticalPath.setSelfTime(inner, Instant.ofEpochMilli(10), Instant.ofEpochMilli(40));
+    inner.end(40, TimeUnit.MILLISECONDS);
+    criticalPath.record(inner, "flow/processors/0/processors/0", Instant.ofEpochMilli(10),
+        Instant.ofEpochMilli(40));
+    criticalPath.setSelfTime(scope, Instant.ofEpochMilli(0), Instant.ofEpochMilli(50));
+    scope.end(50, TimeUnit.MILLISECONDS);
+    criticalPath.record(scope, "flow/processors/0", Instant.ofEpochMilli(0), Instant.ofEpochMilli(50));
+
+    assertThat(spanExporter.getFinishedSpanItems())
+        .extracting(SpanData::getName,
+            span -> span.getAttributes().get(SemanticAttributes.MULE_TRACE_SELF_TIME))
+        .containsExactly(tuple("inner", 30.0), tuple("scope", 20.0));
+    tracerProvider.shutdown();
+  }
+
+  @Test
+  public void selfTimeExcludesOverlappingChildrenOnce() {
+    assertThat(CriticalPath.selfTime(0, 100, Arrays.asList(
+        new long[] { 10, 50 }, new long[] { 20, 60 }, new long[] { 90, 120 }))).isEqualTo(40L);
+    assertThat(CriticalPath.selfTime(0, 100, Collections.emptyList())).isEqualTo(100L);
+  }
+
+  private Span child(Tracer tracer, Span parent, long start, long end) {
+    Span span = tracer.spanBuilder("processor").setParent(Context.root().with(parent))
+        .setStartTimestamp(start, TimeUnit.MILLISECONDS).startSpan();
+    span.end(end, TimeUnit.MILLISECONDS);
+    return span;
+  }
+}
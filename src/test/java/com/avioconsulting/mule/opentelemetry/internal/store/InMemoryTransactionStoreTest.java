@@ -0,0 +1,207 @@
+package com.avioconsulting.mule.opentelemetry.internal.store;
+
+import com.avioconsulting.mule.opentelemetry.api.sdk.SemanticAttributes;
+import com.avioconsulting.mule.opentelemetry.api.traces.TraceComponent;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.Test;
+import org.mule.runtime.api.component.TypedComponentIdentifier;
+import org.mule.runtime.api.component.location.ComponentLocation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InMemoryTransactionStoreTest {
+
+  private final AtomicInteger builtSpans = new AtomicInteger();
+
+  @Test
+  public void endOpenTransactions() {
+    InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+    Tracer tracer = tracerProvider.get("test");
+    InMemoryTransactionStore store = new InMemoryTransactionStore();
+    for (String transactionId : new String[] { "t1", "t2" }) {
+      TraceComponent traceComponent = TraceComponent.of("flow")
+          .withTransactionId(transactionId)
+          .withSpanName("flow")
+          .withTags(new HashMap<>())
+          .withStartTime(Instant.now());
+      store.startTransaction(traceComponent, "flow", tracer.spanBuilder("flow"));
+    }
+    assertThat(spanExporter.getFinishedSpanItems()).isEmpty();
+
+    assertThat(store.endOpenTransactions(
+        span -> span.setAttribute(SemanticAttributes.MULE_TRANSACTION_ABANDONED, true))).isEqualTo(2);
+    assertThat(spanExporter.getFinishedSpanItems()).hasSize(2)
+        .extracting(SpanData::getAttributes)
+        .allSatisfy(attributes -> assertThat(attributes.get(SemanticAttributes.MULE_TRANSACTION_ABANDONED))
+            .isTrue());
+    assertThat(store.getTraceIdForTransaction("t1")).isNull();
+    assertThat(store.endOpenTransactions(span -> {
+    })).isZero();
+    tracerProvider.shutdown();
+  }
+
+  @Test
+  public void asyncQueueWaitAndExecutionTime() {
+    InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+    Tracer tracer = tracerProvider.get("test");
+    InMemoryTransactionStore store = new InMemoryTransactionStore();
+    Instant start = Instant.ofEpochMilli(1_000_000);
+    store.startTransaction(TraceComponent.of("flow")
+        .withTransactionId("t1")
+        .withSpanName("flow")
+        .withTags(new HashMap<>())
+        .withStartTime(start), "flow", tracer.spanBuilder("flow").setStartTimestamp(start));
+
+    TraceComponent async = processor("flow/processors/0", "t1", start.plusMillis(10));
+    store.addProcessorSpan("flow", async, tracer.spanBuilder("async").setStartTimestamp(async.getStartTime()));
+    store.startAsyncExecution(processor("flow/processors/0/processors/0", "t1_1234", start.plusMillis(35)),
+        "flow/processors/0");
+    store.startAsyncExecution(processor("flow/processors/0/processors/0", "t1_1234", start.plusMillis(40)),
+        "flow/processors/0");
+    store.endProcessorSpan("t1", async, span -> {
+    }, start.plusMillis(60));
+
+    assertThat(spanExporter.getFinishedSpanItems()).hasSize(1);
+    SpanData asyncSpan = spanExporter.getFinishedSpanItems().get(0);
+    assertThat(asyncSpan.getAttributes().get(SemanticAttributes.MULE_APP_ASYNC_QUEUE_WAIT)).isEqualTo(25L);
+    assertThat(asyncSpan.getAttributes().get(SemanticAttributes.MULE_APP_ASYNC_EXECUTION_TIME)).isEqualTo(25L);
+    tracerProvider.shutdown();
+  }
+
+  private TraceComponent processor(String location, String eventContextId, Instant startTime) {
+    ComponentLocation componentLocation = mock(ComponentLocation.class);
+    TypedComponentIdentifier identifier = mock(TypedComponentIdentifier.class);
+    when(identifier.getType()).thenReturn(TypedComponentIdentifier.ComponentType.SCOPE);
+    when(componentLocation.getLocation()).thenReturn(location);
+    when(componentLocation.getComponentIdentifier()).thenReturn(identifier);
+    return TraceComponent.of(componentLocation)
+        .withTransactionId("t1")
+        .withSpanName(location)
+        .withTags(new HashMap<>())
+        .withEventContextId(eventContextId)
+        .withStartTime(startTime);
+  }
+
+  @Test
+  public void deferredProcessorSpans() {
+    InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+    Tracer tracer = tracerProvider.get("test");
+    InMemoryTransactionStore store = new InMemoryTransactionStore();
+
+    List<SpanData> fast = runTransaction(store, tracer, spanExporter, "t1", 60, null);
+    assertThat(fast).extracting(SpanData::getName).containsExactly("flow");
+    assertThat(builtSpans).as("No span builder is created for fast transactions").hasValue(0);
+    assertThat(fast.get(0).getAttributes().get(SemanticAttributes.MULE_TRANSACTION_SLOW)).isNull();
+
+    List<SpanData> slow = runTransaction(store, tracer, spanExporter, "t2", 150, null);
+    assertThat(slow).extracting(SpanData::getName).containsExactlyInAnyOrder("flow", "logger");
+    SpanData root = slow.stream().filter(span -> span.getName().equals("flow")).findFirst().get();
+    SpanData processor = slow.stream().filter(span -> span.getName().equals("logger")).findFirst().get();
+    assertThat(root.getAttributes().get(SemanticAttributes.MULE_TRANSACTION_SLOW)).isTrue();
+    assertThat(processor.getParentSpanId()).isEqualTo(root.getSpanId());
+    assertThat(processor.getAttributes().get(AttributeKey.booleanKey("ended"))).isTrue();
+    assertThat(processor.getEndEpochNanos() - processor.getStartEpochNanos())
+        .isEqualTo(Duration.ofMillis(40).toNanos());
+
+    assertThat(runTransaction(store, tracer, spanExporter, "t3", 60, "Processor failed"))
+        .as("Processor spans of failed transactions are exported")
+        .extracting(SpanData::getName).containsExactlyInAnyOrder("flow", "logger");
+    tracerProvider.shutdown();
+  }
+
+  @Test
+  public void deferredProcessorSpansGrowWithTransaction() {
+    InMemorySpanExporter spanExporter = InMemorySpanExporter.create();
+    SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+        .addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+    Tracer tracer = tracerProvider.get("test");
+    InMemoryTransactionStore store = new InMemoryTransactionStore();
+    Instant start = Instant.ofEpochMilli(1_000_000);
+    store.startTransaction(TraceComponent.of("flow")
+        .withTransactionId("t1")
+        .withSpanName("flow")
+        .withTags(new HashMap<>())
+        .withStartTime(start)
+        .withSlowTransactionThreshold(Duration.ofMillis(100)), "flow",
+        tracer.spanBuilder("flow").setStartTimestamp(start));
+
+    for (int i = 0; i < 40; i++) {
+      TraceComponent processor = processor("flow/processors/" + i, "t1", start.plusMillis(i))
+          .withTransactionId("t1")
+          .withSpanName("processor-" + i)
+          .withTags(new HashMap<>());
+      store.addProcessorSpan("flow", processor,
+          component -> tracer.spanBuilder(component.getSpanName()).setStartTimestamp(component.getStartTime()));
+      store.endProcessorSpan("t1", processor, null, start.plusMillis(i + 1));
+    }
+    store.endTransaction(TraceComponent.of("flow")
+        .withTransactionId("t1")
+        .withTags(new HashMap<>())
+        .withEndTime(start.plusMillis(150)), span -> {
+        });
+
+    assertThat(spanExporter.getFinishedSpanItems()).hasSize(41)
+        .filteredOn(span -> !span.getName().equals("flow"))
+        .extracting(SpanData::getName)
+        .contains("processor-0", "processor-39");
+    tracerProvider.shutdown();
+  }
+
+  private List<SpanData> runTransaction(InMemoryTransactionStore store, Tracer tracer,
+      InMemorySpanExporter spanExporter, String transactionId, long durationMillis, String errorMessage) {
+    spanExporter.reset();
+    Instant start = Instant.ofEpochMilli(1_000_000);
+    TraceComponent flow = TraceComponent.of("flow")
+        .withTransactionId(transactionId)
+        .withSpanName("flow")
+        .withTags(new HashMap<>())
+        .withStartTime(start)
+        .withSlowTransactionThreshold(Duration.ofMillis(100));
+    store.startTransaction(flow, "flow", tracer.spanBuilder("flow").setStartTimestamp(start));
+
+    ComponentLocation location = mock(ComponentLocation.class);
+    TypedComponentIdentifier identifier = mock(TypedComponentIdentifier.class);
+    when(identifier.getType()).thenReturn(TypedComponentIdentifier.ComponentType.OPERATION);
+    when(location.getLocation()).thenReturn("flow/processors/0");
+    when(location.getComponentIdentifier()).thenReturn(identifier);
+    TraceComponent logger = TraceComponent.of(location)
+        .withTransactionId(transactionId)
+        .withSpanName("logger")
+        .withTags(new HashMap<>())
+        .withEventContextId(transactionId)
+        .withStartTime(start.plusMillis(10));
+    store.addProcessorSpan("flow", logger, component -> {
+      builtSpans.incrementAndGet();
+      return tracer.spanBuilder(component.getSpanName()).setStartTimestamp(component.getStartTime());
+    });
+    store.endProcessorSpan(transactionId, logger.withErrorMessage(errorMessage),
+        span -> span.setAttribute("ended", true), start.plusMillis(50));
+    assertThat(spanExporter.getFinishedSpanItems()).as("Processor spans are deferred").isEmpty();
+
+    store.endTransaction(TraceComponent.of("flow")
+        .withTransactionId(transactionId)
+        .withTags(new HashMap<>())
+        .withEndTime(start.plusMillis(durationMillis)), span -> {
+        });
+    return spanExporter.getFinishedSpanItems();
+  }
+}
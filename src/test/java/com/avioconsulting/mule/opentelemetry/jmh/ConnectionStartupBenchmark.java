@@ -0,0 +1,99 @@
+package com.avioconsulting.mule.opentelemetry.jmh;
+
+import com.avioconsulting.mule.opentelemetry.api.config.ExporterConfiguration;
+import com.avioconsulting.mule.opentelemetry.api.config.OpenTelemetryResource;
+import com.avioconsulting.mule.opentelemetry.internal.config.OpenTelemetryConfigWrapper;
+import com.avioconsulting.mule.opentelemetry.internal.config.OpenTelemetryExtensionConfiguration;
+import com.avioconsulting.mule.opentelemetry.internal.connection.OpenTelemetryConnection;
+import org.junit.Assume;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * Measures cold start of the OpenTelemetry connection, as seen by an application that takes traffic right after
+ * deployment. Every measurement runs in a fresh JVM, so class loading and SDK autoconfiguration are included.
+ *
+ * - firstSpan: time until the first span is started and ended
+ * - fullyInitialized: time until background initialization (Log4j support, metrics providers) completes too
+ *
+ * Both run with and without lazy initialization. The trace exporter points to an OTLP endpoint that is not
+ * listening, which is not reached during the measurement.
+ *
+ * Runs with `./mvnw test -Dtest=ConnectionStartupBenchmark -DrunJMH=true`. System properties -
+ * - startup.forks: number of JVMs, each measuring one cold start per benchmark, defaults to `10`
+ * </pre>
+ */
+@State(Scope.Thread)
+public class ConnectionStartupBenchmark {
+
+  @Param({ "false", "true" })
+  public String lazyInitialization;
+
+  private OpenTelemetryConfigWrapper configWrapper;
+
+  @Test
+  public void runBenchmarks() throws Exception {
+    Assume.assumeTrue(System.getProperty("runJMH", "false").equals("true"));
+    Options options = new OptionsBuilder()
+        .include(getClass().getSimpleName().concat(".*"))
+        .mode(Mode.SingleShotTime)
+        .timeUnit(TimeUnit.MILLISECONDS)
+        .warmupIterations(0)
+        .measurementIterations(1)
+        .forks(Integer.getInteger("startup.forks", 10))
+        .shouldFailOnError(true)
+        .build();
+    new Runner(options).run();
+  }
+
+  @Setup(Level.Invocation)
+  public void setup() {
+    System.setProperty(OpenTelemetryExtensionConfiguration.PROP_MULE_OTEL_LAZY_INIT_ENABLED, lazyInitialization);
+    Map<String, String> exporterProperties = new HashMap<>();
+    exporterProperties.put("otel.traces.exporter", "otlp");
+    exporterProperties.put("otel.metrics.exporter", "none");
+    exporterProperties.put("otel.logs.exporter", "none");
+    exporterProperties.put("otel.exporter.otlp.endpoint", "http://localhost:4317");
+    exporterProperties.put("otel.exporter.otlp.timeout", "100");
+    OpenTelemetryExtensionConfiguration configuration = new OpenTelemetryExtensionConfiguration()
+        .setResource(new OpenTelemetryResource("startup-benchmark", Collections.emptyList()))
+        .setExporterConfiguration(new ExporterConfiguration().setExporter(() -> exporterProperties));
+    configWrapper = new OpenTelemetryConfigWrapper(configuration);
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDown() {
+    OpenTelemetryConnection connection = OpenTelemetryConnection.getInstance();
+    if (connection != null)
+      connection.shutdown(1000);
+    OpenTelemetryConnection.resetForTest();
+  }
+
+  @Benchmark
+  public void firstSpan() {
+    OpenTelemetryConnection.getInstance(configWrapper).spanBuilder("first").startSpan().end();
+  }
+
+  @Benchmark
+  public void fullyInitialized() {
+    OpenTelemetryConnection connection = OpenTelemetryConnection.getInstance(configWrapper);
+    connection.spanBuilder("first").startSpan().end();
+    connection.getBackgroundInitialization().join();
+  }
+}
@@ -0,0 +1,221 @@
+package com.avioconsulting.mule.opentelemetry.jmh;
+
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.spool.SpanDataCodec;
+import com.avioconsulting.mule.opentelemetry.internal.opentelemetry.sdk.test.DelegatedLoggingSpanTestExporter;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.IdGenerator;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * Recorded span stream used by {@link SpanReplayBenchmark}.
+ *
+ * A recording file is a sequence of length-prefixed {@link SpanDataCodec} batches. Recordings can be created from
+ * - spans collected by {@link DelegatedLoggingSpanTestExporter} in a test run, see {@link #fromTestExporter(Collection)}
+ * - any {@link SpanData}, such as spans collected by an in-memory exporter
+ * - {@link #synthetic(int, int, int)} traffic shaped like Mule transactions
+ * </pre>
+ */
+public class SpanRecording {
+
+  private static final int BATCH_SIZE = 512;
+  private final List<SpanData> spans;
+
+  private SpanRecording(List<SpanData> spans) {
+    List<SpanData> sorted = new ArrayList<>(spans);
+    // Spans reach the span processor when they end
+    sorted.sort(Comparator.comparingLong(SpanData::getEndEpochNanos));
+    this.spans = sorted;
+  }
+
+  public static SpanRecording of(Collection<SpanData> spans) {
+    return new SpanRecording(new ArrayList<>(spans));
+  }
+
+  public static SpanRecording read(Path file) throws IOException {
+    List<SpanData> spans = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        byte[] batch = new byte[length];
+        in.readFully(batch);
+        spans.addAll(SpanDataCodec.decode(batch));
+      }
+    }
+    return new SpanRecording(spans);
+  }
+
+  public void write(Path file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+      for (int i = 0; i < spans.size(); i += BATCH_SIZE) {
+        byte[] batch = SpanDataCodec.encode(spans.subList(i, Math.min(spans.size(), i + BATCH_SIZE)));
+        out.writeInt(batch.length);
+        out.write(batch);
+      }
+    }
+  }
+
+  /**
+   * Create recording from spans collected by
+   * {@link DelegatedLoggingSpanTestExporter}. Test exporter does not keep
+   * resource, events, and links, so those are not part of the recording.
+   *
+   * @param testSpans
+   *            {@link DelegatedLoggingSpanTestExporter.Span}s
+   * @return SpanRecording
+   */
+  public static SpanRecording fromTestExporter(Collection<DelegatedLoggingSpanTestExporter.Span> testSpans) {
+    List<SpanData> spans = new ArrayList<>(testSpans.size());
+    for (DelegatedLoggingSpanTestExporter.Span span : testSpans) {
+      AttributesBuilder attributes = Attributes.builder();
+      for (Map.Entry<String, Object> entry : span.getAttributes().entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof Long)
+          attributes.put(AttributeKey.longKey(entry.getKey()), (Long) value);
+        else if (value instanceof Double)
+          attributes.put(AttributeKey.doubleKey(entry.getKey()), (Double) value);
+        else if (value instanceof Boolean)
+          attributes.put(AttributeKey.booleanKey(entry.getKey()), (Boolean) value);
+        else
+          attributes.put(AttributeKey.stringKey(entry.getKey()), String.valueOf(value));
+      }
+      DelegatedLoggingSpanTestExporter.SpanContext parent = span.getParentSpanContext();
+      spans.add(TestSpanData.builder()
+          .setName(span.getSpanName())
+          .setKind(SpanKind.valueOf(span.getSpanKind()))
+          .setSpanContext(SpanContext.create(span.getTraceId(), span.getSpanId(), TraceFlags.getSampled(),
+              TraceState.getDefault()))
+          .setParentSpanContext(parent == null ? SpanContext.getInvalid()
+              : SpanContext.create(parent.getTraceId(), parent.getSpanId(), TraceFlags.getSampled(),
+                  TraceState.getDefault()))
+          .setInstrumentationScopeInfo(InstrumentationScopeInfo.builder(span.getInstrumentationName())
+              .setVersion(span.getInstrumentationVersion()).build())
+          .setStatus(StatusData.create(StatusCode.valueOf(span.getSpanStatus()),
+              span.getSpanStatusDescription()))
+          .setStartEpochNanos(span.getStartEpocNanos())
+          .setEndEpochNanos(span.getEndEpocNanos())
+          .setAttributes(attributes.build())
+          .setTotalAttributeCount(span.getAttributes().size())
+          .setHasEnded(true)
+          .build());
+    }
+    return new SpanRecording(spans);
+  }
+
+  /**
+   * Synthetic traffic where each transaction has a server span for the flow and
+   * internal spans for its processors.
+   *
+   * @param transactionsPerSecond
+   *            transaction rate
+   * @param processorsPerTransaction
+   *            processor spans per transaction
+   * @param seconds
+   *            length of the recording
+   * @return SpanRecording
+   */
+  public static SpanRecording synthetic(int transactionsPerSecond, int processorsPerTransaction, int seconds) {
+    IdGenerator ids = IdGenerator.random();
+    Resource resource = Resource.getDefault().merge(Resource.create(
+        Attributes.of(AttributeKey.stringKey("service.name"), "replay-app")));
+    InstrumentationScopeInfo scope = InstrumentationScopeInfo.builder("mule-opentelemetry-module-DEV")
+        .setVersion("DEV").build();
+    long startNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / transactionsPerSecond;
+    long processorNanos = TimeUnit.MILLISECONDS.toNanos(2);
+    List<SpanData> spans = new ArrayList<>();
+    for (long tx = 0, count = (long) transactionsPerSecond * seconds; tx < count; tx++) {
+      long txStart = startNanos + tx * intervalNanos;
+      SpanContext root = SpanContext.create(ids.generateTraceId(), ids.generateSpanId(), TraceFlags.getSampled(),
+          TraceState.getDefault());
+      for (int p = 0; p < processorsPerTransaction; p++) {
+        long start = txStart + p * processorNanos;
+        spans.add(TestSpanData.builder()
+            .setName("set-payload:Set Payload " + p)
+            .setKind(SpanKind.INTERNAL)
+            .setSpanContext(SpanContext.create(root.getTraceId(), ids.generateSpanId(), TraceFlags.getSampled(),
+                TraceState.getDefault()))
+            .setParentSpanContext(root)
+            .setResource(resource)
+            .setInstrumentationScopeInfo(scope)
+            .setStatus(StatusData.unset())
+            .setStartEpochNanos(start)
+            .setEndEpochNanos(start + processorNanos)
+            .setAttributes(Attributes.builder()
+                .put("mule.app.processor.name", "set-payload")
+                .put("mule.app.processor.namespace", "mule")
+                .put("mule.app.processor.docName", "Set Payload " + p)
+                .put("mule.app.flow.name", "order-flow")
+                .put("mule.correlationId", root.getTraceId())
+                .build())
+            .setTotalAttributeCount(5)
+            .setHasEnded(true)
+            .build());
+      }
+      spans.add(TestSpanData.builder()
+          .setName("GET /api/orders")
+          .setKind(SpanKind.SERVER)
+          .setSpanContext(root)
+          .setResource(resource)
+          .setInstrumentationScopeInfo(scope)
+          .setStatus(StatusData.unset())
+          .setStartEpochNanos(txStart)
+          .setEndEpochNanos(txStart + (processorsPerTransaction + 1) * processorNanos)
+          .setAttributes(Attributes.builder()
+              .put("mule.app.flow.name", "order-flow")
+              .put("http.method", "GET")
+              .put("http.route", "/api/orders")
+              .put("http.status_code", 200L)
+              .put("mule.correlationId", root.getTraceId())
+              .build())
+          .setTotalAttributeCount(5)
+          .setHasEnded(true)
+          .build());
+    }
+    return new SpanRecording(spans);
+  }
+
+  /**
+   * @return spans ordered by end time
+   */
+  public List<SpanData> getSpans() {
+    return spans;
+  }
+
+  /**
+   * @return nanos between first and last span end
+   */
+  public long getDurationNanos() {
+    return spans.isEmpty() ? 0
+        : spans.get(spans.size() - 1).getEndEpochNanos() - spans.get(0).getEndEpochNanos();
+  }
+}
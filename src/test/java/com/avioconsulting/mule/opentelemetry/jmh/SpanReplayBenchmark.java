@@ -0,0 +1,358 @@
+package com.avioconsulting.mule.opentelemetry.jmh;
+
+import com.avioconsulting.mule.opentelemetry.api.config.ExporterConfiguration;
+import com.avioconsulting.mule.opentelemetry.api.config.OpenTelemetryResource;
+import com.avioconsulting.mule.opentelemetry.api.config.SpanProcessorConfiguration;
+import com.avioconsulting.mule.opentelemetry.api.config.exporter.OpenTelemetryExporter;
+import com.avioconsulting.mule.opentelemetry.api.config.exporter.OtlpExporter;
+import com.avioconsulting.mule.opentelemetry.internal.config.OpenTelemetryConfigWrapper;
+import com.avioconsulting.mule.opentelemetry.internal.config.OpenTelemetryExtensionConfiguration;
+import com.avioconsulting.mule.opentelemetry.internal.connection.OpenTelemetryConnection;
+import com.sun.net.httpserver.HttpServer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.traces.ConfigurableSpanExporterProvider;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <pre>
+ * Replays a recorded span stream through {@link OpenTelemetryConnection} (SDK autoconfiguration, span processor and
+ * OTLP exporter) into a local stub OTLP receiver, for tuning span processor configuration and OTLP compression.
+ *
+ * Spans are re-created with the connection in the order they ended in the recording, at a multiple of the recorded
+ * rate, with their original name, kind, attributes, status, and timestamps. Trace and span ids are new, and parents
+ * are remapped to the replayed spans, so every loop of the recording creates complete new traces. For each
+ * configuration and speed, it reports -
+ * - sustained exported spans/sec
+ * - spans dropped by the span processor or failed in export
+ * - p50/p99 export latency
+ * - process CPU time per span, this includes the stub receiver running in the same process
+ *
+ * Runs with `./mvnw test -Pbenchmark -Dtest=SpanReplayBenchmark`, or with `-DrunJMH=true`. System properties -
+ * - replay.recording: {@link SpanRecording} file, defaults to synthetic traffic
+ * - replay.speeds: comma separated multiples of recorded rate, defaults to `1,4`
+ * - replay.duration.seconds: replay time per run, the recording is looped, defaults to `20`
+ * - replay.configs: semicolon separated `maxQueueSize:maxBatchSize:delayMillis:timeoutMillis:NONE|GZIP` entries
+ * </pre>
+ */
+public class SpanReplayBenchmark {
+
+  private static final String DEFAULT_CONFIGS = "2048:512:5000:30000:NONE;2048:512:5000:30000:GZIP;"
+      + "8192:1024:1000:30000:NONE;8192:1024:1000:30000:GZIP";
+
+  @Test
+  public void replay() throws Exception {
+    Assume.assumeTrue(System.getProperty("runJMH", "false").equals("true"));
+    main(new String[0]);
+  }
+
+  public static void main(String[] args) throws Exception {
+    String recordingFile = System.getProperty("replay.recording");
+    SpanRecording recording = recordingFile == null ? SpanRecording.synthetic(500, 8, 10)
+        : SpanRecording.read(Paths.get(recordingFile));
+    long durationSeconds = Long.getLong("replay.duration.seconds", 20);
+    List<Double> speeds = new ArrayList<>();
+    for (String speed : System.getProperty("replay.speeds", "1,4").split(","))
+      speeds.add(Double.parseDouble(speed.trim()));
+
+    List<Result> results = new ArrayList<>();
+    try (StubOtlpReceiver receiver = new StubOtlpReceiver()) {
+      for (String config : System.getProperty("replay.configs", DEFAULT_CONFIGS).split(";")) {
+        for (double speed : speeds) {
+          results.add(run(recording, receiver, config.trim(), speed, durationSeconds));
+        }
+      }
+    }
+    System.out.println();
+    System.out.printf("Replayed %d recorded spans (%.1f spans/sec at 1x)%n", recording.getSpans().size(),
+        recording.getSpans().size() / Math.max(1e-9, recording.getDurationNanos() / 1e9));
+    System.out.printf("%-32s %6s %12s %12s %10s %10s %10s %12s%n", "configuration", "speed", "offered/s",
+        "exported/s", "dropped", "p50 ms", "p99 ms", "cpu ns/span");
+    results.forEach(result -> System.out.println(result));
+  }
+
+  static Result run(SpanRecording recording, StubOtlpReceiver receiver, String config, double speed,
+      long durationSeconds) {
+    String[] parts = config.split(":");
+    SpanProcessorConfiguration processorConfiguration = new SpanProcessorConfiguration(
+        Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+    OtlpExporter.OtlpRequestCompression compression = OtlpExporter.OtlpRequestCompression.valueOf(parts[4]);
+    Map<String, String> properties = new HashMap<>(processorConfiguration.getConfigMap());
+    properties.put(OpenTelemetryExporter.OTEL_TRACES_EXPORTER_KEY, ReplayExporterProvider.NAME);
+    properties.put(OpenTelemetryExporter.OTEL_METRICS_EXPORTER_KEY, "none");
+    properties.put(OpenTelemetryExporter.OTEL_LOGS_EXPORTER_KEY, "none");
+    properties.put(OtlpExporter.OTEL_EXPORTER_OTLP_PROTOCOL, OtlpExporter.Protocol.HTTP_PROTOBUF.getValue());
+    properties.put(OtlpExporter.OTEL_EXPORTER_OTLP_TRACES_ENDPOINT, receiver.getEndpoint() + "/v1/traces");
+    properties.put(OtlpExporter.OTEL_EXPORTER_OTLP_COMPRESSION, compression.getValue());
+
+    OpenTelemetryExtensionConfiguration configuration = new OpenTelemetryExtensionConfiguration()
+        .setResource(new OpenTelemetryResource("replay-app", Collections.emptyList()))
+        .setExporterConfiguration(new ExporterConfiguration().setExporter(() -> properties))
+        .setSpanProcessorConfiguration(processorConfiguration);
+    OpenTelemetryConnection connection = OpenTelemetryConnection.getInstance(
+        new OpenTelemetryConfigWrapper(configuration));
+    OpenTelemetrySdk sdk = (OpenTelemetrySdk) connection.getOpenTelemetry();
+
+    List<SpanData> spans = recording.getSpans();
+    Replayer replayer = new Replayer(connection, spans);
+    long recordedFirstEnd = spans.get(0).getEndEpochNanos();
+    // Keep a gap between loops, as between two recorded spans on average
+    long loopNanos = recording.getDurationNanos() + recording.getDurationNanos() / Math.max(1, spans.size());
+    long durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+    long cpuStart = processCpuNanos();
+    long replayStart = System.nanoTime();
+    long offered = 0;
+    int index = 0;
+    long loop = 0;
+    while (true) {
+      if (index == spans.size()) {
+        index = 0;
+        loop++;
+        replayer.reset();
+      }
+      SpanData span = spans.get(index);
+      long due = (long) (((span.getEndEpochNanos() - recordedFirstEnd) + loop * loopNanos) / speed);
+      if (due >= durationNanos)
+        break;
+      long wait = due - (System.nanoTime() - replayStart);
+      if (wait > 0)
+        LockSupport.parkNanos(wait);
+      replayer.replay(span);
+      offered++;
+      index++;
+    }
+    long replayNanos = System.nanoTime() - replayStart;
+    sdk.getSdkTracerProvider().forceFlush().join(60, TimeUnit.SECONDS);
+    long cpuNanos = processCpuNanos() - cpuStart;
+    long elapsedNanos = System.nanoTime() - replayStart;
+    connection.shutdown(60_000);
+    OpenTelemetryConnection.resetForTest();
+
+    MeasuringSpanExporter exporter = ReplayExporterProvider.exporter;
+    Result result = new Result();
+    result.config = config;
+    result.speed = speed;
+    result.offeredPerSecond = offered / (replayNanos / 1e9);
+    result.exportedPerSecond = exporter.exported.get() / (elapsedNanos / 1e9);
+    result.dropped = offered - exporter.exported.get();
+    result.p50Millis = exporter.latencyPercentileMillis(0.50);
+    result.p99Millis = exporter.latencyPercentileMillis(0.99);
+    result.cpuNanosPerSpan = offered == 0 ? 0 : cpuNanos / offered;
+    return result;
+  }
+
+  /**
+   * Re-creates recorded spans with new ids. Spans are replayed in the order they
+   * ended, so a parent is started when its first child is replayed, and ended
+   * in its own turn. Spans whose parent is not in the recording become root
+   * spans.
+   */
+  static class Replayer {
+    private final OpenTelemetryConnection connection;
+    private final Map<String, SpanData> recorded = new HashMap<>();
+    private final Map<String, Span> started = new HashMap<>();
+
+    Replayer(OpenTelemetryConnection connection, List<SpanData> spans) {
+      this.connection = connection;
+      spans.forEach(span -> recorded.put(span.getTraceId() + span.getSpanId(), span));
+    }
+
+    void replay(SpanData span) {
+      Span replayed = started.remove(span.getTraceId() + span.getSpanId());
+      if (replayed == null)
+        replayed = start(span);
+      Span ending = replayed;
+      span.getEvents().forEach(event -> ending.addEvent(event.getName(), event.getAttributes(),
+          event.getEpochNanos(), TimeUnit.NANOSECONDS));
+      replayed.setStatus(span.getStatus().getStatusCode(), span.getStatus().getDescription());
+      replayed.end(span.getEndEpochNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Forget parents started in the previous loop of the recording.
+     */
+    void reset() {
+      started.clear();
+    }
+
+    private Span start(SpanData span) {
+      SpanBuilder builder = connection.spanBuilder(span.getName())
+          .setSpanKind(span.getKind())
+          .setStartTimestamp(span.getStartEpochNanos(), TimeUnit.NANOSECONDS)
+          .setAllAttributes(span.getAttributes());
+      String parentKey = span.getTraceId() + span.getParentSpanId();
+      SpanData parent = span.getParentSpanContext().isValid() ? recorded.get(parentKey) : null;
+      if (parent == null) {
+        builder.setNoParent();
+      } else {
+        Span parentSpan = started.get(parentKey);
+        if (parentSpan == null) {
+          parentSpan = start(parent);
+          started.put(parentKey, parentSpan);
+        }
+        builder.setParent(Context.root().with(parentSpan));
+      }
+      return builder.startSpan();
+    }
+  }
+
+  private static long processCpuNanos() {
+    java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean)
+      return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+    return 0;
+  }
+
+  static class Result {
+    String config;
+    double speed;
+    double offeredPerSecond;
+    double exportedPerSecond;
+    long dropped;
+    double p50Millis;
+    double p99Millis;
+    long cpuNanosPerSpan;
+
+    @Override
+    public String toString() {
+      return String.format("%-32s %5.1fx %12.0f %12.0f %10d %10.2f %10.2f %12d", config, speed, offeredPerSecond,
+          exportedPerSecond, dropped, p50Millis, p99Millis, cpuNanosPerSpan);
+    }
+  }
+
+  /**
+   * Counts exported spans and records latency of each export call.
+   */
+  static class MeasuringSpanExporter implements SpanExporter {
+    private final SpanExporter delegate;
+    private final AtomicLong exported = new AtomicLong();
+    private final List<Long> latencies = new ArrayList<>();
+
+    MeasuringSpanExporter(SpanExporter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+      long start = System.nanoTime();
+      int count = spans.size();
+      CompletableResultCode result = delegate.export(spans);
+      result.whenComplete(() -> {
+        synchronized (latencies) {
+          latencies.add(System.nanoTime() - start);
+        }
+        if (result.isSuccess())
+          exported.addAndGet(count);
+      });
+      return result;
+    }
+
+    double latencyPercentileMillis(double percentile) {
+      long[] sorted;
+      synchronized (latencies) {
+        sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+      }
+      if (sorted.length == 0)
+        return 0;
+      Arrays.sort(sorted);
+      return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return delegate.shutdown();
+    }
+  }
+
+  /**
+   * Provider for `otel.traces.exporter=replay-otlp`, an OTLP/HTTP exporter
+   * wrapped in a {@link MeasuringSpanExporter}. Registered with the service
+   * loader in test resources.
+   */
+  public static class ReplayExporterProvider implements ConfigurableSpanExporterProvider {
+    static final String NAME = "replay-otlp";
+    static volatile MeasuringSpanExporter exporter;
+
+    @Override
+    public SpanExporter createExporter(ConfigProperties config) {
+      exporter = new MeasuringSpanExporter(OtlpHttpSpanExporter.builder()
+          .setEndpoint(config.getString(OtlpExporter.OTEL_EXPORTER_OTLP_TRACES_ENDPOINT))
+          .setCompression(config.getString(OtlpExporter.OTEL_EXPORTER_OTLP_COMPRESSION, "none"))
+          .build());
+      return exporter;
+    }
+
+    @Override
+    public String getName() {
+      return NAME;
+    }
+  }
+
+  /**
+   * Minimal OTLP/HTTP receiver that reads and discards requests.
+   */
+  static class StubOtlpReceiver implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    StubOtlpReceiver() throws IOException {
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 128);
+      server.createContext("/v1/traces", exchange -> {
+        byte[] buffer = new byte[8192];
+        try (InputStream body = exchange.getRequestBody()) {
+          for (int read; (read = body.read(buffer)) >= 0;)
+            bytes.addAndGet(read);
+        }
+        requests.incrementAndGet();
+        exchange.getResponseHeaders().add("Content-Type", "application/x-protobuf");
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+      });
+      server.setExecutor(executor);
+      server.start();
+    }
+
+    String getEndpoint() {
+      return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+}
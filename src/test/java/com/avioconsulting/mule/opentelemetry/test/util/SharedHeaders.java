@@ -0,0 +1,22 @@
+package com.avioconsulting.mule.opentelemetry.test.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Headers map shared by all executions of a flow, used as
+ * {@code vars.headers} in tests.
+ */
+public class SharedHeaders {
+
+  private static final Map<String, String> HEADERS = Collections.synchronizedMap(new HashMap<>());
+
+  static {
+    HEADERS.put("x-app-header", "shared");
+  }
+
+  public static Map<String, String> get() {
+    return HEADERS;
+  }
+}